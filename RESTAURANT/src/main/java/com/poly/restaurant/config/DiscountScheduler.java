@@ -1,47 +1,233 @@
 package com.poly.restaurant.config;
 
+import com.poly.restaurant.entities.DiscountEntity;
+import com.poly.restaurant.entities.enums.DiscountStatus;
 import com.poly.restaurant.services.DiscountService;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lịch chuyển trạng thái discount theo thời điểm (startDate, endDate - 24h, endDate).
+ * Các mốc sắp tới được giữ trong hàng đợi ưu tiên theo thời gian, chỉ hẹn giờ cho mốc gần nhất;
+ * đến mốc thì cập nhật đúng các discount của mốc đó thay vì quét toàn bảng.
+ * Lịch được dựng lại từ database khi khởi động và sau mỗi lần đối soát định kỳ.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class DiscountScheduler {
 
+    // Đối soát toàn bộ chỉ để phòng lệch (sửa DB tay, mất mốc khi restart...)
+    private static final long RECONCILE_INTERVAL_MS = 60 * 60 * 1000; // 1 giờ
+
+    // ACTIVE -> EXPIRING khi còn dưới 24h; cộng 1s để mốc rơi hẳn vào khoảng "< 24h"
+    private static final Duration EXPIRING_BEFORE_END = Duration.ofHours(24).minusSeconds(1);
+
     private final DiscountService discountService;
 
-    // Run every 5 minutes to update discount statuses
-    @Scheduled(fixedRate = 120000) // 5 minutes = 300,000 milliseconds
-    public void updateDiscountStatuses() {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "discount-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Mốc thời gian -> các discount cần cập nhật tại mốc đó
+    private final TreeMap<LocalDateTime, Set<Long>> boundaries = new TreeMap<>();
+    private final Map<Long, List<LocalDateTime>> boundariesByDiscount = new HashMap<>();
+    private ScheduledFuture<?> nextWakeUp;
+    private LocalDateTime nextWakeUpAt;
+
+    public DiscountScheduler(@Lazy DiscountService discountService) {
+        this.discountService = discountService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconcile();
+    }
+
+    @Scheduled(fixedRate = RECONCILE_INTERVAL_MS, initialDelay = RECONCILE_INTERVAL_MS)
+    public void reconcile() {
         try {
-            log.info("Starting scheduled discount status update...");
-            
+            log.info("Starting discount status reconciliation...");
+
             // 1. Tự động áp dụng discount khi đến giờ
             discountService.autoApplyDiscounts();
-            
+
             // 2. Tự động gỡ bỏ discount khi hết hạn
             discountService.autoRemoveExpiredDiscounts();
-            
+
             // 3. Cập nhật status cơ bản (nếu cần)
             discountService.updateDiscountStatuses();
-            
-            log.info("Completed scheduled discount status update");
+
+            // 4. Dựng lại lịch các mốc sắp tới. Đọc DB trong cùng khóa với schedule/cancel: thay đổi commit
+            //    trước lúc đọc đã nằm trong kết quả, thay đổi commit sau đó chờ khóa rồi áp dụng lên lịch mới
+            synchronized (this) {
+                List<DiscountEntity> pending = discountService.findPendingDiscounts();
+                boundaries.clear();
+                boundariesByDiscount.clear();
+                pending.forEach(this::register);
+                rearm();
+            }
+
+            log.info("Completed discount status reconciliation, {} upcoming boundaries", boundaries.size());
         } catch (Exception e) {
-            log.error("Error updating discount statuses: {}", e.getMessage(), e);
+            log.error("Error reconciling discount statuses: {}", e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Đăng ký (hoặc thay thế) các mốc của discount sau khi tạo/cập nhật; áp dụng khi transaction commit
+     */
+    public void schedule(DiscountEntity discount) {
+        runAfterCommit(() -> {
+            synchronized (this) {
+                unregister(discount.getId());
+                register(discount);
+                rearm();
+            }
+        });
+    }
 
+    /**
+     * Bỏ các mốc của discount đã xóa; áp dụng khi transaction commit
+     */
+    public void cancel(Long discountId) {
+        runAfterCommit(() -> {
+            synchronized (this) {
+                unregister(discountId);
+                rearm();
+            }
+        });
+    }
 
+    // Transaction rollback thì lịch giữ nguyên như trước
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 
+    private void register(DiscountEntity discount) {
+        DiscountStatus status = discount.getStatus();
+        if (status == null || status == DiscountStatus.EXPIRED || status == DiscountStatus.REPLACED
+                || discount.getEndDate() == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<LocalDateTime> instants = new ArrayList<>(3);
+        if (status == DiscountStatus.SCHEDULED && discount.getStartDate() != null) {
+            instants.add(discount.getStartDate());
+        }
+        instants.add(discount.getEndDate().minus(EXPIRING_BEFORE_END));
+        instants.add(discount.getEndDate());
 
+        List<LocalDateTime> registered = new ArrayList<>(instants.size());
+        for (LocalDateTime instant : instants) {
+            if (instant.isAfter(now)) {
+                boundaries.computeIfAbsent(instant, i -> new LinkedHashSet<>()).add(discount.getId());
+                registered.add(instant);
+            }
+        }
+        if (!registered.isEmpty()) {
+            boundariesByDiscount.put(discount.getId(), registered);
+        }
+    }
 
+    private void unregister(Long discountId) {
+        List<LocalDateTime> instants = boundariesByDiscount.remove(discountId);
+        if (instants == null) {
+            return;
+        }
+        for (LocalDateTime instant : instants) {
+            Set<Long> ids = boundaries.get(instant);
+            if (ids != null && ids.remove(discountId) && ids.isEmpty()) {
+                boundaries.remove(instant);
+            }
+        }
+    }
 
+    // Hẹn giờ cho mốc sớm nhất; chỉ hủy hẹn cũ khi mốc sớm nhất thay đổi
+    private void rearm() {
+        LocalDateTime first = boundaries.isEmpty() ? null : boundaries.firstKey();
+        if (first != null && first.equals(nextWakeUpAt)) {
+            return;
+        }
+        if (nextWakeUp != null) {
+            nextWakeUp.cancel(false);
+            nextWakeUp = null;
+        }
+        nextWakeUpAt = first;
+        if (first != null) {
+            long delay = Math.max(0, Duration.between(LocalDateTime.now(), first).toMillis());
+            nextWakeUp = timer.schedule(this::fireDueBoundaries, delay, TimeUnit.MILLISECONDS);
+        }
+    }
 
+    private void fireDueBoundaries() {
+        Set<Long> due = new LinkedHashSet<>();
+        synchronized (this) {
+            nextWakeUp = null;
+            nextWakeUpAt = null;
+            LocalDateTime now = LocalDateTime.now();
+            while (!boundaries.isEmpty() && !boundaries.firstKey().isAfter(now)) {
+                Map.Entry<LocalDateTime, Set<Long>> entry = boundaries.pollFirstEntry();
+                for (Long discountId : entry.getValue()) {
+                    List<LocalDateTime> remaining = boundariesByDiscount.get(discountId);
+                    if (remaining != null) {
+                        remaining.remove(entry.getKey());
+                        if (remaining.isEmpty()) {
+                            boundariesByDiscount.remove(discountId);
+                        }
+                    }
+                    due.add(discountId);
+                }
+            }
+        }
 
+        // Cập nhật DB ngoài khóa để create/update discount không phải chờ
+        for (Long discountId : due) {
+            try {
+                discountService.refreshDiscountStatus(discountId);
+            } catch (Exception e) {
+                log.error("Error updating status of discount {}: {}", discountId, e.getMessage(), e);
+            }
+        }
 
+        synchronized (this) {
+            rearm();
+        }
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
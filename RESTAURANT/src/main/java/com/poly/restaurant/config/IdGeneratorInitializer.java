@@ -0,0 +1,66 @@
+package com.poly.restaurant.config;
+
+import java.lang.reflect.Field;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.metamodel.EntityType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đảm bảo mỗi dòng id_generator nằm trên id lớn nhất hiện có của bảng tương ứng.
+ * Dự án chạy ddl-auto=update, không có Flyway, nên bảng id_generator có thể do Hibernate tạo rỗng
+ * và dòng được khởi tạo từ 1, trùng với id đã có. Chạy khi khởi tạo bean (sau khi schema đã cập nhật,
+ * trước khi web server nhận request) cho mọi entity dùng @TableGenerator.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdGeneratorInitializer {
+
+    // Nhận EntityManagerFactory để chắc chắn schema đã được Hibernate cập nhật trước khi chạy
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void initialize() {
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            TableGenerator generator = findTableGenerator(entity.getJavaType());
+            Table table = entity.getJavaType().getAnnotation(Table.class);
+            if (generator == null || table == null) {
+                continue;
+            }
+            bump(generator, table.name());
+        }
+    }
+
+    // Pooled optimizer: giá trị N cấp các id (N - allocationSize, N], nên N = MAX(id) + allocationSize
+    // bắt đầu ngay sau id lớn nhất; GREATEST để không bao giờ lùi block mà instance khác đang dùng
+    private void bump(TableGenerator generator, String tableName) {
+        Long floor = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) + ? FROM " + tableName, Long.class, generator.allocationSize());
+        jdbcTemplate.update("INSERT INTO " + generator.table() + " (" + generator.pkColumnName() + ", "
+                + generator.valueColumnName() + ") VALUES (?, ?) ON DUPLICATE KEY UPDATE "
+                + generator.valueColumnName() + " = GREATEST(" + generator.valueColumnName() + ", VALUES("
+                + generator.valueColumnName() + "))", generator.pkColumnValue(), floor);
+        log.info("Id generator {} ensured at or above {}", generator.pkColumnValue(), floor);
+    }
+
+    private static TableGenerator findTableGenerator(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                TableGenerator generator = field.getAnnotation(TableGenerator.class);
+                if (generator != null) {
+                    return generator;
+                }
+            }
+        }
+        return null;
+    }
+}
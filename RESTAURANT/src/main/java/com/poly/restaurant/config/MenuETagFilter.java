@@ -0,0 +1,160 @@
+package com.poly.restaurant.config;
+
+import com.poly.restaurant.services.MenuSnapshotService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Conditional GET và cache response cho các endpoint menu client đọc từ snapshot theo chi nhánh.
+ * ETag = version của snapshot (đọc từ snapshot trong bộ nhớ, không mở transaction), nên request có
+ * If-None-Match trùng được trả 304 ngay tại filter, không chạy controller, repository hay mapper.
+ * If-Modified-Since chỉ được xét khi client không gửi If-None-Match.
+ * Response 200 được giữ lại dạng byte JSON trên snapshot theo URL, lần sau ghi thẳng ra output stream.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MenuETagFilter extends OncePerRequestFilter {
+
+    private static final String MENU_PREFIX = "/api/client/menu";
+
+    // Các endpoint mà response chỉ phụ thuộc vào snapshot của branch và query params
+    // (featured không nằm ở đây vì còn phụ thuộc xếp hạng bán hàng)
+    private static final Set<String> SNAPSHOT_ENDPOINTS = Set.of(
+            "/categories", "/items", "/items/scroll", "/suggestions", "/dishes", "/combos",
+            "/filters", "/order-items",
+            "/v2/categories", "/v2/items", "/v2/filters");
+
+    private final MenuSnapshotService menuSnapshotService;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith(MENU_PREFIX) || !SNAPSHOT_ENDPOINTS.contains(path.substring(MENU_PREFIX.length()));
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+
+        Long branchId = parseBranchId(request);
+        if (branchId == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Snapshot đang có trong bộ nhớ trả lời được 304 mà không cần database; chỉ build khi chưa có
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.currentSnapshot(branchId);
+        if (snapshot == null) {
+            try {
+                snapshot = menuSnapshotService.getSnapshot(branchId);
+            } catch (IllegalArgumentException e) {
+                // Branch không hợp lệ: để controller trả lỗi như cũ
+                filterChain.doFilter(request, response);
+                return;
+            }
+        }
+
+        String etag = snapshot.getEtag();
+        long lastModified = snapshot.getBuiltAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        // Cho phép client lưu response nhưng luôn hỏi lại server bằng If-None-Match
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (isNotModified(request, response, etag, lastModified)) {
+            log.debug("Menu not modified for branch: {} ({})", branchId, etag);
+            return;
+        }
+
+        String cacheKey = cacheKey(request);
+        MenuSnapshotService.CachedResponse cached = snapshot.getCachedResponse(cacheKey);
+        if (cached != null) {
+            response.setContentType(cached.getContentType());
+            response.setContentLength(cached.getBody().length);
+            if (!"HEAD".equals(request.getMethod())) {
+                response.getOutputStream().write(cached.getBody());
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() == HttpServletResponse.SC_OK && "GET".equals(request.getMethod())
+                    && wrapper.getContentType() != null && wrapper.getContentType().contains("json")) {
+                snapshot.cacheResponse(cacheKey,
+                        new MenuSnapshotService.CachedResponse(wrapper.getContentType(), wrapper.getContentAsByteArray()));
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * So khớp theo ETag. Last-Modified chỉ chính xác tới giây nên snapshot build lại trong cùng giây
+     * vẫn trùng If-Modified-Since: chỉ dùng header này khi không có If-None-Match và snapshot được
+     * build trước hẳn thời điểm client gửi lên.
+     */
+    private boolean isNotModified(HttpServletRequest request, HttpServletResponse response, String etag,
+            long lastModified) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            return new ServletWebRequest(request, response).checkNotModified(etag);
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (ifModifiedSince < 0 || lastModified >= ifModifiedSince) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    // Key gồm path và query string đã sắp xếp để ?a=1&b=2 và ?b=2&a=1 dùng chung một entry
+    private String cacheKey(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+            for (String value : values) {
+                key.append('&').append(name).append('=').append(value);
+            }
+        });
+        return key.toString();
+    }
+
+    private Long parseBranchId(HttpServletRequest request) {
+        String value = request.getParameter("branchId");
+        if (value == null) {
+            value = request.getParameter("branch_id");
+        }
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
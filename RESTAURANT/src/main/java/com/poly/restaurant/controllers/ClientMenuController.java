@@ -182,6 +182,75 @@ public class ClientMenuController {
         }
     }
 
+    /**
+     * GET /api/client/menu/items/scroll
+     * Phân trang theo cursor cho infinite scroll, truyền lại nextCursor để lấy trang tiếp
+     */
+    @GetMapping("/items/scroll")
+    public ResponseEntity<CursorPageDTO<ClientMenuItemDTO>> scrollMenuItems(
+            @RequestParam Long branchId,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int pageSize,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        log.info("Client scrolling menu items - branch: {}, category: {}, type: {}, cursor: {}, pageSize: {}, sort: {}",
+                branchId, categoryId, type, cursor, pageSize, sort);
+
+        if (type != null && !isValidType(type)) {
+            log.warn("Invalid type parameter: {}", type);
+            return ResponseEntity.badRequest().build();
+        }
+        if (!isValidSort(sort)) {
+            log.warn("Invalid sort parameter: {}", sort);
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            int safePageSize = Math.min(Math.max(pageSize, 1), 100);
+            CursorPageDTO<ClientMenuItemDTO> items = clientMenuService.getMenuItemsAfter(
+                    branchId, categoryId, type, search, cursor, safePageSize, createSort(sort), includeTotal);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(items);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid request parameters: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error scrolling menu items for branch: {}, error: {}", branchId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * GET /api/client/menu/suggestions
+     * Gợi ý món khi gõ từ khóa, gõ không dấu vẫn khớp ("pho bo" -> "Phở Bò")
+     */
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<ClientMenuItemDTO>> getSuggestions(
+            @RequestParam Long branchId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+
+        try {
+            int safeLimit = Math.min(Math.max(limit, 1), 20);
+            List<ClientMenuItemDTO> suggestions = clientMenuService.getSuggestions(branchId, q, safeLimit);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(suggestions);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid request parameters: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error fetching suggestions for branch: {}, error: {}", branchId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * GET /api/client/menu/dishes
      * Alias cho /items endpoint để tương thích với frontend
@@ -9,8 +9,6 @@ import com.poly.restaurant.services.ClientOrderService;
 import com.poly.restaurant.services.GHTKService;
 import com.poly.restaurant.services.VNPayService;
 import com.poly.restaurant.dtos.PaymentRequestDTO;
-import com.poly.restaurant.repositories.OrderRepository;
-import com.poly.restaurant.entities.OrderEntity;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -38,7 +36,6 @@ public class ClientOrderController {
     private final ClientOrderService clientOrderService;
     private final GHTKService ghtkService;
     private final VNPayService vnPayService;
-    private final OrderRepository orderRepository;
 
 
     /**
@@ -530,49 +527,23 @@ public class ClientOrderController {
      */
     @PostMapping("/{orderId}/confirm-payment")
     public ResponseEntity<Map<String, Object>> confirmPaymentAndCreateGHTKOrder(@PathVariable String orderId) {
-        try {
-            logger.info("Confirming payment and creating GHTK order for: {}", orderId);
-
-            // Tìm đơn hàng
-            OrderEntity order = orderRepository.findById(Long.parseLong(orderId))
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + orderId));
-
-            // Cập nhật trạng thái đơn hàng thành PAID
-            order.setStatus(com.poly.restaurant.entities.enums.OrderStatus.PAID);
-            orderRepository.save(order);
-            logger.info("Order {} status updated to PAID", orderId);
-
-            // Tạo đơn GHTK
-            String ghtkOrderId = null;
-            String ghtkError = null;
-            try {
-                logger.info("🚀 Starting GHTK order creation for order: {}", orderId);
-                ghtkOrderId = ghtkService.createOrderFromOrderEntity(order);
-                logger.info("✅ GHTK order created successfully: {}", ghtkOrderId);
-            } catch (Exception e) {
-                ghtkError = e.getMessage();
-                logger.error("❌ Error creating GHTK order for order {}: {}", orderId, e.getMessage(), e);
-            }
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("orderId", orderId);
-            response.put("ghtkOrderId", ghtkOrderId);
-            response.put("ghtkError", ghtkError);
-            response.put("message", ghtkOrderId != null ? 
-                "Thanh toán thành công, đơn hàng GHTK đã được tạo" : 
-                "Thanh toán thành công, nhưng có lỗi khi tạo đơn GHTK: " + ghtkError);
-            
-            logger.info("Payment confirmation successful for order: {}", orderId);
-            return ResponseEntity.ok(response);
-            
-        } catch (Exception e) {
-            logger.error("Error confirming payment and creating GHTK order", e);
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "Không thể xác nhận thanh toán: " + e.getMessage());
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
+        logger.info("Confirming payment and creating GHTK order for: {}", orderId);
+
+        // Chuyển PAID và xếp đơn GHTK vào outbox trong một transaction; lỗi do GlobalExceptionHandler trả về
+        String ghtkOrderId = clientOrderService.confirmPayment(Long.parseLong(orderId));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("orderId", orderId);
+        response.put("ghtkOrderId", ghtkOrderId);
+        response.put("ghtkError", null);
+        response.put("ghtkStatus", ghtkOrderId != null ? "CREATED" : "QUEUED");
+        response.put("message", ghtkOrderId != null ?
+            "Thanh toán thành công, đơn hàng GHTK đã được tạo" :
+            "Thanh toán thành công, đơn hàng GHTK đang được tạo");
+
+        logger.info("Payment confirmation successful for order: {}", orderId);
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -21,6 +21,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.poly.restaurant.dtos.ComboRequestDTO;
 import com.poly.restaurant.dtos.ComboResponseDTO;
+import com.poly.restaurant.dtos.CursorPageDTO;
 import com.poly.restaurant.dtos.UpdateComboStatusRequestDTO; // Thay đổi DTO cho phù hợp
 import com.poly.restaurant.entities.AccountEntity;
 // Bỏ ApprovalStatus
@@ -203,6 +204,31 @@ public class ComboController {
         return ResponseEntity.ok(combos);
     }
 
+    /**
+     * Cuộn danh sách combo cho Staff theo cursor (mới nhất trước, không bao gồm DISCONTINUED)
+     * GET /api/combos/staff/scroll?cursor=...&size=20&includeTotal=false
+     */
+    @GetMapping("/staff/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'STAFF')")
+    public ResponseEntity<CursorPageDTO<ComboResponseDTO>> scrollCombosForStaff(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @AuthenticationPrincipal AccountEntity loggedInUser) {
+
+        // Nếu là manager hoặc staff, tự động filter theo branch của họ
+        if (loggedInUser != null && loggedInUser.getRole() != null && 
+            ("ROLE_MANAGER".equals(loggedInUser.getRole().getName()) || 
+             "ROLE_STAFF".equals(loggedInUser.getRole().getName()))) {
+            branchId = loggedInUser.getBranch() != null ? loggedInUser.getBranch().getId() : null;
+        }
+
+        return ResponseEntity.ok(comboService.scrollCombosForStaff(name, status, branchId, cursor, size, includeTotal));
+    }
+
     /**
      * Debug endpoint để kiểm tra trạng thái thực tế của combo
      * GET /api/combos/debug/{id}
@@ -372,7 +372,7 @@ public class DiscountController {
             logger.info("🔄 Testing sync discount IDs...");
             
             // Đồng bộ tất cả discount_id
-            discountService.syncAllDiscountIds();
+            Map<String, Object> syncResult = discountService.syncAllDiscountIds();
             
             // Lấy thống kê sau khi đồng bộ
             List<DiscountResponseDTO> allDiscounts = discountService.getAllDiscounts();
@@ -386,6 +386,7 @@ public class DiscountController {
             
             return ResponseEntity.ok(Map.of(
                 "message", "Sync discount IDs completed successfully",
+                "syncResult", syncResult,
                 "statusCounts", statusCount,
                 "totalDiscounts", allDiscounts.size(),
                 "timestamp", LocalDateTime.now()
@@ -405,7 +406,7 @@ public class DiscountController {
             logger.info("🔄 Testing sync combo discount IDs...");
             
             // Đồng bộ tất cả discount_id cho combos
-            discountService.syncComboDiscountIds();
+            Map<String, Object> syncResult = discountService.syncComboDiscountIds();
             
             // Lấy thống kê sau khi đồng bộ
             List<DiscountResponseDTO> allDiscounts = discountService.getAllDiscounts();
@@ -419,6 +420,7 @@ public class DiscountController {
             
             return ResponseEntity.ok(Map.of(
                 "message", "Sync combo discount IDs completed successfully",
+                "syncResult", syncResult,
                 "statusCounts", statusCount,
                 "totalDiscounts", allDiscounts.size(),
                 "timestamp", LocalDateTime.now()
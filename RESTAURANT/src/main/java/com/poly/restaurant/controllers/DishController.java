@@ -20,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.poly.restaurant.dtos.CursorPageDTO;
 import com.poly.restaurant.dtos.DishRequestDTO;
 import com.poly.restaurant.dtos.DishResponseDTO;
 import com.poly.restaurant.dtos.DishUploadDTO;
@@ -225,4 +226,30 @@ public class DishController {
         Page<DishResponseDTO> dishes = dishService.searchDishesForStaff(name, status, branchId, categoryId, page, size);
         return ResponseEntity.ok(dishes);
     }
-}
\ No newline at end of file
+
+    /**
+     * Cuộn danh sách món ăn cho Staff theo cursor (mới nhất trước, không bao gồm DISCONTINUED)
+     * GET /api/dishes/staff/scroll?cursor=...&size=20&includeTotal=false
+     */
+    @GetMapping("/staff/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'STAFF')")
+    public ResponseEntity<CursorPageDTO<DishResponseDTO>> scrollDishesForStaff(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @AuthenticationPrincipal AccountEntity loggedInUser) {
+
+        // Nếu là manager hoặc staff, tự động filter theo branch của họ
+        if (loggedInUser != null && loggedInUser.getRole() != null && 
+            ("ROLE_MANAGER".equals(loggedInUser.getRole().getName()) || 
+             "ROLE_STAFF".equals(loggedInUser.getRole().getName()))) {
+            branchId = loggedInUser.getBranch() != null ? loggedInUser.getBranch().getId() : null;
+        }
+
+        return ResponseEntity.ok(dishService.scrollDishesForStaff(name, status, branchId, categoryId, cursor, size, includeTotal));
+    }
+}
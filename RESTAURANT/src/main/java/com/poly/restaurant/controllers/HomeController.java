@@ -21,14 +21,15 @@ public class HomeController {
 
     /**
      * GET /api/client/home/featured-menu
-     * Lấy 3 món ăn đặc trưng của chi nhánh 1 cho trang home
+     * Lấy 3 món bán chạy của chi nhánh (mặc định chi nhánh 1) cho trang home
      */
     @GetMapping("/featured-menu")
-    public ResponseEntity<List<ClientMenuItemDTO>> getFeaturedMenuItems() {
-        log.info("Client requesting featured menu items for home page");
+    public ResponseEntity<List<ClientMenuItemDTO>> getFeaturedMenuItems(
+            @RequestParam(defaultValue = "1") Long branchId) {
+        log.info("Client requesting featured menu items for home page, branch: {}", branchId);
 
         try {
-            List<ClientMenuItemDTO> featuredItems = clientMenuService.getFeaturedMenuItemsForHome();
+            List<ClientMenuItemDTO> featuredItems = clientMenuService.getFeaturedMenuItemsForHome(branchId);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.APPLICATION_JSON)
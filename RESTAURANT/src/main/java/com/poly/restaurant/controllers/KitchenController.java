@@ -0,0 +1,74 @@
+package com.poly.restaurant.controllers;
+
+import com.poly.restaurant.dtos.BulkOrderItemStatusRequestDTO;
+import com.poly.restaurant.dtos.KitchenTicketDTO;
+import com.poly.restaurant.entities.enums.OrderItemStatus;
+import com.poly.restaurant.services.KitchenDisplayService;
+import com.poly.restaurant.services.OrderItemService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/staff/kitchen")
+@RequiredArgsConstructor
+public class KitchenController {
+
+    private static final Logger logger = LoggerFactory.getLogger(KitchenController.class);
+    private final KitchenDisplayService kitchenDisplayService;
+    private final OrderItemService orderItemService;
+
+    /**
+     * Hàng đợi món của bếp (snapshot)
+     * GET /api/staff/kitchen/queue?branchId={branchId}
+     */
+    @GetMapping("/queue")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> getQueue(@RequestParam Long branchId) {
+        return ResponseEntity.ok(kitchenDisplayService.getQueue(branchId));
+    }
+
+    /**
+     * SSE cho màn hình bếp: SNAPSHOT rồi các DELTA
+     * GET /api/staff/kitchen/stream?branchId={branchId}
+     */
+    @GetMapping("/stream")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public SseEmitter stream(@RequestParam Long branchId) {
+        logger.info("Kitchen screen connected for branch: {}", branchId);
+        return kitchenDisplayService.stream(branchId);
+    }
+
+    /**
+     * Bếp cập nhật trạng thái món (IN_PROGRESS, READY, ...)
+     * PUT /api/staff/kitchen/items/{itemId}/status?status={status}
+     */
+    @PutMapping("/items/{itemId}/status")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<KitchenTicketDTO> updateItemStatus(
+            @PathVariable Long itemId,
+            @RequestParam OrderItemStatus status) {
+        logger.info("Kitchen updating item {} status to: {}", itemId, status);
+        return ResponseEntity.ok(kitchenDisplayService.updateStatus(itemId, status));
+    }
+
+    /**
+     * Bếp đổi trạng thái nhiều món/nhiều đơn một lần trong chi nhánh
+     * PUT /api/staff/kitchen/items/status?branchId={branchId}
+     */
+    @PutMapping("/items/status")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> updateItemsStatus(
+            @RequestParam Long branchId,
+            @RequestBody BulkOrderItemStatusRequestDTO request) {
+        logger.info("Kitchen bulk updating items to {} in branch: {}", request.getStatus(), branchId);
+        return ResponseEntity.ok(orderItemService.updateItemsStatus(branchId, request.getOrderIds(),
+                request.getItemIds(), request.getStatus()));
+    }
+}
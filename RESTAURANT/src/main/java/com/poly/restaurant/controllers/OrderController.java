@@ -6,6 +6,7 @@ import com.poly.restaurant.dtos.OrderItemRequestDTO;
 import com.poly.restaurant.dtos.OrderItemResponseDTO;
 import com.poly.restaurant.services.OrderService;
 import com.poly.restaurant.services.OrderItemService;
+import com.poly.restaurant.services.OrderReadModel;
 import com.poly.restaurant.entities.enums.OrderStatus;
 import com.poly.restaurant.entities.enums.OrderItemStatus;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +29,7 @@ public class OrderController {
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
     private final OrderService orderService;
     private final OrderItemService orderItemService;
+    private final OrderReadModel orderReadModel;
 
     /**
      * Tạo đơn hàng mới theo luồng nghiệp vụ mới
@@ -229,7 +231,7 @@ public class OrderController {
             }
             
             logger.info("Getting today's unpaid orders for branch: {}", branchId);
-            List<OrderResponseDTO> orders = orderService.getTodayUnpaidOrders(branchId);
+            List<OrderResponseDTO> orders = orderReadModel.getTodayUnpaidOrders(branchId);
             return ResponseEntity.ok(orders);
         } catch (Exception e) {
             logger.error("Error getting today's unpaid orders for branch: {}", branchId, e);
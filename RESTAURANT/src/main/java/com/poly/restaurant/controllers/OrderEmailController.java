@@ -1,6 +1,7 @@
 package com.poly.restaurant.controllers;
 
 import com.poly.restaurant.services.EmailService;
+import com.poly.restaurant.services.OutboxService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +21,7 @@ public class OrderEmailController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderEmailController.class);
     private final EmailService emailService;
+    private final OutboxService outboxService;
 
     /**
      * Gửi email xác nhận đặt hàng thành công
@@ -51,8 +53,8 @@ public class OrderEmailController {
             // Format order date
             String orderDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"));
 
-            // Gửi email
-            emailService.sendOrderConfirmationEmail(
+            // Xếp email vào outbox, gửi SMTP ở nền (có thử lại) để không chặn luồng checkout
+            outboxService.orderConfirmationEmail(
                     email,
                     customerName,
                     orderId,
@@ -60,21 +62,16 @@ public class OrderEmailController {
                     totalAmount != null ? totalAmount : "0",
                     address);
 
-            logger.info("Order confirmation email sent successfully to: {} for order: {}", email, orderId);
+            logger.info("Order confirmation email queued for: {} for order: {}", email, orderId);
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "Order confirmation email sent successfully",
+                    "message", "Order confirmation email queued",
                     "orderId", orderId,
                     "email", email));
 
-        } catch (MessagingException e) {
-            logger.error("Failed to send order confirmation email: {}", e.getMessage(), e);
-            return ResponseEntity.badRequest().body(Map.of(
-                    "success", false,
-                    "message", "Failed to send email: " + e.getMessage()));
         } catch (Exception e) {
-            logger.error("Unexpected error sending order confirmation email: {}", e.getMessage(), e);
+            logger.error("Unexpected error queueing order confirmation email: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().body(Map.of(
                     "success", false,
                     "message", "Internal server error: " + e.getMessage()));
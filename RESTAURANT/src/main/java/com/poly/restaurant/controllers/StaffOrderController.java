@@ -4,14 +4,20 @@ import com.poly.restaurant.dtos.OrderRequestDTO;
 import com.poly.restaurant.dtos.OrderResponseDTO;
 import com.poly.restaurant.dtos.OrderItemRequestDTO;
 import com.poly.restaurant.dtos.OrderItemResponseDTO;
+import com.poly.restaurant.dtos.MergeOrdersRequestDTO;
+import com.poly.restaurant.dtos.SplitOrderRequestDTO;
+import com.poly.restaurant.dtos.MoveItemsRequestDTO;
 import com.poly.restaurant.services.OrderService;
 import com.poly.restaurant.services.OrderItemService;
+import com.poly.restaurant.services.OrderReadModel;
+import com.poly.restaurant.services.OrderTransferService;
 import com.poly.restaurant.entities.enums.OrderStatus;
 import com.poly.restaurant.entities.enums.OrderItemStatus;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.poly.restaurant.sse.OrderSseBroadcaster;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -22,7 +28,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.stream.Collectors;
-import java.time.LocalDateTime;
 import com.poly.restaurant.entities.OrderEntity;
 import com.poly.restaurant.repositories.OrderRepository;
 import org.springframework.data.domain.Page;
@@ -38,8 +43,10 @@ public class StaffOrderController {
     private static final Logger logger = LoggerFactory.getLogger(StaffOrderController.class);
     private final OrderService orderService;
     private final OrderItemService orderItemService;
+    private final OrderTransferService orderTransferService;
     private final OrderSseBroadcaster orderSseBroadcaster;
     private final OrderRepository orderRepository;
+    private final OrderReadModel orderReadModel;
 
     /**
      * Tạo đơn hàng mới
@@ -51,7 +58,6 @@ public class StaffOrderController {
             logger.info("Staff creating order for table: {}", request.getTableId());
             OrderResponseDTO order = orderService.createOrder(request);
             logger.info("Order created successfully with ID: {}", order.getId());
-            orderSseBroadcaster.emitAfterCommit("ORDER_CREATED:" + order.getId());
             return new ResponseEntity<>(order, HttpStatus.CREATED);
         } catch (Exception e) {
             logger.error("Error creating order", e);
@@ -79,14 +85,10 @@ public class StaffOrderController {
             }
             
             Pageable pageable = PageRequest.of(page, size);
-            Page<OrderEntity> orderPage = orderRepository.findByBranchIdOrderByCreatedAtDesc(branchId, pageable);
-            
-            List<OrderResponseDTO> orders = orderPage.getContent().stream()
-                    .map(orderService::mapToResponseDTO)
-                    .collect(Collectors.toList());
+            Page<OrderResponseDTO> orderPage = orderReadModel.findOrders(branchId, null, null, pageable);
             
             Map<String, Object> response = new HashMap<>();
-            response.put("orders", orders);
+            response.put("orders", orderPage.getContent());
             response.put("totalElements", orderPage.getTotalElements());
             response.put("totalPages", orderPage.getTotalPages());
             response.put("currentPage", page);
@@ -100,6 +102,38 @@ public class StaffOrderController {
         }
     }
 
+    /**
+     * Tìm kiếm đơn hàng theo id, số điện thoại, tên người nhận, địa chỉ hoặc tên bàn
+     * GET /api/staff/orders/search?branchId={branchId}&search={search}&status={status}&page={page}&size={size}
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchOrders(
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            logger.info("Staff searching orders for branch: {}, search: {}, status: {}", branchId, search, status);
+
+            Page<OrderResponseDTO> orderPage = orderReadModel.findOrders(branchId, status, search,
+                    PageRequest.of(page, size));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("orders", orderPage.getContent());
+            response.put("totalElements", orderPage.getTotalElements());
+            response.put("totalPages", orderPage.getTotalPages());
+            response.put("currentPage", page);
+            response.put("size", size);
+            response.put("branchId", branchId);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error searching orders for branch: {}", branchId, e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Lấy danh sách đơn hàng chưa thanh toán trong ngày
      * GET /api/staff/orders/today-unpaid?branchId={branchId}
@@ -116,7 +150,7 @@ public class StaffOrderController {
                 logger.info("No branchId provided, using default branch: {}", branchId);
             }
             
-            List<OrderResponseDTO> orders = orderService.getTodayUnpaidOrders(branchId);
+            List<OrderResponseDTO> orders = orderReadModel.getTodayUnpaidOrders(branchId);
             return ResponseEntity.ok(orders);
         } catch (Exception e) {
             logger.error("Error getting today's unpaid orders for branch: {}", branchId, e);
@@ -133,7 +167,6 @@ public class StaffOrderController {
         try {
             logger.info("Staff processing payment for order: {}", id);
             OrderResponseDTO order = orderService.payOrder(id);
-            orderSseBroadcaster.emitAfterCommit("ORDER_PAID:" + id);
             return ResponseEntity.ok(order);
         } catch (Exception e) {
             logger.error("Error processing payment for order: {}", id, e);
@@ -211,7 +244,6 @@ public class StaffOrderController {
             request.setOrderId(orderId);
             request.setId(itemId);
             OrderItemResponseDTO item = orderItemService.updateOrderItem(request);
-            orderSseBroadcaster.emitAfterCommit("ORDER_ITEM_UPDATED:" + orderId + ":" + itemId);
             return ResponseEntity.ok(item);
         } catch (Exception e) {
             logger.error("Error updating item {} in order: {}", itemId, orderId, e);
@@ -231,7 +263,6 @@ public class StaffOrderController {
         try {
             logger.info("Staff removing item {} from order: {}", itemId, orderId);
             orderItemService.removeOrderItem(orderId, itemId);
-            orderSseBroadcaster.emitAfterCommit("ORDER_ITEM_REMOVED:" + orderId + ":" + itemId);
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
             logger.error("Error removing item {} from order: {}", itemId, orderId, e);
@@ -268,23 +299,15 @@ public class StaffOrderController {
         try {
             logger.info("Staff updating order {} status to: {}", id, finalStatus);
             
-            // Kiểm tra order có tồn tại không
-            OrderEntity order = orderRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
-            
-            // Cập nhật trạng thái đơn giản
-            order.setStatus(finalStatus);
-            order.setUpdatedAt(LocalDateTime.now());
-            OrderEntity savedOrder = orderRepository.save(order);
-            
-            // Map to DTO
-            OrderResponseDTO orderResponse = orderService.mapToResponseDTO(savedOrder);
-            
-            // Emit SSE event
-            orderSseBroadcaster.emitAfterCommit("ORDER_STATUS_UPDATED:" + id + ":" + finalStatus.name());
+            // Kiểm tra bước chuyển hợp lệ, cập nhật có điều kiện theo trạng thái hiện tại; sự kiện SSE
+            // được ghi vào outbox trong cùng transaction
+            OrderResponseDTO orderResponse = orderService.updateOrderStatus(id, finalStatus);
             
             logger.info("✅ Order {} status updated to {} successfully", id, finalStatus);
             return ResponseEntity.ok(orderResponse);
+        } catch (IllegalArgumentException | ObjectOptimisticLockingFailureException e) {
+            // Bước chuyển không hợp lệ (400) hoặc tranh chấp sau khi đã thử lại (409)
+            throw e;
         } catch (Exception e) {
             logger.error("❌ Error updating order {} status: {}", id, e.getMessage(), e);
             return ResponseEntity.badRequest().body(
@@ -323,23 +346,15 @@ public class StaffOrderController {
         try {
             logger.info("Staff updating order {} status to: {} (PATCH)", id, finalStatus);
             
-            // Kiểm tra order có tồn tại không
-            OrderEntity order = orderRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
-            
-            // Cập nhật trạng thái đơn giản
-            order.setStatus(finalStatus);
-            order.setUpdatedAt(LocalDateTime.now());
-            OrderEntity savedOrder = orderRepository.save(order);
-            
-            // Map to DTO
-            OrderResponseDTO orderResponse = orderService.mapToResponseDTO(savedOrder);
-            
-            // Emit SSE event
-            orderSseBroadcaster.emitAfterCommit("ORDER_STATUS_UPDATED:" + id + ":" + finalStatus.name());
+            // Kiểm tra bước chuyển hợp lệ, cập nhật có điều kiện theo trạng thái hiện tại; sự kiện SSE
+            // được ghi vào outbox trong cùng transaction
+            OrderResponseDTO orderResponse = orderService.updateOrderStatus(id, finalStatus);
             
             logger.info("✅ Order {} status updated to {} successfully (PATCH)", id, finalStatus);
             return ResponseEntity.ok(orderResponse);
+        } catch (IllegalArgumentException | ObjectOptimisticLockingFailureException e) {
+            // Bước chuyển không hợp lệ (400) hoặc tranh chấp sau khi đã thử lại (409)
+            throw e;
         } catch (Exception e) {
             logger.error("❌ Error updating order {} status (PATCH): {}", id, e.getMessage(), e);
             return ResponseEntity.badRequest().body(new OrderResponseDTO());
@@ -359,7 +374,6 @@ public class StaffOrderController {
         try {
             logger.info("Staff updating item {} status to: {} in order: {}", itemId, status, orderId);
             OrderItemResponseDTO item = orderItemService.updateOrderItemStatus(orderId, itemId, status);
-            orderSseBroadcaster.emitAfterCommit("ORDER_ITEM_STATUS_UPDATED:" + orderId + ":" + itemId + ":" + status.name());
             return ResponseEntity.ok(item);
         } catch (Exception e) {
             logger.error("Error updating item {} status in order: {}", itemId, orderId, e);
@@ -369,6 +383,54 @@ public class StaffOrderController {
 
 
 
+    /**
+     * Cập nhật trạng thái tất cả món của đơn trong một câu lệnh (món không hợp lệ được bỏ qua)
+     * PUT /api/staff/orders/{orderId}/items/status?status={status}
+     */
+    @PutMapping("/{orderId}/items/status")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> updateAllOrderItemsStatus(
+            @PathVariable Long orderId,
+            @RequestParam OrderItemStatus status) {
+        logger.info("Staff updating all items in order {} to: {}", orderId, status);
+        return ResponseEntity.ok(orderItemService.updateAllOrderItemsStatus(orderId, status));
+    }
+
+    /**
+     * Gộp các đơn nguồn vào đơn đích (chuyển toàn bộ món, hủy đơn nguồn, trả bàn)
+     * POST /api/staff/orders/merge
+     */
+    @PostMapping("/merge")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<OrderResponseDTO> mergeOrders(@RequestBody MergeOrdersRequestDTO request) {
+        logger.info("Staff merging orders {} into {}", request.getSourceOrderIds(), request.getTargetOrderId());
+        return ResponseEntity.ok(orderTransferService.mergeOrders(request));
+    }
+
+    /**
+     * Tách món sang đơn mới
+     * POST /api/staff/orders/{orderId}/split
+     */
+    @PostMapping("/{orderId}/split")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<OrderResponseDTO> splitOrder(@PathVariable Long orderId,
+            @RequestBody SplitOrderRequestDTO request) {
+        logger.info("Staff splitting order {}", orderId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(orderTransferService.splitOrder(orderId, request));
+    }
+
+    /**
+     * Chuyển món sang đơn khác
+     * POST /api/staff/orders/{orderId}/move-items
+     */
+    @PostMapping("/{orderId}/move-items")
+    @PreAuthorize("hasAnyRole('STAFF', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<OrderResponseDTO> moveItems(@PathVariable Long orderId,
+            @RequestBody MoveItemsRequestDTO request) {
+        logger.info("Staff moving items from order {} to {}", orderId, request.getTargetOrderId());
+        return ResponseEntity.ok(orderTransferService.moveItems(orderId, request));
+    }
+
     /**
      * SSE stream for realtime order updates
      */
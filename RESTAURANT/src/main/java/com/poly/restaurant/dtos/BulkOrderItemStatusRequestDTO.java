@@ -0,0 +1,14 @@
+package com.poly.restaurant.dtos;
+
+import java.util.List;
+
+import com.poly.restaurant.entities.enums.OrderItemStatus;
+
+import lombok.Data;
+
+@Data
+public class BulkOrderItemStatusRequestDTO {
+    private OrderItemStatus status;
+    private List<Long> orderIds; // Đổi tất cả món đủ điều kiện của các đơn này
+    private List<Long> itemIds;  // Hoặc chỉ các món được chọn
+}
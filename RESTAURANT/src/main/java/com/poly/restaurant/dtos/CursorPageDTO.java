@@ -0,0 +1,24 @@
+package com.poly.restaurant.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả phân trang theo keyset (cursor).
+ * nextCursor là chuỗi opaque, client gửi lại nguyên vẹn để lấy trang tiếp theo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements; // null khi bỏ qua việc đếm tổng
+}
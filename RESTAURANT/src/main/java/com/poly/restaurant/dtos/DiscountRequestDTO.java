@@ -3,6 +3,7 @@ package com.poly.restaurant.dtos;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import com.poly.restaurant.entities.enums.DiscountType;
 
@@ -32,4 +33,7 @@ public class DiscountRequestDTO {
     
     // Loại discount
     private DiscountType type; // BRANCH_DISCOUNT hoặc CUSTOMER_VOUCHER
+
+    @Positive
+    private Integer usageLimit; // Số lượt sử dụng tối đa của voucher (null = không giới hạn)
 }
\ No newline at end of file
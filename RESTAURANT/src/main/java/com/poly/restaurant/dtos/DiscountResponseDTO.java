@@ -29,6 +29,7 @@ public class DiscountResponseDTO {
     
     // Loại discount
     private DiscountType type; // BRANCH_DISCOUNT hoặc CUSTOMER_VOUCHER
+    private Integer usageLimit; // Số lượt sử dụng tối đa (null = không giới hạn)
     
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
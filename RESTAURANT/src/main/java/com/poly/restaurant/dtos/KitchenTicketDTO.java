@@ -0,0 +1,29 @@
+package com.poly.restaurant.dtos;
+
+import java.time.LocalDateTime;
+
+import com.poly.restaurant.entities.enums.OrderItemStatus;
+
+import lombok.Data;
+
+/**
+ * Một món trên màn hình bếp
+ */
+@Data
+public class KitchenTicketDTO {
+
+    private Long itemId;
+    private Long orderId;
+    private Long branchId;
+    private Long tableId;
+    private String tableName;
+
+    private Long dishId;
+    private Long comboId;
+    private String itemName;
+    private Integer quantity;
+    private String specialInstructions;
+
+    private OrderItemStatus status;
+    private LocalDateTime createdAt;
+}
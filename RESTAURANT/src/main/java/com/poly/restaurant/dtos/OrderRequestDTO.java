@@ -28,7 +28,7 @@ public class OrderRequestDTO {
     private String deliveryType; // "pickup", "delivery"
     private BigDecimal shippingFee; // Phí vận chuyển
 
-    // Tổng tiền đơn hàng (tính từ frontend)
+    // Tổng tiền đơn hàng (tính từ frontend). Chỉ dùng để đối chiếu: server luôn tự tính tổng từ các món
     private BigDecimal totalAmount;
 
     // Danh sách món ăn/đồ uống
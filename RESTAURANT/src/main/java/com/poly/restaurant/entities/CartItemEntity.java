@@ -1,6 +1,8 @@
 package com.poly.restaurant.entities;
 
+import com.poly.restaurant.utils.PriceUtils;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -22,7 +24,9 @@ public class CartItemEntity implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "cart_item_id_gen")
+    @TableGenerator(name = "cart_item_id_gen", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "cart_items", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -67,12 +71,43 @@ public class CartItemEntity implements Serializable {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Đầu vào của lần tính giá gần nhất (không lưu DB)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Integer pricedQuantity;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient long pricedUnitPriceVnd;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient long pricedDiscountVnd;
+
     // Helper methods
     public void calculatePrices() {
         if (unitPrice != null && quantity != null) {
-            this.totalPrice = unitPrice.multiply(BigDecimal.valueOf(quantity));
-            this.finalPrice = totalPrice.subtract(discountAmount != null ? discountAmount : BigDecimal.ZERO);
+            calculatePrices(PriceUtils.toVnd(unitPrice), PriceUtils.toVnd(discountAmount));
+        }
+    }
+
+    // Giá đơn vị và số tiền giảm của cả dòng tính sẵn bằng VND, chỉ chuyển sang BigDecimal khi ghi cột;
+    // đầu vào không đổi so với lần tính trước thì giữ nguyên các cột
+    public void calculatePrices(long unitPriceVnd, long discountAmountVnd) {
+        if (pricedQuantity != null && pricedQuantity.equals(quantity) && pricedUnitPriceVnd == unitPriceVnd
+                && pricedDiscountVnd == discountAmountVnd && finalPrice != null) {
+            return;
         }
+        pricedQuantity = quantity;
+        pricedUnitPriceVnd = unitPriceVnd;
+        pricedDiscountVnd = discountAmountVnd;
+        long total = PriceUtils.lineTotal(unitPriceVnd, quantity);
+        this.totalPrice = PriceUtils.toDecimal(total);
+        this.discountAmount = PriceUtils.toDecimal(discountAmountVnd);
+        this.finalPrice = PriceUtils.toDecimal(total - discountAmountVnd);
     }
 
     public String getItemName() {
@@ -9,8 +9,10 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 import com.poly.restaurant.entities.enums.ItemAvailabilityStatus;
+import com.poly.restaurant.utils.PriceUtils;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -24,7 +26,10 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "combos")
+@Table(name = "combos", indexes = {
+        // Phân trang keyset cho staff/manager: lọc branch + trạng thái, seek theo (created_at, id)
+        @Index(name = "idx_combos_branch_status_created", columnList = "branch_id, availability_status, created_at, id")
+})
 public class ComboEntity implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -67,29 +72,39 @@ public class ComboEntity implements Serializable {
     @Column(name = "discount_active")
     private Boolean discountActive;
 
-    // Method để tính final price
+    // Giá cuối (VND) tính sẵn khi load và mỗi khi giá gốc hoặc discount trực tiếp thay đổi
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private long finalPriceVnd;
+
     public BigDecimal getFinalPrice() {
-        if (basePrice == null) return BigDecimal.ZERO;
-        
-        if (discountActive != null && discountActive) {
-            BigDecimal finalPrice = basePrice;
-            
-            // Áp dụng discount percentage trước
-            if (discountPercentage != null && discountPercentage.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal discountValue = basePrice.multiply(discountPercentage).divide(BigDecimal.valueOf(100));
-                finalPrice = basePrice.subtract(discountValue);
-            }
-            
-            // Áp dụng discount amount
-            if (discountAmount != null && discountAmount.compareTo(BigDecimal.ZERO) > 0) {
-                finalPrice = finalPrice.subtract(discountAmount);
-            }
-            
-            // Đảm bảo giá không âm
-            return finalPrice.compareTo(BigDecimal.ZERO) > 0 ? finalPrice : BigDecimal.ZERO;
-        }
-        
-        return basePrice;
+        return PriceUtils.toDecimal(finalPriceVnd);
+    }
+
+    public void setBasePrice(BigDecimal basePrice) {
+        this.basePrice = basePrice;
+        computeFinalPrice();
+    }
+
+    public void setDiscountPercentage(BigDecimal discountPercentage) {
+        this.discountPercentage = discountPercentage;
+        computeFinalPrice();
+    }
+
+    public void setDiscountAmount(BigDecimal discountAmount) {
+        this.discountAmount = discountAmount;
+        computeFinalPrice();
+    }
+
+    public void setDiscountActive(Boolean discountActive) {
+        this.discountActive = discountActive;
+        computeFinalPrice();
+    }
+
+    @PostLoad
+    private void computeFinalPrice() {
+        finalPriceVnd = PriceUtils.finalPrice(PriceUtils.toVnd(basePrice), Boolean.TRUE.equals(discountActive),
+                PriceUtils.toBasisPoints(discountPercentage), PriceUtils.toVnd(discountAmount));
     }
 
     // Quan hệ với discount (1:1) - legacy
@@ -56,6 +56,10 @@ public class DiscountEntity implements Serializable {
     @Column(name = "type", nullable = false)
     private DiscountType type;
 
+    // Số lượt sử dụng tối đa của voucher (null = không giới hạn)
+    @Column(name = "usage_limit")
+    private Integer usageLimit;
+
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
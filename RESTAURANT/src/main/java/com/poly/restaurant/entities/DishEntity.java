@@ -9,6 +9,7 @@ import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.poly.restaurant.entities.enums.ItemAvailabilityStatus;
+import com.poly.restaurant.utils.PriceUtils;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
@@ -19,10 +20,14 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PostLoad;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -36,7 +41,10 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "dishes")
+@Table(name = "dishes", indexes = {
+        // Phân trang keyset cho staff/manager: lọc branch + trạng thái, seek theo (created_at, id)
+        @Index(name = "idx_dishes_branch_status_created", columnList = "branch_id, availability_status, created_at, id")
+})
 public class DishEntity implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -76,29 +84,39 @@ public class DishEntity implements Serializable {
     @Column(name = "discount_active")
     private Boolean discountActive;
 
-    // Method để tính final price
+    // Giá cuối (VND) tính sẵn khi load và mỗi khi giá gốc hoặc discount trực tiếp thay đổi
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private long finalPriceVnd;
+
     public BigDecimal getFinalPrice() {
-        if (basePrice == null) return BigDecimal.ZERO;
-        
-        if (discountActive != null && discountActive) {
-            BigDecimal finalPrice = basePrice;
-            
-            // Áp dụng discount percentage trước
-            if (discountPercentage != null && discountPercentage.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal discountValue = basePrice.multiply(discountPercentage).divide(BigDecimal.valueOf(100));
-                finalPrice = basePrice.subtract(discountValue);
-            }
-            
-            // Áp dụng discount amount
-            if (discountAmount != null && discountAmount.compareTo(BigDecimal.ZERO) > 0) {
-                finalPrice = finalPrice.subtract(discountAmount);
-            }
-            
-            // Đảm bảo giá không âm
-            return finalPrice.compareTo(BigDecimal.ZERO) > 0 ? finalPrice : BigDecimal.ZERO;
-        }
-        
-        return basePrice;
+        return PriceUtils.toDecimal(finalPriceVnd);
+    }
+
+    public void setBasePrice(BigDecimal basePrice) {
+        this.basePrice = basePrice;
+        computeFinalPrice();
+    }
+
+    public void setDiscountPercentage(BigDecimal discountPercentage) {
+        this.discountPercentage = discountPercentage;
+        computeFinalPrice();
+    }
+
+    public void setDiscountAmount(BigDecimal discountAmount) {
+        this.discountAmount = discountAmount;
+        computeFinalPrice();
+    }
+
+    public void setDiscountActive(Boolean discountActive) {
+        this.discountActive = discountActive;
+        computeFinalPrice();
+    }
+
+    @PostLoad
+    private void computeFinalPrice() {
+        finalPriceVnd = PriceUtils.finalPrice(PriceUtils.toVnd(basePrice), Boolean.TRUE.equals(discountActive),
+                PriceUtils.toBasisPoints(discountPercentage), PriceUtils.toVnd(discountAmount));
     }
 
     // Quan hệ với discount (1:1) - legacy
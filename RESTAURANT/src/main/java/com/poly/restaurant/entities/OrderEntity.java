@@ -15,20 +15,25 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.poly.restaurant.entities.enums.OrderStatus;
 import com.poly.restaurant.entities.enums.PaymentMethod;
+import com.poly.restaurant.services.OrderChangeListener;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
@@ -43,12 +48,19 @@ import lombok.ToString;
 @Getter
 @Setter
 @Entity
-@Table(name = "orders") // Tên bảng đã đúng theo quy ước (chữ thường, số nhiều)
+@EntityListeners(OrderChangeListener.class)
+@Table(name = "orders", indexes = { // Tên bảng đã đúng theo quy ước (chữ thường, số nhiều)
+        // Đối soát read model và kiểm tra tổng tiền chỉ quét đơn thay đổi gần đây
+        @Index(name = "idx_orders_updated_at", columnList = "updated_at")
+})
 public class OrderEntity implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    // Id cấp theo khối 50 từ bảng id_generator (IDENTITY buộc Hibernate INSERT từng dòng, tắt JDBC batching)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_id_gen")
+    @TableGenerator(name = "order_id_gen", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -64,6 +76,11 @@ public class OrderEntity implements Serializable {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Khóa lạc quan: tổng tiền được cộng dồn theo từng thay đổi món nên không được ghi đè lẫn nhau
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false, length = 50)
     private OrderStatus status;
@@ -1,6 +1,7 @@
 package com.poly.restaurant.entities;
 
 import com.poly.restaurant.entities.enums.OrderItemStatus;
+import com.poly.restaurant.services.OrderChangeListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -14,6 +15,7 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
+@EntityListeners(OrderChangeListener.class)
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "order_items")
@@ -21,7 +23,9 @@ public class OrderItemEntity implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_item_id_gen")
+    @TableGenerator(name = "order_item_id_gen", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_items", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,45 @@
+package com.poly.restaurant.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Một từ (đã bỏ dấu, chữ thường) trong tên người nhận, địa chỉ, email, tên bàn... của đơn hàng.
+ * Tìm kiếm theo tiền tố từ chạy trên index (token, order_id) thay vì LIKE '%...%' trên bảng orders.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "order_search_token", indexes = {
+        @Index(name = "idx_order_search_token_token", columnList = "token, order_id"),
+        @Index(name = "idx_order_search_token_order", columnList = "order_id")
+})
+public class OrderSearchTokenEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_search_token_id_gen")
+    @TableGenerator(name = "order_search_token_id_gen", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_search_token", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "token", length = 50, nullable = false)
+    private String token;
+
+    public OrderSearchTokenEntity(Long orderId, String token) {
+        this.orderId = orderId;
+        this.token = token;
+    }
+}
@@ -0,0 +1,65 @@
+package com.poly.restaurant.entities;
+
+import java.time.LocalDateTime;
+
+import com.poly.restaurant.entities.enums.OrderStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Bản đọc phi chuẩn hóa của một đơn hàng cho màn hình staff/admin.
+ * Mỗi dòng giữ sẵn OrderResponseDTO dạng JSON cùng các cột dùng để lọc/tìm kiếm,
+ * nên truy vấn danh sách không join và không đụng tới bảng orders/order_items.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "order_view", indexes = {
+        @Index(name = "idx_order_view_branch_created", columnList = "branch_id, created_at"),
+        @Index(name = "idx_order_view_branch_status_created", columnList = "branch_id, status, created_at"),
+        @Index(name = "idx_order_view_phone", columnList = "phone"),
+        @Index(name = "idx_order_view_phone_reversed", columnList = "phone_reversed")
+})
+public class OrderViewEntity {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "branch_id")
+    private Long branchId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 30)
+    private OrderStatus status;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Số điện thoại chỉ gồm chữ số (+84 đổi về 0); bản đảo ngược để tìm theo đuôi số bằng LIKE 'x%'
+    @Column(name = "phone", length = 20)
+    private String phone;
+
+    @Column(name = "phone_reversed", length = 20)
+    private String phoneReversed;
+
+    // Version của đơn hàng lúc dựng bản đọc, dùng để phát hiện bản đọc cũ
+    @Column(name = "order_version")
+    private Long orderVersion;
+
+    @Column(name = "payload", columnDefinition = "LONGTEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "refreshed_at")
+    private LocalDateTime refreshedAt;
+}
@@ -1,5 +1,7 @@
 package com.poly.restaurant.entities.enums;
 
+import java.util.List;
+
 /**
  * Trạng thái khả dụng của món ăn/combo
  * - AVAILABLE: Còn hàng - hiển thị và có thể order
@@ -34,5 +36,19 @@ public enum ItemAvailabilityStatus {
     public boolean isVisible() {
         return this == AVAILABLE || this == OUT_OF_STOCK;
     }
-}
 
+    /**
+     * Trạng thái staff được lọc theo: mặc định các trạng thái còn hiển thị, không cho lọc DISCONTINUED.
+     * itemLabel ("món ăn", "combo") dùng cho thông báo lỗi.
+     */
+    public static List<ItemAvailabilityStatus> staffVisible(String status, String itemLabel) {
+        if (status == null || status.isBlank()) {
+            return List.of(AVAILABLE, OUT_OF_STOCK);
+        }
+        ItemAvailabilityStatus requested = valueOf(status.trim().toUpperCase());
+        if (!requested.isVisible()) {
+            throw new IllegalArgumentException("Staff không được xem " + itemLabel + " ngừng bán");
+        }
+        return List.of(requested);
+    }
+}
@@ -0,0 +1,8 @@
+package com.poly.restaurant.entities.enums;
+
+public enum OutboxEventType {
+    ORDER_STATUS_NOTIFICATION, // WebSocket /topic/orders/status-changed, payload: orderId
+    ORDER_SSE_EVENT, // SSE tới màn hình staff, payload: chuỗi sự kiện
+    ORDER_CONFIRMATION_EMAIL, // Email xác nhận đặt hàng, payload: JSON thông tin email
+    GHTK_SHIPMENT // Tạo đơn GHTK và lưu mã vận đơn, payload: orderId
+}
@@ -0,0 +1,8 @@
+package com.poly.restaurant.entities.enums;
+
+public enum OutboxStatus {
+    PENDING, // Chờ gửi (kể cả chờ gửi lại sau lỗi)
+    PROCESSING, // Đang được worker xử lý, hết hạn next_attempt_at thì được nhận lại
+    SENT, // Đã gửi thành công
+    DEAD // Hết số lần thử, cần xử lý tay
+}
@@ -137,6 +137,7 @@ public class ClientMenuMapper {
                           entity.getAvailabilityStatus().name().equals("AVAILABLE"))
                 .status(entity.getAvailabilityStatus() != null ? entity.getAvailabilityStatus().name() : "UNKNOWN")
                 .popularity(0) // Tạm thời hardcode
+                .createdAt(entity.getCreatedAt())
                 .build();
     }
 
@@ -188,6 +189,7 @@ public class ClientMenuMapper {
                           entity.getAvailabilityStatus().name().equals("AVAILABLE"))
                 .status(entity.getAvailabilityStatus() != null ? entity.getAvailabilityStatus().name() : "UNKNOWN")
                 .popularity(0) // Tạm thời hardcode
+                .createdAt(entity.getCreatedAt())
                 .build();
     }
 
@@ -21,6 +21,7 @@ public class DiscountMapper {
         entity.setDishId(dto.getDishId());
         entity.setComboId(dto.getComboId());
         entity.setType(dto.getType());
+        entity.setUsageLimit(dto.getUsageLimit());
         return entity;
     }
 
@@ -44,6 +45,7 @@ public class DiscountMapper {
         dto.setDishId(entity.getDishId());
         dto.setComboId(entity.getComboId());
         dto.setType(entity.getType());
+        dto.setUsageLimit(entity.getUsageLimit());
         dto.setCreatedAt(entity.getCreatedAt());
         dto.setUpdatedAt(entity.getUpdatedAt());
         
@@ -84,6 +86,7 @@ public class DiscountMapper {
         if (dto.getDishId() != null) entity.setDishId(dto.getDishId());
         if (dto.getComboId() != null) entity.setComboId(dto.getComboId());
         if (dto.getType() != null) entity.setType(dto.getType());
+        if (dto.getUsageLimit() != null) entity.setUsageLimit(dto.getUsageLimit());
         // Không cập nhật status ở đây, hoặc có thể thêm nếu cần
     }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.poly.restaurant.repositories;
 
 import com.poly.restaurant.entities.CategoryEntity;
+import com.poly.restaurant.entities.enums.CategoryStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +20,6 @@ public interface CategoryRepository
 
     @Query("SELECT c FROM CategoryEntity c WHERE :name IS NULL OR LOWER(c.name) LIKE LOWER(CONCAT('%', :name, '%'))")
     Page<CategoryEntity> findByNameContainingIgnoreCase(@Param("name") String name, Pageable pageable);
+
+    List<CategoryEntity> findByStatus(CategoryStatus status);
 }
\ No newline at end of file
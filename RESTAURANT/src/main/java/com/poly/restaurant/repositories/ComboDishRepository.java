@@ -5,7 +5,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public interface ComboDishRepository extends JpaRepository<ComboDishEntity, Long> {
     // Các phương thức CRUD cơ bản như save(), saveAll(), delete() đã có sẵn.
@@ -13,6 +15,18 @@ public interface ComboDishRepository extends JpaRepository<ComboDishEntity, Long
     @Query("select count(cd) > 0 from ComboDishEntity cd where cd.dish.id = :dishId")
     boolean existsByDishId(@Param("dishId") Long dishId);
 
+    /**
+     * Trong số các món được truyền vào, những món đang nằm trong ít nhất một combo (một query cho cả trang)
+     */
+    @Query("select distinct cd.dish.id from ComboDishEntity cd where cd.dish.id in :dishIds")
+    Set<Long> findDishIdsInCombos(@Param("dishIds") Collection<Long> dishIds);
+
+    /**
+     * Tất cả món đang nằm trong ít nhất một combo
+     */
+    @Query("select distinct cd.dish.id from ComboDishEntity cd")
+    Set<Long> findAllDishIdsInCombos();
+
     /**
      * Tìm tất cả combo chứa món ăn có ID cụ thể
      */
@@ -4,6 +4,7 @@ import com.poly.restaurant.entities.ComboEntity;
 import com.poly.restaurant.entities.DiscountEntity;
 import com.poly.restaurant.entities.enums.ItemAvailabilityStatus;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,9 +13,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 @Repository
 public interface ComboRepository extends JpaRepository<ComboEntity, Long>, JpaSpecificationExecutor<ComboEntity> {
@@ -47,7 +50,21 @@ public interface ComboRepository extends JpaRepository<ComboEntity, Long>, JpaSp
         
         long countByBranchIdAndAvailabilityStatus(Long branchId, ItemAvailabilityStatus availabilityStatus);
 
+        // Dùng để build snapshot menu: lấy kèm discount trong một query
+        @EntityGraph(attributePaths = { "discount" })
+        List<ComboEntity> findByBranchIdOrderByCreatedAtDesc(Long branchId);
+
+        @Query("SELECT DISTINCT c FROM ComboEntity c LEFT JOIN FETCH c.comboDishes cd LEFT JOIN FETCH cd.dish " +
+               "WHERE c.id IN :ids")
+        List<ComboEntity> findWithDishesByIdIn(@Param("ids") Collection<Long> ids);
+
         // ===== METHODS CHO AVAILABILITY STATUS =====
+
+        // Tất cả combo chứa món ăn (kèm toàn bộ món của combo) trong một query, dùng khi món đổi trạng thái
+        @Query("SELECT DISTINCT c FROM ComboEntity c JOIN FETCH c.branch " +
+               "JOIN FETCH c.comboDishes cd JOIN FETCH cd.dish " +
+               "WHERE c.id IN (SELECT cd2.combo.id FROM ComboDishEntity cd2 WHERE cd2.dish.id = :dishId)")
+        List<ComboEntity> findAllContainingDishWithDishes(@Param("dishId") Long dishId);
         
         // Lấy combos theo availability status
         List<ComboEntity> findByAvailabilityStatus(ItemAvailabilityStatus availabilityStatus);
@@ -64,4 +81,20 @@ public interface ComboRepository extends JpaRepository<ComboEntity, Long>, JpaSp
         
         // Tìm combos có discount
         List<ComboEntity> findByDiscount(DiscountEntity discount);
+
+        // (id, name, discount_id hiện tại) của mọi combo, dùng cho đồng bộ discount hàng loạt không cần nạp entity
+        @Query("SELECT c.id, c.name, dc.id FROM ComboEntity c LEFT JOIN c.discount dc")
+        List<Object[]> findDiscountAssignments();
+
+        // (id, discount_id) của các item đang gắn discount, dùng để build DiscountIndex
+        @Query("SELECT c.id, c.discount.id FROM ComboEntity c WHERE c.discount IS NOT NULL")
+        List<Object[]> findDiscountLinks();
+
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE ComboEntity c SET c.discount = :discount WHERE c.id IN :ids")
+        int assignDiscount(@Param("discount") DiscountEntity discount, @Param("ids") Collection<Long> ids);
+
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE ComboEntity c SET c.discount = NULL WHERE c.id IN :ids")
+        int clearDiscount(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,9 @@ public interface DiscountRepository extends JpaRepository<DiscountEntity, Long>
     // Tìm discount theo status và endDate
     List<DiscountEntity> findByStatusAndEndDateLessThan(DiscountStatus status, LocalDateTime dateTime);
     
+    // Tìm discount theo danh sách status
+    List<DiscountEntity> findByStatusIn(Collection<DiscountStatus> statuses);
+    
     // Tìm discount theo code
     Optional<DiscountEntity> findByCode(String code);
 }
\ No newline at end of file
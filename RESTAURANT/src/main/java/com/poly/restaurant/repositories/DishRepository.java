@@ -1,5 +1,6 @@
 package com.poly.restaurant.repositories;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,7 +10,9 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.poly.restaurant.entities.DishEntity;
@@ -35,6 +38,14 @@ public interface DishRepository extends JpaRepository<DishEntity, Long>, JpaSpec
         @EntityGraph(attributePaths = { "category" })
         List<DishEntity> findAll();
 
+        // Danh sách cho màn hình quản lý: lấy kèm các quan hệ mà DishMapper dùng trong một query
+        @EntityGraph(attributePaths = { "category", "branch", "discount" })
+        @Query("SELECT d FROM DishEntity d")
+        List<DishEntity> findAllWithDetails();
+
+        @EntityGraph(attributePaths = { "category", "branch", "discount" })
+        List<DishEntity> findWithDetailsByBranchId(Long branchId);
+
         boolean existsByCategoryId(Long categoryId);
 
         long countByCategoryId(Long categoryId);
@@ -57,6 +68,14 @@ public interface DishRepository extends JpaRepository<DishEntity, Long>, JpaSpec
     List<DishEntity> findByBranchId(Long branchId);
     
     long countByBranchIdAndAvailabilityStatus(Long branchId, ItemAvailabilityStatus availabilityStatus);
+
+    // Đếm số dish theo category trong một lần GROUP BY: [categoryId, count]
+    @Query("SELECT d.category.id, COUNT(d) FROM DishEntity d WHERE d.availabilityStatus = :status GROUP BY d.category.id")
+    List<Object[]> countByCategoryAndAvailabilityStatus(@Param("status") ItemAvailabilityStatus status);
+
+    // Dùng để build snapshot menu: lấy kèm category và discount trong một query
+    @EntityGraph(attributePaths = { "category", "discount" })
+    List<DishEntity> findByBranchIdOrderByCreatedAtDesc(Long branchId);
         
         // Các method findByOperationalStatus đã bị xóa vì operationalStatus không còn tồn tại
 
@@ -79,4 +98,20 @@ public interface DishRepository extends JpaRepository<DishEntity, Long>, JpaSpec
         
         // Tìm dishes có discount
         List<DishEntity> findByDiscount(DiscountEntity discount);
+
+        // (id, name, discount_id hiện tại) của mọi dish, dùng cho đồng bộ discount hàng loạt không cần nạp entity
+        @Query("SELECT d.id, d.name, dc.id FROM DishEntity d LEFT JOIN d.discount dc")
+        List<Object[]> findDiscountAssignments();
+
+        // (id, discount_id) của các item đang gắn discount, dùng để build DiscountIndex
+        @Query("SELECT d.id, d.discount.id FROM DishEntity d WHERE d.discount IS NOT NULL")
+        List<Object[]> findDiscountLinks();
+
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE DishEntity d SET d.discount = :discount WHERE d.id IN :ids")
+        int assignDiscount(@Param("discount") DiscountEntity discount, @Param("ids") Collection<Long> ids);
+
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE DishEntity d SET d.discount = NULL WHERE d.id IN :ids")
+        int clearDiscount(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
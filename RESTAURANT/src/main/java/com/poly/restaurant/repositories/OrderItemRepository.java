@@ -1,13 +1,21 @@
 package com.poly.restaurant.repositories;
 
+import com.poly.restaurant.entities.OrderEntity;
 import com.poly.restaurant.entities.OrderItemEntity;
 import com.poly.restaurant.entities.enums.OrderItemStatus;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,10 +30,89 @@ public interface OrderItemRepository extends JpaRepository<OrderItemEntity, Long
     @Query("SELECT oi FROM OrderItemEntity oi WHERE oi.order.id = :orderId AND oi.status IN :statuses")
     List<OrderItemEntity> findByOrderIdAndStatusIn(@Param("orderId") Long orderId, @Param("statuses") List<OrderItemStatus> statuses);
     
-    @Query("SELECT oi FROM OrderItemEntity oi LEFT JOIN FETCH oi.order o LEFT JOIN FETCH oi.dish WHERE oi.status IN :statuses ORDER BY oi.createdAt ASC")
+    // Món cho màn hình bếp, nạp kèm đơn, bàn, món/combo trong một truy vấn
+    @Query("SELECT oi FROM OrderItemEntity oi JOIN FETCH oi.order o LEFT JOIN FETCH o.table " +
+           "LEFT JOIN FETCH oi.dish LEFT JOIN FETCH oi.combo WHERE oi.status IN :statuses ORDER BY oi.createdAt ASC")
     List<OrderItemEntity> findKitchenItemsByStatusIn(@Param("statuses") List<OrderItemStatus> statuses);
+
+    @Query("SELECT oi FROM OrderItemEntity oi JOIN FETCH oi.order o LEFT JOIN FETCH o.table " +
+           "LEFT JOIN FETCH oi.dish LEFT JOIN FETCH oi.combo WHERE oi.id IN :ids")
+    List<OrderItemEntity> findKitchenItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Đổi trạng thái một món trong một câu lệnh, chỉ khi món còn ở một trong các trạng thái from
+    @Modifying
+    @Query("UPDATE OrderItemEntity oi SET oi.status = :status, oi.updatedAt = :now, " +
+           "oi.completedAt = COALESCE(:completedAt, oi.completedAt) WHERE oi.id = :id AND oi.status IN :from")
+    int updateStatusIfIn(@Param("id") Long id, @Param("from") Collection<OrderItemStatus> from,
+                         @Param("status") OrderItemStatus status, @Param("now") LocalDateTime now,
+                         @Param("completedAt") LocalDateTime completedAt);
+
+    // [itemId, orderId] của các món đang ở trạng thái nguồn, khóa dòng để câu UPDATE theo id sau đó đổi đúng
+    // các món này; branchId null là mọi chi nhánh
+    @Query(value = "SELECT oi.id, oi.order_id FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+           "WHERE oi.order_id IN (:orderIds) AND oi.status IN (:from) " +
+           "AND (:branchId IS NULL OR o.branch_id = :branchId) ORDER BY oi.id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockCandidatesByOrderIdIn(@Param("orderIds") Collection<Long> orderIds,
+                                             @Param("from") Collection<String> from,
+                                             @Param("branchId") Long branchId);
+
+    @Query(value = "SELECT oi.id, oi.order_id FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+           "WHERE oi.id IN (:ids) AND oi.status IN (:from) " +
+           "AND (:branchId IS NULL OR o.branch_id = :branchId) ORDER BY oi.id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockCandidatesByIdIn(@Param("ids") Collection<Long> ids,
+                                        @Param("from") Collection<String> from,
+                                        @Param("branchId") Long branchId);
+
+    // Đổi trạng thái nhiều món trong một câu lệnh, vẫn giữ điều kiện trạng thái nguồn
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OrderItemEntity oi SET oi.status = :status, oi.updatedAt = :now, " +
+           "oi.completedAt = COALESCE(:completedAt, oi.completedAt) " +
+           "WHERE oi.id IN :ids AND oi.status IN :from")
+    int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("from") Collection<OrderItemStatus> from,
+                           @Param("status") OrderItemStatus status, @Param("now") LocalDateTime now,
+                           @Param("completedAt") LocalDateTime completedAt);
+
+    // ===== GỘP / TÁCH / CHUYỂN MÓN GIỮA CÁC ĐƠN =====
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT oi FROM OrderItemEntity oi WHERE oi.id IN :ids ORDER BY oi.id")
+    List<OrderItemEntity> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT oi.id FROM OrderItemEntity oi WHERE oi.order.id IN :orderIds AND oi.status IN :statuses")
+    List<Long> findIdsByOrderIdInAndStatusIn(@Param("orderIds") Collection<Long> orderIds,
+                                             @Param("statuses") Collection<OrderItemStatus> statuses);
+
+    // Chuyển toàn bộ món của các đơn nguồn sang đơn đích
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OrderItemEntity oi SET oi.order = :target, oi.updatedAt = :now WHERE oi.order.id IN :sourceIds")
+    int moveAllToOrder(@Param("sourceIds") Collection<Long> sourceIds, @Param("target") OrderEntity target,
+                       @Param("now") LocalDateTime now);
+
+    // Chuyển các món được chọn (còn thuộc đơn nguồn) sang đơn đích
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OrderItemEntity oi SET oi.order = :target, oi.updatedAt = :now " +
+           "WHERE oi.id IN :ids AND oi.order.id = :sourceId")
+    int moveToOrder(@Param("ids") Collection<Long> ids, @Param("sourceId") Long sourceId,
+                    @Param("target") OrderEntity target, @Param("now") LocalDateTime now);
     
     boolean existsByDishId(Long dishId);
+
+    // ===== DỮ LIỆU BÁN HÀNG CHO XẾP HẠNG MÓN NỔI BẬT =====
+
+    // [dishId, comboId, quantity, orderCreatedAt] của các đơn đã bán trong khoảng thời gian
+    @Query("SELECT d.id, c.id, oi.quantity, o.createdAt FROM OrderItemEntity oi JOIN oi.order o " +
+           "LEFT JOIN oi.dish d LEFT JOIN oi.combo c " +
+           "WHERE o.branch.id = :branchId AND o.status IN :statuses AND o.createdAt >= :since " +
+           "AND (oi.status IS NULL OR oi.status <> com.poly.restaurant.entities.enums.OrderItemStatus.CANCELLED)")
+    List<Object[]> findSalesByBranchSince(@Param("branchId") Long branchId,
+            @Param("statuses") List<OrderStatus> statuses, @Param("since") LocalDateTime since);
+
+    // [branchId, dishId, comboId, quantity] của một đơn
+    @Query("SELECT o.branch.id, d.id, c.id, oi.quantity FROM OrderItemEntity oi JOIN oi.order o " +
+           "LEFT JOIN oi.dish d LEFT JOIN oi.combo c " +
+           "WHERE o.id = :orderId " +
+           "AND (oi.status IS NULL OR oi.status <> com.poly.restaurant.entities.enums.OrderItemStatus.CANCELLED)")
+    List<Object[]> findSalesByOrderId(@Param("orderId") Long orderId);
     
     // ===== ANALYTICS QUERIES (thay thế OrderDetailRepository) =====
     
@@ -64,4 +151,9 @@ public interface OrderItemRepository extends JpaRepository<OrderItemEntity, Long
                    "ORDER BY total_quantity DESC " +
                    "LIMIT 10", nativeQuery = true)
     List<Object[]> findTopSellingDishesByBranchAndDateRange(@Param("branchId") Long branchId, @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    // Món của nhiều đơn cùng lúc (kèm discount), dùng cho danh sách đơn hàng
+    @EntityGraph(attributePaths = { "discount" })
+    @Query("SELECT oi FROM OrderItemEntity oi WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<OrderItemEntity> findWithDiscountByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
 }
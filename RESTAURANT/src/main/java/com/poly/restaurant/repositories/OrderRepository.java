@@ -4,8 +4,12 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;
+import java.util.Collection;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,8 +20,11 @@ import com.poly.restaurant.entities.OrderEntity;
 import com.poly.restaurant.entities.TableEntity;
 import com.poly.restaurant.entities.enums.OrderStatus;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
+
         // Spring Data JPA sẽ tự động cung cấp các phương thức CRUD cơ bản.
         // Các phương thức tìm kiếm phức tạp hơn (ví dụ: tìm theo ngày, theo trạng thái)
         // có thể được thêm vào đây sau này nếu cần.
@@ -182,23 +189,6 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
         List<OrderEntity> findByBranchIdAndStatus(@Param("branchId") Long branchId,
                         @Param("status") String status);
 
-        @Query("SELECT o FROM OrderEntity o WHERE o.branch.id = :branchId AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-                        "ORDER BY o.createdAt DESC")
-        List<OrderEntity> findByBranchIdWithSearch(@Param("branchId") Long branchId,
-                        @Param("search") String search);
-
-        @Query("SELECT o FROM OrderEntity o WHERE o.branch.id = :branchId AND o.status = :status AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-                        "ORDER BY o.createdAt DESC")
-        List<OrderEntity> findByBranchIdWithSearchAndStatus(@Param("branchId") Long branchId,
-                        @Param("search") String search,
-                        @Param("status") String status);
-
         // Global pagination methods (no branch filter)
         @Query("SELECT o FROM OrderEntity o ORDER BY o.createdAt DESC")
         List<OrderEntity> findAllOrderByCreatedAtDesc();
@@ -206,54 +196,13 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
         @Query("SELECT o FROM OrderEntity o WHERE o.status = :status ORDER BY o.createdAt DESC")
         List<OrderEntity> findAllByStatus(@Param("status") String status);
 
-        @Query("SELECT o FROM OrderEntity o WHERE " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-                        "ORDER BY o.createdAt DESC")
-        List<OrderEntity> findAllWithSearch(@Param("search") String search);
-
-        @Query("SELECT o FROM OrderEntity o WHERE o.status = :status AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-                        "ORDER BY o.createdAt DESC")
-        List<OrderEntity> findAllWithSearchAndStatus(@Param("search") String search,
-                        @Param("status") String status);
-
         // Count methods for pagination
         @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.branch.id = :branchId AND o.status = :status")
         long countByBranchIdAndStatus(@Param("branchId") Long branchId, @Param("status") String status);
 
-        @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.branch.id = :branchId AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%')))")
-        long countByBranchIdWithSearch(@Param("branchId") Long branchId, @Param("search") String search);
-
-        @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.branch.id = :branchId AND o.status = :status AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%')))")
-        long countByBranchIdWithSearchAndStatus(@Param("branchId") Long branchId,
-                        @Param("search") String search,
-                        @Param("status") String status);
-
         @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.status = :status")
         long countAllByStatus(@Param("status") String status);
 
-        @Query("SELECT COUNT(o) FROM OrderEntity o WHERE " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%')))")
-        long countAllWithSearch(@Param("search") String search);
-
-        @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.status = :status AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%')))")
-        long countAllWithSearchAndStatus(@Param("search") String search, @Param("status") String status);
-
         // ===== DAILY ORDERS METHODS =====
 
         /**
@@ -296,28 +245,6 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
         Page<OrderEntity> findByBranchIdAndStatusOrderByCreatedAtDesc(@Param("branchId") Long branchId,
                         @Param("status") String status, Pageable pageable);
 
-        /**
-         * Lấy orders theo branch với search và pagination
-         */
-        @Query("SELECT o FROM OrderEntity o WHERE o.branch.id = :branchId AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-                        "ORDER BY o.createdAt DESC")
-        Page<OrderEntity> findByBranchIdWithSearch(@Param("branchId") Long branchId, @Param("search") String search,
-                        Pageable pageable);
-
-        /**
-         * Lấy orders theo branch, status và search với pagination
-         */
-        @Query("SELECT o FROM OrderEntity o WHERE o.branch.id = :branchId AND o.status = :status AND " +
-                        "(LOWER(o.customerPhone) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-                        "CAST(o.id AS string) LIKE CONCAT('%', :search, '%') OR " +
-                        "LOWER(o.table.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-                        "ORDER BY o.createdAt DESC")
-        Page<OrderEntity> findByBranchIdWithSearchAndStatus(@Param("branchId") Long branchId,
-                        @Param("search") String search, @Param("status") String status, Pageable pageable);
-
         // ===== FETCH JOIN METHODS (cho trường hợp cần load đầy đủ) =====
 
         /**
@@ -359,4 +286,56 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
         List<OrderEntity> findByBranchIdAndDateRange(@Param("branchId") Long branchId,
                         @Param("startDate") LocalDateTime startDate,
                         @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+
+        // (orderId, totalAmount, tổng tiền các món, status) của các đơn thay đổi từ :since, dùng để kiểm tra lệch tổng.
+        // LEFT JOIN để đơn không còn món nào vẫn được kiểm tra (tổng món = null)
+        @Query("SELECT o.id, o.totalAmount, SUM(COALESCE(i.finalPrice, i.totalPrice, i.unitPrice * i.quantity)), o.status " +
+                        "FROM OrderEntity o LEFT JOIN o.orderItems i WHERE o.updatedAt >= :since " +
+                        "GROUP BY o.id, o.totalAmount, o.status")
+        List<Object[]> findItemTotalsUpdatedSince(@Param("since") LocalDateTime since);
+
+        // Nạp đơn hàng cùng bàn, chi nhánh, discount, tài khoản và địa chỉ giao hàng trong một truy vấn
+        @EntityGraph(attributePaths = { "table", "branch", "discount", "account", "deliveryAddress" })
+        @Query("SELECT o FROM OrderEntity o WHERE o.id IN :ids")
+        List<OrderEntity> findWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+        // Trạng thái hiện tại đọc thẳng từ DB (không lấy từ entity đã nạp trong phiên)
+        @Query("SELECT o.status FROM OrderEntity o WHERE o.id = :id")
+        Optional<OrderStatus> findStatusById(@Param("id") Long id);
+
+        // Chuyển trạng thái trong một câu lệnh; trả về 0 nếu trạng thái đã bị thao tác khác đổi.
+        // Tăng version để các transaction đang giữ bản cũ của đơn bị từ chối khi ghi
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.status = :target, o.updatedAt = :now, o.version = o.version + 1 " +
+                        "WHERE o.id = :id AND o.status = :expected")
+        int compareAndSetStatus(@Param("id") Long id, @Param("expected") OrderStatus expected,
+                        @Param("target") OrderStatus target, @Param("now") LocalDateTime now);
+
+        // Khóa các đơn (kèm bàn) theo thứ tự id để gộp/tách đơn đồng thời không khóa chéo nhau
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT o FROM OrderEntity o LEFT JOIN FETCH o.table WHERE o.id IN :ids ORDER BY o.id")
+        List<OrderEntity> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+        @Query("SELECT COUNT(o) > 0 FROM OrderEntity o WHERE o.table.id = :tableId AND o.status IN :statuses")
+        boolean existsByTableIdAndStatusIn(@Param("tableId") Long tableId,
+                        @Param("statuses") Collection<OrderStatus> statuses);
+
+        // Tính lại tổng tiền của nhiều đơn từ các món trong một câu lệnh
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.totalAmount = (SELECT COALESCE(SUM(COALESCE(i.finalPrice, i.totalPrice, " +
+                        "i.unitPrice * i.quantity)), 0) FROM OrderItemEntity i WHERE i.order = o), " +
+                        "o.updatedAt = :now, o.version = o.version + 1 WHERE o.id IN :ids")
+        int recalculateTotals(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+        // Tăng version/updatedAt của đơn khi món đổi bằng UPDATE hàng loạt, để read model nhận ra bản đọc đã cũ
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.updatedAt = :now, o.version = o.version + 1 WHERE o.id IN :ids")
+        int touchByIdIn(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+        // Ghi số tiền đã nhận vào prepay khi đơn đang ở status; callback lặp lại không cộng dồn
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE OrderEntity o SET o.prepay = :amount, o.updatedAt = :now, o.version = o.version + 1 " +
+                        "WHERE o.id = :id AND o.status = :status AND (o.prepay IS NULL OR o.prepay < :amount)")
+        int recordPrepayIfStatus(@Param("id") Long id, @Param("status") OrderStatus status,
+                        @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,22 @@
+package com.poly.restaurant.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.poly.restaurant.entities.OrderSearchTokenEntity;
+
+@Repository
+public interface OrderSearchTokenRepository extends JpaRepository<OrderSearchTokenEntity, Long> {
+
+    List<OrderSearchTokenEntity> findByOrderIdIn(Collection<Long> orderIds);
+
+    @Modifying
+    @Query("DELETE FROM OrderSearchTokenEntity t WHERE t.orderId IN :orderIds")
+    int deleteByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+}
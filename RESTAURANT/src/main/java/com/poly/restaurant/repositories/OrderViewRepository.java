@@ -0,0 +1,54 @@
+package com.poly.restaurant.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.poly.restaurant.entities.OrderViewEntity;
+import com.poly.restaurant.entities.enums.OrderStatus;
+
+@Repository
+public interface OrderViewRepository extends JpaRepository<OrderViewEntity, Long>,
+        JpaSpecificationExecutor<OrderViewEntity> {
+
+    @Query("SELECT v FROM OrderViewEntity v WHERE v.branchId = :branchId AND v.createdAt >= :from "
+            + "AND v.status NOT IN :excluded ORDER BY v.createdAt DESC")
+    List<OrderViewEntity> findCreatedSinceExcludingStatuses(@Param("branchId") Long branchId,
+            @Param("from") LocalDateTime from, @Param("excluded") Collection<OrderStatus> excluded);
+
+    // Đơn hàng chưa có bản đọc hoặc bản đọc cũ hơn version hiện tại (quét toàn bộ, chỉ dùng lúc khởi động)
+    @Query("SELECT o.id FROM OrderEntity o LEFT JOIN OrderViewEntity v ON v.orderId = o.id "
+            + "WHERE v.orderId IS NULL OR v.orderVersion IS NULL OR v.orderVersion <> o.version")
+    List<Long> findStaleOrderIds();
+
+    // Như trên nhưng chỉ trong các đơn thay đổi từ :since (range scan trên idx_orders_updated_at)
+    @Query("SELECT o.id FROM OrderEntity o LEFT JOIN OrderViewEntity v ON v.orderId = o.id "
+            + "WHERE o.updatedAt >= :since "
+            + "AND (v.orderId IS NULL OR v.orderVersion IS NULL OR v.orderVersion <> o.version)")
+    List<Long> findStaleOrderIdsUpdatedSince(@Param("since") LocalDateTime since);
+
+    // Các đơn trong :orderIds có bản đọc cũ hoặc chưa có
+    @Query("SELECT o.id FROM OrderEntity o LEFT JOIN OrderViewEntity v ON v.orderId = o.id "
+            + "WHERE o.id IN :orderIds "
+            + "AND (v.orderId IS NULL OR v.orderVersion IS NULL OR v.orderVersion <> o.version)")
+    List<Long> findStaleOrderIdsIn(@Param("orderIds") Collection<Long> orderIds);
+
+    // Bản đọc của đơn hàng đã bị xóa, trong một khoảng id (range scan trên khóa chính)
+    @Query("SELECT v.orderId FROM OrderViewEntity v WHERE v.orderId > :afterId AND v.orderId <= :toId "
+            + "AND NOT EXISTS (SELECT o.id FROM OrderEntity o WHERE o.id = v.orderId)")
+    List<Long> findOrphanedOrderIdsBetween(@Param("afterId") Long afterId, @Param("toId") Long toId);
+
+    // Bản đọc của đơn hàng đã bị xóa trong :orderIds
+    @Query("SELECT v.orderId FROM OrderViewEntity v WHERE v.orderId IN :orderIds "
+            + "AND NOT EXISTS (SELECT o.id FROM OrderEntity o WHERE o.id = v.orderId)")
+    List<Long> findOrphanedOrderIdsIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT MAX(v.orderId) FROM OrderViewEntity v")
+    Long findMaxOrderId();
+}
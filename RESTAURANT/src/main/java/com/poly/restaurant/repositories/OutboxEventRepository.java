@@ -0,0 +1,47 @@
+package com.poly.restaurant.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.poly.restaurant.entities.OutboxEventEntity;
+import com.poly.restaurant.entities.enums.OutboxStatus;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    // Khóa một lô tác vụ đến hạn; SKIP LOCKED để nhiều instance cùng nhận việc mà không chờ nhau
+    @Query(value = "SELECT id FROM outbox_event WHERE status IN ('PENDING', 'PROCESSING') "
+            + "AND next_attempt_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Mỗi lần nhận việc tính là một lần thử: tác vụ làm worker chết liên tục vẫn tiến tới DEAD
+    @Modifying
+    @Query("UPDATE OutboxEventEntity e SET e.status = :status, e.nextAttemptAt = :leaseUntil, "
+            + "e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("status") OutboxStatus status,
+            @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE OutboxEventEntity e SET e.status = :status, e.processedAt = :now WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("status") OutboxStatus status,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE OutboxEventEntity e SET e.status = :status, e.attempts = :attempts, "
+            + "e.nextAttemptAt = :nextAttemptAt, e.lastError = :error WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("status") OutboxStatus status, @Param("attempts") int attempts,
+            @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEventEntity e WHERE e.status = :status AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("status") OutboxStatus status, @Param("before") LocalDateTime before);
+
+    long countByStatus(OutboxStatus status);
+}
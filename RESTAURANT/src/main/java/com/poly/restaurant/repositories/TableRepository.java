@@ -2,14 +2,20 @@ package com.poly.restaurant.repositories;
 
 import com.poly.restaurant.entities.TableEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import com.poly.restaurant.entities.enums.OrderStatus;
 import com.poly.restaurant.entities.enums.TableStatus;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface TableRepository extends JpaRepository<TableEntity, Long> {
 
@@ -20,6 +26,11 @@ public interface TableRepository extends JpaRepository<TableEntity, Long> {
     @Query("SELECT t FROM TableEntity t LEFT JOIN FETCH t.branch WHERE t.id = :id")
     Optional<TableEntity> findByIdWithBranch(@Param("id") Long id);
     
+    // Khóa bàn khi gán đơn vào để hai thao tác đồng thời không cùng nhận một bàn trống
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM TableEntity t LEFT JOIN FETCH t.branch WHERE t.id = :id")
+    Optional<TableEntity> lockByIdWithBranch(@Param("id") Long id);
+
     @Query("SELECT t FROM TableEntity t LEFT JOIN FETCH t.branch")
     List<TableEntity> findAllWithBranch();
     
@@ -41,4 +52,17 @@ public interface TableRepository extends JpaRepository<TableEntity, Long> {
     // Method để lấy danh sách khu vực duy nhất theo branch
     @Query("SELECT DISTINCT t.area FROM TableEntity t WHERE t.branch.id = :branchId AND t.area IS NOT NULL AND t.area != '' ORDER BY t.area")
     List<String> findDistinctAreasByBranch(@Param("branchId") Long branchId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TableEntity t SET t.status = :status WHERE t.id IN :ids")
+    int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("status") TableStatus status);
+
+    // Trả bàn về trạng thái trống nếu bàn không còn đơn nào đang mở
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TableEntity t SET t.status = :available WHERE t.id IN :ids AND t.status = :occupied " +
+           "AND NOT EXISTS (SELECT o.id FROM OrderEntity o WHERE o.table = t AND o.status IN :openStatuses)")
+    int releaseWithoutOpenOrders(@Param("ids") Collection<Long> ids,
+                                 @Param("openStatuses") Collection<OrderStatus> openStatuses,
+                                 @Param("available") TableStatus available,
+                                 @Param("occupied") TableStatus occupied);
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,6 +38,10 @@ public interface VoucherUsageHistoryRepository extends JpaRepository<VoucherUsag
     
     // Đếm số lần sử dụng voucher theo mã
     long countByVoucherCode(String voucherCode);
+
+    // Đếm số lần sử dụng theo từng mã voucher (voucherCode, count), dùng để đối soát bộ đếm
+    @Query("SELECT v.voucherCode, COUNT(v) FROM VoucherUsageHistoryEntity v WHERE v.voucherCode IN :codes GROUP BY v.voucherCode")
+    List<Object[]> countByVoucherCodes(@Param("codes") Collection<String> codes);
     
     // Tìm lịch sử sử dụng voucher với phân trang
     Page<VoucherUsageHistoryEntity> findByVoucherIdOrderByUsedAtDesc(Long voucherId, Pageable pageable);
@@ -38,6 +38,7 @@ public class BranchService {
 
 	private final AccountRepository accountRepository;
 	private final OrderRepository orderRepository;
+	private final MenuSnapshotService menuSnapshotService;
 
 	/**
 	 * Lấy danh sách tất cả chi nhánh
@@ -186,6 +187,7 @@ public class BranchService {
 			throw new ResourceNotFoundException("Không tìm thấy chi nhánh với ID: " + id);
 		}
 		branchRepository.deleteById(id);
+		menuSnapshotService.invalidate(id);
 	}
 
 	@Transactional
@@ -199,6 +201,7 @@ public class BranchService {
 
 		// Lưu lại và trả về kết quả
 		BranchEntity updatedBranch = branchRepository.save(branch);
+		menuSnapshotService.invalidate(id);
 		return BranchMapper.toResponseDto(updatedBranch);
 	}
 
@@ -227,6 +230,7 @@ public class BranchService {
 
 		// Lưu lại và trả về kết quả
 		BranchEntity updatedBranch = branchRepository.save(branch);
+		menuSnapshotService.invalidate(id);
 		return BranchMapper.toResponseDto(updatedBranch);
 	}
 
@@ -4,6 +4,7 @@ import com.poly.restaurant.dtos.*;
 import com.poly.restaurant.entities.*;
 import com.poly.restaurant.repositories.*;
 import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.utils.PriceUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -26,6 +27,8 @@ public class CartService {
     private final BranchRepository branchRepository;
     private final DishRepository dishRepository;
     private final ComboRepository comboRepository;
+    private final DiscountRepository discountRepository;
+    private final DiscountIndex discountIndex;
 
     /**
      * Thêm item vào giỏ hàng
@@ -56,7 +59,7 @@ public class CartService {
             CartItemEntity cartItem = existingItem.get();
             cartItem.setQuantity(cartItem.getQuantity() + request.getQuantity());
             cartItem.setSpecialInstructions(request.getSpecialInstructions());
-            cartItem.calculatePrices();
+            reprice(cartItem);
             cartItemRepository.save(cartItem);
         } else {
             // Create new cart item
@@ -72,7 +75,7 @@ public class CartService {
                 cartItem.setCombo(itemDetails.getCombo());
             }
             
-            cartItem.calculatePrices();
+            reprice(cartItem);
             cartItemRepository.save(cartItem);
         }
 
@@ -102,7 +105,7 @@ public class CartService {
 
         cartItem.setQuantity(request.getQuantity());
         cartItem.setSpecialInstructions(request.getSpecialInstructions());
-        cartItem.calculatePrices();
+        reprice(cartItem);
         cartItemRepository.save(cartItem);
 
         // Update cart totals
@@ -308,6 +311,36 @@ public class CartService {
         return null;
     }
 
+    /**
+     * Áp dụng discount đang có hiệu lực của món/combo (DiscountIndex) cho dòng giỏ hàng:
+     * giảm (giá gốc - giá mới) trên mỗi phần
+     */
+    // Áp discount đang hiệu lực rồi tính lại giá dòng, giá đơn vị chỉ đổi sang VND một lần
+    private void reprice(CartItemEntity cartItem) {
+        if (cartItem.getUnitPrice() == null || cartItem.getQuantity() == null) {
+            cartItem.setDiscount(null);
+            cartItem.setDiscountAmount(BigDecimal.ZERO);
+            return;
+        }
+        long unitPrice = PriceUtils.toVnd(cartItem.getUnitPrice());
+
+        LocalDateTime now = LocalDateTime.now();
+        Optional<DiscountResponseDTO> discount = Optional.empty();
+        if (cartItem.getDish() != null) {
+            discount = discountIndex.findBestForDish(cartItem.getDish().getId(), now);
+        } else if (cartItem.getCombo() != null) {
+            discount = discountIndex.findBestForCombo(cartItem.getCombo().getId(), now);
+        }
+
+        long lineDiscount = 0;
+        if (discount.isPresent() && discount.get().getNewPrice() != null) {
+            lineDiscount = PriceUtils.lineDiscount(unitPrice, PriceUtils.toVnd(discount.get().getNewPrice()),
+                    cartItem.getQuantity());
+        }
+        cartItem.setDiscount(lineDiscount > 0 ? discountRepository.getReferenceById(discount.get().getId()) : null);
+        cartItem.calculatePrices(unitPrice, lineDiscount);
+    }
+
     private Optional<CartItemEntity> findExistingCartItem(Long cartId, Long itemId) {
         return cartItemRepository.findByCartIdAndItemId(cartId, itemId);
     }
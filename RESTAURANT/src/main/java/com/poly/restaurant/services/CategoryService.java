@@ -31,6 +31,7 @@ public class CategoryService {
 
 	private final CategoryRepository categoryRepository;
 	private final DishRepository dishRepository;
+	private final MenuSnapshotService menuSnapshotService;
 
 	@Transactional(readOnly = true)
 	public Page<CategoryResponseDTO> searchCategories(String name, String status, Long branchId, int page, int size) {
@@ -86,6 +87,7 @@ public class CategoryService {
 		categoryEntity.setBranch(branch);
 
 		CategoryEntity savedCategory = categoryRepository.save(categoryEntity);
+		menuSnapshotService.invalidateAll();
 		return CategoryMapper.toResponseDto(savedCategory);
 	}
 
@@ -120,6 +122,7 @@ public class CategoryService {
 
 		CategoryMapper.updateEntityFromDto(categoryRequestDTO, existingCategory);
 		CategoryEntity updatedCategory = categoryRepository.save(existingCategory);
+		menuSnapshotService.invalidateAll();
 		return CategoryMapper.toResponseDto(updatedCategory);
 	}
 
@@ -146,6 +149,7 @@ public class CategoryService {
 		}
 
 		categoryRepository.deleteById(id);
+		menuSnapshotService.invalidateAll();
 	}
 
 	@Transactional(readOnly = true)
@@ -187,6 +191,7 @@ public class CategoryService {
 
 		category.setStatus(status);
 		CategoryEntity updatedCategory = categoryRepository.save(category);
+		menuSnapshotService.invalidateAll();
 		return CategoryMapper.toResponseDto(updatedCategory);
 	}
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.poly.restaurant.entities.*;
 import java.util.Optional;
 import com.poly.restaurant.entities.enums.ItemAvailabilityStatus;
 import com.poly.restaurant.entities.enums.BranchStatus;
+import com.poly.restaurant.entities.enums.CategoryStatus;
 import com.poly.restaurant.mappers.ClientMenuMapper;
 import com.poly.restaurant.repositories.BranchRepository;
 import com.poly.restaurant.repositories.CategoryRepository;
@@ -13,7 +14,6 @@ import com.poly.restaurant.repositories.ComboRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -36,6 +36,11 @@ public class ClientMenuService {
     private final DishRepository dishRepository;
     private final ComboRepository comboRepository;
     private final ClientMenuMapper clientMenuMapper;
+    private final MenuSnapshotService menuSnapshotService;
+    private final FeaturedItemService featuredItemService;
+
+    private static final int FEATURED_LIMIT = 10;
+    private static final int HOME_FEATURED_LIMIT = 3;
 
     /**
      * Lấy danh sách chi nhánh active
@@ -55,42 +60,48 @@ public class ClientMenuService {
     public List<ClientCategoryDTO> getActiveCategories() {
         log.info("Fetching active categories for client menu");
 
-        List<CategoryEntity> categories = categoryRepository.findAll().stream()
-                .filter(category -> "ACTIVE".equals(category.getStatus()))
-                .collect(Collectors.toList());
+        List<CategoryEntity> categories = categoryRepository.findByStatus(CategoryStatus.ACTIVE);
+
+        // Đếm dish AVAILABLE của mọi category trong một query thay vì quét lại theo từng category
+        Map<Long, Integer> foodCounts = new HashMap<>();
+        for (Object[] row : dishRepository.countByCategoryAndAvailabilityStatus(ItemAvailabilityStatus.AVAILABLE)) {
+            if (row[0] != null) {
+                foodCounts.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        }
 
-        // Cập nhật số lượng items cho mỗi category
         return categories.stream()
-                .map(this::enrichCategoryWithCounts)
+                .map(category -> enrichCategoryWithCounts(category, foodCounts.getOrDefault(category.getId(), 0)))
                 .collect(Collectors.toList());
     }
 
     /**
      * Lấy danh sách category active theo branch với counts
      */
-    @Transactional(readOnly = true)
     public List<ClientCategoryWithCountsDTO> getBranchScopedCategories(Long branchId, String type,
             Boolean includeCounts, Boolean showEmpty, String search) {
         log.info(
                 "Fetching branch-scoped categories for branch: {}, type: {}, includeCounts: {}, showEmpty: {}, search: {}",
                 branchId, type, includeCounts, showEmpty, search);
 
-        // Validate branch
-        if (!isBranchActive(branchId)) {
-            throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-        }
+        // Snapshot đã kiểm tra branch đang mở cửa
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
+        return buildBranchScopedCategories(snapshot, type, includeCounts, showEmpty, search);
+    }
 
-        // Get all approved categories
-        List<CategoryEntity> allCategories = categoryRepository.findAll().stream()
-                .filter(category -> "ACTIVE".equals(category.getStatus()))
-                .collect(Collectors.toList());
+    /**
+     * Đếm theo category từ index của snapshot (đã group sẵn khi build), không truy vấn DB
+     */
+    private List<ClientCategoryWithCountsDTO> buildBranchScopedCategories(MenuSnapshotService.MenuSnapshot snapshot,
+            String type, Boolean includeCounts, Boolean showEmpty, String search) {
+        Long branchId = snapshot.getBranchId();
+        List<CategoryEntity> allCategories = snapshot.getActiveCategories();
 
         // Filter by search if provided
         if (search != null && !search.trim().isEmpty()) {
-            String searchLower = search.toLowerCase();
+            String foldedSearch = MenuSearchIndex.fold(search);
             allCategories = allCategories.stream()
-                    .filter(category -> category.getName() != null &&
-                            category.getName().toLowerCase().contains(searchLower))
+                    .filter(category -> MenuSearchIndex.fold(category.getName()).contains(foldedSearch))
                     .collect(Collectors.toList());
         }
 
@@ -104,12 +115,13 @@ public class ClientMenuService {
             if (includeCounts != null && includeCounts) {
                 // Count dishes in this category for the branch
                 if ("food".equals(type) || "all".equals(type) || type == null) {
-                    foodCount = countDishesInCategoryForBranch(category.getId(), branchId);
+                    foodCount = snapshot.countAvailableDishes(category.getId());
                 }
 
                 // Count combos in this category for the branch
                 if ("combo".equals(type) || "all".equals(type) || type == null) {
-                    comboCount = countCombosInCategoryForBranch(category.getId(), branchId);
+                    // Combo chưa có quan hệ category nên đếm toàn bộ combo của branch
+                    comboCount = snapshot.countAvailableCombos();
                 }
             }
 
@@ -136,43 +148,23 @@ public class ClientMenuService {
     /**
      * Lấy menu items theo branch và filter
      */
-    @Transactional(readOnly = true)
     public Page<ClientMenuItemDTO> getMenuItems(Long branchId, Long categoryId, String type,
             String search, Pageable pageable) {
         log.info("Fetching menu items for branch: {}, category: {}, type: {}, search: {}",
                 branchId, categoryId, type, search);
 
         try {
-            // Kiểm tra branch có tồn tại và active không
-            if (!isBranchActive(branchId)) {
-                throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-            }
+            // Snapshot đã kiểm tra branch đang mở cửa
+            MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
             // Tạo pageable với sort mặc định
             Pageable finalPageable = createPageableWithDefaultSort(pageable);
 
-            List<ClientMenuItemDTO> allItems = new ArrayList<>();
-
-            // Lấy dishes
-            if ("food".equals(type) || "all".equals(type) || type == null) {
-                List<DishEntity> dishes = getDishesInternal(branchId, categoryId, search);
-                if (dishes != null) {
-                    allItems.addAll(clientMenuMapper.toClientMenuItemDTOList(dishes));
-                }
-            }
-
-            // Lấy combos
-            if ("combo".equals(type) || "all".equals(type) || type == null) {
-                List<ComboEntity> combos = getCombosInternal(branchId, categoryId, search);
-                if (combos != null) {
-                    allItems.addAll(clientMenuMapper.toClientComboDTOList(combos));
-                }
-            }
-
-            // Tính tổng số items
-            long totalElements = allItems.size();
+            // Dishes và combos gộp trong một thứ tự sắp xếp ổn định, chỉ cắt đúng trang được yêu cầu
+            List<ClientMenuItemDTO> sortedItems = snapshot.getSearchIndex().filter(
+                    snapshot.getSortedItems(normalizeType(type), categoryId, finalPageable.getSort()), search);
 
-            return new PageImpl<>(allItems, finalPageable, totalElements);
+            return menuSnapshotService.toPage(sortedItems, finalPageable);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid request parameters: {}", e.getMessage());
             throw e;
@@ -182,21 +174,45 @@ public class ClientMenuService {
         }
     }
 
+    /**
+     * Lấy menu items theo keyset (cursor) - dùng cho infinite scroll.
+     * Trang sau không bị lệch khi menu thay đổi giữa hai lần gọi.
+     */
+    public CursorPageDTO<ClientMenuItemDTO> getMenuItemsAfter(Long branchId, Long categoryId, String type,
+            String search, String cursor, int pageSize, Sort sort, boolean includeTotal) {
+        log.info("Fetching menu items after cursor for branch: {}, category: {}, type: {}, search: {}",
+                branchId, categoryId, type, search);
+
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
+        Sort finalSort = sort != null && sort.isSorted() ? sort : Sort.by(Sort.Direction.DESC, "createdAt");
+
+        List<ClientMenuItemDTO> sortedItems = snapshot.getSearchIndex().filter(
+                snapshot.getSortedItems(normalizeType(type), categoryId, finalSort), search);
+
+        return menuSnapshotService.toCursorPage(sortedItems, finalSort, cursor, pageSize, includeTotal);
+    }
+
+    /**
+     * Gợi ý autocomplete theo tên/mô tả (không phân biệt dấu), xếp theo mức độ khớp
+     */
+    public List<ClientMenuItemDTO> getSuggestions(Long branchId, String query, int limit) {
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
+        return snapshot.getSearchIndex().suggest(query, limit);
+    }
+
     /**
      * Lấy filter snapshot cho branch
      */
-    @Transactional(readOnly = true)
     public ClientMenuFilterDTO getMenuFilters(Long branchId) {
         log.info("Fetching menu filters for branch: {}", branchId);
 
-        // Kiểm tra branch có tồn tại và active không
-        if (!isBranchActive(branchId)) {
-            throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-        }
+        // Snapshot đã kiểm tra branch đang mở cửa
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
         // Lấy categories với số lượng items theo branch
-        List<ClientCategoryWithCountsDTO> categoriesWithCounts = getBranchScopedCategories(branchId, "all", true, false,
-                null);
+        // Dùng cùng một snapshot để danh sách category và itemCounts luôn khớp nhau
+        List<ClientCategoryWithCountsDTO> categoriesWithCounts = buildBranchScopedCategories(snapshot, "all", true,
+                false, null);
 
         // Convert to ClientCategoryDTO for backward compatibility
         List<ClientCategoryDTO> categories = categoriesWithCounts.stream()
@@ -218,12 +234,8 @@ public class ClientMenuService {
         // Tính tổng số items theo type - sử dụng branch-scoped data
         Map<String, Integer> itemCounts = new HashMap<>();
 
-        // Lấy dishes và combos theo branch
-        List<DishEntity> branchDishes = getDishesInternal(branchId, null, null);
-        List<ComboEntity> branchCombos = getCombosInternal(branchId, null, null);
-
-        itemCounts.put("food", branchDishes.size());
-        itemCounts.put("combo", branchCombos.size());
+        itemCounts.put("food", snapshot.countAvailableDishes(null));
+        itemCounts.put("combo", snapshot.countAvailableCombos());
 
         int totalItems = itemCounts.values().stream().mapToInt(Integer::intValue).sum();
 
@@ -257,65 +269,33 @@ public class ClientMenuService {
     }
 
     /**
-     * Lấy featured items (top 10 theo popularity hoặc mới nhất)
+     * Lấy featured items (top 10 theo lượng bán gần đây, thiếu thì lấy món mới nhất)
      */
-    @Transactional(readOnly = true)
     public List<ClientMenuItemDTO> getFeaturedItems(Long branchId) {
         log.info("Fetching featured items for branch: {}", branchId);
 
-        if (!isBranchActive(branchId)) {
-            throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-        }
-
-        List<ClientMenuItemDTO> featuredItems = new ArrayList<>();
-
-        // Lấy dishes theo branch (top 10)
-        List<DishEntity> branchDishes = getDishesInternal(branchId, null, null);
-        List<DishEntity> featuredDishes = branchDishes.stream()
-                .limit(10)
-                .collect(Collectors.toList());
-        featuredItems.addAll(clientMenuMapper.toClientMenuItemDTOList(featuredDishes));
-
-        // Lấy combos theo branch (top 10)
-        List<ComboEntity> branchCombos = getCombosInternal(branchId, null, null);
-        List<ComboEntity> featuredCombos = branchCombos.stream()
-                .limit(10)
-                .collect(Collectors.toList());
-        featuredItems.addAll(clientMenuMapper.toClientComboDTOList(featuredCombos));
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
-        return featuredItems;
+        return featuredItemService.getFeaturedItems(snapshot, FEATURED_LIMIT);
     }
 
     /**
      * Lấy combos theo branch và filter
      */
-    @Transactional(readOnly = true)
     public Page<ClientMenuItemDTO> getCombos(Long branchId, Long categoryId, String search, Pageable pageable) {
         log.info("Fetching combos for branch: {}, category: {}, search: {}", branchId, categoryId, search);
 
         try {
-            // Kiểm tra branch có tồn tại và active không
-            if (!isBranchActive(branchId)) {
-                throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-            }
+            // Snapshot đã kiểm tra branch đang mở cửa
+            MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
             // Tạo pageable với sort mặc định
             Pageable finalPageable = createPageableWithDefaultSort(pageable);
 
-            // Lấy combos
-            List<ComboEntity> combos = getCombosInternal(branchId, categoryId, search);
-
-            if (combos == null) {
-                log.warn("No combos found for branch: {}", branchId);
-                return new PageImpl<>(new ArrayList<>(), finalPageable, 0);
-            }
-
-            List<ClientMenuItemDTO> comboDTOs = clientMenuMapper.toClientComboDTOList(combos);
+            List<ClientMenuItemDTO> comboDTOs = snapshot.getSearchIndex().filter(
+                    snapshot.getSortedItems("combo", null, finalPageable.getSort()), search);
 
-            // Tính tổng số combos
-            long totalElements = combos.size();
-
-            return new PageImpl<>(comboDTOs, finalPageable, totalElements);
+            return menuSnapshotService.toPage(comboDTOs, finalPageable);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid request parameters: {}", e.getMessage());
             throw e;
@@ -328,33 +308,20 @@ public class ClientMenuService {
     /**
      * Lấy dishes theo branch và filter
      */
-    @Transactional(readOnly = true)
     public Page<ClientMenuItemDTO> getDishes(Long branchId, Long categoryId, String search, Pageable pageable) {
         log.info("Fetching dishes for branch: {}, category: {}, search: {}", branchId, categoryId, search);
 
         try {
-            // Kiểm tra branch có tồn tại và active không
-            if (!isBranchActive(branchId)) {
-                throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-            }
+            // Snapshot đã kiểm tra branch đang mở cửa
+            MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
             // Tạo pageable với sort mặc định
             Pageable finalPageable = createPageableWithDefaultSort(pageable);
 
-            // Lấy dishes
-            List<DishEntity> dishes = getDishesInternal(branchId, categoryId, search);
-
-            if (dishes == null) {
-                log.warn("No dishes found for branch: {}", branchId);
-                return new PageImpl<>(new ArrayList<>(), finalPageable, 0);
-            }
-
-            List<ClientMenuItemDTO> dishDTOs = clientMenuMapper.toClientMenuItemDTOList(dishes);
+            List<ClientMenuItemDTO> dishDTOs = snapshot.getSearchIndex().filter(
+                    snapshot.getSortedItems("food", categoryId, finalPageable.getSort()), search);
 
-            // Tính tổng số dishes
-            long totalElements = dishes.size();
-
-            return new PageImpl<>(dishDTOs, finalPageable, totalElements);
+            return menuSnapshotService.toPage(dishDTOs, finalPageable);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid request parameters: {}", e.getMessage());
             throw e;
@@ -366,12 +333,6 @@ public class ClientMenuService {
 
     // ========== PRIVATE HELPER METHODS ==========
 
-    private boolean isBranchActive(Long branchId) {
-        return branchRepository.findById(branchId)
-                .map(branch -> BranchStatus.OPEN.equals(branch.getStatus()))
-                .orElse(false);
-    }
-
     private Pageable createPageableWithDefaultSort(Pageable pageable) {
         if (pageable.getSort().isSorted()) {
             return pageable;
@@ -382,58 +343,17 @@ public class ClientMenuService {
         return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), defaultSort);
     }
 
-    private List<DishEntity> getDishesInternal(Long branchId, Long categoryId, String search) {
-        try {
-            log.info("getDishesInternal called with branchId: {}, categoryId: {}, search: {}", branchId, categoryId,
-                    search);
-
-            // Lấy dishes theo branchId
-            List<DishEntity> branchDishes = dishRepository.findByBranchId(branchId).stream()
-                    .filter(dish -> dish.getAvailabilityStatus() != null && ItemAvailabilityStatus.AVAILABLE.equals(dish.getAvailabilityStatus()))
-                    .filter(dish -> categoryId == null || (dish.getCategory() != null && categoryId.equals(dish.getCategory().getId())))
-                    .filter(dish -> search == null || search.isEmpty() || 
-                            (dish.getName() != null && dish.getName().toLowerCase().contains(search.toLowerCase())))
-                    .collect(Collectors.toList());
-
-            log.info("Found {} dishes for branch: {} (simplified approach)", branchDishes.size(), branchId);
-            return branchDishes;
-        } catch (Exception e) {
-            log.error("Error fetching menu dishes for branch: {}", branchId, e);
-            return new ArrayList<>();
+    private String normalizeType(String type) {
+        if (type == null || "all".equals(type)) {
+            return "all";
         }
-    }
-
-    private List<ComboEntity> getCombosInternal(Long branchId, Long categoryId, String search) {
-        try {
-            log.info("getCombosInternal called with branchId: {}, categoryId: {}, search: {}", branchId, categoryId,
-                    search);
-
-            // Lấy combos theo branch (kiến trúc mới: combo có branch_id trực tiếp)
-            List<ComboEntity> branchCombos = comboRepository.findByBranchId(branchId).stream()
-                    .filter(combo -> ItemAvailabilityStatus.AVAILABLE.equals(combo.getAvailabilityStatus()) &&
-                            (search == null || search.isEmpty() ||
-                                    (combo.getName() != null &&
-                                            combo.getName().toLowerCase().contains(search.toLowerCase()))))
-                    .collect(Collectors.toList());
-
-            log.info("Found {} combos for branch: {} (filtered from menu relationships)", branchCombos.size(),
-                    branchId);
-            return branchCombos;
-        } catch (Exception e) {
-            log.error("Error fetching combos for branch: {}", branchId, e);
-            return new ArrayList<>();
+        if ("food".equals(type) || "combo".equals(type)) {
+            return type;
         }
+        throw new IllegalArgumentException("Invalid item type: " + type);
     }
 
-    private ClientCategoryDTO enrichCategoryWithCounts(CategoryEntity category) {
-        // Đếm số dishes và combos trong category này theo branch
-        // TODO: This method should be updated to accept branchId parameter
-        // For now, we'll use a simplified approach
-
-        int foodCount = (int) dishRepository.findByAvailabilityStatus(
-            ItemAvailabilityStatus.AVAILABLE).stream()
-                .filter(dish -> dish.getCategory() != null && category.getId().equals(dish.getCategory().getId()))
-                .count();
+    private ClientCategoryDTO enrichCategoryWithCounts(CategoryEntity category, int foodCount) {
         int comboCount = 0; // Tạm thời hardcode, cần thêm category relationship cho combo
         int totalCount = foodCount + comboCount;
 
@@ -445,35 +365,6 @@ public class ClientMenuService {
         return dto;
     }
 
-    /**
-     * Count dishes in a specific category that are available in a specific branch
-     */
-    private Integer countDishesInCategoryForBranch(Long categoryId, Long branchId) {
-        try {
-            // Lấy dishes trong category và branch cụ thể
-            List<DishEntity> dishesInCategory = getDishesInternal(branchId, categoryId, null);
-            return dishesInCategory.size();
-        } catch (Exception e) {
-            log.warn("Error counting dishes in category {} for branch {}", categoryId, branchId, e);
-            return 0;
-        }
-    }
-
-    /**
-     * Count combos in a specific category that are available in a specific branch
-     */
-    private Integer countCombosInCategoryForBranch(Long categoryId, Long branchId) {
-        try {
-            // Lấy combos trong branch cụ thể
-            // TODO: Implement proper category relationship for combos
-            List<ComboEntity> branchCombos = getCombosInternal(branchId, null, null);
-            return branchCombos.size();
-        } catch (Exception e) {
-            log.warn("Error counting combos in category {} for branch {}", categoryId, branchId, e);
-            return 0;
-        }
-    }
-
     /**
      * Check if a dish is available in a specific branch
      */
@@ -509,75 +400,17 @@ public class ClientMenuService {
     }
 
     /**
-     * Lấy 3 món ăn đặc trưng của chi nhánh 1 cho trang home
-     * Ưu tiên món ăn có popularity cao và status APPROVED
+     * Lấy món nổi bật cho trang home (mặc định chi nhánh 1) theo xếp hạng bán chạy
      */
-    @Transactional(readOnly = true)
-    public List<ClientMenuItemDTO> getFeaturedMenuItemsForHome() {
-        log.info("Fetching featured menu items for home page from branch 1");
+    public List<ClientMenuItemDTO> getFeaturedMenuItemsForHome(Long branchId) {
+        log.info("Fetching featured menu items for home page from branch {}", branchId);
 
         try {
-            // Lấy dishes từ chi nhánh 1
-            List<DishEntity> branchDishes = dishRepository.findByBranchId(1L);
-
-            // Lấy combos từ chi nhánh 1
-            List<ComboEntity> branchCombos = comboRepository.findByBranchId(1L);
-
-            List<ClientMenuItemDTO> featuredItems = new ArrayList<>();
-
-            // Sắp xếp dishes theo createdAt giảm dần (món mới nhất) và lấy 3 món đầu tiên
-            List<DishEntity> sortedDishes = branchDishes.stream()
-                    .sorted((d1, d2) -> {
-                        if (d1.getCreatedAt() == null && d2.getCreatedAt() == null)
-                            return 0;
-                        if (d1.getCreatedAt() == null)
-                            return 1;
-                        if (d2.getCreatedAt() == null)
-                            return -1;
-                        return d2.getCreatedAt().compareTo(d1.getCreatedAt()); // Giảm dần
-                    })
-                    .limit(3)
-                    .collect(Collectors.toList());
-
-            // Thêm dishes vào danh sách
-            for (DishEntity dish : sortedDishes) {
-                ClientMenuItemDTO item = clientMenuMapper.toClientMenuItemDTO(dish);
-                item.setType("food");
-                item.setBranchId(1L);
-                item.setBranchName("Chi nhánh 1");
-                featuredItems.add(item);
-            }
-
-            // Nếu chưa đủ 3 items, thêm combos
-            if (featuredItems.size() < 3) {
-                List<ComboEntity> sortedCombos = branchCombos.stream()
-                        .sorted((c1, c2) -> {
-                            if (c1.getCreatedAt() == null && c2.getCreatedAt() == null)
-                                return 0;
-                            if (c1.getCreatedAt() == null)
-                                return 1;
-                            if (c2.getCreatedAt() == null)
-                                return -1;
-                            return c2.getCreatedAt().compareTo(c1.getCreatedAt()); // Giảm dần
-                        })
-                        .limit(3 - featuredItems.size())
-                        .collect(Collectors.toList());
-
-                for (ComboEntity combo : sortedCombos) {
-                    ClientMenuItemDTO item = clientMenuMapper.toClientMenuItemDTO(combo);
-                    item.setType("combo");
-                    item.setBranchId(1L);
-                    item.setBranchName("Chi nhánh 1");
-                    featuredItems.add(item);
-                }
-            }
-
-            log.info("Found {} featured menu items for home page", featuredItems.size());
-            return featuredItems;
-
-        } catch (Exception e) {
-            log.error("Error fetching featured menu items for home page", e);
-            throw new RuntimeException("Failed to fetch featured menu items", e);
+            MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
+            return featuredItemService.getFeaturedItems(snapshot, HOME_FEATURED_LIMIT);
+        } catch (IllegalArgumentException e) {
+            log.warn("Branch {} is not available for home featured items: {}", branchId, e.getMessage());
+            return List.of();
         }
     }
 }
\ No newline at end of file
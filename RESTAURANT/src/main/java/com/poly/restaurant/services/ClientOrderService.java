@@ -15,6 +15,7 @@ import com.poly.restaurant.repositories.BranchRepository;
 import com.poly.restaurant.repositories.AccountRepository;
 import com.poly.restaurant.repositories.OrderItemRepository;
 import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.utils.PriceUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +38,9 @@ public class ClientOrderService {
     private final BranchRepository branchRepository;
     private final AccountRepository accountRepository;
     private final OrderItemRepository orderItemRepository;
+    private final OrderStateMachine orderStateMachine;
+    private final FeaturedItemService featuredItemService;
+    private final OutboxService outboxService;
 
     /**
      * Tạo đơn hàng mới từ khách hàng (delivery order)
@@ -107,7 +111,9 @@ public class ClientOrderService {
         OrderEntity savedOrder = orderRepository.save(order);
         logger.info("Client order created with ID: {}", savedOrder.getId());
 
-        // Xử lý các món ăn
+        // Xử lý các món ăn, cộng dồn tổng tiền ngay khi tạo từng món
+        long totalVnd = 0;
+        List<OrderItemEntity> orderItems = new ArrayList<>();
         if (request.getItems() != null && !request.getItems().isEmpty()) {
             for (OrderItemRequestDTO itemRequest : request.getItems()) {
                 // Tạo order item
@@ -116,6 +122,8 @@ public class ClientOrderService {
                 orderItem.setOrder(savedOrder);
                 orderItem.setQuantity(itemRequest.getQuantity());
                 orderItem.setUnitPrice(BigDecimal.valueOf(itemRequest.getUnitPrice()));
+                orderItem.setTotalPrice(PriceUtils.toDecimal(PriceUtils.lineTotal(
+                        PriceUtils.toVnd(orderItem.getUnitPrice()), itemRequest.getQuantity())));
                 orderItem.setSpecialInstructions(itemRequest.getNote());
                 orderItem.setStatus(OrderItemStatus.PENDING);
                 orderItem.setCreatedAt(LocalDateTime.now());
@@ -124,12 +132,15 @@ public class ClientOrderService {
                 // Set MenuDish nếu có menuDishId (tạm thời bỏ qua vì MenuDishEntity không tồn tại)
                 // TODO: Implement menu dish relationship if needed
 
-                orderItemRepository.save(orderItem);
+                orderItems.add(orderItem);
+                totalVnd += OrderCalculationService.contributionOf(orderItem);
             }
         }
+        // Lưu một lần để các INSERT được gom batch khi flush
+        orderItemRepository.saveAll(orderItems);
 
-        // Tính tổng tiền
-        calculateOrderTotal(savedOrder.getId());
+        savedOrder.setTotalAmount(PriceUtils.toDecimal(totalVnd));
+        logger.info("Order total calculated: {}", totalVnd);
 
         return mapToResponseDTO(savedOrder);
     }
@@ -180,51 +191,53 @@ public class ClientOrderService {
     public OrderResponseDTO updateOrderStatus(Long orderId, String status) {
         logger.info("Updating order {} status to: {}", orderId, status);
 
-        OrderEntity order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
-
+        OrderStatus newStatus;
         try {
-            OrderStatus newStatus = OrderStatus.valueOf(status);
+            newStatus = OrderStatus.valueOf(status);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            logger.error("Invalid order status: {}", status);
+            throw new IllegalArgumentException("Invalid order status: " + status);
+        }
 
+        orderStateMachine.transition(orderId, newStatus, current -> {
             // Kiểm tra quyền hủy đơn hàng - chỉ cho phép hủy khi đang ở trạng thái PENDING
             // hoặc CONFIRMED
-            if (newStatus == OrderStatus.CANCELED) {
-                if (order.getStatus() != OrderStatus.PENDING && order.getStatus() != OrderStatus.CONFIRMED) {
-                    logger.warn("Cannot cancel order {} in status: {}", orderId, order.getStatus());
-                    throw new IllegalArgumentException("Không thể hủy đơn hàng ở trạng thái: " + order.getStatus());
-                }
+            if (newStatus == OrderStatus.CANCELED
+                    && current != OrderStatus.PENDING && current != OrderStatus.CONFIRMED) {
+                logger.warn("Cannot cancel order {} in status: {}", orderId, current);
+                throw new IllegalArgumentException("Không thể hủy đơn hàng ở trạng thái: " + current);
             }
+        });
 
-            order.setStatus(newStatus);
-            order.setUpdatedAt(LocalDateTime.now());
-
-            OrderEntity updatedOrder = orderRepository.save(order);
-            logger.info("Order {} status updated to: {}", orderId, status);
+        OrderEntity updatedOrder = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        logger.info("Order {} status updated to: {}", orderId, status);
 
-            return mapToResponseDTO(updatedOrder);
-        } catch (IllegalArgumentException e) {
-            logger.error("Invalid order status: {}", status);
-            throw new IllegalArgumentException("Invalid order status: " + status);
-        }
+        return mapToResponseDTO(updatedOrder);
     }
 
     /**
-     * Tính tổng tiền đơn hàng
+     * Xác nhận thanh toán: chuyển đơn sang PAID và xếp tạo đơn GHTK vào outbox trong cùng transaction.
+     * Trả về mã vận đơn nếu đơn GHTK đã có, null nếu vừa được xếp lịch tạo.
      */
-    private void calculateOrderTotal(Long orderId) {
+    @Transactional
+    public String confirmPayment(Long orderId) {
+        OrderStatus previousStatus = orderStateMachine.transition(orderId, OrderStatus.PAID);
+        if (!FeaturedItemService.isSold(previousStatus)) {
+            featuredItemService.recordSale(orderId);
+        }
+        logger.info("Order {} status updated to PAID", orderId);
+
+        // Nạp sau khi chuyển trạng thái (state machine đã clear persistence context)
         OrderEntity order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
-
-        // Tính tổng từ order items
-        BigDecimal total = orderItemRepository.findByOrderId(orderId)
-                .stream()
-                .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        order.setTotalAmount(total);
-        orderRepository.save(order);
-
-        logger.info("Order total calculated: {}", total);
+        String trackingNumber = order.getTrackingNumber();
+        if (trackingNumber == null) {
+            // Worker outbox gọi GHTK có thử lại, mã vận đơn được lưu vào trackingNumber của đơn
+            outboxService.ghtkShipment(orderId);
+            logger.info("GHTK order creation queued for order: {}", orderId);
+        }
+        return trackingNumber;
     }
 
     /**
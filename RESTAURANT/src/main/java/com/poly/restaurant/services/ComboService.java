@@ -1,6 +1,7 @@
 package com.poly.restaurant.services;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -16,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.poly.restaurant.dtos.ComboItemDTO;
+import com.poly.restaurant.dtos.CursorPageDTO;
 import com.poly.restaurant.dtos.ComboRequestDTO;
 import com.poly.restaurant.dtos.ComboResponseDTO;
 import com.poly.restaurant.entities.AccountEntity;
@@ -28,6 +30,7 @@ import com.poly.restaurant.entities.enums.ItemAvailabilityStatus;
 import com.poly.restaurant.mappers.ComboMapper;
 import com.poly.restaurant.repositories.ComboRepository;
 import com.poly.restaurant.repositories.DishRepository;
+import com.poly.restaurant.sse.ApprovalSseBroadcaster;
 
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +44,8 @@ public class ComboService {
     private final DishRepository dishRepository;
     private final ComboMapper comboMapper;
     private final CloudinaryService cloudinaryService;
+    private final MenuSnapshotService menuSnapshotService;
+    private final ApprovalSseBroadcaster menuEvents;
 
 
     @Transactional(readOnly = true)
@@ -147,6 +152,7 @@ public class ComboService {
         // Lấy combo đã được cập nhật trạng thái
         ComboEntity updatedCombo = comboRepository.findById(savedCombo.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Combo not found after creation"));
+        menuSnapshotService.invalidate(updatedCombo.getBranch().getId());
 
         return comboMapper.toResponseDTO(updatedCombo);
     }
@@ -223,6 +229,7 @@ public class ComboService {
         // Lấy combo đã được cập nhật trạng thái
         ComboEntity finalCombo = comboRepository.findById(updatedCombo.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Combo not found after update"));
+        menuSnapshotService.invalidate(finalCombo.getBranch().getId());
 
         return comboMapper.toResponseDTO(finalCombo);
     }
@@ -242,6 +249,7 @@ public class ComboService {
         // Không còn menu system, có thể xóa trực tiếp
 
         comboRepository.delete(comboToDelete);
+        menuSnapshotService.invalidate(comboToDelete.getBranch().getId());
     }
 
     @Transactional(readOnly = true)
@@ -264,6 +272,7 @@ public class ComboService {
         combo.setAvailabilityStatus(availabilityStatus);
         combo.setManualAvailabilityOverride(true); // Đánh dấu là set thủ công
         ComboEntity updatedCombo = comboRepository.save(combo);
+        menuSnapshotService.invalidate(updatedCombo.getBranch().getId());
         return comboMapper.toResponseDTO(updatedCombo);
     }
 
@@ -283,6 +292,7 @@ public class ComboService {
         // Lấy combo đã được cập nhật
         ComboEntity updatedCombo = comboRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Combo not found after reset"));
+        menuSnapshotService.invalidate(updatedCombo.getBranch().getId());
         
         return comboMapper.toResponseDTO(updatedCombo);
     }
@@ -304,39 +314,77 @@ public class ComboService {
             return;
         }
         
-        // Kiểm tra trạng thái của các món ăn trong combo
-        boolean hasDiscontinuedDish = combo.getComboDishes().stream()
-                .anyMatch(comboDish -> 
-                    comboDish.getDish().getAvailabilityStatus() == ItemAvailabilityStatus.DISCONTINUED);
-        
-        boolean hasOutOfStockDish = combo.getComboDishes().stream()
-                .anyMatch(comboDish -> 
-                    comboDish.getDish().getAvailabilityStatus() == ItemAvailabilityStatus.OUT_OF_STOCK);
-        
-        boolean allDishesAvailable = combo.getComboDishes().stream()
-                .allMatch(comboDish -> 
-                    comboDish.getDish().getAvailabilityStatus() == ItemAvailabilityStatus.AVAILABLE);
-        
-        ItemAvailabilityStatus newStatus;
-        if (hasDiscontinuedDish) {
-            // Ưu tiên cao nhất: nếu có món ngừng bán → combo ngừng bán
-            newStatus = ItemAvailabilityStatus.DISCONTINUED;
-        } else if (hasOutOfStockDish) {
-            // Ưu tiên thứ hai: nếu có món hết hàng → combo hết hàng
-            newStatus = ItemAvailabilityStatus.OUT_OF_STOCK;
-        } else if (allDishesAvailable) {
-            // Tất cả món đều còn hàng → combo còn hàng
-            newStatus = ItemAvailabilityStatus.AVAILABLE;
-        } else {
-            // Fallback: mặc định là hết hàng
-            newStatus = ItemAvailabilityStatus.OUT_OF_STOCK;
-        }
-        
+        ItemAvailabilityStatus newStatus = computeAvailabilityFromDishes(combo);
+
         // Chỉ cập nhật nếu trạng thái thay đổi
         if (!combo.getAvailabilityStatus().equals(newStatus)) {
             combo.setAvailabilityStatus(newStatus);
             comboRepository.save(combo);
+            menuSnapshotService.invalidate(combo.getBranch().getId());
+        }
+    }
+
+    /**
+     * Món ăn đổi trạng thái: tính lại trạng thái của mọi combo chứa món trong một lần
+     * (một query lấy combo kèm món, các thay đổi được flush cùng lúc), rồi báo qua kênh menu-events.
+     * Trả về các combo đã đổi trạng thái.
+     */
+    @Transactional
+    public Map<Long, ItemAvailabilityStatus> propagateDishAvailability(Long dishId) {
+        Map<Long, ItemAvailabilityStatus> changed = new LinkedHashMap<>();
+        Map<Long, List<String>> changesByBranch = new LinkedHashMap<>();
+        List<ComboEntity> toSave = new ArrayList<>();
+
+        for (ComboEntity combo : comboRepository.findAllContainingDishWithDishes(dishId)) {
+            if (Boolean.TRUE.equals(combo.getManualAvailabilityOverride())) {
+                continue;
+            }
+            ItemAvailabilityStatus newStatus = computeAvailabilityFromDishes(combo);
+            if (newStatus != combo.getAvailabilityStatus()) {
+                combo.setAvailabilityStatus(newStatus);
+                toSave.add(combo);
+                changed.put(combo.getId(), newStatus);
+                changesByBranch.computeIfAbsent(combo.getBranch().getId(), b -> new ArrayList<>())
+                        .add(combo.getId() + "=" + newStatus);
+            }
+        }
+
+        if (!toSave.isEmpty()) {
+            comboRepository.saveAll(toSave);
+            changesByBranch.forEach((branchId, changes) -> {
+                menuSnapshotService.invalidate(branchId);
+                menuEvents.emitAfterCommit("COMBO_AVAILABILITY:" + branchId + ":" + String.join(",", changes));
+            });
         }
+        return changed;
+    }
+
+    /**
+     * Trạng thái combo suy ra từ các món: có món ngừng bán → DISCONTINUED,
+     * có món hết hàng → OUT_OF_STOCK, tất cả còn hàng → AVAILABLE
+     */
+    private ItemAvailabilityStatus computeAvailabilityFromDishes(ComboEntity combo) {
+        boolean hasOutOfStockDish = false;
+        boolean allDishesAvailable = true;
+        for (ComboDishEntity comboDish : combo.getComboDishes()) {
+            ItemAvailabilityStatus dishStatus = comboDish.getDish().getAvailabilityStatus();
+            if (dishStatus == ItemAvailabilityStatus.DISCONTINUED) {
+                // Ưu tiên cao nhất: nếu có món ngừng bán → combo ngừng bán
+                return ItemAvailabilityStatus.DISCONTINUED;
+            }
+            if (dishStatus == ItemAvailabilityStatus.OUT_OF_STOCK) {
+                hasOutOfStockDish = true;
+            }
+            if (dishStatus != ItemAvailabilityStatus.AVAILABLE) {
+                allDishesAvailable = false;
+            }
+        }
+        if (hasOutOfStockDish) {
+            // Ưu tiên thứ hai: nếu có món hết hàng → combo hết hàng
+            return ItemAvailabilityStatus.OUT_OF_STOCK;
+        }
+        // Tất cả món đều còn hàng → combo còn hàng, fallback: mặc định là hết hàng
+        return allDishesAvailable ? ItemAvailabilityStatus.AVAILABLE : ItemAvailabilityStatus.OUT_OF_STOCK;
     }
 
     /**
@@ -392,6 +440,59 @@ public class ComboService {
         return comboPage.map(comboMapper::toResponseDTO);
     }
 
+    /**
+     * Cuộn danh sách combo cho Staff/Manager theo keyset (mới nhất trước, không bao gồm DISCONTINUED).
+     * Không chạy COUNT trừ khi includeTotal = true.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ComboResponseDTO> scrollCombosForStaff(String name, String status, Long branchId,
+            String cursor, int size, boolean includeTotal) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Kích thước trang phải lớn hơn 0");
+        }
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        String namePattern = name != null && !name.trim().isEmpty() ? "%" + name.trim().toLowerCase() + "%" : null;
+        List<ItemAvailabilityStatus> statuses = ItemAvailabilityStatus.staffVisible(status, "combo");
+
+        Specification<ComboEntity> filter = Specification.where(null);
+        if (branchId != null) {
+            filter = filter.and((root, query, cb) -> cb.equal(root.get("branch").get("id"), branchId));
+        }
+        if (namePattern != null) {
+            filter = filter.and((root, query, cb) -> cb.like(cb.lower(root.<String>get("name")), namePattern));
+        }
+
+        // Mỗi trạng thái một lần seek trên index (branch_id, availability_status, created_at, id)
+        Specification<ComboEntity> page = filter.and(KeysetCursor.after(after));
+        List<List<ComboEntity>> seeks = new ArrayList<>();
+        for (ItemAvailabilityStatus availability : statuses) {
+            seeks.add(comboRepository.findBy(
+                    page.and((root, query, cb) -> cb.equal(root.get("availabilityStatus"), availability)),
+                    query -> query.project("branch", "discount").sortBy(KeysetCursor.ORDER).limit(size + 1).all()));
+        }
+        List<ComboEntity> combos = KeysetCursor.merge(seeks, ComboEntity::getCreatedAt, ComboEntity::getId, size + 1);
+        boolean hasNext = combos.size() > size;
+        if (hasNext) {
+            combos = combos.subList(0, size);
+        }
+
+        // Nạp comboDishes của cả trang bằng một query (các entity trong persistence context được cập nhật tại chỗ)
+        if (!combos.isEmpty()) {
+            comboRepository.findWithDishesByIdIn(combos.stream().map(ComboEntity::getId).collect(Collectors.toList()));
+        }
+
+        ComboEntity last = combos.isEmpty() ? null : combos.get(combos.size() - 1);
+        return CursorPageDTO.<ComboResponseDTO>builder()
+                .content(combos.stream().map(comboMapper::toResponseDTO).collect(Collectors.toList()))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? KeysetCursor.encode(last.getCreatedAt(), last.getId()) : null)
+                .totalElements(includeTotal
+                        ? comboRepository.count(filter.and((root, query, cb) -> root.get("availabilityStatus").in(statuses)))
+                        : null)
+                .build();
+    }
+
     /**
      * Tìm kiếm combo cho Staff Manager (không bao gồm DISCONTINUED)
      */
@@ -0,0 +1,297 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.poly.restaurant.dtos.DiscountResponseDTO;
+import com.poly.restaurant.entities.DiscountEntity;
+import com.poly.restaurant.entities.enums.DiscountStatus;
+import com.poly.restaurant.entities.enums.DiscountType;
+import com.poly.restaurant.mappers.DiscountMapper;
+import com.poly.restaurant.repositories.ComboRepository;
+import com.poly.restaurant.repositories.DiscountRepository;
+import com.poly.restaurant.repositories.DishRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chỉ mục discount trong bộ nhớ để trả lời "discount nào áp dụng cho món/combo tại thời điểm T".
+ * Mỗi món/combo có một dòng thời gian chia thành các đoạn [mốc_i, mốc_i+1) với danh sách discount
+ * phủ đoạn đó (mới nhất trước), tra bằng floorEntry nên O(log n).
+ * Discount của một item gồm discount nhắm tới item (dishId/comboId) và discount đang gắn vào item (discount_id).
+ * Voucher khách hàng được tra theo code. Chỉ mục được build lại sau khi DiscountService ghi dữ liệu.
+ * DTO trả về dùng chung giữa các request, không được sửa.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DiscountIndex {
+
+    // Trạng thái còn có thể có hiệu lực; REPLACED/EXPIRED không bao giờ được áp dụng
+    private static final List<DiscountStatus> INDEXED_STATUSES = List.of(
+            DiscountStatus.SCHEDULED, DiscountStatus.ACTIVE, DiscountStatus.EXPIRING);
+
+    // Ưu tiên discount tạo sau cùng, giống thứ tự dùng khi đồng bộ discount_id
+    private static final Comparator<DiscountResponseDTO> PRIORITY = Comparator
+            .comparing(DiscountResponseDTO::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(DiscountResponseDTO::getId, Comparator.reverseOrder());
+
+    private final DiscountRepository discountRepository;
+    private final DishRepository dishRepository;
+    private final ComboRepository comboRepository;
+
+    private volatile Snapshot current;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<CompletableFuture<Snapshot>> rebuild = new AtomicReference<>();
+
+    public Optional<DiscountResponseDTO> findBestForDish(Long dishId, LocalDateTime at) {
+        return first(snapshot().dishes.get(dishId), at);
+    }
+
+    public Optional<DiscountResponseDTO> findBestForCombo(Long comboId, LocalDateTime at) {
+        return first(snapshot().combos.get(comboId), at);
+    }
+
+    public boolean isApplicableToDish(Long dishId, Long discountId, LocalDateTime at) {
+        return contains(snapshot().dishes.get(dishId), discountId, at);
+    }
+
+    public boolean isApplicableToCombo(Long comboId, Long discountId, LocalDateTime at) {
+        return contains(snapshot().combos.get(comboId), discountId, at);
+    }
+
+    /**
+     * Voucher khách hàng theo code, chỉ trả về nếu đang trong [startDate, endDate) tại thời điểm at
+     */
+    public Optional<DiscountResponseDTO> findVoucher(String code, LocalDateTime at) {
+        if (code == null) {
+            return Optional.empty();
+        }
+        DiscountResponseDTO voucher = snapshot().vouchersByCode.get(code);
+        return voucher != null && covers(voucher, at) ? Optional.of(voucher) : Optional.empty();
+    }
+
+    /**
+     * Mốc bắt đầu/kết thúc gần nhất sau thời điểm at (null nếu không còn mốc nào);
+     * kết quả tra cứu không đổi cho tới mốc này
+     */
+    public LocalDateTime nextChangeAfter(LocalDateTime at) {
+        return snapshot().boundaries.higher(at);
+    }
+
+    /**
+     * Build lại chỉ mục sau khi transaction hiện tại commit
+     */
+    public void invalidate() {
+        Runnable action = () -> {
+            generation.incrementAndGet();
+            current = null;
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Chỉ một lần build chạy tại một thời điểm, các request đến trong lúc build chờ chung kết quả
+    private Snapshot snapshot() {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = rebuild.compareAndExchange(null, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            snapshot = rebuildSnapshot();
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rebuild.compareAndSet(mine, null);
+        }
+    }
+
+    private Snapshot rebuildSnapshot() {
+        // Lần build trước có thể vừa xong ngay trước khi request này giành được quyền build
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long stamp = generation.get();
+        snapshot = build();
+        synchronized (this) {
+            // Chỉ lưu khi không có invalidate nào xảy ra trong lúc build
+            if (stamp == generation.get() && current == null) {
+                current = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private static Snapshot await(CompletableFuture<Snapshot> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Snapshot build() {
+        Map<Long, DiscountResponseDTO> discountsById = new HashMap<>();
+        Map<Long, List<DiscountResponseDTO>> dishDiscounts = new HashMap<>();
+        Map<Long, List<DiscountResponseDTO>> comboDiscounts = new HashMap<>();
+        Map<String, DiscountResponseDTO> vouchersByCode = new HashMap<>();
+        TreeSet<LocalDateTime> boundaries = new TreeSet<>();
+
+        for (DiscountEntity entity : discountRepository.findByStatusIn(INDEXED_STATUSES)) {
+            if (entity.getStartDate() == null || entity.getEndDate() == null
+                    || !entity.getEndDate().isAfter(entity.getStartDate())) {
+                continue;
+            }
+            DiscountResponseDTO discount = DiscountMapper.toResponseDto(entity);
+            discountsById.put(discount.getId(), discount);
+            boundaries.add(discount.getStartDate());
+            boundaries.add(discount.getEndDate());
+
+            if (discount.getType() == DiscountType.CUSTOMER_VOUCHER && discount.getCode() != null) {
+                vouchersByCode.put(discount.getCode(), discount);
+            }
+            if (discount.getDishId() != null) {
+                dishDiscounts.computeIfAbsent(discount.getDishId(), id -> new ArrayList<>()).add(discount);
+            }
+            if (discount.getComboId() != null) {
+                comboDiscounts.computeIfAbsent(discount.getComboId(), id -> new ArrayList<>()).add(discount);
+            }
+        }
+
+        addLinks(dishRepository.findDiscountLinks(), discountsById, dishDiscounts);
+        addLinks(comboRepository.findDiscountLinks(), discountsById, comboDiscounts);
+
+        Snapshot snapshot = new Snapshot(timelines(dishDiscounts), timelines(comboDiscounts), vouchersByCode, boundaries);
+        log.info("Built discount index: {} discounts, {} dishes, {} combos",
+                discountsById.size(), snapshot.dishes.size(), snapshot.combos.size());
+        return snapshot;
+    }
+
+    // rows = (itemId, discountId) từ cột discount_id của dishes/combos
+    private static void addLinks(List<Object[]> rows, Map<Long, DiscountResponseDTO> discountsById,
+            Map<Long, List<DiscountResponseDTO>> target) {
+        for (Object[] row : rows) {
+            DiscountResponseDTO discount = discountsById.get((Long) row[1]);
+            if (discount == null) {
+                continue;
+            }
+            List<DiscountResponseDTO> discounts = target.computeIfAbsent((Long) row[0], id -> new ArrayList<>());
+            if (!discounts.contains(discount)) {
+                discounts.add(discount);
+            }
+        }
+    }
+
+    private static Map<Long, TreeMap<LocalDateTime, List<DiscountResponseDTO>>> timelines(
+            Map<Long, List<DiscountResponseDTO>> discountsByItem) {
+        Map<Long, TreeMap<LocalDateTime, List<DiscountResponseDTO>>> result = new HashMap<>();
+        discountsByItem.forEach((itemId, discounts) -> result.put(itemId, timeline(discounts)));
+        return result;
+    }
+
+    /**
+     * Chia trục thời gian tại mọi startDate/endDate; mỗi mốc giữ danh sách discount phủ đoạn bắt đầu từ mốc đó
+     */
+    private static TreeMap<LocalDateTime, List<DiscountResponseDTO>> timeline(List<DiscountResponseDTO> discounts) {
+        TreeSet<LocalDateTime> points = new TreeSet<>();
+        for (DiscountResponseDTO discount : discounts) {
+            points.add(discount.getStartDate());
+            points.add(discount.getEndDate());
+        }
+        TreeMap<LocalDateTime, List<DiscountResponseDTO>> segments = new TreeMap<>();
+        for (LocalDateTime point : points) {
+            List<DiscountResponseDTO> covering = new ArrayList<>();
+            for (DiscountResponseDTO discount : discounts) {
+                if (covers(discount, point)) {
+                    covering.add(discount);
+                }
+            }
+            covering.sort(PRIORITY);
+            segments.put(point, List.copyOf(covering));
+        }
+        return segments;
+    }
+
+    private static boolean covers(DiscountResponseDTO discount, LocalDateTime at) {
+        return !discount.getStartDate().isAfter(at) && discount.getEndDate().isAfter(at);
+    }
+
+    private static List<DiscountResponseDTO> covering(TreeMap<LocalDateTime, List<DiscountResponseDTO>> timeline,
+            LocalDateTime at) {
+        if (timeline == null) {
+            return List.of();
+        }
+        Entry<LocalDateTime, List<DiscountResponseDTO>> segment = timeline.floorEntry(at);
+        return segment != null ? segment.getValue() : List.of();
+    }
+
+    private static Optional<DiscountResponseDTO> first(TreeMap<LocalDateTime, List<DiscountResponseDTO>> timeline,
+            LocalDateTime at) {
+        List<DiscountResponseDTO> discounts = covering(timeline, at);
+        return discounts.isEmpty() ? Optional.empty() : Optional.of(discounts.get(0));
+    }
+
+    private static boolean contains(TreeMap<LocalDateTime, List<DiscountResponseDTO>> timeline, Long discountId,
+            LocalDateTime at) {
+        for (DiscountResponseDTO discount : covering(timeline, at)) {
+            if (discount.getId().equals(discountId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, TreeMap<LocalDateTime, List<DiscountResponseDTO>>> dishes;
+        private final Map<Long, TreeMap<LocalDateTime, List<DiscountResponseDTO>>> combos;
+        private final Map<String, DiscountResponseDTO> vouchersByCode;
+        private final TreeSet<LocalDateTime> boundaries;
+
+        private Snapshot(Map<Long, TreeMap<LocalDateTime, List<DiscountResponseDTO>>> dishes,
+                Map<Long, TreeMap<LocalDateTime, List<DiscountResponseDTO>>> combos,
+                Map<String, DiscountResponseDTO> vouchersByCode,
+                TreeSet<LocalDateTime> boundaries) {
+            this.dishes = dishes;
+            this.combos = combos;
+            this.vouchersByCode = vouchersByCode;
+            this.boundaries = boundaries;
+        }
+    }
+}
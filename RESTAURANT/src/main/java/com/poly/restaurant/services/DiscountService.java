@@ -1,8 +1,17 @@
 package com.poly.restaurant.services;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -10,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.poly.restaurant.config.DiscountScheduler;
 import com.poly.restaurant.dtos.DiscountRequestDTO;
 import com.poly.restaurant.dtos.DiscountResponseDTO;
 import com.poly.restaurant.entities.DiscountEntity;
@@ -26,9 +36,14 @@ import lombok.RequiredArgsConstructor;
 public class DiscountService {
 
 	private static final Logger logger = LoggerFactory.getLogger(DiscountService.class);
+	private static final int SYNC_UPDATE_CHUNK_SIZE = 1000;
 	private final DiscountRepository discountRepository;
 	private final DishRepository dishRepository;
 	private final ComboRepository comboRepository;
+	private final MenuSnapshotService menuSnapshotService;
+	private final DiscountScheduler discountScheduler;
+	private final DiscountIndex discountIndex;
+	private final VoucherRedemptionService voucherRedemptionService;
 
 	@Transactional
 	public DiscountResponseDTO createDiscount(DiscountRequestDTO request) {
@@ -104,6 +119,8 @@ public class DiscountService {
 			savedDiscount.getType() == com.poly.restaurant.entities.enums.DiscountType.BRANCH_DISCOUNT) {
 			applyActiveDiscountToItems(savedDiscount);
 		}
+		discountScheduler.schedule(savedDiscount);
+		discountsChanged();
 
 		return DiscountMapper.toResponseDto(discountRepository.findById(savedDiscount.getId()).get());
 	}
@@ -229,6 +246,8 @@ public class DiscountService {
 		if (saved.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE) {
 			applyActiveDiscountToItems(saved);
 		}
+		discountScheduler.schedule(saved);
+		discountsChanged();
 		
 		return DiscountMapper.toResponseDto(saved);
 	}
@@ -239,130 +258,115 @@ public class DiscountService {
 			throw new ResourceNotFoundException("Discount not found");
 		}
 		discountRepository.deleteById(id);
+		discountScheduler.cancel(id);
+		discountsChanged();
 	}
 
 
 	// Method để đồng bộ tất cả discount_id trong bảng dishes/combos
 	@Transactional
-	public void syncAllDiscountIds() {
+	public Map<String, Object> syncAllDiscountIds() {
 		logger.info("🔄 Starting sync of all discount_ids...");
-		
-		// Lấy tất cả discount đang hoạt động
-		List<DiscountEntity> allDiscounts = discountRepository.findAll();
-		List<DiscountEntity> activeDiscounts = allDiscounts.stream()
-			.filter(discount -> discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE ||
-								discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.SCHEDULED ||
-								discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.EXPIRING)
-			.collect(Collectors.toList());
-		
-		// Lấy tất cả dishes và combos
-		List<com.poly.restaurant.entities.DishEntity> allDishes = dishRepository.findAll();
-		List<com.poly.restaurant.entities.ComboEntity> allCombos = comboRepository.findAll();
-		
-		// Cập nhật discount_id cho dishes dựa trên logic nghiệp vụ
-		for (com.poly.restaurant.entities.DishEntity dish : allDishes) {
-			// Tìm discount phù hợp nhất cho dish này
-			Optional<DiscountEntity> bestDiscount = activeDiscounts.stream()
-				.filter(discount -> isDiscountApplicableToDish(discount, dish))
-				.sorted((d1, d2) -> {
-					// Ưu tiên discount mới nhất
-					return d2.getCreatedAt().compareTo(d1.getCreatedAt());
-				})
-				.findFirst();
-			
-			if (bestDiscount.isPresent()) {
-				DiscountEntity discount = bestDiscount.get();
-				if (dish.getDiscount() == null || !dish.getDiscount().getId().equals(discount.getId())) {
-					dish.setDiscount(discount);
-					dishRepository.save(dish);
-					logger.info("✅ Synced discount_id {} to dish {}", discount.getId(), dish.getId());
-				}
-			} else {
-				// Không có discount phù hợp, xóa discount_id cũ
-				if (dish.getDiscount() != null) {
-					dish.setDiscount(null);
-					dishRepository.save(dish);
-					logger.info("✅ Removed discount_id from dish {}", dish.getId());
-				}
-			}
-		}
-		
-		// Cập nhật discount_id cho combos dựa trên logic nghiệp vụ
-		for (com.poly.restaurant.entities.ComboEntity combo : allCombos) {
-			// Tìm discount phù hợp nhất cho combo này
-			Optional<DiscountEntity> bestDiscount = activeDiscounts.stream()
-				.filter(discount -> isDiscountApplicableToCombo(discount, combo))
-				.sorted((d1, d2) -> {
-					// Ưu tiên discount mới nhất
-					return d2.getCreatedAt().compareTo(d1.getCreatedAt());
-				})
-				.findFirst();
-			
-			if (bestDiscount.isPresent()) {
-				DiscountEntity discount = bestDiscount.get();
-				if (combo.getDiscount() == null || !combo.getDiscount().getId().equals(discount.getId())) {
-					combo.setDiscount(discount);
-					comboRepository.save(combo);
-					logger.info("✅ Synced discount_id {} to combo {}", discount.getId(), combo.getId());
-				}
-			} else {
-				// Không có discount phù hợp, xóa discount_id cũ
-				if (combo.getDiscount() != null) {
-					combo.setDiscount(null);
-					comboRepository.save(combo);
-					logger.info("✅ Removed discount_id from combo {}", combo.getId());
-				}
-			}
-		}
-		
-		logger.info("✅ Completed sync of all discount_ids");
+		long startedAt = System.currentTimeMillis();
+
+		List<DiscountEntity> candidates = findSyncCandidates();
+		int dishesUpdated = syncDiscountIds(dishRepository.findDiscountAssignments(), candidates,
+			this::isDiscountApplicableToDish, dishRepository::assignDiscount, dishRepository::clearDiscount);
+		int combosUpdated = syncDiscountIds(comboRepository.findDiscountAssignments(), candidates,
+			this::isDiscountApplicableToCombo, comboRepository::assignDiscount, comboRepository::clearDiscount);
+
+		discountsChanged();
+		return syncReport(dishesUpdated, combosUpdated, startedAt);
 	}
 
 	// Method riêng để đồng bộ discount_id cho combos
 	@Transactional
-	public void syncComboDiscountIds() {
+	public Map<String, Object> syncComboDiscountIds() {
 		logger.info("🔄 Starting sync of combo discount_ids...");
-		
-		// Lấy tất cả discount đang hoạt động
-		List<DiscountEntity> allDiscounts = discountRepository.findAll();
-		List<DiscountEntity> activeDiscounts = allDiscounts.stream()
-			.filter(discount -> discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE ||
-								discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.SCHEDULED ||
-								discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.EXPIRING)
-			.collect(Collectors.toList());
-		
-		// Lấy tất cả combos
-		List<com.poly.restaurant.entities.ComboEntity> allCombos = comboRepository.findAll();
-		
-		// Cập nhật discount_id cho combos dựa trên logic nghiệp vụ
-		for (com.poly.restaurant.entities.ComboEntity combo : allCombos) {
-			// Tìm discount phù hợp nhất cho combo này
-			Optional<DiscountEntity> bestDiscount = activeDiscounts.stream()
-				.filter(discount -> isDiscountApplicableToCombo(discount, combo))
-				.sorted((d1, d2) -> {
-					// Ưu tiên discount mới nhất
-					return d2.getCreatedAt().compareTo(d1.getCreatedAt());
-				})
-				.findFirst();
-			
-			if (bestDiscount.isPresent()) {
-				DiscountEntity discount = bestDiscount.get();
-				if (combo.getDiscount() == null || !combo.getDiscount().getId().equals(discount.getId())) {
-					combo.setDiscount(discount);
-					comboRepository.save(combo);
-					logger.info("✅ Synced discount_id {} to combo {}", discount.getId(), combo.getId());
+		long startedAt = System.currentTimeMillis();
+
+		int combosUpdated = syncDiscountIds(comboRepository.findDiscountAssignments(), findSyncCandidates(),
+			this::isDiscountApplicableToCombo, comboRepository::assignDiscount, comboRepository::clearDiscount);
+
+		discountsChanged();
+		return syncReport(0, combosUpdated, startedAt);
+	}
+
+	// Discount còn hiệu lực hoặc sắp có hiệu lực, mới nhất trước (discount mới nhất được ưu tiên)
+	private List<DiscountEntity> findSyncCandidates() {
+		List<DiscountEntity> candidates = new ArrayList<>(findPendingDiscounts());
+		candidates.sort(Comparator.comparing(DiscountEntity::getCreatedAt,
+			Comparator.nullsLast(Comparator.reverseOrder())));
+		return candidates;
+	}
+
+	/**
+	 * Tính discount phù hợp nhất cho từng item trong một lượt (rows = id, name, discount_id hiện tại),
+	 * gom các item cần đổi theo discount đích rồi ghi bằng UPDATE ... WHERE id IN (...).
+	 * Trả về số dòng đã cập nhật.
+	 */
+	private int syncDiscountIds(List<Object[]> rows, List<DiscountEntity> candidates,
+			BiPredicate<DiscountEntity, String> applicable,
+			BiFunction<DiscountEntity, Collection<Long>, Integer> assign,
+			Function<Collection<Long>, Integer> clear) {
+		Map<Long, DiscountEntity> discountsById = new HashMap<>();
+		Map<Long, List<Long>> itemsByTargetDiscount = new HashMap<>();
+		List<Long> itemsToClear = new ArrayList<>();
+
+		for (Object[] row : rows) {
+			Long itemId = (Long) row[0];
+			String itemName = (String) row[1];
+			Long currentDiscountId = (Long) row[2];
+
+			DiscountEntity best = null;
+			for (DiscountEntity candidate : candidates) {
+				if (applicable.test(candidate, itemName)) {
+					best = candidate;
+					break;
 				}
-			} else {
-				// Không có discount phù hợp, xóa discount_id cũ
-				if (combo.getDiscount() != null) {
-					combo.setDiscount(null);
-					comboRepository.save(combo);
-					logger.info("✅ Removed discount_id from combo {}", combo.getId());
+			}
+
+			if (best == null) {
+				if (currentDiscountId != null) {
+					itemsToClear.add(itemId);
 				}
+			} else if (!best.getId().equals(currentDiscountId)) {
+				discountsById.put(best.getId(), best);
+				itemsByTargetDiscount.computeIfAbsent(best.getId(), id -> new ArrayList<>()).add(itemId);
 			}
 		}
-		
-		logger.info("✅ Completed sync of combo discount_ids");
+
+		int updated = 0;
+		for (Map.Entry<Long, List<Long>> entry : itemsByTargetDiscount.entrySet()) {
+			DiscountEntity discount = discountsById.get(entry.getKey());
+			for (List<Long> chunk : chunks(entry.getValue())) {
+				updated += assign.apply(discount, chunk);
+			}
+		}
+		for (List<Long> chunk : chunks(itemsToClear)) {
+			updated += clear.apply(chunk);
+		}
+		return updated;
+	}
+
+	// Giới hạn số tham số của mệnh đề IN trong mỗi câu UPDATE
+	private static List<List<Long>> chunks(List<Long> ids) {
+		List<List<Long>> result = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += SYNC_UPDATE_CHUNK_SIZE) {
+			result.add(ids.subList(i, Math.min(ids.size(), i + SYNC_UPDATE_CHUNK_SIZE)));
+		}
+		return result;
+	}
+
+	private Map<String, Object> syncReport(int dishesUpdated, int combosUpdated, long startedAt) {
+		long durationMs = System.currentTimeMillis() - startedAt;
+		logger.info("✅ Completed sync of discount_ids: {} dishes, {} combos updated in {} ms",
+			dishesUpdated, combosUpdated, durationMs);
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("dishesUpdated", dishesUpdated);
+		report.put("combosUpdated", combosUpdated);
+		report.put("durationMs", durationMs);
+		return report;
 	}
 
 	// Method để tự động áp dụng discount ACTIVE cho items phù hợp
@@ -411,12 +415,12 @@ public class DiscountService {
 			if (discount.getDishId() == null && discount.getComboId() == null) {
 				// Tìm tất cả dishes phù hợp với discount này
 				List<com.poly.restaurant.entities.DishEntity> matchingDishes = dishRepository.findAll().stream()
-					.filter(dish -> isDiscountApplicableToDish(discount, dish))
+					.filter(dish -> isDiscountApplicableToDish(discount, dish.getName()))
 					.collect(Collectors.toList());
 				
 				// Tìm tất cả combos phù hợp với discount này
 				List<com.poly.restaurant.entities.ComboEntity> matchingCombos = comboRepository.findAll().stream()
-					.filter(combo -> isDiscountApplicableToCombo(discount, combo))
+					.filter(combo -> isDiscountApplicableToCombo(discount, combo.getName()))
 					.collect(Collectors.toList());
 				
 				// Áp dụng discount cho dishes
@@ -459,15 +463,14 @@ public class DiscountService {
 	}
 	
 	// Helper method để kiểm tra discount có áp dụng được cho dish không
-	private boolean isDiscountApplicableToDish(DiscountEntity discount, com.poly.restaurant.entities.DishEntity dish) {
+	private boolean isDiscountApplicableToDish(DiscountEntity discount, String dishName) {
 		// Logic kiểm tra: discount có thể áp dụng cho dish này không
 		// 1. Kiểm tra tên discount có chứa tên dish không (logic nghiệp vụ)
-		if (discount.getName() != null && dish.getName() != null) {
+		if (discount.getName() != null && dishName != null) {
 			String discountName = discount.getName().toLowerCase();
-			String dishName = dish.getName().toLowerCase();
 			
 			// Nếu discount name chứa dish name
-			if (discountName.contains(dishName)) {
+			if (discountName.contains(dishName.toLowerCase())) {
 				return true;
 			}
 		}
@@ -477,11 +480,11 @@ public class DiscountService {
 	}
 	
 	// Helper method để kiểm tra discount có áp dụng được cho combo không
-	private boolean isDiscountApplicableToCombo(DiscountEntity discount, com.poly.restaurant.entities.ComboEntity combo) {
+	private boolean isDiscountApplicableToCombo(DiscountEntity discount, String comboName) {
 		// Logic kiểm tra: discount có thể áp dụng cho combo này không
-		if (discount.getName() != null && combo.getName() != null) {
+		if (discount.getName() != null && comboName != null) {
 			String discountName = discount.getName().toLowerCase();
-			String comboName = combo.getName().toLowerCase();
+			comboName = comboName.toLowerCase();
 			
 			// 1. Nếu discount name chứa combo name (chính xác)
 			if (discountName.contains(comboName)) {
@@ -510,6 +513,7 @@ public class DiscountService {
 	public void updateDiscountStatuses() {
 		LocalDateTime now = LocalDateTime.now();
 		List<DiscountEntity> allDiscounts = discountRepository.findAll();
+		boolean changed = false;
 
 		for (DiscountEntity discount : allDiscounts) {
 			// Không thay đổi status của discount đã bị REPLACED
@@ -518,31 +522,14 @@ public class DiscountService {
 				continue;
 			}
 
-			com.poly.restaurant.entities.enums.DiscountStatus newStatus;
-
-			if (discount.getStartDate().isAfter(now)) {
-				// Chưa bắt đầu
-				newStatus = com.poly.restaurant.entities.enums.DiscountStatus.SCHEDULED;
-			} else if (discount.getEndDate().isAfter(now)) {
-				// Đang hoạt động - kiểm tra có sắp hết hạn không
-				LocalDateTime twentyFourHoursFromNow = now.plusHours(24);
-				if (discount.getEndDate().isBefore(twentyFourHoursFromNow)) {
-					// Sắp hết hạn (còn < 24h)
-					newStatus = com.poly.restaurant.entities.enums.DiscountStatus.EXPIRING;
-				} else {
-					// Đang hoạt động bình thường
-					newStatus = com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE;
-				}
-			} else {
-				// Đã hết hạn
-				newStatus = com.poly.restaurant.entities.enums.DiscountStatus.EXPIRED;
-			}
+			com.poly.restaurant.entities.enums.DiscountStatus newStatus = computeStatus(discount, now);
 
 			if (discount.getStatus() != newStatus) {
 				logger.info("🔄 Updating discount ID {} status from {} to {}", 
 					discount.getId(), discount.getStatus(), newStatus);
 				discount.setStatus(newStatus);
 				discountRepository.save(discount);
+				changed = true;
 				
 				// Đồng bộ discount_id trong bảng dishes/combos
 				syncDiscountIdForItems(discount, newStatus);
@@ -554,6 +541,75 @@ public class DiscountService {
 				}
 			}
 		}
+
+		if (changed) {
+			discountsChanged();
+		}
+	}
+
+	// Discount hoặc liên kết dish/combo thay đổi: build lại chỉ mục discount và snapshot menu
+	private void discountsChanged() {
+		discountIndex.invalidate();
+		menuSnapshotService.invalidateAll();
+	}
+
+	// Trạng thái theo thời gian của discount tại thời điểm now
+	private com.poly.restaurant.entities.enums.DiscountStatus computeStatus(DiscountEntity discount, LocalDateTime now) {
+		if (discount.getStartDate().isAfter(now)) {
+			// Chưa bắt đầu
+			return com.poly.restaurant.entities.enums.DiscountStatus.SCHEDULED;
+		}
+		if (discount.getEndDate().isAfter(now)) {
+			// Đang hoạt động - sắp hết hạn nếu còn < 24h
+			return discount.getEndDate().isBefore(now.plusHours(24))
+					? com.poly.restaurant.entities.enums.DiscountStatus.EXPIRING
+					: com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE;
+		}
+		// Đã hết hạn
+		return com.poly.restaurant.entities.enums.DiscountStatus.EXPIRED;
+	}
+
+	/**
+	 * Cập nhật trạng thái của một discount khi đến mốc thời gian (được gọi bởi DiscountScheduler).
+	 * Chỉ đụng tới discount này và các dish/combo đang gắn với nó.
+	 */
+	@Transactional
+	public void refreshDiscountStatus(Long discountId) {
+		DiscountEntity discount = discountRepository.findById(discountId).orElse(null);
+		if (discount == null || discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.REPLACED) {
+			return;
+		}
+
+		com.poly.restaurant.entities.enums.DiscountStatus oldStatus = discount.getStatus();
+		com.poly.restaurant.entities.enums.DiscountStatus newStatus = computeStatus(discount, LocalDateTime.now());
+		if (oldStatus == newStatus) {
+			return;
+		}
+
+		logger.info("⏰ Discount ID {} reached boundary, status {} -> {}", discountId, oldStatus, newStatus);
+		discount.setStatus(newStatus);
+		discountRepository.save(discount);
+
+		if (newStatus == com.poly.restaurant.entities.enums.DiscountStatus.EXPIRED) {
+			// Gỡ khỏi các dish/combo đang dùng discount này
+			autoRemoveDiscountFromItems(discount);
+		} else if (oldStatus == com.poly.restaurant.entities.enums.DiscountStatus.SCHEDULED) {
+			// Bắt đầu có hiệu lực: áp dụng giống như khi tạo discount đang ACTIVE
+			autoApplyDiscountToItems(discount);
+			if (discount.getType() == com.poly.restaurant.entities.enums.DiscountType.BRANCH_DISCOUNT) {
+				applyActiveDiscountToItems(discount);
+			}
+		}
+		discountsChanged();
+	}
+
+	// Discount còn mốc chuyển trạng thái phía trước, dùng để dựng lịch của DiscountScheduler
+	@Transactional(readOnly = true)
+	public List<DiscountEntity> findPendingDiscounts() {
+		return discountRepository.findByStatusIn(List.of(
+				com.poly.restaurant.entities.enums.DiscountStatus.SCHEDULED,
+				com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE,
+				com.poly.restaurant.entities.enums.DiscountStatus.EXPIRING));
 	}
 
 	// Apply discount to dish or combo
@@ -604,6 +660,7 @@ public class DiscountService {
 				applyActiveDiscountToItems(discount);
 			}
 		}
+		discountsChanged();
 	}
 
 	// Method để đồng bộ discount_id trong bảng dishes/combos
@@ -674,69 +731,13 @@ public class DiscountService {
 	}
 
 	// Get active discount for a specific dish
-	@Transactional(readOnly = true)
 	public Optional<DiscountResponseDTO> getActiveDiscountForDish(Long dishId) {
-		logger.info("Getting active discount for dish: {}", dishId);
-		
-		com.poly.restaurant.entities.DishEntity dish = dishRepository.findById(dishId)
-			.orElseThrow(() -> new RuntimeException("Dish not found with id: " + dishId));
-		
-		if (dish.getDiscount() != null) {
-			// Initialize lazy-loaded discount
-			try {
-				dish.getDiscount().getId(); // Force initialization
-				dish.getDiscount().getStatus();
-				dish.getDiscount().getStartDate();
-				dish.getDiscount().getEndDate();
-			} catch (Exception e) {
-				logger.error("Error initializing discount for dish {}: {}", dishId, e.getMessage());
-				return Optional.empty();
-			}
-			
-			// Check if discount is still active
-			LocalDateTime now = LocalDateTime.now();
-			if (dish.getDiscount().getStatus().toString().equals("ACTIVE") &&
-				dish.getDiscount().getStartDate().isBefore(now) &&
-				dish.getDiscount().getEndDate().isAfter(now)) {
-				
-				return Optional.of(DiscountMapper.toResponseDto(dish.getDiscount()));
-			}
-		}
-		
-		return Optional.empty();
+		return discountIndex.findBestForDish(dishId, LocalDateTime.now());
 	}
 
 	// Get active discount for a specific combo
-	@Transactional(readOnly = true)
 	public Optional<DiscountResponseDTO> getActiveDiscountForCombo(Long comboId) {
-		logger.info("Getting active discount for combo: {}", comboId);
-		
-		com.poly.restaurant.entities.ComboEntity combo = comboRepository.findById(comboId)
-			.orElseThrow(() -> new RuntimeException("Combo not found with id: " + comboId));
-		
-		if (combo.getDiscount() != null) {
-			// Initialize lazy-loaded discount
-			try {
-				combo.getDiscount().getId(); // Force initialization
-				combo.getDiscount().getStatus();
-				combo.getDiscount().getStartDate();
-				combo.getDiscount().getEndDate();
-			} catch (Exception e) {
-				logger.error("Error initializing discount for combo {}: {}", comboId, e.getMessage());
-				return Optional.empty();
-			}
-			
-			// Check if discount is still active
-			LocalDateTime now = LocalDateTime.now();
-			if (combo.getDiscount().getStatus().toString().equals("ACTIVE") &&
-				combo.getDiscount().getStartDate().isBefore(now) &&
-				combo.getDiscount().getEndDate().isAfter(now)) {
-				
-				return Optional.of(DiscountMapper.toResponseDto(combo.getDiscount()));
-			}
-		}
-		
-		return Optional.empty();
+		return discountIndex.findBestForCombo(comboId, LocalDateTime.now());
 	}
 
 	// Tự động áp dụng discount khi đến giờ
@@ -764,6 +765,10 @@ public class DiscountService {
 				logger.error("Error auto-applying discount {}: {}", discount.getId(), e.getMessage());
 			}
 		}
+
+		if (!readyDiscounts.isEmpty()) {
+			discountsChanged();
+		}
 	}
 
 	// Tự động gỡ bỏ discount khi hết hạn
@@ -791,6 +796,10 @@ public class DiscountService {
 				logger.error("Error auto-removing discount {}: {}", discount.getId(), e.getMessage());
 			}
 		}
+
+		if (!expiredDiscounts.isEmpty()) {
+			discountsChanged();
+		}
 	}
 
 	// Tự động áp dụng discount cho món ăn/combo dựa trên tên
@@ -850,87 +859,41 @@ public class DiscountService {
 	}
 
 	// Tìm voucher theo code
-	@Transactional(readOnly = true)
 	public Optional<DiscountResponseDTO> getDiscountByCode(String code) {
-		logger.info("Getting discount by code: {}", code);
-		
-		Optional<DiscountEntity> entity = discountRepository.findByCode(code);
-		
-		if (entity.isPresent()) {
-			DiscountEntity discount = entity.get();
-			
-			// Kiểm tra voucher có còn hạn sử dụng không
-			LocalDateTime now = LocalDateTime.now();
-			if (discount.getStatus() == com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE &&
-				discount.getStartDate().isBefore(now) &&
-				discount.getEndDate().isAfter(now)) {
-				
-				logger.info("Found active discount with code: {}", code);
-				return Optional.of(DiscountMapper.toResponseDto(discount));
-			} else {
-				logger.warn("Discount with code {} is not active or expired", code);
-				return Optional.empty();
-			}
+		Optional<DiscountResponseDTO> voucher = discountIndex.findVoucher(code, LocalDateTime.now());
+		if (voucher.isEmpty()) {
+			logger.warn("Discount with code {} not found, not active or expired", code);
 		}
-		
-		logger.warn("Discount not found with code: {}", code);
-		return Optional.empty();
+		return voucher;
 	}
 
 	// Validate voucher trước khi sử dụng
-	@Transactional(readOnly = true)
 	public boolean validateVoucher(String voucherCode, Long dishId, Long comboId) {
-		logger.info("Validating voucher: {} for dish: {} or combo: {}", voucherCode, dishId, comboId);
-		
-		Optional<DiscountEntity> voucherOpt = discountRepository.findByCode(voucherCode);
-		
-		if (!voucherOpt.isPresent()) {
-			logger.warn("Voucher not found with code: {}", voucherCode);
-			return false;
-		}
-		
-		DiscountEntity voucher = voucherOpt.get();
 		LocalDateTime now = LocalDateTime.now();
-		
-		// Kiểm tra voucher có còn hạn sử dụng không
-		if (voucher.getStatus() != com.poly.restaurant.entities.enums.DiscountStatus.ACTIVE) {
-			logger.warn("Voucher {} is not active, status: {}", voucherCode, voucher.getStatus());
+		Optional<DiscountResponseDTO> voucher = discountIndex.findVoucher(voucherCode, now);
+		if (voucher.isEmpty()) {
+			logger.warn("Voucher {} not found, not active or expired", voucherCode);
 			return false;
 		}
-		
-		if (voucher.getStartDate().isAfter(now)) {
-			logger.warn("Voucher {} has not started yet, start date: {}", voucherCode, voucher.getStartDate());
+		if (!voucherRedemptionService.hasRemainingUsage(voucher.get())) {
+			logger.warn("Voucher {} has reached its usage limit", voucherCode);
 			return false;
 		}
-		
-		if (voucher.getEndDate().isBefore(now)) {
-			logger.warn("Voucher {} has expired, end date: {}", voucherCode, voucher.getEndDate());
-			return false;
-		}
-		
+
 		// Kiểm tra voucher có áp dụng cho món ăn/combo này không
-		if (dishId != null) {
-			com.poly.restaurant.entities.DishEntity dish = dishRepository.findById(dishId).orElse(null);
-			if (dish != null && dish.getDiscount() != null && dish.getDiscount().getId().equals(voucher.getId())) {
-				logger.info("Voucher {} is valid for dish {}", voucherCode, dishId);
-				return true;
-			}
+		Long voucherId = voucher.get().getId();
+		if (dishId != null && discountIndex.isApplicableToDish(dishId, voucherId, now)) {
+			return true;
 		}
-		
-		if (comboId != null) {
-			com.poly.restaurant.entities.ComboEntity combo = comboRepository.findById(comboId).orElse(null);
-			if (combo != null && combo.getDiscount() != null && combo.getDiscount().getId().equals(voucher.getId())) {
-				logger.info("Voucher {} is valid for combo {}", voucherCode, comboId);
-				return true;
-			}
+		if (comboId != null && discountIndex.isApplicableToCombo(comboId, voucherId, now)) {
+			return true;
 		}
-		
+
 		logger.warn("Voucher {} is not applicable for dish {} or combo {}", voucherCode, dishId, comboId);
 		return false;
 	}
 
 	// Lấy thông tin voucher để áp dụng
-	@Transactional(readOnly = true)
 	public Optional<DiscountResponseDTO> getValidVoucherForItem(String voucherCode, Long dishId, Long comboId) {
 		if (validateVoucher(voucherCode, dishId, comboId)) {
 			return getDiscountByCode(voucherCode);
@@ -1,7 +1,9 @@
 package com.poly.restaurant.services;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.context.annotation.Lazy;
@@ -14,6 +16,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.poly.restaurant.dtos.CursorPageDTO;
 import com.poly.restaurant.dtos.DishRequestDTO;
 import com.poly.restaurant.dtos.DishResponseDTO;
 import com.poly.restaurant.entities.AccountEntity;
@@ -25,6 +28,7 @@ import com.poly.restaurant.mappers.DishMapper;
 import com.poly.restaurant.repositories.CategoryRepository;
 import com.poly.restaurant.repositories.ComboDishRepository;
 import com.poly.restaurant.repositories.DishRepository;
+import com.poly.restaurant.sse.ApprovalSseBroadcaster;
 
 
 @Service
@@ -36,51 +40,62 @@ public class DishService {
     private final CloudinaryService cloudinaryService;
     private final ComboDishRepository comboDishRepository;
     private final ComboService comboService;
+    private final MenuSnapshotService menuSnapshotService;
+    private final ApprovalSseBroadcaster menuEvents;
+    private final DiscountIndex discountIndex;
     
     public DishService(DishRepository dishRepository, 
                       CategoryRepository categoryRepository, 
                       CloudinaryService cloudinaryService, 
                       ComboDishRepository comboDishRepository, 
-                      @Lazy ComboService comboService) {
+                      @Lazy ComboService comboService,
+                      MenuSnapshotService menuSnapshotService,
+                      ApprovalSseBroadcaster menuEvents,
+                      DiscountIndex discountIndex) {
         this.dishRepository = dishRepository;
         this.categoryRepository = categoryRepository;
         this.cloudinaryService = cloudinaryService;
         this.comboDishRepository = comboDishRepository;
         this.comboService = comboService;
+        this.menuSnapshotService = menuSnapshotService;
+        this.menuEvents = menuEvents;
+        this.discountIndex = discountIndex;
     }
     
     @Transactional(readOnly = true)
     public List<DishResponseDTO> getAllDishes() {
-        List<DishEntity> dishes = dishRepository.findAll();
+        List<DishEntity> dishes = dishRepository.findAllWithDetails();
+        // Đánh dấu inUse nếu đang thuộc Combo
+        Set<Long> dishIdsInCombos = comboDishRepository.findAllDishIdsInCombos();
         return dishes.stream()
-                .map(d -> {
-                    DishResponseDTO dto = DishMapper.toResponseDTO(d);
-                    // Đánh dấu inUse nếu đang thuộc Combo
-                    try {
-                        boolean inCombo = comboDishRepository.existsByDishId(d.getId());
-                        dto.setInUse(inCombo);
-                    } catch (Exception ignored) {}
-                    return dto;
-                })
+                .map(d -> toResponseDTO(d, dishIdsInCombos))
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<DishResponseDTO> getDishesByBranch(Long branchId) {
-        List<DishEntity> dishes = dishRepository.findByBranchId(branchId);
+        List<DishEntity> dishes = dishRepository.findWithDetailsByBranchId(branchId);
+        Set<Long> dishIdsInCombos = findDishIdsInCombos(dishes);
         return dishes.stream()
-                .map(d -> {
-                    DishResponseDTO dto = DishMapper.toResponseDTO(d);
-                    // Đánh dấu inUse nếu đang thuộc Combo
-                    try {
-                        boolean inCombo = comboDishRepository.existsByDishId(d.getId());
-                        dto.setInUse(inCombo);
-                    } catch (Exception ignored) {}
-                    return dto;
-                })
+                .map(d -> toResponseDTO(d, dishIdsInCombos))
                 .collect(Collectors.toList());
     }
 
+    // Một query cho cả danh sách thay vì existsByDishId cho từng món
+    private Set<Long> findDishIdsInCombos(List<DishEntity> dishes) {
+        if (dishes.isEmpty()) {
+            return Set.of();
+        }
+        List<Long> ids = dishes.stream().map(DishEntity::getId).collect(Collectors.toList());
+        return comboDishRepository.findDishIdsInCombos(ids);
+    }
+
+    private DishResponseDTO toResponseDTO(DishEntity dish, Set<Long> dishIdsInCombos) {
+        DishResponseDTO dto = DishMapper.toResponseDTO(dish);
+        dto.setInUse(dishIdsInCombos.contains(dish.getId()));
+        return dto;
+    }
+
     @Transactional(readOnly = true)
     public DishResponseDTO getDishById(Long id) {
         var dish = dishRepository.findById(id)
@@ -119,23 +134,10 @@ public class DishService {
         }
         
         // Gọi phương thức findAll với Specification
+        // Quan hệ category/branch/discount đã được lấy kèm qua EntityGraph của findAll(spec, pageable)
         Page<DishEntity> dishPage = dishRepository.findAll(spec, pageable);
-        return dishPage.map(d -> {
-            // Initialize lazy collections to avoid LazyInitializationException
-            if (d.getCategory() != null) {
-                d.getCategory().getName(); // Trigger lazy loading
-            }
-            if (d.getBranch() != null) {
-                d.getBranch().getName(); // Trigger lazy loading
-            }
-            
-            DishResponseDTO dto = DishMapper.toResponseDTO(d);
-            try {
-                boolean inCombo = comboDishRepository.existsByDishId(d.getId());
-                dto.setInUse(inCombo);
-            } catch (Exception ignored) {}
-            return dto;
-        });
+        Set<Long> dishIdsInCombos = findDishIdsInCombos(dishPage.getContent());
+        return dishPage.map(d -> toResponseDTO(d, dishIdsInCombos));
     }
 
     @Transactional(readOnly = true)
@@ -179,6 +181,7 @@ public class DishService {
         }
 
         DishEntity savedDish = dishRepository.save(dish);
+        menuSnapshotService.invalidate(savedDish.getBranch().getId());
         return DishMapper.toResponseDTO(savedDish);
     }
 
@@ -221,6 +224,7 @@ public class DishService {
         }
 
         DishEntity updatedDish = dishRepository.save(existingDish);
+        menuSnapshotService.invalidate(updatedDish.getBranch().getId());
         return DishMapper.toResponseDTO(updatedDish);
     }
 
@@ -241,6 +245,7 @@ public class DishService {
         }
         
         dishRepository.delete(dishToDelete);
+        menuSnapshotService.invalidate(dishToDelete.getBranch().getId());
     }
 
     @Transactional(readOnly = true)
@@ -264,13 +269,16 @@ public class DishService {
         DishEntity dishToUpdate = dishRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Dish not found with id: " + id));
 
+        ItemAvailabilityStatus previousStatus = dishToUpdate.getAvailabilityStatus();
         dishToUpdate.setAvailabilityStatus(newStatus);
         DishEntity savedDish = dishRepository.save(dishToUpdate);
         
-        // Tự động cập nhật tất cả combo chứa món ăn này
-        List<com.poly.restaurant.entities.ComboDishEntity> comboDishes = comboDishRepository.findByDishId(id);
-        for (com.poly.restaurant.entities.ComboDishEntity comboDish : comboDishes) {
-            comboService.updateComboAvailabilityBasedOnDishes(comboDish.getCombo().getId());
+        if (previousStatus != newStatus) {
+            Long branchId = savedDish.getBranch().getId();
+            menuEvents.emitAfterCommit("DISH_AVAILABILITY:" + branchId + ":" + id + "=" + newStatus);
+            // Chỉ tính lại các combo chứa món ăn này, trong một lần
+            comboService.propagateDishAvailability(id);
+            menuSnapshotService.invalidate(branchId);
         }
         
         return DishMapper.toResponseDTO(savedDish);
@@ -314,6 +322,7 @@ public class DishService {
         // Discount sẽ được quản lý thông qua DiscountService
         
         DishEntity saved = dishRepository.save(dish);
+        menuSnapshotService.invalidate(saved.getBranch().getId());
         return DishMapper.toResponseDTO(saved);
     }
 
@@ -338,6 +347,8 @@ public class DishService {
         dish.setDiscount(null);
         
         DishEntity saved = dishRepository.save(dish);
+        discountIndex.invalidate();
+        menuSnapshotService.invalidate(saved.getBranch().getId());
         return DishMapper.toResponseDTO(saved);
     }
 
@@ -403,6 +414,59 @@ public class DishService {
     }
 
 
+    /**
+     * Cuộn danh sách món ăn cho Staff/Manager theo keyset (mới nhất trước, không bao gồm DISCONTINUED).
+     * Không chạy COUNT trừ khi includeTotal = true.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<DishResponseDTO> scrollDishesForStaff(String name, String status, Long branchId, Long categoryId,
+            String cursor, int size, boolean includeTotal) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Kích thước trang phải lớn hơn 0");
+        }
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        String namePattern = name != null && !name.trim().isEmpty() ? "%" + name.trim().toLowerCase() + "%" : null;
+        List<ItemAvailabilityStatus> statuses = ItemAvailabilityStatus.staffVisible(status, "món ăn");
+
+        Specification<DishEntity> filter = Specification.where(null);
+        if (branchId != null) {
+            filter = filter.and((root, query, cb) -> cb.equal(root.get("branch").get("id"), branchId));
+        }
+        if (categoryId != null) {
+            filter = filter.and((root, query, cb) -> cb.equal(root.get("category").get("id"), categoryId));
+        }
+        if (namePattern != null) {
+            filter = filter.and((root, query, cb) -> cb.like(cb.lower(root.<String>get("name")), namePattern));
+        }
+
+        // Mỗi trạng thái một lần seek trên index (branch_id, availability_status, created_at, id)
+        Specification<DishEntity> page = filter.and(KeysetCursor.after(after));
+        List<List<DishEntity>> seeks = new ArrayList<>();
+        for (ItemAvailabilityStatus availability : statuses) {
+            seeks.add(dishRepository.findBy(
+                    page.and((root, query, cb) -> cb.equal(root.get("availabilityStatus"), availability)),
+                    query -> query.project("category", "branch", "discount").sortBy(KeysetCursor.ORDER)
+                            .limit(size + 1).all()));
+        }
+        List<DishEntity> dishes = KeysetCursor.merge(seeks, DishEntity::getCreatedAt, DishEntity::getId, size + 1);
+        boolean hasNext = dishes.size() > size;
+        if (hasNext) {
+            dishes = dishes.subList(0, size);
+        }
+
+        Set<Long> dishIdsInCombos = findDishIdsInCombos(dishes);
+        DishEntity last = dishes.isEmpty() ? null : dishes.get(dishes.size() - 1);
+        return CursorPageDTO.<DishResponseDTO>builder()
+                .content(dishes.stream().map(d -> toResponseDTO(d, dishIdsInCombos)).collect(Collectors.toList()))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? KeysetCursor.encode(last.getCreatedAt(), last.getId()) : null)
+                .totalElements(includeTotal
+                        ? dishRepository.count(filter.and((root, query, cb) -> root.get("availabilityStatus").in(statuses)))
+                        : null)
+                .build();
+    }
+
     /**
      * Tìm kiếm món ăn cho Staff Manager (không bao gồm DISCONTINUED)
      */
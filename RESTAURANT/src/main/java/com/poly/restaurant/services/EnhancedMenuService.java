@@ -10,7 +10,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 // Removed cache import
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -25,10 +24,11 @@ import java.util.stream.Collectors;
 public class EnhancedMenuService {
 
     private final BranchRepository branchRepository;
-    private final CategoryRepository categoryRepository;
     private final DishRepository dishRepository;
     private final ComboRepository comboRepository;
     private final ClientMenuMapper clientMenuMapper;
+    private final MenuSnapshotService menuSnapshotService;
+    private final FeaturedItemService featuredItemService;
 
     /**
      * Lấy danh sách chi nhánh active với caching
@@ -46,18 +46,15 @@ public class EnhancedMenuService {
      * Lấy danh sách category với counts và caching
      */
     // Removed cache annotation
-    @Transactional(readOnly = true)
     public List<ClientCategoryWithCountsDTO> getBranchScopedCategories(
             Long branchId, String type, Boolean includeCounts, Boolean showEmpty, String search) {
         
         log.info("Fetching branch-scoped categories for branch: {}, type: {}, includeCounts: {}, showEmpty: {}, search: {}",
                 branchId, type, includeCounts, showEmpty, search);
 
-        // Validate branch
-        validateBranch(branchId);
-
-        // Get categories with counts
-        List<ClientCategoryWithCountsDTO> categories = getCategoriesWithCounts(branchId, type, includeCounts, showEmpty, search);
+        // Get categories with counts (snapshot đã kiểm tra branch)
+        List<ClientCategoryWithCountsDTO> categories = getCategoriesWithCounts(
+                menuSnapshotService.getSnapshot(branchId), type, includeCounts, showEmpty, search);
         
         log.info("Found {} categories for branch: {}", categories.size(), branchId);
         return categories;
@@ -66,7 +63,6 @@ public class EnhancedMenuService {
     /**
      * Lấy menu items với pagination và caching
      */
-    @Transactional(readOnly = true)
     public Page<ClientMenuItemDTO> getMenuItems(
             Long branchId, Long categoryId, String type, String search, Pageable pageable) {
         
@@ -74,74 +70,43 @@ public class EnhancedMenuService {
                 branchId, categoryId, type, search, pageable.getPageNumber(), pageable.getPageSize());
 
         // Validate inputs
-        validateBranch(branchId);
         validateType(type);
         validatePageable(pageable);
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
-        // Get items based on type
-        List<ClientMenuItemDTO> allItems = new ArrayList<>();
-        
-        if ("food".equals(type) || "all".equals(type) || type == null) {
-            List<DishEntity> dishes = getDishesWithFilters(branchId, categoryId, search);
-            allItems.addAll(clientMenuMapper.toClientMenuItemDTOList(dishes));
-        }
-
-        if ("combo".equals(type) || "all".equals(type) || type == null) {
-            List<ComboEntity> combos = getCombosWithFilters(branchId, categoryId, search);
-            allItems.addAll(clientMenuMapper.toClientComboDTOList(combos));
-        }
-
-        // Apply sorting
-        applySorting(allItems, pageable.getSort());
+        // Dishes và combos gộp sẵn theo thứ tự sort trong snapshot, chỉ cắt trang được yêu cầu
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by(Sort.Direction.DESC, "createdAt");
+        List<ClientMenuItemDTO> sortedItems = snapshot.getSearchIndex().filter(
+                snapshot.getSortedItems(type != null ? type : "all", categoryId, sort), search);
 
-        // Apply pagination
-        return createPaginatedResult(allItems, pageable);
+        return menuSnapshotService.toPage(sortedItems, pageable);
     }
 
     /**
      * Lấy featured items với caching
      */
     // Removed cache annotation
-    @Transactional(readOnly = true)
     public List<ClientMenuItemDTO> getFeaturedItems(Long branchId) {
         log.info("Fetching featured items for branch: {}", branchId);
 
-        validateBranch(branchId);
-
-        List<ClientMenuItemDTO> featuredItems = new ArrayList<>();
-
-        // Get top dishes by popularity or newest
-        List<DishEntity> featuredDishes = getFeaturedDishes(branchId);
-        featuredItems.addAll(clientMenuMapper.toClientMenuItemDTOList(featuredDishes));
-
-        // Get top combos by popularity or newest
-        List<ComboEntity> featuredCombos = getFeaturedCombos(branchId);
-        featuredItems.addAll(clientMenuMapper.toClientComboDTOList(featuredCombos));
-
-        // Sort by creation date and limit to 10
-        featuredItems.sort((a, b) -> {
-            if (a.getCreatedAt() == null && b.getCreatedAt() == null) return 0;
-            if (a.getCreatedAt() == null) return 1;
-            if (b.getCreatedAt() == null) return -1;
-            return b.getCreatedAt().compareTo(a.getCreatedAt());
-        });
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
-        return featuredItems.stream().limit(10).collect(Collectors.toList());
+        // Xếp hạng theo lượng bán gần đây, thiếu thì bổ sung món mới nhất
+        return featuredItemService.getFeaturedItems(snapshot, 10);
     }
 
     /**
      * Lấy menu filters với caching
      */
     // Removed cache annotation
-    @Transactional(readOnly = true)
     public ClientMenuFilterDTO getMenuFilters(Long branchId) {
         log.info("Fetching menu filters for branch: {}", branchId);
 
-        validateBranch(branchId);
+        MenuSnapshotService.MenuSnapshot snapshot = menuSnapshotService.getSnapshot(branchId);
 
         // Get categories with counts
         List<ClientCategoryWithCountsDTO> categoriesWithCounts = getCategoriesWithCounts(
-                branchId, "all", true, false, null);
+                snapshot, "all", true, false, null);
 
         // Convert to ClientCategoryDTO
         List<ClientCategoryDTO> categories = categoriesWithCounts.stream()
@@ -149,7 +114,7 @@ public class EnhancedMenuService {
                 .collect(Collectors.toList());
 
         // Calculate item counts
-        Map<String, Integer> itemCounts = calculateItemCounts(branchId);
+        Map<String, Integer> itemCounts = calculateItemCounts(snapshot);
 
         int totalItems = itemCounts.values().stream().mapToInt(Integer::intValue).sum();
 
@@ -187,20 +152,6 @@ public class EnhancedMenuService {
 
     // ========== PRIVATE HELPER METHODS ==========
 
-    private void validateBranch(Long branchId) {
-        if (branchId == null) {
-            throw new IllegalArgumentException("Branch ID is required");
-        }
-        
-        boolean branchExists = branchRepository.findById(branchId)
-                .map(branch -> BranchStatus.OPEN.equals(branch.getStatus()))
-                .orElse(false);
-        
-        if (!branchExists) {
-            throw new IllegalArgumentException("Branch not found or not active: " + branchId);
-        }
-    }
-
     private void validateType(String type) {
         if (type != null && !isValidType(type)) {
             throw new IllegalArgumentException("Invalid type: " + type);
@@ -218,18 +169,15 @@ public class EnhancedMenuService {
     }
 
     private List<ClientCategoryWithCountsDTO> getCategoriesWithCounts(
-            Long branchId, String type, Boolean includeCounts, Boolean showEmpty, String search) {
+            MenuSnapshotService.MenuSnapshot snapshot, String type, Boolean includeCounts, Boolean showEmpty, String search) {
         
-        List<CategoryEntity> allCategories = categoryRepository.findAll().stream()
-                .filter(category -> "ACTIVE".equals(category.getStatus()))
-                .collect(Collectors.toList());
+        List<CategoryEntity> allCategories = snapshot.getActiveCategories();
 
         // Apply search filter
         if (search != null && !search.trim().isEmpty()) {
-            String searchLower = search.toLowerCase();
+            String foldedSearch = MenuSearchIndex.fold(search);
             allCategories = allCategories.stream()
-                    .filter(category -> category.getName() != null &&
-                            category.getName().toLowerCase().contains(searchLower))
+                    .filter(category -> MenuSearchIndex.fold(category.getName()).contains(foldedSearch))
                     .collect(Collectors.toList());
         }
 
@@ -241,10 +189,11 @@ public class EnhancedMenuService {
 
             if (includeCounts != null && includeCounts) {
                 if ("food".equals(type) || "all".equals(type) || type == null) {
-                    foodCount = countDishesInCategoryForBranch(category.getId(), branchId);
+                    foodCount = snapshot.countAvailableDishes(category.getId());
                 }
                 if ("combo".equals(type) || "all".equals(type) || type == null) {
-                    comboCount = countCombosInCategoryForBranch(category.getId(), branchId);
+                    // Note: Combos don't have category relationship in current schema
+                    comboCount = snapshot.countAvailableCombos();
                 }
             }
 
@@ -255,98 +204,13 @@ public class EnhancedMenuService {
             }
 
             ClientCategoryWithCountsDTO categoryDTO = clientMenuMapper.toClientCategoryWithCountsDTO(
-                    category, branchId, foodCount, comboCount);
+                    category, snapshot.getBranchId(), foodCount, comboCount);
             result.add(categoryDTO);
         }
 
         return result;
     }
 
-    private List<DishEntity> getDishesWithFilters(Long branchId, Long categoryId, String search) {
-        return dishRepository.findByBranchId(branchId).stream()
-                .filter(dish -> ItemAvailabilityStatus.AVAILABLE.equals(dish.getAvailabilityStatus()) &&
-                        (categoryId == null || (dish.getCategory() != null && categoryId.equals(dish.getCategory().getId()))) &&
-                        (search == null || search.isEmpty() || 
-                                (dish.getName() != null && dish.getName().toLowerCase().contains(search.toLowerCase()))))
-                .collect(Collectors.toList());
-    }
-
-    private List<ComboEntity> getCombosWithFilters(Long branchId, Long categoryId, String search) {
-        return comboRepository.findByBranchId(branchId).stream()
-                .filter(combo -> ItemAvailabilityStatus.AVAILABLE.equals(combo.getAvailabilityStatus()) &&
-                        (search == null || search.isEmpty() || 
-                                (combo.getName() != null && combo.getName().toLowerCase().contains(search.toLowerCase()))))
-                .collect(Collectors.toList());
-    }
-
-    private List<DishEntity> getFeaturedDishes(Long branchId) {
-        return dishRepository.findByBranchId(branchId).stream()
-                .filter(dish -> ItemAvailabilityStatus.AVAILABLE.equals(dish.getAvailabilityStatus()))
-                .sorted((d1, d2) -> {
-                    if (d1.getCreatedAt() == null && d2.getCreatedAt() == null) return 0;
-                    if (d1.getCreatedAt() == null) return 1;
-                    if (d2.getCreatedAt() == null) return -1;
-                    return d2.getCreatedAt().compareTo(d1.getCreatedAt());
-                })
-                .limit(5)
-                .collect(Collectors.toList());
-    }
-
-    private List<ComboEntity> getFeaturedCombos(Long branchId) {
-        return comboRepository.findByBranchId(branchId).stream()
-                .filter(combo -> ItemAvailabilityStatus.AVAILABLE.equals(combo.getAvailabilityStatus()))
-                .sorted((c1, c2) -> {
-                    if (c1.getCreatedAt() == null && c2.getCreatedAt() == null) return 0;
-                    if (c1.getCreatedAt() == null) return 1;
-                    if (c2.getCreatedAt() == null) return -1;
-                    return c2.getCreatedAt().compareTo(c1.getCreatedAt());
-                })
-                .limit(5)
-                .collect(Collectors.toList());
-    }
-
-    private void applySorting(List<ClientMenuItemDTO> items, Sort sort) {
-        if (sort.isSorted()) {
-            items.sort((a, b) -> {
-                for (Sort.Order order : sort) {
-                    int comparison = compareItems(a, b, order.getProperty(), order.getDirection());
-                    if (comparison != 0) {
-                        return order.getDirection() == Sort.Direction.ASC ? comparison : -comparison;
-                    }
-                }
-                return 0;
-            });
-        }
-    }
-
-    private int compareItems(ClientMenuItemDTO a, ClientMenuItemDTO b, String property, Sort.Direction direction) {
-        switch (property) {
-            case "price":
-                return a.getPrice().compareTo(b.getPrice());
-            case "createdAt":
-                if (a.getCreatedAt() == null && b.getCreatedAt() == null) return 0;
-                if (a.getCreatedAt() == null) return 1;
-                if (b.getCreatedAt() == null) return -1;
-                return a.getCreatedAt().compareTo(b.getCreatedAt());
-            case "name":
-                return a.getName().compareTo(b.getName());
-            default:
-                return 0;
-        }
-    }
-
-    private Page<ClientMenuItemDTO> createPaginatedResult(List<ClientMenuItemDTO> items, Pageable pageable) {
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), items.size());
-        
-        if (start >= items.size()) {
-            return new PageImpl<>(new ArrayList<>(), pageable, items.size());
-        }
-        
-        List<ClientMenuItemDTO> pageContent = items.subList(start, end);
-        return new PageImpl<>(pageContent, pageable, items.size());
-    }
-
     private ClientCategoryDTO convertToClientCategoryDTO(ClientCategoryWithCountsDTO categoryWithCounts) {
         return ClientCategoryDTO.builder()
                 .id(categoryWithCounts.getId())
@@ -362,25 +226,10 @@ public class EnhancedMenuService {
                 .build();
     }
 
-    private Map<String, Integer> calculateItemCounts(Long branchId) {
+    private Map<String, Integer> calculateItemCounts(MenuSnapshotService.MenuSnapshot snapshot) {
         Map<String, Integer> itemCounts = new HashMap<>();
-        
-        List<DishEntity> dishes = getDishesWithFilters(branchId, null, null);
-        List<ComboEntity> combos = getCombosWithFilters(branchId, null, null);
-        
-        itemCounts.put("food", dishes.size());
-        itemCounts.put("combo", combos.size());
-        
+        itemCounts.put("food", snapshot.countAvailableDishes(null));
+        itemCounts.put("combo", snapshot.countAvailableCombos());
         return itemCounts;
     }
-
-    private Integer countDishesInCategoryForBranch(Long categoryId, Long branchId) {
-        return getDishesWithFilters(branchId, categoryId, null).size();
-    }
-
-    private Integer countCombosInCategoryForBranch(Long categoryId, Long branchId) {
-        // Note: Combos don't have category relationship in current schema
-        // This is a placeholder for future implementation
-        return getCombosWithFilters(branchId, null, null).size();
-    }
 }
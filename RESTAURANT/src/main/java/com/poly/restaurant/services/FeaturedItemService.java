@@ -0,0 +1,306 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.poly.restaurant.dtos.ClientMenuItemDTO;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.repositories.OrderItemRepository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Xếp hạng món nổi bật theo tốc độ bán gần đây của từng chi nhánh.
+ * Điểm = tổng số lượng bán, mỗi lượt bán giảm một nửa giá trị sau HALF_LIFE_HOURS.
+ * Bảng điểm được nạp từ order_items một lần cho mỗi chi nhánh, sau đó cộng dồn
+ * khi đơn được thanh toán; top-N luôn được tính sẵn nên đọc là O(1).
+ * Lượt bán đến trong lúc đang nạp được giữ lại và cộng vào sau khi nạp xong.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FeaturedItemService {
+
+    private static final double HALF_LIFE_HOURS = 72;
+    private static final double DECAY_PER_MILLI = Math.log(2) / (HALF_LIFE_HOURS * 3_600_000);
+    private static final int HISTORY_DAYS = 30;
+    private static final int TOP_N = 20;
+    // Khi exponent vượt ngưỡng này thì đưa mốc thời gian về hiện tại để tránh tràn số double
+    private static final double MAX_EXPONENT = 200;
+
+    private static final List<OrderStatus> SOLD_STATUSES = List.of(
+            OrderStatus.PAID, OrderStatus.COMPLETED, OrderStatus.DELIVERED);
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt");
+
+    private final OrderItemRepository orderItemRepository;
+
+    private final Map<Long, BranchRanking> rankings = new ConcurrentHashMap<>();
+    private final Map<Long, Object> loadLocks = new ConcurrentHashMap<>();
+    // Lượt bán của chi nhánh đang được nạp, cộng vào bảng điểm khi nạp xong
+    private final Map<Long, List<PendingSale>> salesDuringLoad = new ConcurrentHashMap<>();
+
+    /**
+     * Top món bán chạy (đã tính decay) của chi nhánh, tối đa TOP_N phần tử
+     */
+    public List<ItemKey> getTopItems(Long branchId) {
+        BranchRanking ranking = rankings.get(branchId);
+        return (ranking != null ? ranking : load(branchId)).getTop();
+    }
+
+    /**
+     * Đơn hàng chuyển sang trạng thái đã bán: cộng số lượng vào bảng điểm sau khi transaction commit.
+     * Chi nhánh chưa được nạp thì bỏ qua, dữ liệu sẽ có khi nạp từ database.
+     */
+    public void recordSale(Long orderId) {
+        if (orderId == null) {
+            return;
+        }
+        runAfterCommit(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                for (Object[] row : orderItemRepository.findSalesByOrderId(orderId)) {
+                    record((Long) row[0], new PendingSale(ItemKey.of((Long) row[1], (Long) row[2]),
+                            quantity(row[3]), now));
+                }
+            } catch (Exception e) {
+                log.error("Failed to record sale for order: {}", orderId, e);
+            }
+        });
+    }
+
+    /**
+     * Món nổi bật đang bán của snapshot: theo xếp hạng bán chạy, thiếu thì bổ sung món mới nhất
+     */
+    public List<ClientMenuItemDTO> getFeaturedItems(MenuSnapshotService.MenuSnapshot snapshot, int limit) {
+        Map<String, ClientMenuItemDTO> featured = new LinkedHashMap<>();
+        for (ItemKey key : getTopItems(snapshot.getBranchId())) {
+            if (featured.size() == limit) {
+                break;
+            }
+            ClientMenuItemDTO item = snapshot.findAvailableItem(key.getType(), key.getId());
+            if (item != null) {
+                featured.put(key.getType() + ":" + key.getId(), item);
+            }
+        }
+        if (featured.size() < limit) {
+            for (ClientMenuItemDTO item : snapshot.getSortedItems("all", null, NEWEST_FIRST)) {
+                if (featured.size() == limit) {
+                    break;
+                }
+                featured.putIfAbsent(item.getType() + ":" + item.getId(), item);
+            }
+        }
+        return new ArrayList<>(featured.values());
+    }
+
+    public static boolean isSold(OrderStatus status) {
+        return status != null && SOLD_STATUSES.contains(status);
+    }
+
+    private void record(Long branchId, PendingSale sale) {
+        // Đọc hàng chờ trước: bên nạp đặt bảng điểm vào map rồi mới gỡ hàng chờ, nên không lượt bán nào bị rơi
+        List<PendingSale> pending = salesDuringLoad.get(branchId);
+        if (pending != null) {
+            synchronized (pending) {
+                BranchRanking ranking = rankings.get(branchId);
+                if (ranking != null) {
+                    ranking.add(sale.key, sale.quantity, sale.soldAtMillis);
+                } else {
+                    pending.add(sale);
+                }
+            }
+            return;
+        }
+        BranchRanking ranking = rankings.get(branchId);
+        if (ranking != null) {
+            ranking.add(sale.key, sale.quantity, sale.soldAtMillis);
+        }
+    }
+
+    // Truy vấn database chạy ngoài map (không giữ khóa bin của ConcurrentHashMap), mỗi chi nhánh nạp một lần
+    private BranchRanking load(Long branchId) {
+        synchronized (loadLocks.computeIfAbsent(branchId, id -> new Object())) {
+            BranchRanking existing = rankings.get(branchId);
+            if (existing != null) {
+                return existing;
+            }
+            List<PendingSale> pending = new ArrayList<>();
+            salesDuringLoad.put(branchId, pending);
+            BranchRanking ranking;
+            try {
+                ranking = loadRanking(branchId);
+            } catch (RuntimeException e) {
+                salesDuringLoad.remove(branchId);
+                throw e;
+            }
+            synchronized (pending) {
+                rankings.put(branchId, ranking);
+                pending.forEach(sale -> ranking.add(sale.key, sale.quantity, sale.soldAtMillis));
+                salesDuringLoad.remove(branchId);
+            }
+            return ranking;
+        }
+    }
+
+    private BranchRanking loadRanking(Long branchId) {
+        BranchRanking ranking = new BranchRanking(System.currentTimeMillis());
+        LocalDateTime since = LocalDateTime.now().minusDays(HISTORY_DAYS);
+        List<Object[]> rows = orderItemRepository.findSalesByBranchSince(branchId, SOLD_STATUSES, since);
+        for (Object[] row : rows) {
+            LocalDateTime soldAt = (LocalDateTime) row[3];
+            long soldAtMillis = soldAt != null
+                    ? soldAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : ranking.epoch;
+            ranking.add(ItemKey.of((Long) row[0], (Long) row[1]), quantity(row[2]), soldAtMillis);
+        }
+        log.info("Loaded featured ranking for branch: {} from {} order items", branchId, rows.size());
+        return ranking;
+    }
+
+    private static int quantity(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class PendingSale {
+        private final ItemKey key;
+        private final int quantity;
+        private final long soldAtMillis;
+
+        private PendingSale(ItemKey key, int quantity, long soldAtMillis) {
+            this.key = key;
+            this.quantity = quantity;
+            this.soldAtMillis = soldAtMillis;
+        }
+    }
+
+    /**
+     * Món ăn ("food") hoặc combo ("combo") theo id
+     */
+    @Getter
+    public static final class ItemKey {
+        private final String type;
+        private final Long id;
+
+        private ItemKey(String type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        static ItemKey of(Long dishId, Long comboId) {
+            if (dishId != null) {
+                return new ItemKey("food", dishId);
+            }
+            return comboId != null ? new ItemKey("combo", comboId) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ItemKey)) {
+                return false;
+            }
+            ItemKey other = (ItemKey) o;
+            return type.equals(other.type) && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id);
+        }
+    }
+
+    /**
+     * Bảng điểm của một chi nhánh (forward decay): mỗi lượt bán lúc t được cộng
+     * quantity * e^(λ(t - epoch)), nên thứ tự giữa các món không đổi theo thời gian
+     * và không cần tính lại điểm khi đọc.
+     */
+    private static final class BranchRanking {
+        private long epoch;
+        private final Map<ItemKey, Double> scores = new HashMap<>();
+        private final TreeSet<ItemKey> ordered = new TreeSet<>(
+                Comparator.<ItemKey>comparingDouble(key -> -scores.get(key))
+                        .thenComparing(ItemKey::getType)
+                        .thenComparing(ItemKey::getId));
+        private volatile List<ItemKey> top = List.of();
+
+        private BranchRanking(long epoch) {
+            this.epoch = epoch;
+        }
+
+        List<ItemKey> getTop() {
+            return top;
+        }
+
+        synchronized void add(ItemKey key, int quantity, long soldAtMillis) {
+            if (key == null || quantity <= 0) {
+                return;
+            }
+            if (DECAY_PER_MILLI * (soldAtMillis - epoch) > MAX_EXPONENT) {
+                rebase(soldAtMillis);
+            }
+
+            double weight = quantity * Math.exp(DECAY_PER_MILLI * (soldAtMillis - epoch));
+            Double current = scores.get(key);
+            if (current != null) {
+                ordered.remove(key);
+            }
+            scores.put(key, (current != null ? current : 0) + weight);
+            ordered.add(key);
+
+            publishTop();
+        }
+
+        // Nhân mọi điểm với cùng một hệ số nên thứ tự không đổi
+        private void rebase(long newEpoch) {
+            double factor = Math.exp(-DECAY_PER_MILLI * (newEpoch - epoch));
+            List<ItemKey> keys = new ArrayList<>(ordered);
+            ordered.clear();
+            keys.forEach(key -> scores.computeIfPresent(key, (k, score) -> score * factor));
+            ordered.addAll(keys);
+            epoch = newEpoch;
+        }
+
+        private void publishTop() {
+            List<ItemKey> result = new ArrayList<>(TOP_N);
+            for (ItemKey key : ordered) {
+                if (result.size() == TOP_N) {
+                    break;
+                }
+                result.add(key);
+            }
+            top = List.copyOf(result);
+        }
+    }
+}
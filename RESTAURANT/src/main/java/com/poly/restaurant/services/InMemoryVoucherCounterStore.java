@@ -0,0 +1,134 @@
+package com.poly.restaurant.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bộ đếm voucher trong bộ nhớ, dùng khi chạy một instance và làm bản thay thế Redis khi test.
+ * Mỗi code có một AtomicLong riêng (used ở 32 bit cao, reserved ở 32 bit thấp) nên các code khác nhau
+ * không tranh chấp nhau, còn cùng một code thì giữ chỗ bằng CAS, không cần lock.
+ * Hạn của từng lượt giữ chỗ nằm trong map riêng; chỉ lượt nào gỡ được khỏi map mới được trừ khỏi reserved,
+ * nên xác nhận/trả lại/hết hạn không trừ trùng một lượt.
+ */
+@Component
+@ConditionalOnProperty(name = "voucher.counter.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryVoucherCounterStore implements VoucherCounterStore {
+
+    private static final long RESERVED_MASK = 0xFFFFFFFFL;
+
+    private final ConcurrentMap<String, CodeCounter> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void initIfAbsent(String code, long used) {
+        counters.computeIfAbsent(code, c -> new CodeCounter(used));
+    }
+
+    @Override
+    public boolean tryReserve(String code, String reservationId, long limit, long expiresAtMillis) {
+        CodeCounter counter = counter(code);
+        if (!reserve(counter.state, limit)) {
+            // Hết chỗ: dọn lượt giữ chỗ hết hạn rồi thử lại một lần
+            if (expireReservations(code, System.currentTimeMillis()) == 0 || !reserve(counter.state, limit)) {
+                return false;
+            }
+        }
+        counter.reservations.put(reservationId, expiresAtMillis);
+        return true;
+    }
+
+    @Override
+    public void confirm(String code, String reservationId) {
+        CodeCounter counter = counter(code);
+        boolean reserved = counter.reservations.remove(reservationId) != null;
+        counter.state.updateAndGet(state -> pack(used(state) + 1,
+                reserved ? Math.max(0, reserved(state) - 1) : reserved(state)));
+    }
+
+    @Override
+    public void release(String code, String reservationId) {
+        CodeCounter counter = counters.get(code);
+        if (counter != null && counter.reservations.remove(reservationId) != null) {
+            counter.releaseOne();
+        }
+    }
+
+    @Override
+    public long expireReservations(String code, long nowMillis) {
+        CodeCounter counter = counters.get(code);
+        if (counter == null) {
+            return 0;
+        }
+        long expired = 0;
+        for (Map.Entry<String, Long> entry : counter.reservations.entrySet()) {
+            if (entry.getValue() <= nowMillis && counter.reservations.remove(entry.getKey(), entry.getValue())) {
+                counter.releaseOne();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public Counter get(String code) {
+        CodeCounter counter = counters.get(code);
+        if (counter == null) {
+            return null;
+        }
+        long state = counter.state.get();
+        return new Counter(used(state), reserved(state));
+    }
+
+    @Override
+    public boolean compareAndSetUsed(String code, Counter expected, long used) {
+        CodeCounter counter = counters.get(code);
+        return counter != null && counter.state.compareAndSet(pack(expected.getUsed(), expected.getReserved()),
+                pack(used, expected.getReserved()));
+    }
+
+    private CodeCounter counter(String code) {
+        return counters.computeIfAbsent(code, c -> new CodeCounter(0));
+    }
+
+    private static boolean reserve(AtomicLong counter, long limit) {
+        while (true) {
+            long state = counter.get();
+            if (used(state) + reserved(state) >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(state, state + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static long pack(long used, long reserved) {
+        return (used << 32) | (reserved & RESERVED_MASK);
+    }
+
+    private static long used(long state) {
+        return state >>> 32;
+    }
+
+    private static long reserved(long state) {
+        return state & RESERVED_MASK;
+    }
+
+    private static final class CodeCounter {
+        private final AtomicLong state;
+        // reservationId -> thời điểm hết hạn
+        private final ConcurrentMap<String, Long> reservations = new ConcurrentHashMap<>();
+
+        private CodeCounter(long used) {
+            this.state = new AtomicLong(pack(used, 0));
+        }
+
+        private void releaseOne() {
+            state.updateAndGet(s -> pack(used(s), Math.max(0, reserved(s) - 1)));
+        }
+    }
+}
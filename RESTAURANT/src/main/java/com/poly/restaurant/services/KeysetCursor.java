@@ -0,0 +1,92 @@
+package com.poly.restaurant.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import lombok.Getter;
+
+/**
+ * Cursor cho phân trang keyset theo (createdAt DESC, id DESC).
+ * Client nhận chuỗi opaque và gửi lại nguyên vẹn để lấy trang tiếp theo.
+ * Lọc theo nhiều trạng thái thì chạy một lần seek cho mỗi trạng thái (index (branch_id, status, created_at, id))
+ * rồi trộn kết quả bằng merge, vì IN trên cột giữa index không seek theo created_at được.
+ */
+@Getter
+public final class KeysetCursor {
+
+    public static final Sort ORDER = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    private KeysetCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static String encode(LocalDateTime createdAt, Long id) {
+        String raw = (createdAt != null ? createdAt.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã cursor, trả về null khi không có cursor (trang đầu tiên)
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            String createdAt = raw.substring(0, separator);
+            return new KeysetCursor(createdAt.isEmpty() ? null : LocalDateTime.parse(createdAt),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Điều kiện "đứng sau cursor" theo (createdAt DESC, id DESC); null khi là trang đầu
+     */
+    public static <T> Specification<T> after(KeysetCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        if (cursor.createdAt == null) {
+            // NULL đứng cuối khi sắp xếp giảm dần
+            return (root, query, cb) -> cb.and(cb.isNull(root.get("createdAt")),
+                    cb.lessThan(root.<Long>get("id"), cursor.id));
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.<LocalDateTime>get("createdAt"), cursor.createdAt),
+                cb.isNull(root.get("createdAt")),
+                cb.and(cb.equal(root.get("createdAt"), cursor.createdAt), cb.lessThan(root.<Long>get("id"), cursor.id)));
+    }
+
+    /**
+     * Trộn các trang đã sắp theo (createdAt DESC, id DESC) của từng lần seek, giữ tối đa limit phần tử đầu
+     */
+    public static <T> List<T> merge(Collection<List<T>> pages, Function<T, LocalDateTime> createdAt,
+            Function<T, Long> id, int limit) {
+        List<T> merged = new ArrayList<>();
+        pages.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                .thenComparing(id, Comparator.reverseOrder()));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+}
@@ -0,0 +1,466 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.poly.restaurant.dtos.KitchenTicketDTO;
+import com.poly.restaurant.entities.OrderItemEntity;
+import com.poly.restaurant.entities.enums.OrderItemStatus;
+import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.repositories.OrderItemRepository;
+import com.poly.restaurant.repositories.OrderRepository;
+import com.poly.restaurant.sse.KitchenSseBroadcaster;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hàng đợi màn hình bếp giữ trong bộ nhớ theo chi nhánh: các món PENDING/CONFIRMED/IN_PROGRESS
+ * xếp theo thời gian gọi món. Nạp một lần từ DB khi khởi động, sau đó chỉ cập nhật từ sự kiện
+ * thay đổi món (sau khi transaction commit). Các thay đổi của một transaction được gộp thành một delta
+ * cho mỗi chi nhánh (tăng version một lần); client thấy version nhảy cóc thì tải lại snapshot.
+ */
+@Service
+@Slf4j
+public class KitchenDisplayService {
+
+    public static final List<OrderItemStatus> ACTIVE_STATUSES = List.of(OrderItemStatus.PENDING,
+            OrderItemStatus.CONFIRMED, OrderItemStatus.IN_PROGRESS);
+
+    private static final Comparator<KitchenTicketDTO> QUEUE_ORDER = Comparator
+            .comparing(KitchenTicketDTO::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(KitchenTicketDTO::getItemId);
+
+    private final OrderItemRepository orderItemRepository;
+    private final OrderRepository orderRepository;
+    private final OrderReadModel orderReadModel;
+    private final OutboxService outboxService;
+    private final KitchenSseBroadcaster kitchenSseBroadcaster;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, BranchQueue> queues = new ConcurrentHashMap<>();
+    private final Map<Long, BranchQueue> queueByItem = new ConcurrentHashMap<>();
+
+    public KitchenDisplayService(OrderItemRepository orderItemRepository, OrderRepository orderRepository,
+            @Lazy OrderReadModel orderReadModel, @Lazy OutboxService outboxService,
+            KitchenSseBroadcaster kitchenSseBroadcaster, PlatformTransactionManager transactionManager) {
+        this.orderItemRepository = orderItemRepository;
+        this.orderRepository = orderRepository;
+        this.orderReadModel = orderReadModel;
+        this.outboxService = outboxService;
+        this.kitchenSseBroadcaster = kitchenSseBroadcaster;
+        // apply/reload chạy trong afterCompletion của transaction nơi gọi: luôn mở transaction riêng,
+        // không tham gia transaction vừa kết thúc
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<KitchenTicketDTO> tickets = loadActiveTickets();
+        for (KitchenTicketDTO ticket : tickets) {
+            queueOf(ticket.getBranchId()).apply(List.of(new ItemChange(ticket)), false);
+        }
+        log.info("Loaded {} kitchen tickets for {} branches", tickets.size(), queues.size());
+    }
+
+    /**
+     * Nạp lại toàn bộ hàng đợi từ DB và gửi SNAPSHOT mới cho màn hình bếp; dùng khi áp dụng thay đổi thất bại
+     * (không biết chắc món nào đã vào hàng đợi, kể cả món mới chưa rõ chi nhánh)
+     */
+    public void reload() {
+        try {
+            Map<Long, List<KitchenTicketDTO>> byBranch = new HashMap<>();
+            queues.keySet().forEach(branchId -> byBranch.put(branchId, new ArrayList<>()));
+            for (KitchenTicketDTO ticket : loadActiveTickets()) {
+                byBranch.computeIfAbsent(ticket.getBranchId(), id -> new ArrayList<>()).add(ticket);
+            }
+            byBranch.forEach((branchId, tickets) -> queueOf(branchId).reset(tickets));
+            log.info("Reloaded kitchen queues for {} branches", byBranch.size());
+        } catch (Exception e) {
+            log.error("Error reloading kitchen queues: {}", e.getMessage(), e);
+        }
+    }
+
+    private List<KitchenTicketDTO> loadActiveTickets() {
+        return transactionTemplate.execute(status -> orderItemRepository
+                .findKitchenItemsByStatusIn(ACTIVE_STATUSES).stream()
+                .map(KitchenDisplayService::toTicket)
+                .toList());
+    }
+
+    /**
+     * Snapshot hàng đợi hiện tại của chi nhánh
+     */
+    public Map<String, Object> getQueue(Long branchId) {
+        return queueOf(branchId).snapshot();
+    }
+
+    /**
+     * Luồng SSE: SNAPSHOT trước, sau đó DELTA (danh sách UPSERT/REMOVE) kèm version tăng dần
+     */
+    public SseEmitter stream(Long branchId) {
+        BranchQueue queue = queueOf(branchId);
+        synchronized (queue) {
+            // Giữ khóa để không delta nào lọt giữa snapshot và lúc đăng ký
+            return kitchenSseBroadcaster.register(branchId, queue.snapshot());
+        }
+    }
+
+    /**
+     * Bếp đổi trạng thái một món: một câu UPDATE cho một dòng, một ô trong hàng đợi.
+     * Bước chuyển hợp lệ theo cùng bảng với OrderItemService, giới hạn trong các trạng thái đang chờ bếp.
+     */
+    @Transactional
+    public KitchenTicketDTO updateStatus(Long itemId, OrderItemStatus status) {
+        BranchQueue queue = queueByItem.get(itemId);
+        KitchenTicketDTO ticket = queue != null ? queue.get(itemId) : null;
+        if (ticket == null) {
+            throw new ResourceNotFoundException("Kitchen ticket not found for item: " + itemId);
+        }
+        List<OrderItemStatus> from = ACTIVE_STATUSES.stream()
+                .filter(OrderItemService.allowedSources(status)::contains)
+                .toList();
+        if (from.isEmpty()) {
+            throw new IllegalArgumentException("Không thể chuyển món sang trạng thái " + status);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean completed = status == OrderItemStatus.READY || status == OrderItemStatus.SERVED;
+        int updated = orderItemRepository.updateStatusIfIn(itemId, from, status, now, completed ? now : null);
+        if (updated == 0) {
+            throw new IllegalArgumentException("Không thể chuyển món " + itemId + " sang trạng thái " + status);
+        }
+        orderRepository.touchByIdIn(List.of(ticket.getOrderId()), now);
+
+        // UPDATE hàng loạt không đi qua entity listener: tự báo cho hàng đợi bếp, read model và màn hình staff
+        itemsChanged(List.of(itemId), status);
+        orderReadModel.orderChanged(ticket.getOrderId());
+        outboxService.sseEvent(ticket.getOrderId(),
+                "ORDER_ITEM_STATUS_UPDATED:" + ticket.getOrderId() + ":" + itemId + ":" + status.name());
+
+        KitchenTicketDTO result = copy(ticket);
+        result.setStatus(status);
+        return result;
+    }
+
+    /**
+     * Món vừa được thêm/sửa/xóa qua entity (OrderChangeListener); áp dụng sau khi transaction commit
+     */
+    public void itemChanged(OrderItemEntity item, boolean removed) {
+        ItemChange change = new ItemChange(item.getId(), removed ? null : item.getStatus(), item.getQuantity(),
+                item.getSpecialInstructions());
+        afterCommit(Map.of(item.getId(), change));
+    }
+
+    /**
+     * Trạng thái của các món đã được đổi bằng UPDATE hàng loạt; áp dụng sau khi transaction commit
+     */
+    public void itemsChanged(Collection<Long> itemIds, OrderItemStatus status) {
+        Map<Long, ItemChange> changes = new LinkedHashMap<>();
+        for (Long itemId : itemIds) {
+            changes.put(itemId, new ItemChange(itemId, status, null, null));
+        }
+        afterCommit(changes);
+    }
+
+    /**
+     * Các món đã được chuyển sang đơn khác (đổi đơn, bàn); ticket được nạp lại từ DB sau khi transaction commit
+     */
+    public void itemsMoved(Collection<Long> itemIds) {
+        Map<Long, ItemChange> changes = new LinkedHashMap<>();
+        for (Long itemId : itemIds) {
+            changes.put(itemId, ItemChange.reload(itemId));
+        }
+        afterCommit(changes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void afterCommit(Map<Long, ItemChange> changes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(changes.values());
+            return;
+        }
+        // Gom thay đổi trong cùng transaction, thay đổi sau cùng của một món thắng (trừ khi cần nạp lại từ DB)
+        Map<Long, ItemChange> pending = (Map<Long, ItemChange>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Long, ItemChange> collected = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, collected);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(KitchenDisplayService.this);
+                    if (status == STATUS_COMMITTED) {
+                        apply(collected.values());
+                    }
+                }
+            });
+            pending = collected;
+        }
+        for (Map.Entry<Long, ItemChange> entry : changes.entrySet()) {
+            pending.merge(entry.getKey(), entry.getValue(), ItemChange::then);
+        }
+    }
+
+    private void apply(Collection<ItemChange> changes) {
+        try {
+            // Món mới vào bếp: một truy vấn lấy tên món, bàn cho cả nhóm
+            List<Long> missing = new ArrayList<>();
+            for (ItemChange change : changes) {
+                if (change.reload || (change.isActive() && !queueByItem.containsKey(change.itemId))) {
+                    missing.add(change.itemId);
+                }
+            }
+            Map<Long, KitchenTicketDTO> loaded = new HashMap<>();
+            if (!missing.isEmpty()) {
+                transactionTemplate.execute(status -> orderItemRepository.findKitchenItemsByIdIn(missing).stream()
+                        .filter(item -> ACTIVE_STATUSES.contains(item.getStatus()))
+                        .map(KitchenDisplayService::toTicket)
+                        .toList())
+                        .forEach(ticket -> loaded.put(ticket.getItemId(), ticket));
+            }
+
+            Map<BranchQueue, List<ItemChange>> byQueue = new LinkedHashMap<>();
+            for (ItemChange change : changes) {
+                KitchenTicketDTO ticket = loaded.get(change.itemId);
+                BranchQueue current = queueByItem.get(change.itemId);
+                BranchQueue queue = ticket != null ? queueOf(ticket.getBranchId()) : current;
+                if (current != null && current != queue) {
+                    byQueue.computeIfAbsent(current, q -> new ArrayList<>()).add(ItemChange.removed(change.itemId));
+                }
+                if (queue == null) {
+                    continue;
+                }
+                ItemChange applied = ticket != null ? new ItemChange(ticket)
+                        : change.reload ? ItemChange.removed(change.itemId) : change;
+                byQueue.computeIfAbsent(queue, q -> new ArrayList<>()).add(applied);
+            }
+            byQueue.forEach((queue, queueChanges) -> queue.apply(queueChanges, true));
+        } catch (Exception e) {
+            log.error("Error applying kitchen queue changes, reloading queues: {}", e.getMessage(), e);
+            reload();
+        }
+    }
+
+    private BranchQueue queueOf(Long branchId) {
+        return queues.computeIfAbsent(branchId, BranchQueue::new);
+    }
+
+    private static KitchenTicketDTO toTicket(OrderItemEntity item) {
+        KitchenTicketDTO ticket = new KitchenTicketDTO();
+        ticket.setItemId(item.getId());
+        ticket.setOrderId(item.getOrder().getId());
+        ticket.setBranchId(item.getOrder().getBranch().getId());
+        if (item.getOrder().getTable() != null) {
+            ticket.setTableId(item.getOrder().getTable().getId());
+            ticket.setTableName(item.getOrder().getTable().getName());
+        } else {
+            ticket.setTableName("Khách lẻ");
+        }
+        if (item.getDish() != null) {
+            ticket.setDishId(item.getDish().getId());
+            ticket.setItemName(item.getDish().getName());
+        } else if (item.getCombo() != null) {
+            ticket.setComboId(item.getCombo().getId());
+            ticket.setItemName(item.getCombo().getName());
+        }
+        ticket.setQuantity(item.getQuantity());
+        ticket.setSpecialInstructions(item.getSpecialInstructions());
+        ticket.setStatus(item.getStatus());
+        ticket.setCreatedAt(item.getCreatedAt());
+        return ticket;
+    }
+
+    private static KitchenTicketDTO copy(KitchenTicketDTO source) {
+        KitchenTicketDTO ticket = new KitchenTicketDTO();
+        ticket.setItemId(source.getItemId());
+        ticket.setOrderId(source.getOrderId());
+        ticket.setBranchId(source.getBranchId());
+        ticket.setTableId(source.getTableId());
+        ticket.setTableName(source.getTableName());
+        ticket.setDishId(source.getDishId());
+        ticket.setComboId(source.getComboId());
+        ticket.setItemName(source.getItemName());
+        ticket.setQuantity(source.getQuantity());
+        ticket.setSpecialInstructions(source.getSpecialInstructions());
+        ticket.setStatus(source.getStatus());
+        ticket.setCreatedAt(source.getCreatedAt());
+        return ticket;
+    }
+
+    // Thay đổi của một món; status null nghĩa là món đã bị xóa, ticket có khi món vừa nạp đầy đủ từ DB,
+    // reload khi món đổi đơn/bàn và cần nạp lại ticket
+    private static final class ItemChange {
+        private final Long itemId;
+        private final OrderItemStatus status;
+        private final Integer quantity;
+        private final String specialInstructions;
+        private final KitchenTicketDTO ticket;
+        private final boolean reload;
+
+        private ItemChange(Long itemId, OrderItemStatus status, Integer quantity, String specialInstructions) {
+            this(itemId, status, quantity, specialInstructions, null, false);
+        }
+
+        private ItemChange(KitchenTicketDTO ticket) {
+            this(ticket.getItemId(), ticket.getStatus(), ticket.getQuantity(), ticket.getSpecialInstructions(),
+                    ticket, false);
+        }
+
+        private ItemChange(Long itemId, OrderItemStatus status, Integer quantity, String specialInstructions,
+                KitchenTicketDTO ticket, boolean reload) {
+            this.itemId = itemId;
+            this.status = status;
+            this.quantity = quantity;
+            this.specialInstructions = specialInstructions;
+            this.ticket = ticket;
+            this.reload = reload;
+        }
+
+        private static ItemChange removed(Long itemId) {
+            return new ItemChange(itemId, null, null, null);
+        }
+
+        private static ItemChange reload(Long itemId) {
+            return new ItemChange(itemId, null, null, null, null, true);
+        }
+
+        // Gộp với thay đổi đến sau: dữ liệu nạp lại từ DB đã bao gồm mọi thay đổi trong transaction
+        private ItemChange then(ItemChange next) {
+            return reload ? this : next;
+        }
+
+        private boolean isActive() {
+            return status != null && ACTIVE_STATUSES.contains(status);
+        }
+    }
+
+    /**
+     * Hàng đợi của một chi nhánh. Ticket trong hàng đợi không bị sửa tại chỗ (thay bằng bản sao)
+     * nên snapshot trả ra ngoài không cần sao chép sâu.
+     */
+    private final class BranchQueue {
+        private final Long branchId;
+        private final TreeSet<KitchenTicketDTO> ordered = new TreeSet<>(QUEUE_ORDER);
+        private final Map<Long, KitchenTicketDTO> byItem = new HashMap<>();
+        private long version;
+
+        private BranchQueue(Long branchId) {
+            this.branchId = branchId;
+        }
+
+        synchronized KitchenTicketDTO get(Long itemId) {
+            return byItem.get(itemId);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("branchId", branchId);
+            snapshot.put("version", version);
+            snapshot.put("tickets", new ArrayList<>(ordered));
+            return snapshot;
+        }
+
+        /**
+         * Áp dụng một nhóm thay đổi, phát đúng một delta (version + 1) liệt kê mọi ticket bị ảnh hưởng
+         */
+        synchronized void apply(List<ItemChange> changes, boolean publish) {
+            List<Map<String, Object>> applied = new ArrayList<>();
+            for (ItemChange change : changes) {
+                if (change.ticket != null) {
+                    put(change.ticket, applied);
+                } else if (!change.isActive()) {
+                    remove(change.itemId, applied);
+                } else {
+                    update(change, applied);
+                }
+            }
+            if (!publish || applied.isEmpty()) {
+                return;
+            }
+            version++;
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("version", version);
+            delta.put("changes", applied);
+            kitchenSseBroadcaster.emit(branchId, delta);
+        }
+
+        /**
+         * Thay toàn bộ hàng đợi bằng dữ liệu từ DB, tăng version và gửi SNAPSHOT cho các màn hình đang mở
+         */
+        synchronized void reset(List<KitchenTicketDTO> tickets) {
+            for (Long itemId : byItem.keySet()) {
+                queueByItem.remove(itemId, this);
+            }
+            byItem.clear();
+            ordered.clear();
+            List<Map<String, Object>> applied = new ArrayList<>();
+            tickets.forEach(ticket -> put(ticket, applied));
+            version++;
+            kitchenSseBroadcaster.resend(branchId, snapshot());
+        }
+
+        private void put(KitchenTicketDTO ticket, List<Map<String, Object>> applied) {
+            KitchenTicketDTO previous = byItem.put(ticket.getItemId(), ticket);
+            if (previous != null) {
+                ordered.remove(previous);
+            }
+            ordered.add(ticket);
+            queueByItem.put(ticket.getItemId(), this);
+            applied.add(change("UPSERT", ticket.getItemId(), ticket));
+        }
+
+        private void update(ItemChange change, List<Map<String, Object>> applied) {
+            KitchenTicketDTO current = byItem.get(change.itemId);
+            if (current == null) {
+                return;
+            }
+            KitchenTicketDTO updated = copy(current);
+            updated.setStatus(change.status);
+            if (change.quantity != null) {
+                updated.setQuantity(change.quantity);
+                updated.setSpecialInstructions(change.specialInstructions);
+            }
+            if (!updated.equals(current)) {
+                put(updated, applied);
+            }
+        }
+
+        private void remove(Long itemId, List<Map<String, Object>> applied) {
+            KitchenTicketDTO previous = byItem.remove(itemId);
+            queueByItem.remove(itemId, this);
+            if (previous != null) {
+                ordered.remove(previous);
+                applied.add(change("REMOVE", itemId, null));
+            }
+        }
+
+        private Map<String, Object> change(String type, Long itemId, KitchenTicketDTO ticket) {
+            Map<String, Object> change = new LinkedHashMap<>();
+            change.put("type", type);
+            change.put("itemId", itemId);
+            change.put("ticket", ticket);
+            return change;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.poly.restaurant.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.poly.restaurant.dtos.ClientMenuItemDTO;
+
+/**
+ * Chỉ mục tìm kiếm tên/mô tả món ăn và combo của một snapshot menu.
+ * Tên được bỏ dấu tiếng Việt trước khi index ("pho bo" khớp "Phở Bò"),
+ * mỗi từ của query khớp theo tiền tố, từ dài từ 4 ký tự được chấp nhận sai 1 ký tự.
+ * Bất biến sau khi build nên dùng chung giữa các request.
+ */
+public final class MenuSearchIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    // Điểm xếp hạng cho mỗi từ của query
+    private static final int SCORE_NAME_EXACT = 8;
+    private static final int SCORE_NAME_PREFIX = 6;
+    private static final int SCORE_NAME_FUZZY = 3;
+    private static final int SCORE_DESCRIPTION = 1;
+    private static final int SCORE_NAME_STARTS_WITH_QUERY = 10;
+
+    private final List<ClientMenuItemDTO> items;
+    private final String[] foldedNames;
+    private final Map<ClientMenuItemDTO, Integer> positions;
+    private final TokenIndex nameIndex;
+    private final TokenIndex descriptionIndex;
+
+    private MenuSearchIndex(List<ClientMenuItemDTO> items) {
+        this.items = items;
+        this.foldedNames = new String[items.size()];
+        this.positions = new IdentityHashMap<>(items.size() * 2);
+
+        Map<String, BitSet> namePostings = new HashMap<>();
+        Map<String, BitSet> descriptionPostings = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            ClientMenuItemDTO item = items.get(i);
+            positions.put(item, i);
+            foldedNames[i] = fold(item.getName());
+            addTokens(namePostings, foldedNames[i], i);
+            addTokens(descriptionPostings, fold(item.getDescription()), i);
+        }
+        this.nameIndex = new TokenIndex(namePostings);
+        this.descriptionIndex = new TokenIndex(descriptionPostings);
+    }
+
+    public static MenuSearchIndex build(List<ClientMenuItemDTO> items) {
+        return new MenuSearchIndex(List.copyOf(items));
+    }
+
+    /**
+     * Chuẩn hóa chuỗi để so khớp: bỏ dấu, đ -> d, chữ thường, chỉ giữ chữ/số cách nhau một khoảng trắng
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace('đ', 'd');
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    /**
+     * Lọc danh sách (đã sắp xếp) chỉ giữ item khớp query, giữ nguyên thứ tự ban đầu
+     */
+    public List<ClientMenuItemDTO> filter(List<ClientMenuItemDTO> sortedItems, String query) {
+        if (query == null || query.isBlank()) {
+            return sortedItems;
+        }
+        int[] scores = score(query);
+        if (scores == null) {
+            return sortedItems;
+        }
+        List<ClientMenuItemDTO> result = new ArrayList<>();
+        for (ClientMenuItemDTO item : sortedItems) {
+            Integer position = positions.get(item);
+            if (position != null && scores[position] > 0) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gợi ý autocomplete: item khớp query sắp theo điểm giảm dần, cùng điểm thì tên ngắn hơn trước
+     */
+    public List<ClientMenuItemDTO> suggest(String query, int limit) {
+        int[] scores = query == null ? null : score(query);
+        if (scores == null || limit <= 0) {
+            return List.of();
+        }
+        List<Integer> matched = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                matched.add(i);
+            }
+        }
+        matched.sort(Comparator.<Integer>comparingInt(i -> -scores[i])
+                .thenComparingInt(i -> foldedNames[i].length())
+                .thenComparingInt(i -> i));
+
+        List<ClientMenuItemDTO> result = new ArrayList<>(Math.min(limit, matched.size()));
+        for (int i = 0; i < matched.size() && result.size() < limit; i++) {
+            result.add(items.get(matched.get(i)));
+        }
+        return result;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Điểm của từng item với query (0 = không khớp), null nếu query không có từ nào sau khi chuẩn hóa.
+     * Mọi từ của query đều phải khớp (AND).
+     */
+    private int[] score(String query) {
+        String foldedQuery = fold(query);
+        if (foldedQuery.isEmpty()) {
+            return null;
+        }
+
+        int[] scores = new int[items.size()];
+        BitSet matched = null;
+        for (String term : foldedQuery.split(" ")) {
+            BitSet termMatches = new BitSet(items.size());
+
+            BitSet exact = nameIndex.exact(term);
+            BitSet prefix = nameIndex.prefix(term);
+            BitSet fuzzy = prefix.isEmpty() && term.length() >= MIN_FUZZY_LENGTH ? nameIndex.fuzzy(term) : new BitSet();
+            BitSet description = descriptionIndex.prefix(term);
+
+            addScore(scores, description, SCORE_DESCRIPTION, termMatches);
+            addScore(scores, fuzzy, SCORE_NAME_FUZZY, termMatches);
+            prefix.andNot(exact);
+            addScore(scores, prefix, SCORE_NAME_PREFIX, termMatches);
+            addScore(scores, exact, SCORE_NAME_EXACT, termMatches);
+
+            if (matched == null) {
+                matched = termMatches;
+            } else {
+                matched.and(termMatches);
+            }
+            if (matched.isEmpty()) {
+                return new int[items.size()];
+            }
+        }
+
+        for (int i = 0; i < scores.length; i++) {
+            if (!matched.get(i)) {
+                scores[i] = 0;
+            } else if (foldedNames[i].startsWith(foldedQuery)) {
+                scores[i] += SCORE_NAME_STARTS_WITH_QUERY;
+            }
+        }
+        return scores;
+    }
+
+    private static void addScore(int[] scores, BitSet hits, int points, BitSet termMatches) {
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+            scores[i] += points;
+        }
+        termMatches.or(hits);
+    }
+
+    private static void addTokens(Map<String, BitSet> postings, String foldedText, int position) {
+        if (foldedText.isEmpty()) {
+            return;
+        }
+        for (String token : foldedText.split(" ")) {
+            postings.computeIfAbsent(token, t -> new BitSet()).set(position);
+        }
+    }
+
+    /**
+     * Từ điển token đã sắp xếp, tra tiền tố bằng binary search
+     */
+    private static final class TokenIndex {
+        private final String[] tokens;
+        private final BitSet[] postings;
+        private final Map<Integer, List<Integer>> tokensByLength = new HashMap<>();
+
+        private TokenIndex(Map<String, BitSet> source) {
+            TreeMap<String, BitSet> sorted = new TreeMap<>(source);
+            this.tokens = sorted.keySet().toArray(new String[0]);
+            this.postings = sorted.values().toArray(new BitSet[0]);
+            for (int i = 0; i < tokens.length; i++) {
+                tokensByLength.computeIfAbsent(tokens[i].length(), l -> new ArrayList<>()).add(i);
+            }
+        }
+
+        BitSet exact(String term) {
+            int index = Arrays.binarySearch(tokens, term);
+            return index >= 0 ? (BitSet) postings[index].clone() : new BitSet();
+        }
+
+        BitSet prefix(String term) {
+            BitSet result = new BitSet();
+            int start = Arrays.binarySearch(tokens, term);
+            if (start < 0) {
+                start = -(start + 1);
+            }
+            for (int i = start; i < tokens.length && tokens[i].startsWith(term); i++) {
+                result.or(postings[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Token có khoảng cách sửa (thêm/xóa/thay/đảo 2 ký tự liền kề) không quá 1 so với term
+         */
+        BitSet fuzzy(String term) {
+            BitSet result = new BitSet();
+            for (int length = term.length() - 1; length <= term.length() + 1; length++) {
+                for (int i : tokensByLength.getOrDefault(length, Collections.emptyList())) {
+                    if (withinOneEdit(term, tokens[i])) {
+                        result.or(postings[i]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static boolean withinOneEdit(String a, String b) {
+            if (a.length() == b.length()) {
+                int first = -1;
+                int differences = 0;
+                for (int i = 0; i < a.length(); i++) {
+                    if (a.charAt(i) != b.charAt(i)) {
+                        if (++differences == 1) {
+                            first = i;
+                        } else if (differences > 2) {
+                            return false;
+                        }
+                    }
+                }
+                if (differences <= 1) {
+                    return true;
+                }
+                // Hai ký tự liền kề bị đảo chỗ
+                return first + 1 < a.length()
+                        && a.charAt(first) == b.charAt(first + 1)
+                        && a.charAt(first + 1) == b.charAt(first)
+                        && a.substring(first + 2).equals(b.substring(first + 2));
+            }
+
+            String shorter = a.length() < b.length() ? a : b;
+            String longer = a.length() < b.length() ? b : a;
+            int i = 0;
+            int j = 0;
+            boolean skipped = false;
+            while (i < shorter.length() && j < longer.length()) {
+                if (shorter.charAt(i) == longer.charAt(j)) {
+                    i++;
+                    j++;
+                } else if (skipped) {
+                    return false;
+                } else {
+                    skipped = true;
+                    j++;
+                }
+            }
+            return true;
+        }
+    }
+}
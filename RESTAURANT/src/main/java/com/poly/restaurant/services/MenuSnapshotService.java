@@ -0,0 +1,570 @@
+package com.poly.restaurant.services;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.poly.restaurant.dtos.ClientMenuItemDTO;
+import com.poly.restaurant.dtos.CursorPageDTO;
+import com.poly.restaurant.dtos.DiscountResponseDTO;
+import com.poly.restaurant.entities.BranchEntity;
+import com.poly.restaurant.entities.CategoryEntity;
+import com.poly.restaurant.entities.ComboEntity;
+import com.poly.restaurant.entities.DishEntity;
+import com.poly.restaurant.entities.enums.BranchStatus;
+import com.poly.restaurant.entities.enums.CategoryStatus;
+import com.poly.restaurant.entities.enums.ItemAvailabilityStatus;
+import com.poly.restaurant.mappers.ClientMenuMapper;
+import com.poly.restaurant.repositories.BranchRepository;
+import com.poly.restaurant.repositories.CategoryRepository;
+import com.poly.restaurant.repositories.ComboRepository;
+import com.poly.restaurant.repositories.DishRepository;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giữ snapshot menu bất biến theo từng chi nhánh cho các API menu phía khách.
+ * Snapshot được build một lần từ database rồi đọc trực tiếp từ bộ nhớ; mọi thay đổi
+ * món ăn/combo/discount/category sẽ loại bỏ snapshot sau khi transaction commit.
+ */
+@Service
+@Slf4j
+public class MenuSnapshotService {
+
+    // Số response JSON tối đa lưu trên mỗi snapshot
+    private static final int MAX_CACHED_RESPONSES = 512;
+    // Số danh sách đã sắp xếp tối đa lưu trên mỗi snapshot (khóa đã chuẩn hóa theo snapshot)
+    private static final int MAX_SORTED_VIEWS = 64;
+
+    private final BranchRepository branchRepository;
+    private final CategoryRepository categoryRepository;
+    private final DishRepository dishRepository;
+    private final ComboRepository comboRepository;
+    private final ClientMenuMapper clientMenuMapper;
+    private final DiscountIndex discountIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, MenuSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Lần build đang chạy theo chi nhánh: các request cùng lúc chờ chung một kết quả
+    private final Map<Long, CompletableFuture<MenuSnapshot>> rebuilds = new ConcurrentHashMap<>();
+
+    // Bộ đếm thay đổi: snapshot chỉ được lưu nếu không có thay đổi nào xảy ra trong lúc build
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final Map<Long, AtomicLong> branchGenerations = new ConcurrentHashMap<>();
+
+    // Version tăng dần, khởi tạo theo thời gian để không trùng lặp sau khi restart
+    private final AtomicLong versionSequence = new AtomicLong(System.currentTimeMillis());
+
+    public MenuSnapshotService(BranchRepository branchRepository, CategoryRepository categoryRepository,
+            DishRepository dishRepository, ComboRepository comboRepository, ClientMenuMapper clientMenuMapper,
+            DiscountIndex discountIndex, PlatformTransactionManager transactionManager) {
+        this.branchRepository = branchRepository;
+        this.categoryRepository = categoryRepository;
+        this.dishRepository = dishRepository;
+        this.comboRepository = comboRepository;
+        this.clientMenuMapper = clientMenuMapper;
+        this.discountIndex = discountIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Lấy snapshot của chi nhánh, build từ database nếu chưa có.
+     * Đọc từ bộ nhớ không mở transaction; chỉ lần build mới lấy connection, và mỗi chi nhánh
+     * chỉ có một lần build chạy tại một thời điểm.
+     * Ném IllegalArgumentException nếu chi nhánh không tồn tại hoặc không mở cửa.
+     */
+    public MenuSnapshot getSnapshot(Long branchId) {
+        if (branchId == null) {
+            throw new IllegalArgumentException("Branch ID is required");
+        }
+
+        MenuSnapshot current = currentSnapshot(branchId);
+        if (current != null) {
+            return current;
+        }
+
+        CompletableFuture<MenuSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<MenuSnapshot> running = rebuilds.putIfAbsent(branchId, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            MenuSnapshot rebuilt = rebuild(branchId);
+            mine.complete(rebuilt);
+            return rebuilt;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rebuilds.remove(branchId, mine);
+        }
+    }
+
+    /**
+     * Snapshot còn hiệu lực đang giữ trong bộ nhớ, null nếu cần build lại (không chạm database)
+     */
+    public MenuSnapshot currentSnapshot(Long branchId) {
+        MenuSnapshot current = branchId != null ? snapshots.get(branchId) : null;
+        return current != null && !current.isExpired(LocalDateTime.now()) ? current : null;
+    }
+
+    private MenuSnapshot rebuild(Long branchId) {
+        // Lần build trước có thể vừa xong ngay trước khi request này giành được quyền build
+        MenuSnapshot current = snapshots.get(branchId);
+        if (current != null && !current.isExpired(LocalDateTime.now())) {
+            return current;
+        }
+
+        long stamp = currentStamp(branchId);
+        MenuSnapshot built = transactionTemplate.execute(status -> buildSnapshot(branchId));
+
+        // Chỉ lưu khi không có invalidate nào xảy ra trong lúc build, tránh giữ dữ liệu cũ
+        MenuSnapshot installed = snapshots.compute(branchId, (id, existing) -> {
+            if (existing != null && existing != current) {
+                return existing;
+            }
+            return stamp == currentStamp(id) ? built : null;
+        });
+        return installed != null ? installed : built;
+    }
+
+    /**
+     * Loại bỏ snapshot của một chi nhánh sau khi transaction hiện tại commit
+     */
+    public void invalidate(Long branchId) {
+        if (branchId == null) {
+            invalidateAll();
+            return;
+        }
+        runAfterCommit(() -> {
+            branchGenerations.computeIfAbsent(branchId, id -> new AtomicLong()).incrementAndGet();
+            snapshots.remove(branchId);
+            log.debug("Menu snapshot invalidated for branch: {}", branchId);
+        });
+    }
+
+    /**
+     * Loại bỏ snapshot của tất cả chi nhánh (discount, category dùng chung nhiều chi nhánh)
+     */
+    public void invalidateAll() {
+        runAfterCommit(() -> {
+            globalGeneration.incrementAndGet();
+            snapshots.clear();
+            log.debug("All menu snapshots invalidated");
+        });
+    }
+
+    private static MenuSnapshot await(CompletableFuture<MenuSnapshot> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private long currentStamp(Long branchId) {
+        AtomicLong branchGeneration = branchGenerations.get(branchId);
+        return globalGeneration.get() + (branchGeneration != null ? branchGeneration.get() : 0L);
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private MenuSnapshot buildSnapshot(Long branchId) {
+        BranchEntity branch = branchRepository.findById(branchId)
+                .filter(b -> BranchStatus.OPEN.equals(b.getStatus()))
+                .orElseThrow(() -> new IllegalArgumentException("Branch not found or not active: " + branchId));
+
+        List<DishEntity> dishes = dishRepository.findByBranchIdOrderByCreatedAtDesc(branch.getId());
+        List<ComboEntity> combos = comboRepository.findByBranchIdOrderByCreatedAtDesc(branch.getId());
+        LocalDateTime now = LocalDateTime.now();
+        List<CategoryEntity> categories = categoryRepository.findAll().stream()
+                .filter(category -> CategoryStatus.ACTIVE.equals(category.getStatus()))
+                .collect(Collectors.toList());
+
+        Map<ItemAvailabilityStatus, List<ClientMenuItemDTO>> dishesByAvailability = new EnumMap<>(ItemAvailabilityStatus.class);
+        Map<Long, List<ClientMenuItemDTO>> availableDishesByCategory = new LinkedHashMap<>();
+        for (DishEntity dish : dishes) {
+            if (dish.getAvailabilityStatus() == null) {
+                continue;
+            }
+            ClientMenuItemDTO item = withDiscount(clientMenuMapper.toClientMenuItemDTO(dish),
+                    discountIndex.findBestForDish(dish.getId(), now));
+            dishesByAvailability.computeIfAbsent(dish.getAvailabilityStatus(), s -> new ArrayList<>()).add(item);
+            if (ItemAvailabilityStatus.AVAILABLE.equals(dish.getAvailabilityStatus()) && dish.getCategory() != null) {
+                availableDishesByCategory.computeIfAbsent(dish.getCategory().getId(), c -> new ArrayList<>()).add(item);
+            }
+        }
+
+        Map<ItemAvailabilityStatus, List<ClientMenuItemDTO>> combosByAvailability = new EnumMap<>(ItemAvailabilityStatus.class);
+        for (ComboEntity combo : combos) {
+            if (combo.getAvailabilityStatus() == null) {
+                continue;
+            }
+            combosByAvailability.computeIfAbsent(combo.getAvailabilityStatus(), s -> new ArrayList<>())
+                    .add(withDiscount(clientMenuMapper.toClientMenuItemDTO(combo),
+                            discountIndex.findBestForCombo(combo.getId(), now)));
+        }
+
+        // Chỉ index những item client nhìn thấy (AVAILABLE)
+        List<ClientMenuItemDTO> searchable = new ArrayList<>(
+                dishesByAvailability.getOrDefault(ItemAvailabilityStatus.AVAILABLE, List.of()));
+        searchable.addAll(combosByAvailability.getOrDefault(ItemAvailabilityStatus.AVAILABLE, List.of()));
+
+        // Giá giảm đúng cho tới mốc bắt đầu/kết thúc discount kế tiếp
+        MenuSnapshot snapshot = new MenuSnapshot(branch.getId(), versionSequence.incrementAndGet(), now,
+                discountIndex.nextChangeAfter(now),
+                freeze(dishesByAvailability), freeze(combosByAvailability), freeze(availableDishesByCategory),
+                List.copyOf(categories), MenuSearchIndex.build(searchable));
+
+        log.info("Built menu snapshot v{} for branch: {} ({} dishes, {} combos, {} categories)",
+                snapshot.getVersion(), branchId, dishes.size(), combos.size(), categories.size());
+        return snapshot;
+    }
+
+    // Giá giảm theo discount đang có hiệu lực lúc build (DiscountIndex), không theo discount_id đang gắn
+    private static ClientMenuItemDTO withDiscount(ClientMenuItemDTO item, Optional<DiscountResponseDTO> discount) {
+        BigDecimal basePrice = item.getBasePrice() != null ? item.getBasePrice() : BigDecimal.ZERO;
+        if (discount.isPresent() && discount.get().getNewPrice() != null) {
+            item.setDiscountAmount(basePrice.subtract(discount.get().getNewPrice()));
+            item.setDiscountStartDate(discount.get().getStartDate());
+            item.setDiscountEndDate(discount.get().getEndDate());
+            item.setDiscountActive(true);
+            item.setFinalPrice(discount.get().getNewPrice());
+        } else {
+            item.setDiscountAmount(BigDecimal.ZERO);
+            item.setDiscountStartDate(null);
+            item.setDiscountEndDate(null);
+            item.setDiscountActive(false);
+            item.setFinalPrice(basePrice);
+        }
+        return item;
+    }
+
+    private static <K> Map<K, List<ClientMenuItemDTO>> freeze(Map<K, List<ClientMenuItemDTO>> source) {
+        source.replaceAll((key, items) -> List.copyOf(items));
+        return Collections.unmodifiableMap(source);
+    }
+
+    /**
+     * Menu đã được map sẵn của một chi nhánh tại một thời điểm.
+     * Các DTO bên trong dùng chung giữa các request, không được chỉnh sửa trực tiếp.
+     */
+    @Getter
+    public static final class MenuSnapshot {
+        private final Long branchId;
+        private final long version;
+        private final String etag;
+        private final LocalDateTime builtAt;
+        private final LocalDateTime validUntil; // null = không có mốc discount nào phía trước
+        private final Map<ItemAvailabilityStatus, List<ClientMenuItemDTO>> dishesByAvailability;
+        private final Map<ItemAvailabilityStatus, List<ClientMenuItemDTO>> combosByAvailability;
+        private final Map<Long, List<ClientMenuItemDTO>> availableDishesByCategory;
+        private final List<CategoryEntity> activeCategories;
+        private final MenuSearchIndex searchIndex;
+
+        // Item AVAILABLE theo "type:id"
+        @Getter(AccessLevel.NONE)
+        private final Map<String, ClientMenuItemDTO> availableItemsByKey = new HashMap<>();
+
+        // Các danh sách đã sắp xếp theo (type, category, sort), tính một lần cho mỗi snapshot
+        @Getter(AccessLevel.NONE)
+        private final Map<String, List<ClientMenuItemDTO>> sortedViews = new ConcurrentHashMap<>();
+
+        // JSON đã serialize theo URL, tự mất khi snapshot bị thay thế
+        @Getter(AccessLevel.NONE)
+        private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+
+        private MenuSnapshot(Long branchId, long version, LocalDateTime builtAt, LocalDateTime validUntil,
+                Map<ItemAvailabilityStatus, List<ClientMenuItemDTO>> dishesByAvailability,
+                Map<ItemAvailabilityStatus, List<ClientMenuItemDTO>> combosByAvailability,
+                Map<Long, List<ClientMenuItemDTO>> availableDishesByCategory,
+                List<CategoryEntity> activeCategories, MenuSearchIndex searchIndex) {
+            this.branchId = branchId;
+            this.version = version;
+            this.etag = "\"menu-" + branchId + "-" + version + "\"";
+            this.builtAt = builtAt;
+            this.validUntil = validUntil;
+            this.dishesByAvailability = dishesByAvailability;
+            this.combosByAvailability = combosByAvailability;
+            this.availableDishesByCategory = availableDishesByCategory;
+            this.activeCategories = activeCategories;
+            this.searchIndex = searchIndex;
+            getAvailableDishes(null).forEach(item -> availableItemsByKey.put("food:" + item.getId(), item));
+            getAvailableCombos().forEach(item -> availableItemsByKey.put("combo:" + item.getId(), item));
+        }
+
+        public boolean isExpired(LocalDateTime now) {
+            return validUntil != null && !now.isBefore(validUntil);
+        }
+
+        /**
+         * Món ăn AVAILABLE, lọc theo category nếu có
+         */
+        public List<ClientMenuItemDTO> getAvailableDishes(Long categoryId) {
+            if (categoryId != null) {
+                return availableDishesByCategory.getOrDefault(categoryId, List.of());
+            }
+            return dishesByAvailability.getOrDefault(ItemAvailabilityStatus.AVAILABLE, List.of());
+        }
+
+        /**
+         * Combo AVAILABLE (combo chưa có quan hệ category nên không lọc theo category)
+         */
+        public List<ClientMenuItemDTO> getAvailableCombos() {
+            return combosByAvailability.getOrDefault(ItemAvailabilityStatus.AVAILABLE, List.of());
+        }
+
+        public ClientMenuItemDTO findAvailableItem(String type, Long id) {
+            return availableItemsByKey.get(type + ":" + id);
+        }
+
+        public int countAvailableDishes(Long categoryId) {
+            return getAvailableDishes(categoryId).size();
+        }
+
+        public int countAvailableCombos() {
+            return getAvailableCombos().size();
+        }
+
+        /**
+         * Món ăn và combo AVAILABLE gộp chung, sắp xếp theo thứ tự ổn định của sort
+         * (cùng giá trị thì food trước combo, sau đó theo id)
+         */
+        public List<ClientMenuItemDTO> getSortedItems(String type, Long categoryId, Sort sort) {
+            String viewType = type != null ? type : "all";
+            if (!"food".equals(viewType) && !"combo".equals(viewType) && !"all".equals(viewType)) {
+                throw new IllegalArgumentException("Invalid item type: " + type);
+            }
+            // Khóa chỉ gồm giá trị có trong snapshot: combo không lọc category, category không có món dùng chung
+            // một khóa, sort ghi theo thuộc tính/chiều đã được comparatorFor chấp nhận
+            Comparator<ClientMenuItemDTO> comparator = comparatorFor(sort);
+            String categoryKey = "combo".equals(viewType) || categoryId == null ? "-"
+                    : availableDishesByCategory.containsKey(categoryId) ? categoryId.toString() : "none";
+            StringBuilder key = new StringBuilder(viewType).append(':').append(categoryKey);
+            sort.forEach(order -> key.append(':').append(order.getProperty()).append(order.getDirection()));
+
+            List<ClientMenuItemDTO> cached = sortedViews.get(key.toString());
+            if (cached != null) {
+                return cached;
+            }
+            List<ClientMenuItemDTO> items = new ArrayList<>();
+            if ("food".equals(viewType) || "all".equals(viewType)) {
+                items.addAll(getAvailableDishes(categoryId));
+            }
+            if ("combo".equals(viewType) || "all".equals(viewType)) {
+                items.addAll(getAvailableCombos());
+            }
+            items.sort(comparator);
+            List<ClientMenuItemDTO> sorted = List.copyOf(items);
+            if (sortedViews.size() < MAX_SORTED_VIEWS) {
+                List<ClientMenuItemDTO> previous = sortedViews.putIfAbsent(key.toString(), sorted);
+                return previous != null ? previous : sorted;
+            }
+            return sorted;
+        }
+
+        public CachedResponse getCachedResponse(String key) {
+            return responses.get(key);
+        }
+
+        /**
+         * Lưu response đã serialize, bỏ qua khi đã đủ MAX_CACHED_RESPONSES
+         * (tránh phình bộ nhớ vì các từ khóa search tùy ý)
+         */
+        public void cacheResponse(String key, CachedResponse response) {
+            if (responses.size() < MAX_CACHED_RESPONSES) {
+                responses.putIfAbsent(key, response);
+            }
+        }
+    }
+
+    /**
+     * Body JSON (UTF-8) và content type của một response đã render
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class CachedResponse {
+        private final String contentType;
+        private final byte[] body;
+    }
+
+    // ========== PAGINATION ==========
+
+    /**
+     * Cắt một trang theo offset từ danh sách đã sắp xếp
+     */
+    public Page<ClientMenuItemDTO> toPage(List<ClientMenuItemDTO> sortedItems, Pageable pageable) {
+        int total = sortedItems.size();
+        long offset = pageable.getOffset();
+        if (offset >= total) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+        int start = (int) offset;
+        int end = Math.min(start + pageable.getPageSize(), total);
+        return new PageImpl<>(sortedItems.subList(start, end), pageable, total);
+    }
+
+    /**
+     * Cắt một trang theo keyset: lấy các item đứng sau cursor trong thứ tự sắp xếp.
+     * Cursor vẫn hợp lệ khi snapshot thay đổi vì vị trí được tìm bằng binary search theo giá trị.
+     */
+    public CursorPageDTO<ClientMenuItemDTO> toCursorPage(List<ClientMenuItemDTO> sortedItems, Sort sort,
+            String cursor, int size, boolean includeTotal) {
+        int start = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            ClientMenuItemDTO probe = decodeCursor(cursor, sort);
+            int index = Collections.binarySearch(sortedItems, probe, comparatorFor(sort));
+            start = index >= 0 ? index + 1 : -(index + 1);
+        }
+
+        int end = Math.min(start + size, sortedItems.size());
+        List<ClientMenuItemDTO> content = start < end ? sortedItems.subList(start, end) : List.of();
+        boolean hasNext = end < sortedItems.size();
+
+        return CursorPageDTO.<ClientMenuItemDTO>builder()
+                .content(content)
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext && !content.isEmpty() ? encodeCursor(content.get(content.size() - 1), sort) : null)
+                .totalElements(includeTotal ? Long.valueOf(sortedItems.size()) : null)
+                .build();
+    }
+
+    static Comparator<ClientMenuItemDTO> comparatorFor(Sort sort) {
+        Comparator<ClientMenuItemDTO> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<ClientMenuItemDTO> next = propertyComparator(order);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        Comparator<ClientMenuItemDTO> tieBreaker = Comparator
+                .comparing((ClientMenuItemDTO item) -> "combo".equals(item.getType()) ? 1 : 0)
+                .thenComparing(ClientMenuItemDTO::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+        return comparator == null ? tieBreaker : comparator.thenComparing(tieBreaker);
+    }
+
+    private static Comparator<ClientMenuItemDTO> propertyComparator(Sort.Order order) {
+        switch (order.getProperty()) {
+            case "price":
+                return nullsLast(ClientMenuItemDTO::getPrice, order.getDirection());
+            case "name":
+                return nullsLast(ClientMenuItemDTO::getName, order.getDirection());
+            case "popularity":
+                return nullsLast(ClientMenuItemDTO::getPopularity, order.getDirection());
+            case "createdAt":
+                return nullsLast(ClientMenuItemDTO::getCreatedAt, order.getDirection());
+            default:
+                throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+        }
+    }
+
+    // Giá trị null luôn đứng cuối dù sắp xếp tăng hay giảm
+    private static <T extends Comparable<? super T>> Comparator<ClientMenuItemDTO> nullsLast(
+            Function<ClientMenuItemDTO, T> getter, Sort.Direction direction) {
+        Comparator<T> valueOrder = direction.isAscending() ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        return Comparator.comparing(getter, Comparator.nullsLast(valueOrder));
+    }
+
+    private static String encodeCursor(ClientMenuItemDTO last, Sort sort) {
+        StringJoiner joiner = new StringJoiner("|");
+        joiner.add(encodePart(last.getType()));
+        joiner.add(encodePart(last.getId() != null ? last.getId().toString() : null));
+        for (Sort.Order order : sort) {
+            Object value;
+            switch (order.getProperty()) {
+                case "price": value = last.getPrice() != null ? last.getPrice().toPlainString() : null; break;
+                case "name": value = last.getName(); break;
+                case "popularity": value = last.getPopularity(); break;
+                case "createdAt": value = last.getCreatedAt(); break;
+                default: value = null;
+            }
+            joiner.add(encodePart(value != null ? value.toString() : null));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ClientMenuItemDTO decodeCursor(String cursor, Sort sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            List<Sort.Order> orders = sort.toList();
+            if (parts.length != orders.size() + 2) {
+                throw new IllegalArgumentException("Cursor does not match sort: " + sort);
+            }
+
+            ClientMenuItemDTO probe = new ClientMenuItemDTO();
+            probe.setType(decodePart(parts[0]));
+            String id = decodePart(parts[1]);
+            probe.setId(id != null ? Long.valueOf(id) : null);
+            for (int i = 0; i < orders.size(); i++) {
+                String value = decodePart(parts[i + 2]);
+                switch (orders.get(i).getProperty()) {
+                    case "price": probe.setPrice(value != null ? new BigDecimal(value) : null); break;
+                    case "name": probe.setName(value); break;
+                    case "popularity": probe.setPopularity(value != null ? Integer.valueOf(value) : null); break;
+                    case "createdAt": probe.setCreatedAt(value != null ? LocalDateTime.parse(value) : null); break;
+                    default: break;
+                }
+            }
+            return probe;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    private static String encodePart(String value) {
+        return value == null ? "" : URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String decodePart(String value) {
+        return value.isEmpty() ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
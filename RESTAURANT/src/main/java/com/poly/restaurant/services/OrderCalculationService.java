@@ -2,29 +2,79 @@ package com.poly.restaurant.services;
 
 import com.poly.restaurant.entities.OrderEntity;
 import com.poly.restaurant.entities.DiscountEntity;
+import com.poly.restaurant.entities.OrderItemEntity;
+import com.poly.restaurant.entities.enums.OrderStatus;
 import com.poly.restaurant.repositories.OrderRepository;
 import com.poly.restaurant.repositories.OrderItemRepository;
-import lombok.RequiredArgsConstructor;
+import com.poly.restaurant.utils.PriceUtils;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
-@RequiredArgsConstructor
 public class OrderCalculationService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderCalculationService.class);
 
+    private static final long VERIFY_INTERVAL_MS = 10 * 60 * 1000; // 10 phút
+
+    // Chỉ sửa lệch cho đơn còn đang phục vụ; đơn đã chốt chỉ ghi log
+    static final List<OrderStatus> OPEN_STATUSES = List.of(OrderStatus.PENDING, OrderStatus.CONFIRMED,
+            OrderStatus.PREPARING, OrderStatus.READY_FOR_PICKUP, OrderStatus.COD_PENDING);
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    // Job kiểm tra gọi calculateOrderTotal từ trong class nên không đi qua proxy @Transactional
+    private final TransactionTemplate transactionTemplate;
     // private final OrderDiscountService orderDiscountService; // Đã xóa service này
 
+    public OrderCalculationService(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+            PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Số tiền một món đóng góp vào tổng đơn (finalPrice nếu có, không thì totalPrice), tính bằng VND
+     */
+    public static long contributionOf(OrderItemEntity item) {
+        if (item.getFinalPrice() != null) {
+            return PriceUtils.toVnd(item.getFinalPrice());
+        }
+        if (item.getTotalPrice() != null) {
+            return PriceUtils.toVnd(item.getTotalPrice());
+        }
+        if (item.getUnitPrice() != null && item.getQuantity() != null) {
+            return PriceUtils.lineTotal(PriceUtils.toVnd(item.getUnitPrice()), item.getQuantity());
+        }
+        return 0;
+    }
+
+    /**
+     * Cộng chênh lệch vào tổng tiền đơn trong cùng transaction với thay đổi món.
+     * Order có @Version nên hai transaction cùng sửa một đơn sẽ không ghi đè tổng của nhau.
+     */
+    @Transactional
+    public void applyDelta(OrderEntity order, long deltaVnd) {
+        if (deltaVnd == 0) {
+            return;
+        }
+        long total = PriceUtils.toVnd(order.getTotalAmount()) + deltaVnd;
+        order.setTotalAmount(PriceUtils.toDecimal(total));
+        logger.debug("Order {} total adjusted by {} to {}", order.getId(), deltaVnd, total);
+    }
+
     /**
-     * Tính toán và cập nhật tổng tiền đơn hàng
+     * Tính lại toàn bộ tổng tiền đơn hàng từ các món (dùng khi sửa lệch)
      */
     @Transactional
     public void calculateOrderTotal(Long orderId) {
@@ -33,21 +83,12 @@ public class OrderCalculationService {
         OrderEntity order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
 
-        // Tính tổng tiền từ các items (sử dụng finalPrice nếu có discount, totalPrice nếu không)
-        BigDecimal subtotal = orderItemRepository.findByOrderId(orderId)
-                .stream()
-                .map(item -> {
-                    if (item.getFinalPrice() != null) {
-                        // Có discount, sử dụng finalPrice
-                        logger.debug("Item {} using final price: {}", item.getId(), item.getFinalPrice());
-                        return item.getFinalPrice();
-                    } else {
-                        // Không có discount, sử dụng totalPrice
-                        logger.debug("Item {} using total price: {}", item.getId(), item.getTotalPrice());
-                        return item.getTotalPrice();
-                    }
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Cộng dồn bằng số nguyên VND, chỉ đổi sang BigDecimal một lần khi ghi vào order
+        long subtotalVnd = 0;
+        for (OrderItemEntity item : orderItemRepository.findByOrderId(orderId)) {
+            subtotalVnd += contributionOf(item);
+        }
+        BigDecimal subtotal = PriceUtils.toDecimal(subtotalVnd);
 
         // Tính discount cho đơn hàng
         BigDecimal discountAmount = BigDecimal.ZERO;
@@ -65,9 +106,42 @@ public class OrderCalculationService {
         logger.info("Order {} calculated - Subtotal: {}, Discount: {}, Total: {}", 
                 orderId, subtotal, discountAmount, totalAmount);
     }
-}
-
-
-
-
 
+    /**
+     * Đối chiếu tổng tiền của các đơn vừa thay đổi với tổng các món bằng một truy vấn GROUP BY.
+     * Đơn còn mở bị lệch được tính lại; đơn đã chốt chỉ ghi cảnh báo.
+     */
+    @Scheduled(fixedDelay = VERIFY_INTERVAL_MS, initialDelay = VERIFY_INTERVAL_MS)
+    public void verifyRecentOrderTotals() {
+        // Cửa sổ gấp đôi chu kỳ để không bỏ sót đơn sửa ngay lúc job chạy
+        LocalDateTime since = LocalDateTime.now().minusNanos(VERIFY_INTERVAL_MS * 2 * 1_000_000);
+        try {
+            int drifted = 0;
+            for (Object[] row : orderRepository.findItemTotalsUpdatedSince(since)) {
+                Long orderId = (Long) row[0];
+                long stored = PriceUtils.toVnd((BigDecimal) row[1]);
+                long expected = row[2] != null ? PriceUtils.toVnd((BigDecimal) row[2]) : 0;
+                if (stored == expected) {
+                    continue;
+                }
+                drifted++;
+                OrderStatus status = (OrderStatus) row[3];
+                if (OPEN_STATUSES.contains(status)) {
+                    logger.warn("Order {} total drifted (stored {}, items {}), recalculating", orderId, stored, expected);
+                    try {
+                        transactionTemplate.executeWithoutResult(tx -> calculateOrderTotal(orderId));
+                    } catch (Exception e) {
+                        // Đơn đang được sửa đồng thời: để lần kiểm tra sau xử lý
+                        logger.warn("Could not repair total of order {}: {}", orderId, e.getMessage());
+                    }
+                } else {
+                    logger.warn("Closed order {} ({}) total differs from items: stored {}, items {}",
+                            orderId, status, stored, expected);
+                }
+            }
+            logger.debug("Verified order totals since {}, {} drifted", since, drifted);
+        } catch (Exception e) {
+            logger.error("Error verifying order totals: {}", e.getMessage(), e);
+        }
+    }
+}
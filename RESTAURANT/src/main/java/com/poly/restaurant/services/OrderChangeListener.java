@@ -0,0 +1,49 @@
+package com.poly.restaurant.services;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.OrderItemEntity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA entity listener của OrderEntity/OrderItemEntity: báo cho OrderReadModel đơn hàng nào vừa thay đổi
+ * và cho KitchenDisplayService món nào vừa thay đổi. Hibernate lấy listener từ Spring nên inject được bean.
+ */
+@Component
+public class OrderChangeListener {
+
+    private final OrderReadModel orderReadModel;
+    private final KitchenDisplayService kitchenDisplayService;
+
+    public OrderChangeListener(@Lazy OrderReadModel orderReadModel, @Lazy KitchenDisplayService kitchenDisplayService) {
+        this.orderReadModel = orderReadModel;
+        this.kitchenDisplayService = kitchenDisplayService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onChange(Object entity) {
+        changed(entity, false);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        changed(entity, true);
+    }
+
+    private void changed(Object entity, boolean removed) {
+        if (entity instanceof OrderEntity order) {
+            orderReadModel.orderChanged(order.getId());
+        } else if (entity instanceof OrderItemEntity item) {
+            if (item.getOrder() != null) {
+                orderReadModel.orderChanged(item.getOrder().getId());
+            }
+            kitchenDisplayService.itemChanged(item, removed);
+        }
+    }
+}
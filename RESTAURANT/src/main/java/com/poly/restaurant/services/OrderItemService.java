@@ -14,29 +14,70 @@ import com.poly.restaurant.repositories.OrderRepository;
 import com.poly.restaurant.repositories.DishRepository;
 import com.poly.restaurant.repositories.ComboRepository;
 import com.poly.restaurant.repositories.DiscountRepository;
-import lombok.RequiredArgsConstructor;
+import com.poly.restaurant.utils.PriceUtils;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class OrderItemService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderItemService.class);
 
+    // Trạng thái nguồn hợp lệ cho từng trạng thái đích khi đổi hàng loạt
+    private static final Map<OrderItemStatus, Set<OrderItemStatus>> ALLOWED_SOURCES = new EnumMap<>(OrderItemStatus.class);
+
+    static {
+        ALLOWED_SOURCES.put(OrderItemStatus.PENDING, Set.of());
+        ALLOWED_SOURCES.put(OrderItemStatus.CONFIRMED, Set.of(OrderItemStatus.PENDING));
+        ALLOWED_SOURCES.put(OrderItemStatus.IN_PROGRESS, Set.of(OrderItemStatus.PENDING, OrderItemStatus.CONFIRMED));
+        ALLOWED_SOURCES.put(OrderItemStatus.READY, Set.of(OrderItemStatus.PENDING, OrderItemStatus.CONFIRMED,
+                OrderItemStatus.IN_PROGRESS));
+        ALLOWED_SOURCES.put(OrderItemStatus.SERVED, Set.of(OrderItemStatus.PENDING, OrderItemStatus.CONFIRMED,
+                OrderItemStatus.IN_PROGRESS, OrderItemStatus.READY));
+        ALLOWED_SOURCES.put(OrderItemStatus.CANCELLED, Set.of(OrderItemStatus.PENDING, OrderItemStatus.CONFIRMED));
+    }
+
     private final OrderItemRepository orderItemRepository;
     private final OrderRepository orderRepository;
     private final DishRepository dishRepository;
     private final ComboRepository comboRepository;
     private final DiscountRepository discountRepository;
     private final OrderCalculationService orderCalculationService;
+    private final DiscountIndex discountIndex;
+    private final KitchenDisplayService kitchenDisplayService;
+    private final OrderReadModel orderReadModel;
+    private final OutboxService outboxService;
+
+    public OrderItemService(OrderItemRepository orderItemRepository, OrderRepository orderRepository,
+            DishRepository dishRepository, ComboRepository comboRepository, DiscountRepository discountRepository,
+            OrderCalculationService orderCalculationService, DiscountIndex discountIndex,
+            @Lazy KitchenDisplayService kitchenDisplayService, @Lazy OrderReadModel orderReadModel,
+            @Lazy OutboxService outboxService) {
+        this.orderItemRepository = orderItemRepository;
+        this.orderRepository = orderRepository;
+        this.dishRepository = dishRepository;
+        this.comboRepository = comboRepository;
+        this.discountRepository = discountRepository;
+        this.orderCalculationService = orderCalculationService;
+        this.discountIndex = discountIndex;
+        this.kitchenDisplayService = kitchenDisplayService;
+        this.orderReadModel = orderReadModel;
+        this.outboxService = outboxService;
+    }
 
     /**
      * Thêm món ăn vào đơn hàng
@@ -58,7 +99,7 @@ public class OrderItemService {
         orderItem.setCreatedAt(LocalDateTime.now());
         orderItem.setUpdatedAt(LocalDateTime.now());
 
-        BigDecimal unitPrice = BigDecimal.ZERO;
+        long unitPrice = 0;
 
         // Xử lý dish hoặc combo
         if (request.getDishId() != null) {
@@ -70,20 +111,16 @@ public class OrderItemService {
 
             // Tính giá từ Dish (đã chứa price trực tiếp)
             if (request.getUnitPrice() != null) {
-                unitPrice = BigDecimal.valueOf(request.getUnitPrice());
+                unitPrice = PriceUtils.toVnd(request.getUnitPrice());
             } else {
-                unitPrice = dish.getBasePrice();
+                unitPrice = PriceUtils.toVnd(dish.getBasePrice());
             }
             
-            // Tự động áp dụng discount nếu dish có discount
-            if (dish.getDiscount() != null && dish.getDiscount().getStatus().toString().equals("ACTIVE")) {
-                // Kiểm tra discount có còn hiệu lực không
-                LocalDateTime now = LocalDateTime.now();
-                if (dish.getDiscount().getStartDate().isBefore(now) && dish.getDiscount().getEndDate().isAfter(now)) {
-                    orderItem.setDiscount(dish.getDiscount());
-                    logger.info("Auto-applying discount {} to dish {}", dish.getDiscount().getId(), dish.getId());
-                }
-            }
+            // Tự động áp dụng discount đang có hiệu lực của dish
+            discountIndex.findBestForDish(dish.getId(), LocalDateTime.now()).ifPresent(discount -> {
+                orderItem.setDiscount(discountRepository.getReferenceById(discount.getId()));
+                logger.info("Auto-applying discount {} to dish {}", discount.getId(), dish.getId());
+            });
         } else if (request.getComboId() != null) {
             // Xử lý combo
             ComboEntity combo = comboRepository.findById(request.getComboId())
@@ -93,34 +130,29 @@ public class OrderItemService {
 
             // Tính giá từ Combo
             if (request.getUnitPrice() != null) {
-                unitPrice = BigDecimal.valueOf(request.getUnitPrice());
+                unitPrice = PriceUtils.toVnd(request.getUnitPrice());
             } else {
-                unitPrice = combo.getBasePrice();
+                unitPrice = PriceUtils.toVnd(combo.getBasePrice());
             }
             
-            // Tự động áp dụng discount nếu combo có discount
-            if (combo.getDiscount() != null && combo.getDiscount().getStatus().toString().equals("ACTIVE")) {
-                // Kiểm tra discount có còn hiệu lực không
-                LocalDateTime now = LocalDateTime.now();
-                if (combo.getDiscount().getStartDate().isBefore(now) && combo.getDiscount().getEndDate().isAfter(now)) {
-                    orderItem.setDiscount(combo.getDiscount());
-                    logger.info("Auto-applying discount {} to combo {}", combo.getDiscount().getId(), combo.getId());
-                }
-            }
+            // Tự động áp dụng discount đang có hiệu lực của combo
+            discountIndex.findBestForCombo(combo.getId(), LocalDateTime.now()).ifPresent(discount -> {
+                orderItem.setDiscount(discountRepository.getReferenceById(discount.getId()));
+                logger.info("Auto-applying discount {} to combo {}", discount.getId(), combo.getId());
+            });
         } else {
             throw new IllegalArgumentException("Either dishId or comboId must be provided");
         }
 
-        orderItem.setUnitPrice(unitPrice);
-        orderItem.setTotalPrice(unitPrice.multiply(BigDecimal.valueOf(request.getQuantity())));
+        long totalPrice = PriceUtils.lineTotal(unitPrice, request.getQuantity());
+        long discountAmount = 0;
 
         // Xử lý khuyến mãi nếu có (từ dish/combo hoặc từ request)
         if (orderItem.getDiscount() != null) {
             // Đã có discount từ dish/combo, tính giá cuối cùng
-            BigDecimal discountAmount = calculateDiscountAmount(orderItem.getTotalPrice(), orderItem.getDiscount());
-            orderItem.setDiscountAmount(discountAmount);
-            orderItem.setFinalPrice(orderItem.getTotalPrice().subtract(discountAmount));
-            logger.info("Applied discount {} to order item, final price: {}", orderItem.getDiscount().getId(), orderItem.getFinalPrice());
+            discountAmount = calculateDiscountAmount(totalPrice, orderItem.getDiscount());
+            logger.info("Applied discount {} to order item, final price: {}", orderItem.getDiscount().getId(),
+                    totalPrice - discountAmount);
         } else if (request.getDiscountId() != null) {
             DiscountEntity discount = discountRepository.findById(request.getDiscountId())
                     .orElseThrow(() -> new ResourceNotFoundException(
@@ -128,25 +160,18 @@ public class OrderItemService {
             orderItem.setDiscount(discount);
 
             // Tính giá sau khuyến mãi
-            BigDecimal discountAmount = calculateDiscountAmount(orderItem.getTotalPrice(), discount);
-            orderItem.setDiscountAmount(discountAmount);
-            orderItem.setFinalPrice(orderItem.getTotalPrice().subtract(discountAmount));
+            discountAmount = calculateDiscountAmount(totalPrice, discount);
         } else if (request.getDiscountPercentage() != null && request.getDiscountPercentage() > 0) {
             // Xử lý discount percentage từ frontend
-            BigDecimal discountAmount = orderItem.getTotalPrice()
-                    .multiply(BigDecimal.valueOf(request.getDiscountPercentage()))
-                    .divide(BigDecimal.valueOf(100));
-            orderItem.setDiscountAmount(discountAmount);
-            orderItem.setFinalPrice(orderItem.getTotalPrice().subtract(discountAmount));
-        } else {
-            orderItem.setFinalPrice(orderItem.getTotalPrice());
+            discountAmount = PriceUtils.percentOf(totalPrice, PriceUtils.toBasisPoints(request.getDiscountPercentage()));
         }
+        setPrices(orderItem, unitPrice, totalPrice, discountAmount);
 
         OrderItemEntity savedItem = orderItemRepository.save(orderItem);
         logger.info("Item added successfully with ID: {}", savedItem.getId());
 
-        // Tính toán lại tổng tiền đơn hàng
-        orderCalculationService.calculateOrderTotal(request.getOrderId());
+        // Cộng phần tiền của món mới vào tổng đơn
+        orderCalculationService.applyDelta(order, totalPrice - discountAmount);
 
         return mapToResponseDTO(savedItem);
     }
@@ -168,19 +193,19 @@ public class OrderItemService {
             throw new IllegalStateException("Cannot update item that is already being prepared or served");
         }
 
+        long previousContribution = OrderCalculationService.contributionOf(orderItem);
+
         // Cập nhật thông tin
         orderItem.setQuantity(request.getQuantity());
         orderItem.setSpecialInstructions(request.getSpecialInstructions());
         orderItem.setUpdatedAt(LocalDateTime.now());
 
         // Cập nhật giá nếu có
-        if (request.getUnitPrice() != null) {
-            BigDecimal unitPrice = BigDecimal.valueOf(request.getUnitPrice());
-            orderItem.setUnitPrice(unitPrice);
-            orderItem.setTotalPrice(unitPrice.multiply(BigDecimal.valueOf(request.getQuantity())));
-        } else {
-            orderItem.setTotalPrice(orderItem.getUnitPrice().multiply(BigDecimal.valueOf(request.getQuantity())));
-        }
+        long unitPrice = request.getUnitPrice() != null
+                ? PriceUtils.toVnd(request.getUnitPrice())
+                : PriceUtils.toVnd(orderItem.getUnitPrice());
+        long totalPrice = PriceUtils.lineTotal(unitPrice, request.getQuantity());
+        long discountAmount = 0;
 
         // Cập nhật khuyến mãi nếu có
         if (request.getDiscountId() != null) {
@@ -189,18 +214,19 @@ public class OrderItemService {
                             "Discount not found with id: " + request.getDiscountId()));
             orderItem.setDiscount(discount);
 
-            BigDecimal discountAmount = calculateDiscountAmount(orderItem.getTotalPrice(), discount);
-            orderItem.setDiscountAmount(discountAmount);
-            orderItem.setFinalPrice(orderItem.getTotalPrice().subtract(discountAmount));
-        } else {
-            orderItem.setDiscountAmount(BigDecimal.ZERO);
-            orderItem.setFinalPrice(orderItem.getTotalPrice());
+            discountAmount = calculateDiscountAmount(totalPrice, discount);
         }
+        setPrices(orderItem, unitPrice, totalPrice, discountAmount);
 
         OrderItemEntity savedItem = orderItemRepository.save(orderItem);
         
-        // Tính toán lại tổng tiền đơn hàng
-        orderCalculationService.calculateOrderTotal(request.getOrderId());
+        // Cộng phần chênh lệch của món vào tổng đơn
+        orderCalculationService.applyDelta(savedItem.getOrder(),
+                totalPrice - discountAmount - previousContribution);
+
+        // Sự kiện SSE ghi vào outbox cùng transaction
+        Long orderId = savedItem.getOrder().getId();
+        outboxService.sseEvent(orderId, "ORDER_ITEM_UPDATED:" + orderId + ":" + savedItem.getId());
         
         return mapToResponseDTO(savedItem);
     }
@@ -230,8 +256,9 @@ public class OrderItemService {
         orderItemRepository.delete(orderItem);
         logger.info("Item removed successfully");
         
-        // Tính toán lại tổng tiền đơn hàng
-        orderCalculationService.calculateOrderTotal(orderId);
+        // Trừ phần tiền của món khỏi tổng đơn
+        orderCalculationService.applyDelta(orderItem.getOrder(), -OrderCalculationService.contributionOf(orderItem));
+        outboxService.sseEvent(orderId, "ORDER_ITEM_REMOVED:" + orderId + ":" + itemId);
     }
 
     /**
@@ -248,6 +275,11 @@ public class OrderItemService {
         if (!orderItem.getOrder().getId().equals(orderId)) {
             throw new IllegalArgumentException("Order item does not belong to the specified order");
         }
+        // Cùng bảng chuyển trạng thái với đổi hàng loạt
+        if (orderItem.getStatus() != status && !allowedSources(status).contains(orderItem.getStatus())) {
+            throw new IllegalArgumentException("Không thể chuyển món từ trạng thái " + orderItem.getStatus()
+                    + " sang " + status);
+        }
 
         orderItem.setStatus(status);
         orderItem.setUpdatedAt(LocalDateTime.now());
@@ -257,6 +289,7 @@ public class OrderItemService {
         }
 
         OrderItemEntity savedItem = orderItemRepository.save(orderItem);
+        outboxService.sseEvent(orderId, "ORDER_ITEM_STATUS_UPDATED:" + orderId + ":" + itemId + ":" + status.name());
         return mapToResponseDTO(savedItem);
     }
 
@@ -264,18 +297,73 @@ public class OrderItemService {
      * Cập nhật trạng thái tất cả món ăn trong đơn hàng
      */
     @Transactional
-    public void updateAllOrderItemsStatus(Long orderId, OrderItemStatus status) {
-        logger.info("Updating all items status to: {} in order: {}", status, orderId);
-
-        List<OrderItemEntity> items = orderItemRepository.findByOrderId(orderId);
-        for (OrderItemEntity item : items) {
-            item.setStatus(status);
-            item.setUpdatedAt(LocalDateTime.now());
-            if (status == OrderItemStatus.READY || status == OrderItemStatus.SERVED) {
-                item.setCompletedAt(LocalDateTime.now());
-            }
+    public Map<String, Object> updateAllOrderItemsStatus(Long orderId, OrderItemStatus status) {
+        return updateItemsStatus(null, List.of(orderId), null, status);
+    }
+
+    /**
+     * Đổi trạng thái hàng loạt: theo danh sách đơn (orderIds) hoặc danh sách món (itemIds), có thể giới hạn
+     * trong một chi nhánh. Món không ở trạng thái nguồn hợp lệ được bỏ qua. Một câu UPDATE cho cả nhóm
+     * và một sự kiện SSE gộp: "ORDER_ITEMS_STATUS_UPDATED:{status}:{orderId}={itemId},{itemId};..."
+     */
+    @Transactional
+    public Map<String, Object> updateItemsStatus(Long branchId, Collection<Long> orderIds, Collection<Long> itemIds,
+            OrderItemStatus status) {
+        boolean byOrder = orderIds != null && !orderIds.isEmpty();
+        boolean byItem = itemIds != null && !itemIds.isEmpty();
+        if (status == null || byOrder == byItem) {
+            throw new IllegalArgumentException("Cần trạng thái và đúng một trong hai danh sách orderIds hoặc itemIds");
+        }
+        Set<OrderItemStatus> from = allowedSources(status);
+        if (from.isEmpty()) {
+            throw new IllegalArgumentException("Không thể chuyển món sang trạng thái " + status);
+        }
+        logger.info("Bulk updating items to {} (branch: {}, orders: {}, items: {})", status, branchId,
+                orderIds, itemIds);
+
+        // Chọn và khóa các món đang ở trạng thái nguồn, rồi đổi đúng các món đó bằng một câu UPDATE theo id
+        List<String> fromNames = from.stream().map(Enum::name).toList();
+        List<Object[]> candidates = byOrder
+                ? orderItemRepository.lockCandidatesByOrderIdIn(orderIds, fromNames, branchId)
+                : orderItemRepository.lockCandidatesByIdIn(itemIds, fromNames, branchId);
+        Map<Long, List<Long>> itemsByOrder = new TreeMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (Object[] row : candidates) {
+            Long itemId = ((Number) row[0]).longValue();
+            ids.add(itemId);
+            itemsByOrder.computeIfAbsent(((Number) row[1]).longValue(), k -> new ArrayList<>()).add(itemId);
         }
-        orderItemRepository.saveAll(items);
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean completed = status == OrderItemStatus.READY || status == OrderItemStatus.SERVED;
+        int updated = ids.isEmpty() ? 0
+                : orderItemRepository.updateStatusByIdIn(ids, from, status, now, completed ? now : null);
+
+        if (!itemsByOrder.isEmpty()) {
+            orderRepository.touchByIdIn(itemsByOrder.keySet(), now);
+
+            // UPDATE hàng loạt không đi qua entity listener: tự báo cho hàng đợi bếp, read model và màn hình staff
+            kitchenDisplayService.itemsChanged(ids, status);
+            itemsByOrder.keySet().forEach(orderReadModel::orderChanged);
+            StringBuilder event = new StringBuilder("ORDER_ITEMS_STATUS_UPDATED:").append(status.name()).append(':');
+            itemsByOrder.forEach((orderId, orderItemIds) -> event.append(orderId).append('=')
+                    .append(orderItemIds.stream().map(String::valueOf).collect(Collectors.joining(","))).append(';'));
+            event.setLength(event.length() - 1);
+            outboxService.sseEvent(itemsByOrder.keySet().iterator().next(), event.toString());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", status);
+        result.put("updatedCount", updated);
+        result.put("items", itemsByOrder);
+        return result;
+    }
+
+    /**
+     * Các trạng thái được phép chuyển sang status (rỗng nếu không trạng thái nào)
+     */
+    public static Set<OrderItemStatus> allowedSources(OrderItemStatus status) {
+        return ALLOWED_SOURCES.getOrDefault(status, Set.of());
     }
 
     /**
@@ -294,10 +382,20 @@ public class OrderItemService {
     /**
      * Tính toán số tiền giảm giá
      */
-    private BigDecimal calculateDiscountAmount(BigDecimal totalPrice, DiscountEntity discount) {
+    private long calculateDiscountAmount(long totalPrice, DiscountEntity discount) {
         // Với hệ thống mới, discount chỉ có newPrice
         // Không cần tính toán phức tạp, chỉ cần trả về số tiền giảm
-        return BigDecimal.ZERO; // Sẽ được tính ở frontend dựa trên newPrice
+        return 0; // Sẽ được tính ở frontend dựa trên newPrice
+    }
+
+    /**
+     * Ghi giá (VND) vào các cột của món; chỉ chuyển sang BigDecimal tại đây
+     */
+    private static void setPrices(OrderItemEntity orderItem, long unitPrice, long totalPrice, long discountAmount) {
+        orderItem.setUnitPrice(PriceUtils.toDecimal(unitPrice));
+        orderItem.setTotalPrice(PriceUtils.toDecimal(totalPrice));
+        orderItem.setDiscountAmount(PriceUtils.toDecimal(discountAmount));
+        orderItem.setFinalPrice(PriceUtils.toDecimal(totalPrice - discountAmount));
     }
 
     /**
@@ -0,0 +1,429 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poly.restaurant.dtos.OrderResponseDTO;
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.OrderSearchTokenEntity;
+import com.poly.restaurant.entities.OrderViewEntity;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.repositories.OrderSearchTokenRepository;
+import com.poly.restaurant.repositories.OrderViewRepository;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read model cho danh sách/tìm kiếm đơn hàng của staff và admin (bảng order_view).
+ * Thay đổi đơn hàng/món được ghi nhận qua OrderChangeListener; sau khi transaction commit id đơn chỉ được
+ * xếp cho luồng nền dựng lại (request không giữ thêm connection). Outbox gọi refreshIfStale trước khi gửi
+ * thông báo của đơn, nên client tải lại danh sách khi nhận SSE/WebSocket vẫn thấy dữ liệu mới.
+ * Đơn bị xóa qua entity cũng đi đường này và bản đọc được xóa theo.
+ * Các truy vấn đọc chỉ chạm order_view nên không tranh chấp với luồng ghi đơn hàng.
+ */
+@Service
+@Slf4j
+public class OrderReadModel {
+
+    private static final long REFRESH_DELAY_MS = 100;
+    private static final long RECONCILE_INTERVAL_MS = 5 * 60 * 1000; // 5 phút
+    // Cửa sổ gấp đôi chu kỳ để không bỏ sót đơn sửa ngay lúc job chạy
+    private static final long RECONCILE_WINDOW_MS = RECONCILE_INTERVAL_MS * 2;
+    private static final int REFRESH_CHUNK_SIZE = 200;
+    // Khoảng id mỗi lượt quét bản đọc mồ côi lúc khởi động
+    private static final long ORPHAN_SCAN_RANGE = 10_000;
+
+    // Tìm kiếm: chuỗi chỉ gồm số (có thể kèm #, +, dấu cách, chấm, gạch) là id đơn hoặc số điện thoại
+    private static final Pattern NUMBER_QUERY = Pattern.compile("[#+]?[\\d\\s.\\-()]+");
+    private static final Pattern NON_DIGIT = Pattern.compile("\\D+");
+    private static final int MIN_PHONE_DIGITS = 3;
+    private static final int MAX_QUERY_WORDS = 4;
+    private static final int MAX_TOKEN_LENGTH = 50;
+    private static final int MAX_TOKENS_PER_ORDER = 64;
+
+    private static final List<OrderStatus> SETTLED_STATUSES = List.of(OrderStatus.PAID, OrderStatus.COMPLETED);
+
+    private final OrderViewRepository orderViewRepository;
+    private final OrderSearchTokenRepository orderSearchTokenRepository;
+    private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-read-model");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderReadModel(OrderViewRepository orderViewRepository,
+            OrderSearchTokenRepository orderSearchTokenRepository, OrderService orderService, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.orderViewRepository = orderViewRepository;
+        this.orderSearchTokenRepository = orderSearchTokenRepository;
+        this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Đơn hàng chưa thanh toán trong ngày của chi nhánh
+     */
+    public List<OrderResponseDTO> getTodayUnpaidOrders(Long branchId) {
+        return orderViewRepository.findCreatedSinceExcludingStatuses(branchId, LocalDate.now().atStartOfDay(),
+                SETTLED_STATUSES).stream()
+                .map(this::read)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Danh sách đơn hàng mới nhất trước; branchId/status/search có thể null.
+     * search dạng số khớp đúng id đơn, đầu hoặc đuôi số điện thoại (từ 3 chữ số);
+     * search dạng chữ khớp theo tiền tố từng từ của tên người nhận, địa chỉ, email, tên bàn (không dấu).
+     * Mọi điều kiện đều chạy trên index, không có LIKE '%...%'.
+     */
+    public Page<OrderResponseDTO> findOrders(Long branchId, OrderStatus status, String search, Pageable pageable) {
+        Pageable newestFirst = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "createdAt", "orderId"));
+        return orderViewRepository.findAll(searchSpec(branchId, status, search), newestFirst).map(this::read);
+    }
+
+    /**
+     * Đánh dấu đơn hàng cần dựng lại bản đọc; luồng nền nhận việc sau khi transaction hiện tại commit
+     */
+    @SuppressWarnings("unchecked")
+    public void orderChanged(Long orderId) {
+        if (orderId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(List.of(orderId));
+            return;
+        }
+        // Gom các đơn thay đổi trong cùng transaction, chỉ đăng ký một synchronization
+        Set<Long> changed = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (changed == null) {
+            Set<Long> ids = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(ids);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OrderReadModel.this);
+                }
+            });
+            changed = ids;
+        }
+        changed.add(orderId);
+    }
+
+    /**
+     * Dựng lại bản đọc của các đơn nếu còn cũ; outbox gọi trước khi gửi thông báo của đơn
+     * để thông báo không bao giờ đến trước bản đọc (kể cả khi lượt quét định kỳ nhận việc trước afterCommit)
+     */
+    public void refreshIfStale(Long orderId) {
+        refreshIfStale(List.of(orderId));
+    }
+
+    // Chỉ dựng lại đơn có bản đọc cũ/chưa có, và đơn đã bị xóa mà bản đọc còn (refreshChunk xóa bản đọc đó)
+    private void refreshIfStale(Collection<Long> orderIds) {
+        Set<Long> ids = new LinkedHashSet<>(orderViewRepository.findStaleOrderIdsIn(orderIds));
+        ids.addAll(orderViewRepository.findOrphanedOrderIdsIn(orderIds));
+        if (!ids.isEmpty()) {
+            refresh(new ArrayList<>(ids));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        // Lúc khởi động quét toàn bộ một lần (restart giữa chừng, dữ liệu cũ chưa có bản đọc, đơn bị xóa bằng SQL)
+        worker.execute(() -> {
+            reconcile(orderViewRepository::findStaleOrderIds);
+            removeOrphans();
+        });
+    }
+
+    /**
+     * Dựng lại bản đọc còn thiếu/cũ của các đơn thay đổi gần đây. Bản đọc của đơn bị xóa được dọn
+     * ngay khi xóa (OrderChangeListener) và lúc khởi động, không quét ở đây.
+     */
+    @Scheduled(fixedDelay = RECONCILE_INTERVAL_MS, initialDelay = RECONCILE_INTERVAL_MS)
+    public void reconcile() {
+        LocalDateTime since = LocalDateTime.now().minusNanos(RECONCILE_WINDOW_MS * 1_000_000);
+        reconcile(() -> orderViewRepository.findStaleOrderIdsUpdatedSince(since));
+    }
+
+    private void reconcile(Supplier<List<Long>> staleOrders) {
+        try {
+            List<Long> stale = staleOrders.get();
+            if (!stale.isEmpty()) {
+                refresh(stale);
+            }
+            log.info("Reconciled order read model: {} refreshed", stale.size());
+        } catch (Exception e) {
+            log.error("Error reconciling order read model: {}", e.getMessage(), e);
+        }
+    }
+
+    // Quét bản đọc mồ côi theo từng khoảng id để mỗi truy vấn chỉ chạm một đoạn khóa chính
+    private void removeOrphans() {
+        try {
+            Long maxId = orderViewRepository.findMaxOrderId();
+            int removed = 0;
+            for (long from = 0; maxId != null && from < maxId; from += ORPHAN_SCAN_RANGE) {
+                List<Long> orphaned = orderViewRepository.findOrphanedOrderIdsBetween(from, from + ORPHAN_SCAN_RANGE);
+                if (!orphaned.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        orderViewRepository.deleteAllByIdInBatch(orphaned);
+                        orderSearchTokenRepository.deleteByOrderIdIn(orphaned);
+                    });
+                    removed += orphaned.size();
+                }
+            }
+            log.info("Removed {} orphaned order views", removed);
+        } catch (Exception e) {
+            log.error("Error removing orphaned order views: {}", e.getMessage(), e);
+        }
+    }
+
+    private void enqueue(Collection<Long> orderIds) {
+        pending.addAll(orderIds);
+        if (drainScheduled.compareAndSet(false, true)) {
+            worker.schedule(this::drain, REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        List<Long> ids = new ArrayList<>(pending);
+        pending.removeAll(ids);
+        try {
+            refreshIfStale(ids);
+        } catch (Exception e) {
+            log.error("Error refreshing order read model for {} orders: {}", ids.size(), e.getMessage(), e);
+        }
+    }
+
+    private void refresh(List<Long> orderIds) {
+        for (int from = 0; from < orderIds.size(); from += REFRESH_CHUNK_SIZE) {
+            List<Long> chunk = orderIds.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, orderIds.size()));
+            transactionTemplate.executeWithoutResult(status -> refreshChunk(chunk));
+        }
+    }
+
+    // Bốn truy vấn đọc cho cả lô: bản đọc, token hiện có, rồi đơn hàng (kèm quan hệ) và món qua OrderService.mapOrders
+    private void refreshChunk(List<Long> orderIds) {
+        Map<Long, OrderViewEntity> views = new HashMap<>();
+        orderViewRepository.findAllById(orderIds).forEach(view -> views.put(view.getOrderId(), view));
+        Map<Long, List<OrderSearchTokenEntity>> tokensByOrder = orderSearchTokenRepository.findByOrderIdIn(orderIds)
+                .stream()
+                .collect(Collectors.groupingBy(OrderSearchTokenEntity::getOrderId));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderSearchTokenEntity> addedTokens = new ArrayList<>();
+        List<OrderSearchTokenEntity> removedTokens = new ArrayList<>();
+        List<OrderViewEntity> changed = orderService.mapOrders(orderIds, (order, dto) -> {
+            OrderViewEntity view = views.remove(order.getId());
+            if (view == null) {
+                view = new OrderViewEntity();
+                view.setOrderId(order.getId());
+            }
+            view.setBranchId(dto.getBranchId());
+            view.setStatus(dto.getStatus());
+            view.setCreatedAt(dto.getCreatedAt());
+            String phone = phoneDigits(order.getCustomerPhone() != null || order.getDeliveryAddress() == null
+                    ? order.getCustomerPhone()
+                    : order.getDeliveryAddress().getPhoneNumber());
+            view.setPhone(phone);
+            view.setPhoneReversed(phone != null ? new StringBuilder(phone).reverse().toString() : null);
+            view.setOrderVersion(order.getVersion());
+            view.setPayload(write(dto));
+            view.setRefreshedAt(now);
+
+            // Chỉ ghi phần token thay đổi; đổi trạng thái/món không đụng tới bảng token
+            Set<String> wanted = searchTokens(order);
+            for (OrderSearchTokenEntity token : tokensByOrder.getOrDefault(order.getId(), List.of())) {
+                if (!wanted.remove(token.getToken())) {
+                    removedTokens.add(token);
+                }
+            }
+            tokensByOrder.remove(order.getId());
+            wanted.forEach(token -> addedTokens.add(new OrderSearchTokenEntity(order.getId(), token)));
+            return view;
+        });
+        orderViewRepository.saveAll(changed);
+
+        // Những bản đọc/token còn lại thuộc đơn hàng đã bị xóa
+        if (!views.isEmpty()) {
+            orderViewRepository.deleteAllByIdInBatch(views.keySet());
+        }
+        tokensByOrder.values().forEach(removedTokens::addAll);
+        if (!removedTokens.isEmpty()) {
+            orderSearchTokenRepository.deleteAllInBatch(removedTokens);
+        }
+        orderSearchTokenRepository.saveAll(addedTokens);
+    }
+
+    private static Specification<OrderViewEntity> searchSpec(Long branchId, OrderStatus status, String search) {
+        Specification<OrderViewEntity> spec = Specification.where(null);
+        if (branchId != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("branchId"), branchId));
+        }
+        if (status != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), status));
+        }
+        if (search == null || search.isBlank()) {
+            return spec;
+        }
+
+        if (NUMBER_QUERY.matcher(search.trim()).matches()) {
+            String digits = phoneDigits(search);
+            if (digits == null) {
+                return spec;
+            }
+            String reversed = new StringBuilder(digits).reverse().toString();
+            return spec.and((root, query, cb) -> {
+                List<Predicate> any = new ArrayList<>(3);
+                if (digits.length() <= 18) {
+                    any.add(cb.equal(root.get("orderId"), Long.parseLong(digits)));
+                }
+                if (digits.length() >= MIN_PHONE_DIGITS) {
+                    any.add(cb.like(root.get("phone"), digits + "%"));
+                    any.add(cb.like(root.get("phoneReversed"), reversed + "%"));
+                }
+                return cb.or(any.toArray(new Predicate[0]));
+            });
+        }
+
+        // Mỗi từ phải khớp tiền tố của ít nhất một token của đơn
+        for (String word : queryWords(search)) {
+            spec = spec.and((root, query, cb) -> {
+                Subquery<Long> matching = query.subquery(Long.class);
+                Root<OrderSearchTokenEntity> token = matching.from(OrderSearchTokenEntity.class);
+                matching.select(token.get("orderId")).where(cb.like(token.get("token"), word + "%"));
+                return root.get("orderId").in(matching);
+            });
+        }
+        return spec;
+    }
+
+    // Các từ của chuỗi tìm kiếm đã bỏ dấu, tối đa MAX_QUERY_WORDS từ
+    static Set<String> queryWords(String search) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : MenuSearchIndex.fold(search).split(" ")) {
+            if (!word.isEmpty() && words.size() < MAX_QUERY_WORDS) {
+                words.add(truncate(word));
+            }
+        }
+        return words;
+    }
+
+    static Set<String> searchTokens(OrderEntity order) {
+        List<String> sources = new ArrayList<>();
+        sources.add(order.getAddress());
+        sources.add(order.getCustomerEmail());
+        if (order.getTable() != null) {
+            sources.add(order.getTable().getName());
+        }
+        if (order.getAccount() != null) {
+            sources.add(order.getAccount().getUsername());
+        }
+        if (order.getDeliveryAddress() != null) {
+            sources.add(order.getDeliveryAddress().getRecipientName());
+            sources.add(order.getDeliveryAddress().getFullAddress());
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String source : sources) {
+            for (String word : MenuSearchIndex.fold(source).split(" ")) {
+                // Bỏ chữ cái đơn lẻ, giữ số (số nhà, số bàn)
+                boolean keep = word.length() > 1 || (word.length() == 1 && Character.isDigit(word.charAt(0)));
+                if (keep && tokens.size() < MAX_TOKENS_PER_ORDER) {
+                    tokens.add(truncate(word));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // Chỉ giữ chữ số, +84 đổi về 0; null nếu không còn chữ số nào
+    static String phoneDigits(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String digits = NON_DIGIT.matcher(raw).replaceAll("");
+        if (raw.trim().startsWith("+84") && digits.startsWith("84")) {
+            digits = "0" + digits.substring(2);
+        }
+        if (digits.isEmpty()) {
+            return null;
+        }
+        return digits.length() > 20 ? digits.substring(0, 20) : digits;
+    }
+
+    private static String truncate(String token) {
+        return token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token;
+    }
+
+    private String write(OrderResponseDTO dto) {
+        try {
+            return objectMapper.writeValueAsString(dto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize order " + dto.getId(), e);
+        }
+    }
+
+    private OrderResponseDTO read(OrderViewEntity view) {
+        try {
+            return objectMapper.readValue(view.getPayload(), OrderResponseDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read order view " + view.getOrderId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -16,10 +16,12 @@ import com.poly.restaurant.entities.enums.OrderItemStatus;
 import com.poly.restaurant.entities.enums.PaymentMethod;
 import com.poly.restaurant.exceptions.ResourceNotFoundException;
 import com.poly.restaurant.repositories.OrderRepository;
+import com.poly.restaurant.repositories.OrderItemRepository;
 import com.poly.restaurant.repositories.TableRepository;
 import com.poly.restaurant.repositories.BranchRepository;
 import com.poly.restaurant.repositories.DiscountRepository;
 import com.poly.restaurant.repositories.AccountRepository;
+import com.poly.restaurant.utils.PriceUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -29,10 +31,12 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -45,6 +49,7 @@ public class OrderService {
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final TableRepository tableRepository;
     private final BranchRepository branchRepository;
     private final DiscountRepository discountRepository;
@@ -52,8 +57,11 @@ public class OrderService {
     private final AccountRepository accountRepository;
     private final OrderCalculationService orderCalculationService;
     // Removed SimpleCacheService dependency
-    private final WebSocketService webSocketService;
+    private final OutboxService outboxService;
     private final VoucherUsageHistoryService voucherUsageHistoryService;
+    private final FeaturedItemService featuredItemService;
+    private final VoucherRedemptionService voucherRedemptionService;
+    private final OrderStateMachine orderStateMachine;
 
     /**
      * Tạo đơn hàng mới
@@ -65,6 +73,9 @@ public class OrderService {
 
         // 1. Chuẩn bị và lưu đơn hàng vào Database
         OrderEntity order = prepareOrderEntity(request);
+        // Tổng tiền được cộng dồn khi thêm từng món; request.totalAmount (tính ở frontend) không được tin,
+        // chỉ dùng để ghi cảnh báo khi lệch với tổng server tính
+        order.setTotalAmount(BigDecimal.ZERO);
         OrderEntity savedOrder = orderRepository.save(order);
         logger.info("✅ Order saved to database with ID: {}", savedOrder.getId());
 
@@ -76,36 +87,24 @@ public class OrderService {
             }
             logger.info("✅ {} order items added", request.getItems().size());
         }
-
-        // 3. Tính toán tổng tiền nếu không được cung cấp từ frontend
-        if (request.getTotalAmount() == null || request.getTotalAmount().compareTo(BigDecimal.ZERO) == 0) {
-            orderCalculationService.calculateOrderTotal(savedOrder.getId());
-            // Lấy lại order sau khi tính toán
-            savedOrder = orderRepository.findById(savedOrder.getId()).orElse(savedOrder);
-            logger.info("✅ Total amount calculated and updated");
+        if (request.getTotalAmount() != null
+                && PriceUtils.toVnd(request.getTotalAmount()) != PriceUtils.toVnd(savedOrder.getTotalAmount())) {
+            logger.warn("Order {} client total {} differs from computed total {}, using computed total",
+                    savedOrder.getId(), request.getTotalAmount(), savedOrder.getTotalAmount());
         }
 
-        // 4. Lưu lịch sử sử dụng voucher nếu có
+        // 3. Lưu lịch sử sử dụng voucher nếu có
         if (savedOrder.getVoucherCode() != null && !savedOrder.getVoucherCode().trim().isEmpty()) {
-            try {
-                saveVoucherUsageHistory(savedOrder, request);
-                logger.info("✅ Voucher usage history saved");
-            } catch (Exception e) {
-                logger.error("❌ Failed to save voucher usage history: {}", e.getMessage());
-                // Không throw exception để không làm fail order creation
-            }
+            // Lỗi ở đây rollback cả đơn hàng, lượt giữ chỗ voucher được trả lại
+            saveVoucherUsageHistory(savedOrder, request);
+            logger.info("✅ Voucher usage history saved");
         }
 
         // Removed cache operations
 
-        // 7. Gửi thông báo WebSocket
-        try {
-            OrderResponseDTO orderResponse = mapToResponseDTO(savedOrder);
-            webSocketService.notifyOrderStatusChanged(orderResponse);
-            logger.info("✅ WebSocket notification sent");
-        } catch (Exception e) {
-            logger.error("❌ Failed to send WebSocket notification: {}", e.getMessage());
-        }
+        // 7. Thông báo WebSocket và SSE: ghi vào outbox cùng transaction, gửi sau khi commit
+        outboxService.orderStatusChanged(savedOrder.getId());
+        outboxService.sseEvent(savedOrder.getId(), "ORDER_CREATED:" + savedOrder.getId());
 
         return mapToResponseDTO(savedOrder);
     }
@@ -116,29 +115,8 @@ public class OrderService {
      */
     @Transactional
     public OrderResponseDTO updateOrderStatus(Long orderId, OrderStatus status) {
-        logger.info("Updating order status - ID: {}, Status: {}", orderId, status);
-
-        // 1. Cập nhật trong Database chính TRƯỚC
-        OrderEntity order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
-
-        order.setStatus(status);
-        order.setUpdatedAt(LocalDateTime.now());
-
-        OrderEntity savedOrder = orderRepository.save(order);
-        logger.info("✅ Order status updated in database");
-
-        // Removed cache operations
-
-        // 4. Gửi thông báo WebSocket
-        try {
-            OrderResponseDTO orderResponse = mapToResponseDTO(savedOrder);
-            webSocketService.notifyOrderStatusChanged(orderResponse);
-            logger.info("✅ WebSocket notification sent");
-        } catch (Exception e) {
-            logger.error("❌ Failed to send WebSocket notification: {}", e.getMessage());
-        }
-
+        OrderEntity savedOrder = changeStatus(orderId, status);
+        outboxService.sseEvent(orderId, "ORDER_STATUS_UPDATED:" + orderId + ":" + status.name());
         return mapToResponseDTO(savedOrder);
     }
 
@@ -148,36 +126,48 @@ public class OrderService {
     @Transactional
     public OrderResponseDTO payOrder(Long orderId) {
         logger.info("Processing payment for order: {}", orderId);
-        return updateOrderStatus(orderId, OrderStatus.PAID);
+        OrderEntity savedOrder = changeStatus(orderId, OrderStatus.PAID);
+        outboxService.sseEvent(orderId, "ORDER_PAID:" + orderId);
+        return mapToResponseDTO(savedOrder);
     }
 
     /**
-     * Lấy danh sách đơn hàng chưa thanh toán trong ngày
-     * Ưu tiên lấy từ Redis cache, fallback về database
+     * Callback thanh toán thành công tới khi đơn đã bị hủy: giữ trạng thái CANCELED, ghi số tiền đã nhận vào prepay
+     * để hoàn tiền và báo cho màn hình staff. Trả về false nếu đơn không ở trạng thái CANCELED.
      */
-    @Transactional(readOnly = true)
-    public List<OrderResponseDTO> getTodayUnpaidOrders(Long branchId) {
-        logger.info("Getting today's unpaid orders for branch: {}", branchId);
-
-        // Removed cache operations - always get from database
+    @Transactional
+    public boolean recordPaymentForCanceledOrder(Long orderId, BigDecimal amount, String transactionRef) {
+        if (orderRepository.findStatusById(orderId).orElse(null) != OrderStatus.CANCELED) {
+            return false;
+        }
+        logger.warn("Payment {} ({}) received for canceled order {}, recorded for refund", transactionRef, amount,
+                orderId);
+        if (orderRepository.recordPrepayIfStatus(orderId, OrderStatus.CANCELED, amount, LocalDateTime.now()) == 1) {
+            outboxService.sseEvent(orderId, "ORDER_PAID_AFTER_CANCEL:" + orderId + ":" + transactionRef);
+        }
+        return true;
+    }
 
-        // 2. Fallback: lấy từ database
-        try {
-            List<OrderEntity> orders = orderRepository.findTodayOrdersByBranch(branchId);
-            List<OrderResponseDTO> orderDTOs = orders.stream()
-                    .filter(order -> order.getStatus() != OrderStatus.PAID &&
-                            order.getStatus() != OrderStatus.COMPLETED)
-                    .map(this::mapToResponseDTO)
-                    .collect(Collectors.toList());
+    private OrderEntity changeStatus(Long orderId, OrderStatus status) {
+        logger.info("Updating order status - ID: {}, Status: {}", orderId, status);
 
-            // Removed cache operations
+        // 1. Cập nhật trong Database chính TRƯỚC (kiểm tra bước chuyển, UPDATE có điều kiện)
+        OrderStatus previousStatus = orderStateMachine.transition(orderId, status);
+        OrderEntity savedOrder = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        logger.info("✅ Order status updated in database");
 
-            logger.info("✅ Returning {} unpaid orders from database", orderDTOs.size());
-            return orderDTOs;
-        } catch (Exception e) {
-            logger.error("❌ Failed to get orders from database: {}", e.getMessage());
-            throw new RuntimeException("Failed to get today's unpaid orders", e);
+        // Cộng vào xếp hạng món bán chạy khi đơn lần đầu chuyển sang trạng thái đã bán
+        if (!FeaturedItemService.isSold(previousStatus) && FeaturedItemService.isSold(status)) {
+            featuredItemService.recordSale(orderId);
         }
+
+        // Removed cache operations
+
+        // 4. Thông báo WebSocket qua outbox
+        outboxService.orderStatusChanged(orderId);
+
+        return savedOrder;
     }
 
     /**
@@ -273,6 +263,8 @@ public class OrderService {
         // Xử lý voucher code nếu có
         if (request.getVoucherCode() != null && !request.getVoucherCode().trim().isEmpty()) {
             order.setVoucherCode(request.getVoucherCode().trim());
+            // Giữ chỗ một lượt sử dụng, xác nhận khi đơn hàng commit
+            voucherRedemptionService.redeem(order.getVoucherCode());
         }
 
         return order;
@@ -333,6 +325,37 @@ public class OrderService {
      */
     @Transactional(readOnly = true)
     public OrderResponseDTO mapToResponseDTO(OrderEntity order) {
+        return mapToResponseDTO(order, order.getOrderItems());
+    }
+
+    /**
+     * Nạp và map nhiều đơn hàng với hai truy vấn bất kể số đơn: đơn hàng kèm bàn/chi nhánh/discount/
+     * nhân viên/địa chỉ giao hàng, rồi món (kèm discount) của cả lô.
+     * mapper nhận cả entity và DTO; đơn không tồn tại bị bỏ qua.
+     */
+    @Transactional(readOnly = true)
+    public <T> List<T> mapOrders(List<Long> orderIds, BiFunction<OrderEntity, OrderResponseDTO, T> mapper) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        List<OrderEntity> orders = orderRepository.findWithDetailsByIdIn(orderIds);
+        // item.getOrder() trỏ về đơn đã nạp ở trên trong cùng session nên không phát sinh truy vấn
+        Map<Long, List<OrderItemEntity>> itemsByOrder = orderItemRepository.findWithDiscountByOrderIdIn(orderIds)
+                .stream()
+                .collect(Collectors.groupingBy(item -> item.getOrder().getId()));
+
+        List<T> result = new ArrayList<>(orders.size());
+        for (OrderEntity order : orders) {
+            result.add(mapper.apply(order,
+                    mapToResponseDTO(order, itemsByOrder.getOrDefault(order.getId(), List.of()))));
+        }
+        return result;
+    }
+
+    /**
+     * Map đơn hàng với danh sách món đã nạp sẵn (không chạm vào order.getOrderItems())
+     */
+    public OrderResponseDTO mapToResponseDTO(OrderEntity order, List<OrderItemEntity> orderItems) {
         OrderResponseDTO dto = new OrderResponseDTO();
         dto.setId(order.getId());
 
@@ -382,8 +405,8 @@ public class OrderService {
         }
 
         // Order items - map to OrderItemResponseDTO
-        if (order.getOrderItems() != null && !order.getOrderItems().isEmpty()) {
-            List<OrderItemResponseDTO> itemDTOs = order.getOrderItems().stream()
+        if (orderItems != null && !orderItems.isEmpty()) {
+            List<OrderItemResponseDTO> itemDTOs = orderItems.stream()
                     .map(this::mapToOrderItemResponseDTO)
                     .collect(Collectors.toList());
             dto.setItems(itemDTOs);
@@ -0,0 +1,127 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.repositories.OrderRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Máy trạng thái của đơn hàng: kiểm tra bước chuyển hợp lệ và ghi trạng thái mới bằng một câu UPDATE
+ * có điều kiện (WHERE status = trạng thái vừa đọc), không giữ khóa dòng giữa lúc đọc và lúc ghi.
+ * Nếu thao tác khác vừa đổi trạng thái thì đọc lại và thử lại ngay, tối đa MAX_ATTEMPTS lần, không chờ giữa các lần
+ * (UPDATE thất bại nghĩa là bên kia đã commit, đọc lại với READ COMMITTED sẽ thấy trạng thái mới).
+ * Chạy trong transaction của nơi gọi; gọi ngoài transaction thì mỗi lần thử là một transaction riêng.
+ */
+@Service
+@Slf4j
+public class OrderStateMachine {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        TRANSITIONS.put(OrderStatus.PENDING, EnumSet.of(OrderStatus.CONFIRMED, OrderStatus.PREPARING,
+                OrderStatus.COD_PENDING, OrderStatus.PAID, OrderStatus.CANCELED));
+        TRANSITIONS.put(OrderStatus.CONFIRMED, EnumSet.of(OrderStatus.PREPARING, OrderStatus.READY_FOR_PICKUP,
+                OrderStatus.COD_PENDING, OrderStatus.PAID, OrderStatus.CANCELED));
+        TRANSITIONS.put(OrderStatus.PREPARING, EnumSet.of(OrderStatus.READY_FOR_PICKUP, OrderStatus.DELIVERED,
+                OrderStatus.COD_PENDING, OrderStatus.PAID, OrderStatus.CANCELED));
+        TRANSITIONS.put(OrderStatus.READY_FOR_PICKUP, EnumSet.of(OrderStatus.DELIVERED, OrderStatus.COD_PENDING,
+                OrderStatus.PAID, OrderStatus.COMPLETED));
+        TRANSITIONS.put(OrderStatus.COD_PENDING, EnumSet.of(OrderStatus.PREPARING, OrderStatus.READY_FOR_PICKUP,
+                OrderStatus.DELIVERED, OrderStatus.PAID, OrderStatus.COMPLETED, OrderStatus.CANCELED));
+        TRANSITIONS.put(OrderStatus.DELIVERED, EnumSet.of(OrderStatus.PAID, OrderStatus.COMPLETED,
+                OrderStatus.REFUNDED));
+        TRANSITIONS.put(OrderStatus.PAID, EnumSet.of(OrderStatus.COMPLETED, OrderStatus.REFUNDED));
+        // Staff hoàn tất đơn (READY_FOR_PICKUP -> COMPLETED) rồi mới thu tiền
+        TRANSITIONS.put(OrderStatus.COMPLETED, EnumSet.of(OrderStatus.PAID, OrderStatus.REFUNDED));
+        TRANSITIONS.put(OrderStatus.CANCELED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(OrderStatus.REFUNDED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    private final OrderRepository orderRepository;
+    private final OrderReadModel orderReadModel;
+    private final TransactionTemplate attemptTemplate;
+
+    public OrderStateMachine(OrderRepository orderRepository, @Lazy OrderReadModel orderReadModel,
+            PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderReadModel = orderReadModel;
+        this.attemptTemplate = new TransactionTemplate(transactionManager);
+        this.attemptTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public static boolean canTransition(OrderStatus from, OrderStatus to) {
+        return from == to || TRANSITIONS.getOrDefault(from, Set.of()).contains(to);
+    }
+
+    /**
+     * Chuyển đơn sang trạng thái target, trả về trạng thái trước đó (bằng target nếu đơn đã ở sẵn trạng thái này).
+     * Sau khi gọi, persistence context đã được clear: cần nạp lại OrderEntity nếu muốn dùng tiếp.
+     */
+    public OrderStatus transition(Long orderId, OrderStatus target) {
+        return transition(orderId, target, current -> {
+        });
+    }
+
+    /**
+     * Như transition(orderId, target), kèm điều kiện riêng của nơi gọi trên trạng thái hiện tại
+     * (guard ném exception để từ chối); guard được kiểm tra lại ở mỗi lần thử.
+     */
+    public OrderStatus transition(Long orderId, OrderStatus target, Consumer<OrderStatus> guard) {
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        for (int attempt = 1;; attempt++) {
+            OrderStatus previous = joined
+                    ? attempt(orderId, target, guard)
+                    : attemptTemplate.execute(status -> attempt(orderId, target, guard));
+            if (previous != null) {
+                return previous;
+            }
+
+            if (attempt >= MAX_ATTEMPTS) {
+                log.warn("Order {} status changed concurrently {} times, giving up on {}", orderId, attempt, target);
+                throw new ObjectOptimisticLockingFailureException(OrderEntity.class, orderId);
+            }
+        }
+    }
+
+    // Một lần đọc + UPDATE có điều kiện; null nếu trạng thái vừa bị thao tác khác đổi
+    private OrderStatus attempt(Long orderId, OrderStatus target, Consumer<OrderStatus> guard) {
+        OrderStatus current = orderRepository.findStatusById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        if (current == target) {
+            return current;
+        }
+        guard.accept(current);
+        if (!canTransition(current, target)) {
+            throw new IllegalArgumentException(
+                    "Không thể chuyển đơn hàng từ trạng thái " + current + " sang " + target);
+        }
+
+        if (orderRepository.compareAndSetStatus(orderId, current, target, LocalDateTime.now()) != 1) {
+            return null;
+        }
+        // UPDATE hàng loạt không đi qua entity listener
+        orderReadModel.orderChanged(orderId);
+        log.info("Order {} status {} -> {}", orderId, current, target);
+        return current;
+    }
+}
@@ -0,0 +1,384 @@
+package com.poly.restaurant.services;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.poly.restaurant.dtos.MergeOrdersRequestDTO;
+import com.poly.restaurant.dtos.MoveItemsRequestDTO;
+import com.poly.restaurant.dtos.OrderResponseDTO;
+import com.poly.restaurant.dtos.SplitOrderRequestDTO;
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.OrderItemEntity;
+import com.poly.restaurant.entities.TableEntity;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.entities.enums.TableStatus;
+import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.repositories.OrderItemRepository;
+import com.poly.restaurant.repositories.OrderRepository;
+import com.poly.restaurant.repositories.TableRepository;
+import com.poly.restaurant.repositories.VoucherUsageHistoryRepository;
+import com.poly.restaurant.utils.PriceUtils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gộp đơn, tách đơn và chuyển món giữa các đơn tại bàn. Các đơn liên quan được khóa theo thứ tự id,
+ * món được chuyển đơn bằng UPDATE theo tập, tổng tiền tính lại một lần và trạng thái bàn đổi trong cùng
+ * transaction. Mỗi thao tác chỉ phát một sự kiện SSE.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderTransferService {
+
+    // Chỉ gộp/tách các đơn chưa chốt; đơn nguồn khi gộp sẽ bị hủy nên cũng phải hủy được
+    private static final List<OrderStatus> MUTABLE_STATUSES = List.of(OrderStatus.PENDING, OrderStatus.CONFIRMED,
+            OrderStatus.PREPARING);
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final TableRepository tableRepository;
+    private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
+    private final OrderService orderService;
+    private final OrderStateMachine orderStateMachine;
+    private final OrderReadModel orderReadModel;
+    private final KitchenDisplayService kitchenDisplayService;
+    private final OutboxService outboxService;
+
+    /**
+     * Gộp các đơn nguồn vào đơn đích: chuyển toàn bộ món, tiền trả trước và voucher, hủy đơn nguồn,
+     * trả bàn của đơn nguồn
+     */
+    @Transactional
+    public OrderResponseDTO mergeOrders(MergeOrdersRequestDTO request) {
+        Long targetId = request.getTargetOrderId();
+        Set<Long> sourceIds = request.getSourceOrderIds() != null ? new TreeSet<>(request.getSourceOrderIds())
+                : new TreeSet<>();
+        if (targetId == null || sourceIds.isEmpty() || sourceIds.contains(targetId)) {
+            throw new IllegalArgumentException("Cần đơn đích và ít nhất một đơn nguồn khác đơn đích");
+        }
+
+        List<Long> orderIds = new ArrayList<>(sourceIds);
+        orderIds.add(targetId);
+        Map<Long, OrderEntity> orders = lock(orderIds);
+        OrderEntity target = orders.get(targetId);
+        Long targetTableId = tableIdOf(target);
+        Set<Long> releasedTableIds = new LinkedHashSet<>();
+        for (Long sourceId : sourceIds) {
+            OrderEntity source = orders.get(sourceId);
+            requireSameBranch(target, source);
+            Long tableId = tableIdOf(source);
+            if (tableId != null && !tableId.equals(targetTableId)) {
+                releasedTableIds.add(tableId);
+            }
+        }
+        // Ghi vào entity đang khóa, được flush trước câu UPDATE hàng loạt đầu tiên
+        boolean voucherMoved = carryPayments(target, sourceIds.stream().map(orders::get).toList());
+
+        // Lấy món đang chờ bếp trước khi đổi đơn để nạp lại ticket (bàn, đơn mới) sau commit
+        List<Long> kitchenItemIds = orderItemRepository.findIdsByOrderIdInAndStatusIn(sourceIds,
+                KitchenDisplayService.ACTIVE_STATUSES);
+        LocalDateTime now = LocalDateTime.now();
+        int moved = orderItemRepository.moveAllToOrder(sourceIds, target, now);
+        // Hủy đơn nguồn qua máy trạng thái để vẫn kiểm tra bảng chuyển trạng thái (đơn đã khóa nên không phải thử lại)
+        for (Long sourceId : sourceIds) {
+            orderStateMachine.transition(sourceId, OrderStatus.CANCELED);
+        }
+        orderRepository.recalculateTotals(orderIds, now);
+        if (voucherMoved) {
+            repriceVoucherUsage(targetId);
+        }
+
+        occupy(targetTableId);
+        if (!releasedTableIds.isEmpty()) {
+            tableRepository.releaseWithoutOpenOrders(releasedTableIds, OrderCalculationService.OPEN_STATUSES,
+                    TableStatus.AVAILABLE, TableStatus.OCCUPIED);
+        }
+
+        afterTransfer(orderIds, kitchenItemIds, targetId, "ORDERS_MERGED:" + targetId + ":" + join(sourceIds));
+        log.info("Merged orders {} into {} ({} items)", sourceIds, targetId, moved);
+        return orderService.getOrderById(targetId);
+    }
+
+    /**
+     * Tách các món được chọn (toàn bộ hoặc một phần số lượng) sang một đơn mới, có thể gán bàn khác
+     */
+    @Transactional
+    public OrderResponseDTO splitOrder(Long orderId, SplitOrderRequestDTO request) {
+        Map<Long, Integer> quantities = quantities(request.getItems(), SplitOrderRequestDTO.SplitItem::getOrderDetailId,
+                SplitOrderRequestDTO.SplitItem::getQuantity);
+        OrderEntity source = lock(List.of(orderId)).get(orderId);
+
+        TableEntity table = source.getTable();
+        if (request.getAssignTableId() != null && !request.getAssignTableId().equals(tableIdOf(source))) {
+            table = tableRepository.lockByIdWithBranch(request.getAssignTableId())
+                    .orElseThrow(() -> new ResourceNotFoundException(
+                            "Table not found with id: " + request.getAssignTableId()));
+            if (table.getBranch() == null || !table.getBranch().getId().equals(source.getBranch().getId())) {
+                throw new IllegalArgumentException("Bàn " + table.getName() + " không thuộc chi nhánh của đơn");
+            }
+            requireFree(table);
+        }
+        Long tableId = table != null ? table.getId() : null;
+
+        LocalDateTime now = LocalDateTime.now();
+        OrderEntity split = new OrderEntity();
+        split.setTable(table);
+        split.setBranch(source.getBranch());
+        split.setAccount(source.getAccount());
+        split.setStatus(source.getStatus());
+        split.setOrderType(source.getOrderType());
+        split.setPaymentMethod(source.getPaymentMethod());
+        split.setCustomerPhone(source.getCustomerPhone());
+        split.setCustomerEmail(source.getCustomerEmail());
+        split.setDescription("Tách từ đơn #" + orderId);
+        split.setTotalAmount(BigDecimal.ZERO);
+        split.setPrepay(BigDecimal.ZERO);
+        split.setCreatedAt(now);
+        split.setUpdatedAt(now);
+        split = orderRepository.save(split);
+        Long splitId = split.getId();
+
+        List<Long> movedItemIds = transferItems(source, split, quantities, now);
+        orderRepository.recalculateTotals(List.of(orderId, splitId), now);
+        occupy(tableId);
+
+        afterTransfer(List.of(orderId, splitId), movedItemIds, orderId, "ORDER_SPLIT:" + orderId + ":" + splitId);
+        log.info("Split {} items from order {} into new order {}", quantities.size(), orderId, splitId);
+        return orderService.getOrderById(splitId);
+    }
+
+    /**
+     * Chuyển các món được chọn (toàn bộ hoặc một phần số lượng) sang một đơn đang mở khác
+     */
+    @Transactional
+    public OrderResponseDTO moveItems(Long orderId, MoveItemsRequestDTO request) {
+        Long targetId = request.getTargetOrderId();
+        if (targetId == null || targetId.equals(orderId)) {
+            throw new IllegalArgumentException("Cần đơn đích khác đơn hiện tại");
+        }
+        Map<Long, Integer> quantities = quantities(request.getItems(), MoveItemsRequestDTO.MoveItem::getOrderDetailId,
+                MoveItemsRequestDTO.MoveItem::getQuantity);
+        Map<Long, OrderEntity> orders = lock(List.of(orderId, targetId));
+        OrderEntity source = orders.get(orderId);
+        OrderEntity target = orders.get(targetId);
+        requireSameBranch(target, source);
+        Long targetTableId = tableIdOf(target);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> movedItemIds = transferItems(source, target, quantities, now);
+        orderRepository.recalculateTotals(List.of(orderId, targetId), now);
+        occupy(targetTableId);
+
+        afterTransfer(List.of(orderId, targetId), movedItemIds, orderId,
+                "ORDER_ITEMS_MOVED:" + orderId + ":" + targetId);
+        log.info("Moved {} items from order {} to order {}", quantities.size(), orderId, targetId);
+        return orderService.getOrderById(targetId);
+    }
+
+    /**
+     * Chuyển món từ source sang target. Món chuyển hết số lượng được đổi đơn bằng một câu UPDATE; món chuyển
+     * một phần được tách thành dòng mới ở đơn đích. Trả về id các món chuyển nguyên dòng, dòng mới tách ra và
+     * dòng gốc bị giảm số lượng để bếp nạp lại.
+     */
+    private List<Long> transferItems(OrderEntity source, OrderEntity target, Map<Long, Integer> quantities,
+            LocalDateTime now) {
+        List<OrderItemEntity> items = orderItemRepository.lockByIdIn(quantities.keySet());
+        if (items.size() != quantities.size()) {
+            throw new ResourceNotFoundException("Order item not found in order: " + source.getId());
+        }
+
+        List<Long> whole = new ArrayList<>();
+        List<Long> changed = new ArrayList<>();
+        for (OrderItemEntity item : items) {
+            if (!item.getOrder().getId().equals(source.getId())) {
+                throw new IllegalArgumentException("Món " + item.getId() + " không thuộc đơn " + source.getId());
+            }
+            Integer quantity = quantities.get(item.getId());
+            if (quantity == null || quantity.equals(item.getQuantity())) {
+                whole.add(item.getId());
+            } else if (quantity <= 0 || quantity > item.getQuantity()) {
+                throw new IllegalArgumentException("Số lượng chuyển không hợp lệ cho món " + item.getId());
+            } else {
+                OrderItemEntity part = orderItemRepository.save(splitOff(item, target, quantity, now));
+                changed.add(part.getId());
+                changed.add(item.getId());
+            }
+        }
+        if (!whole.isEmpty()) {
+            orderItemRepository.moveToOrder(whole, source.getId(), target, now);
+            changed.addAll(whole);
+        }
+        return changed;
+    }
+
+    // Tách quantity phần của món sang đơn đích; giảm giá chia theo tỷ lệ số lượng
+    private static OrderItemEntity splitOff(OrderItemEntity item, OrderEntity target, int quantity,
+            LocalDateTime now) {
+        int total = item.getQuantity();
+        long discountVnd = PriceUtils.toVnd(item.getDiscountAmount());
+        long movedDiscountVnd = discountVnd * quantity / total;
+
+        OrderItemEntity part = new OrderItemEntity();
+        part.setOrder(target);
+        part.setDish(item.getDish());
+        part.setCombo(item.getCombo());
+        part.setDiscount(item.getDiscount());
+        part.setUnitPrice(item.getUnitPrice());
+        part.setSpecialInstructions(item.getSpecialInstructions());
+        part.setStatus(item.getStatus());
+        // Giữ thời điểm gọi món để ticket không bị đẩy xuống cuối hàng đợi bếp
+        part.setCreatedAt(item.getCreatedAt());
+        part.setUpdatedAt(now);
+        part.setCompletedAt(item.getCompletedAt());
+        applyQuantity(part, quantity, item.getDiscountAmount() != null ? movedDiscountVnd : null);
+
+        applyQuantity(item, total - quantity, item.getDiscountAmount() != null ? discountVnd - movedDiscountVnd : null);
+        item.setUpdatedAt(now);
+        return part;
+    }
+
+    private static void applyQuantity(OrderItemEntity item, int quantity, Long discountVnd) {
+        long totalVnd = PriceUtils.lineTotal(PriceUtils.toVnd(item.getUnitPrice()), quantity);
+        item.setQuantity(quantity);
+        item.setTotalPrice(PriceUtils.toDecimal(totalVnd));
+        item.setDiscountAmount(discountVnd != null ? PriceUtils.toDecimal(discountVnd) : null);
+        item.setFinalPrice(PriceUtils.toDecimal(totalVnd - (discountVnd != null ? discountVnd : 0)));
+    }
+
+    private Map<Long, OrderEntity> lock(Collection<Long> orderIds) {
+        Map<Long, OrderEntity> orders = orderRepository.lockByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(OrderEntity::getId, Function.identity()));
+        for (Long orderId : orderIds) {
+            OrderEntity order = orders.get(orderId);
+            if (order == null) {
+                throw new ResourceNotFoundException("Order not found with id: " + orderId);
+            }
+            if (!MUTABLE_STATUSES.contains(order.getStatus())) {
+                throw new IllegalArgumentException("Đơn " + orderId + " ở trạng thái " + order.getStatus()
+                        + " không thể gộp, tách hoặc chuyển món");
+            }
+        }
+        return orders;
+    }
+
+    // Cộng tiền trả trước của đơn nguồn vào đơn đích; voucher (chỉ một voucher mỗi đơn) và lịch sử dùng voucher
+    // chuyển sang đơn đích nếu đơn đích chưa có. Trả về true nếu voucher được chuyển.
+    private boolean carryPayments(OrderEntity target, List<OrderEntity> sources) {
+        long prepayVnd = PriceUtils.toVnd(target.getPrepay());
+        OrderEntity voucherSource = null;
+        for (OrderEntity source : sources) {
+            prepayVnd += PriceUtils.toVnd(source.getPrepay());
+            source.setPrepay(BigDecimal.ZERO);
+            if (hasVoucher(source)) {
+                if (hasVoucher(target) || voucherSource != null) {
+                    throw new IllegalArgumentException("Không thể gộp vì nhiều đơn cùng dùng voucher (đơn "
+                            + source.getId() + ")");
+                }
+                voucherSource = source;
+            }
+        }
+        target.setPrepay(PriceUtils.toDecimal(prepayVnd));
+
+        if (voucherSource != null) {
+            target.setVoucherCode(voucherSource.getVoucherCode());
+            target.setDiscount(voucherSource.getDiscount());
+            voucherSource.setVoucherCode(null);
+            voucherSource.setDiscount(null);
+            voucherUsageHistoryRepository.findByOrderId(voucherSource.getId())
+                    .ifPresent(usage -> usage.setOrder(target));
+        }
+        return voucherSource != null;
+    }
+
+    // Tính lại số tiền trong lịch sử dùng voucher theo tổng tiền của đơn sau khi gộp (cùng cách tính như lúc lưu)
+    private void repriceVoucherUsage(Long orderId) {
+        OrderEntity order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        voucherUsageHistoryRepository.findByOrderId(orderId).ifPresent(usage -> {
+            long originalVnd = PriceUtils.toVnd(order.getTotalAmount());
+            long finalVnd = originalVnd;
+            if (order.getDiscount() != null && usage.getVoucher().getNewPrice() != null) {
+                finalVnd = Math.min(originalVnd, PriceUtils.toVnd(usage.getVoucher().getNewPrice()));
+            }
+            usage.setOriginalAmount(PriceUtils.toDecimal(originalVnd));
+            usage.setDiscountAmount(PriceUtils.toDecimal(originalVnd - finalVnd));
+            usage.setFinalAmount(PriceUtils.toDecimal(finalVnd));
+        });
+    }
+
+    private static boolean hasVoucher(OrderEntity order) {
+        return order.getVoucherCode() != null && !order.getVoucherCode().isBlank();
+    }
+
+    // Bàn nhận đơn tách phải đang dùng được và không còn đơn nào đang mở
+    private void requireFree(TableEntity table) {
+        if (table.getStatus() == TableStatus.UNAVAILABLE || table.getStatus() == TableStatus.RESERVED) {
+            throw new IllegalArgumentException("Bàn " + table.getName() + " đang ở trạng thái " + table.getStatus());
+        }
+        if (orderRepository.existsByTableIdAndStatusIn(table.getId(), OrderCalculationService.OPEN_STATUSES)) {
+            throw new IllegalArgumentException("Bàn " + table.getName() + " đang có đơn chưa thanh toán");
+        }
+    }
+
+    private static <T> Map<Long, Integer> quantities(List<T> items, Function<T, Long> itemId,
+            Function<T, Integer> quantity) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Cần chọn ít nhất một món");
+        }
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (T item : items) {
+            Long id = itemId.apply(item);
+            if (id == null || quantities.containsKey(id)) {
+                throw new IllegalArgumentException("Danh sách món không hợp lệ");
+            }
+            quantities.put(id, quantity.apply(item));
+        }
+        return quantities;
+    }
+
+    private static void requireSameBranch(OrderEntity target, OrderEntity source) {
+        if (!target.getBranch().getId().equals(source.getBranch().getId())) {
+            throw new IllegalArgumentException("Đơn " + source.getId() + " và đơn " + target.getId()
+                    + " không cùng chi nhánh");
+        }
+    }
+
+    private static Long tableIdOf(OrderEntity order) {
+        return order.getTable() != null ? order.getTable().getId() : null;
+    }
+
+    private void occupy(Long tableId) {
+        if (tableId != null) {
+            tableRepository.updateStatusByIdIn(List.of(tableId), TableStatus.OCCUPIED);
+        }
+    }
+
+    // UPDATE theo tập không đi qua entity listener: tự báo cho bếp, read model và phát một sự kiện cho màn hình staff
+    private void afterTransfer(Collection<Long> orderIds, Collection<Long> movedItemIds, Long eventOrderId,
+            String event) {
+        if (!movedItemIds.isEmpty()) {
+            kitchenDisplayService.itemsMoved(movedItemIds);
+        }
+        orderIds.forEach(orderReadModel::orderChanged);
+        outboxService.sseEvent(eventOrderId, event);
+    }
+
+    private static String join(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
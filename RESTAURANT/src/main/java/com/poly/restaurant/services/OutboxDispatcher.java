@@ -0,0 +1,278 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poly.restaurant.dtos.OrderResponseDTO;
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.OutboxEventEntity;
+import com.poly.restaurant.entities.enums.OutboxEventType;
+import com.poly.restaurant.entities.enums.OutboxStatus;
+import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.repositories.OrderRepository;
+import com.poly.restaurant.repositories.OutboxEventRepository;
+import com.poly.restaurant.sse.OrderSseBroadcaster;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gửi các tác vụ trong outbox_event: một luồng nhận việc khóa từng lô tác vụ đến hạn (SKIP LOCKED),
+ * chia cho WORKER_COUNT worker theo orderId (sự kiện của cùng một đơn đi đúng thứ tự),
+ * lỗi thì thử lại với backoff tăng dần, quá MAX_ATTEMPTS lần thì chuyển sang DEAD.
+ * Mỗi lần nhận việc tăng attempts; worker bỏ qua tác vụ đã hết hạn giữ khi tới lượt (lượt quét sau nhận lại).
+ * Lượt quét định kỳ chạy trên luồng riêng của outbox, không chung scheduler mặc định với các job khác.
+ */
+@Service
+@Slf4j
+public class OutboxDispatcher {
+
+    private static final int BATCH_SIZE = 50;
+    private static final int WORKER_COUNT = 4;
+    private static final int WORKER_QUEUE_CAPACITY = BATCH_SIZE * 4;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long LEASE_SECONDS = 120;
+    private static final long RETRY_BASE_SECONDS = 5;
+    private static final long RETRY_MAX_SECONDS = 30 * 60;
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final int RETENTION_DAYS = 7;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final OrderReadModel orderReadModel;
+    private final WebSocketService webSocketService;
+    private final OrderSseBroadcaster orderSseBroadcaster;
+    private final EmailService emailService;
+    private final GHTKService ghtkService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+    private final Queue<Long> sentIds = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ThreadPoolExecutor[] workers = new ThreadPoolExecutor[WORKER_COUNT];
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository, OrderRepository orderRepository,
+            OrderService orderService, @Lazy OrderReadModel orderReadModel, WebSocketService webSocketService,
+            OrderSseBroadcaster orderSseBroadcaster,
+            EmailService emailService, GHTKService ghtkService, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.orderReadModel = orderReadModel;
+        this.webSocketService = webSocketService;
+        this.orderSseBroadcaster = orderSseBroadcaster;
+        this.emailService = emailService;
+        this.ghtkService = ghtkService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            String name = "outbox-worker-" + i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY), runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    /**
+     * Yêu cầu nhận việc ngay; nhiều lần gọi dồn lại thành một lượt
+     */
+    public void wakeUp() {
+        if (!wakeRequested.getAndSet(true)) {
+            poller.execute(this::drain);
+        }
+    }
+
+    // Lưới an toàn cho tác vụ chờ thử lại, tác vụ bị bỏ dở khi worker chết, instance khác ghi vào
+    @EventListener(ApplicationReadyEvent.class)
+    public void startPolling() {
+        poller.scheduleWithFixedDelay(this::wakeUp, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeSent() {
+        int deleted = transactionTemplate.execute(status -> outboxEventRepository
+                .deleteProcessedBefore(OutboxStatus.SENT, LocalDateTime.now().minusDays(RETENTION_DAYS)));
+        log.info("Purged {} sent outbox events", deleted);
+    }
+
+    private void drain() {
+        // Lần wakeUp sau thời điểm này sẽ xếp thêm một lượt drain
+        wakeRequested.set(false);
+        try {
+            while (dispatchBatch() == BATCH_SIZE) {
+                // còn việc đến hạn, nhận tiếp
+            }
+        } catch (Exception e) {
+            log.error("Error dispatching outbox events: {}", e.getMessage(), e);
+        }
+    }
+
+    private int dispatchBatch() {
+        flushSent();
+        for (ThreadPoolExecutor worker : workers) {
+            if (worker.getQueue().remainingCapacity() < BATCH_SIZE) {
+                // Worker còn nhiều việc: để lượt quét sau nhận tiếp
+                return 0;
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseUntil = now.plusSeconds(LEASE_SECONDS);
+        List<OutboxEventEntity> batch = transactionTemplate.execute(status -> {
+            List<Long> ids = outboxEventRepository.lockDueIds(now, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return List.<OutboxEventEntity>of();
+            }
+            outboxEventRepository.claim(ids, OutboxStatus.PROCESSING, leaseUntil);
+            return outboxEventRepository.findAllById(ids);
+        });
+
+        List<OutboxEventEntity> ordered = new ArrayList<>(batch);
+        ordered.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        for (OutboxEventEntity event : ordered) {
+            long key = event.getOrderId() != null ? event.getOrderId() : event.getId();
+            workers[(int) Math.floorMod(key, (long) WORKER_COUNT)].execute(() -> process(event, leaseUntil));
+        }
+        return batch.size();
+    }
+
+    private void process(OutboxEventEntity event, LocalDateTime leaseUntil) {
+        if (!LocalDateTime.now().isBefore(leaseUntil)) {
+            // Đã chờ trong hàng đợi quá hạn giữ: có thể đã được nhận lại ở lượt quét khác, không gửi trùng
+            log.warn("Outbox event {} lease expired before dispatch, leaving it for the next poll", event.getId());
+            return;
+        }
+        if (event.getAttempts() > MAX_ATTEMPTS) {
+            // Các lần nhận trước đều không ghi được kết quả (worker/instance chết giữa chừng)
+            recordFailure(event, new IllegalStateException("Claimed " + event.getAttempts() + " times without result"));
+            return;
+        }
+        try {
+            handle(event);
+            sentIds.add(event.getId());
+        } catch (Exception e) {
+            recordFailure(event, e);
+        }
+    }
+
+    private void handle(OutboxEventEntity event) throws Exception {
+        // Client tải lại danh sách từ order_view khi nhận thông báo: bảo đảm bản đọc đã mới trước khi gửi
+        if (event.getOrderId() != null && (event.getEventType() == OutboxEventType.ORDER_STATUS_NOTIFICATION
+                || event.getEventType() == OutboxEventType.ORDER_SSE_EVENT)) {
+            orderReadModel.refreshIfStale(event.getOrderId());
+        }
+        switch (event.getEventType()) {
+            case ORDER_STATUS_NOTIFICATION -> {
+                OrderResponseDTO order = transactionTemplate.execute(status -> orderService.mapToResponseDTO(
+                        orderRepository.findById(event.getOrderId()).orElseThrow(
+                                () -> new ResourceNotFoundException("Order not found with id: " + event.getOrderId()))));
+                webSocketService.notifyOrderStatusChanged(order);
+            }
+            case ORDER_SSE_EVENT -> orderSseBroadcaster.emit(event.getPayload());
+            case ORDER_CONFIRMATION_EMAIL -> {
+                Map<String, String> email = objectMapper.readValue(event.getPayload(),
+                        new TypeReference<Map<String, String>>() {
+                        });
+                emailService.sendOrderConfirmationEmail(email.get("email"), email.get("customerName"),
+                        event.getOrderId(), email.get("orderDate"), email.get("totalAmount"), email.get("address"));
+            }
+            case GHTK_SHIPMENT -> transactionTemplate.executeWithoutResult(status -> createShipment(event.getOrderId()));
+        }
+    }
+
+    private void createShipment(Long orderId) {
+        OrderEntity order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        if (order.getTrackingNumber() != null) {
+            // Lần thử trước đã tạo được đơn GHTK
+            return;
+        }
+        String label = ghtkService.createOrderFromOrderEntity(order);
+        order.setTrackingNumber(label);
+        log.info("GHTK shipment {} created for order {}", label, orderId);
+    }
+
+    private void recordFailure(OutboxEventEntity event, Exception e) {
+        // attempts đã được tăng khi nhận việc
+        int attempts = event.getAttempts();
+        boolean dead = attempts >= MAX_ATTEMPTS;
+        long delay = Math.min(RETRY_BASE_SECONDS << Math.min(attempts - 1, 20), RETRY_MAX_SECONDS);
+        LocalDateTime nextAttemptAt = LocalDateTime.now()
+                .plusSeconds(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+        String lastError = error;
+
+        if (dead) {
+            log.error("Outbox event {} ({}) for order {} failed {} times, moved to DEAD: {}", event.getId(),
+                    event.getEventType(), event.getOrderId(), attempts, lastError);
+        } else {
+            log.warn("Outbox event {} ({}) failed, attempt {}/{}: {}", event.getId(), event.getEventType(),
+                    attempts, MAX_ATTEMPTS, lastError);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.markFailed(event.getId(),
+                    dead ? OutboxStatus.DEAD : OutboxStatus.PENDING, attempts, nextAttemptAt, lastError));
+        } catch (Exception ex) {
+            // Hết hạn giữ thì tác vụ sẽ được nhận lại
+            log.error("Cannot record failure of outbox event {}: {}", event.getId(), ex.getMessage());
+        }
+    }
+
+    // Ghi nhận thành công theo lô: một câu UPDATE cho mọi tác vụ đã gửi kể từ lượt trước
+    private void flushSent() {
+        List<Long> ids = new ArrayList<>();
+        for (Long id = sentIds.poll(); id != null; id = sentIds.poll()) {
+            ids.add(id);
+        }
+        if (!ids.isEmpty()) {
+            transactionTemplate.executeWithoutResult(
+                    status -> outboxEventRepository.markSent(ids, OutboxStatus.SENT, LocalDateTime.now()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        poller.shutdownNow();
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+        for (ThreadPoolExecutor worker : workers) {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        flushSent();
+    }
+}
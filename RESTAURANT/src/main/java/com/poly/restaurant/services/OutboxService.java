@@ -0,0 +1,98 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poly.restaurant.entities.OutboxEventEntity;
+import com.poly.restaurant.entities.enums.OutboxEventType;
+import com.poly.restaurant.entities.enums.OutboxStatus;
+import com.poly.restaurant.repositories.OutboxEventRepository;
+
+/**
+ * Ghi tác vụ phụ của đơn hàng vào outbox trong transaction hiện tại (hoặc transaction mới nếu chưa có).
+ * Request chỉ tốn một INSERT; việc gửi WebSocket/SSE/email/GHTK do OutboxDispatcher làm sau khi commit,
+ * rollback thì tác vụ cũng biến mất theo.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxDispatcher outboxDispatcher;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, @Lazy OutboxDispatcher outboxDispatcher,
+            ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxDispatcher = outboxDispatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Thông báo WebSocket trạng thái đơn hàng (gửi bản mới nhất của đơn lúc dispatch)
+     */
+    @Transactional
+    public void orderStatusChanged(Long orderId) {
+        enqueue(OutboxEventType.ORDER_STATUS_NOTIFICATION, orderId, null);
+    }
+
+    /**
+     * Sự kiện SSE cho màn hình staff, ví dụ "ORDER_CREATED:12"
+     */
+    @Transactional
+    public void sseEvent(Long orderId, String event) {
+        enqueue(OutboxEventType.ORDER_SSE_EVENT, orderId, event);
+    }
+
+    @Transactional
+    public void orderConfirmationEmail(String email, String customerName, Long orderId, String orderDate,
+            String totalAmount, String address) {
+        Map<String, String> payload = new LinkedHashMap<>();
+        payload.put("email", email);
+        payload.put("customerName", customerName);
+        payload.put("orderDate", orderDate);
+        payload.put("totalAmount", totalAmount);
+        payload.put("address", address);
+        try {
+            enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, orderId, objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize confirmation email for order " + orderId, e);
+        }
+    }
+
+    /**
+     * Tạo đơn GHTK; mã vận đơn được lưu vào orders.tracking_number
+     */
+    @Transactional
+    public void ghtkShipment(Long orderId) {
+        enqueue(OutboxEventType.GHTK_SHIPMENT, orderId, null);
+    }
+
+    private void enqueue(OutboxEventType type, Long orderId, String payload) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxEventEntity event = new OutboxEventEntity();
+        event.setEventType(type);
+        event.setOrderId(orderId);
+        event.setPayload(payload);
+        event.setStatus(OutboxStatus.PENDING);
+        event.setNextAttemptAt(now);
+        event.setCreatedAt(now);
+        outboxEventRepository.save(event);
+
+        // Đánh thức dispatcher ngay khi commit thay vì chờ lượt quét định kỳ
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxDispatcher.wakeUp();
+            }
+        });
+    }
+}
@@ -32,6 +32,15 @@ public class PaymentService {
 	@Autowired
 	private OrderRepository orderRepository;
 
+	@Autowired
+	private FeaturedItemService featuredItemService;
+
+	@Autowired
+	private OrderStateMachine orderStateMachine;
+
+	@Autowired
+	private OrderService orderService;
+
 	// VNPay Configuration - Thay thế bằng thông tin thật từ VNPay
 	@Value("${vnpay.tmn-code:DEMO}")
 	private String vnpTmnCode;
@@ -140,12 +149,24 @@ public class PaymentService {
 				String orderIdStr = vnpTxnRef.split("_")[1];
 				Long orderId = Long.parseLong(orderIdStr);
 
-				OrderEntity order = orderRepository.findById(orderId)
-						.orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
-
-				// Cập nhật trạng thái thanh toán
-				order.setStatus(OrderStatus.PAID);
-				orderRepository.save(order);
+				// Cập nhật trạng thái thanh toán (kiểm tra bước chuyển, UPDATE có điều kiện)
+				OrderStatus previousStatus;
+				try {
+					previousStatus = orderStateMachine.transition(orderId, OrderStatus.PAID);
+				} catch (IllegalArgumentException e) {
+					// Đơn đã bị hủy: tiền đã trừ nên ghi nhận để hoàn tiền, không báo lỗi callback
+					long amount = Long.parseLong(vnpAmount) / 100;
+					if (!orderService.recordPaymentForCanceledOrder(orderId, BigDecimal.valueOf(amount), vnpTxnRef)) {
+						throw e;
+					}
+					return PaymentResponseDTO.builder().success(true)
+							.message("Đơn hàng đã bị hủy, thanh toán được ghi nhận để hoàn tiền").transactionId(vnpTxnRef)
+							.orderId(orderId.toString()).amount(amount).paymentMethod("VNPAY").status("REFUND_PENDING")
+							.responseCode(vnpResponseCode).build();
+				}
+				if (!FeaturedItemService.isSold(previousStatus)) {
+					featuredItemService.recordSale(orderId);
+				}
 
 				return PaymentResponseDTO.builder().success(true).message("Thanh toán thành công")
 						.transactionId(vnpTxnRef).orderId(orderId.toString()).amount(Long.parseLong(vnpAmount) / 100)
@@ -163,13 +184,8 @@ public class PaymentService {
 
 	public PaymentResponseDTO processCodPayment(PaymentRequestDTO request) {
 		try {
-			// Kiểm tra đơn hàng
-			OrderEntity order = orderRepository.findById(request.getOrderId())
-					.orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
-
-			// Cập nhật trạng thái thanh toán COD
-			order.setStatus(OrderStatus.COD_PENDING);
-			orderRepository.save(order);
+			// Cập nhật trạng thái thanh toán COD (đơn không tồn tại hoặc không thể chuyển thì báo lỗi)
+			orderStateMachine.transition(request.getOrderId(), OrderStatus.COD_PENDING);
 
 			return PaymentResponseDTO.builder().success(true).message("Đã xác nhận thanh toán tiền mặt")
 					.orderId(request.getOrderId().toString()).amount(request.getAmount()).paymentMethod("COD")
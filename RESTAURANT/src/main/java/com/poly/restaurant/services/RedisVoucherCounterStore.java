@@ -0,0 +1,109 @@
+package com.poly.restaurant.services;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bộ đếm voucher trên Redis để nhiều instance dùng chung giới hạn.
+ * Mỗi code có một hash {used} và một sorted set các lượt giữ chỗ (score = thời điểm hết hạn);
+ * reserved là số phần tử còn hạn nên lượt giữ chỗ của instance đã chết tự được thu hồi.
+ * Các thao tác đọc-kiểm tra-ghi chạy trong Lua script nên nguyên tử.
+ * Bật bằng voucher.counter.store=redis.
+ */
+@Component
+@ConditionalOnProperty(name = "voucher.counter.store", havingValue = "redis")
+@RequiredArgsConstructor
+public class RedisVoucherCounterStore implements VoucherCounterStore {
+
+    private static final String KEY_PREFIX = "voucher:usage:";
+    private static final String RESERVATIONS_KEY_PREFIX = "voucher:reservations:";
+    private static final String USED = "used";
+
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>(
+            "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', ARGV[2]) "
+            + "local used = tonumber(redis.call('HGET', KEYS[1], 'used') or '0') "
+            + "if used + redis.call('ZCARD', KEYS[2]) >= tonumber(ARGV[1]) then return 0 end "
+            + "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[4]) "
+            + "return 1", Long.class);
+
+    private static final RedisScript<Long> CONFIRM = new DefaultRedisScript<>(
+            "redis.call('ZREM', KEYS[2], ARGV[1]) "
+            + "return redis.call('HINCRBY', KEYS[1], 'used', 1)", Long.class);
+
+    private static final RedisScript<Long> COMPARE_AND_SET_USED = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+            + "local used = tonumber(redis.call('HGET', KEYS[1], 'used') or '0') "
+            + "if used ~= tonumber(ARGV[1]) or redis.call('ZCARD', KEYS[2]) ~= tonumber(ARGV[2]) then return 0 end "
+            + "redis.call('HSET', KEYS[1], 'used', ARGV[3]) "
+            + "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public void initIfAbsent(String code, long used) {
+        redisTemplate.opsForHash().putIfAbsent(key(code), USED, String.valueOf(used));
+    }
+
+    @Override
+    public boolean tryReserve(String code, String reservationId, long limit, long expiresAtMillis) {
+        return Long.valueOf(1).equals(redisTemplate.execute(RESERVE, keys(code), String.valueOf(limit),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(expiresAtMillis), reservationId));
+    }
+
+    @Override
+    public void confirm(String code, String reservationId) {
+        redisTemplate.execute(CONFIRM, keys(code), reservationId);
+    }
+
+    @Override
+    public void release(String code, String reservationId) {
+        redisTemplate.opsForZSet().remove(reservationsKey(code), reservationId);
+    }
+
+    @Override
+    public long expireReservations(String code, long nowMillis) {
+        Long expired = redisTemplate.opsForZSet().removeRangeByScore(reservationsKey(code),
+                Double.NEGATIVE_INFINITY, nowMillis);
+        return expired != null ? expired : 0;
+    }
+
+    @Override
+    public Counter get(String code) {
+        Object used = redisTemplate.opsForHash().get(key(code), USED);
+        Long reserved = redisTemplate.opsForZSet().zCard(reservationsKey(code));
+        if (used == null && (reserved == null || reserved == 0)) {
+            return null;
+        }
+        return new Counter(parse(used), reserved != null ? reserved : 0);
+    }
+
+    @Override
+    public boolean compareAndSetUsed(String code, Counter expected, long used) {
+        return Long.valueOf(1).equals(redisTemplate.execute(COMPARE_AND_SET_USED, keys(code),
+                String.valueOf(expected.getUsed()), String.valueOf(expected.getReserved()), String.valueOf(used)));
+    }
+
+    private static List<String> keys(String code) {
+        return List.of(key(code), reservationsKey(code));
+    }
+
+    private static String reservationsKey(String code) {
+        return RESERVATIONS_KEY_PREFIX + "{" + code + "}";
+    }
+
+    // Hash tag {code} giữ hai key của một code cùng slot khi chạy Redis Cluster
+    private static String key(String code) {
+        return KEY_PREFIX + "{" + code + "}";
+    }
+
+    private static long parse(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0;
+    }
+}
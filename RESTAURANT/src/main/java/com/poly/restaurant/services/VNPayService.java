@@ -19,6 +19,15 @@ public class VNPayService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private FeaturedItemService featuredItemService;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    @Autowired
+    private OrderService orderService;
+
     public PaymentResponseDTO createVNPayPaymentUrl(PaymentRequestDTO request) {
         try {
             // Kiểm tra đơn hàng
@@ -105,12 +114,31 @@ public class VNPayService {
                 String orderIdStr = vnpTxnRef.split("_")[1];
                 Long orderId = Long.parseLong(orderIdStr);
 
-                OrderEntity order = orderRepository.findById(orderId)
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
-
-                // Cập nhật trạng thái thanh toán
-                order.setStatus(com.poly.restaurant.entities.enums.OrderStatus.PAID);
-                orderRepository.save(order);
+                // Cập nhật trạng thái thanh toán (kiểm tra bước chuyển, UPDATE có điều kiện)
+                com.poly.restaurant.entities.enums.OrderStatus previousStatus;
+                try {
+                    previousStatus = orderStateMachine.transition(orderId,
+                            com.poly.restaurant.entities.enums.OrderStatus.PAID);
+                } catch (IllegalArgumentException e) {
+                    // Đơn đã bị hủy: tiền đã trừ nên ghi nhận để hoàn tiền, không báo lỗi callback
+                    long amount = Long.parseLong(vnpAmount) / 100;
+                    if (!orderService.recordPaymentForCanceledOrder(orderId, BigDecimal.valueOf(amount), vnpTxnRef)) {
+                        throw e;
+                    }
+                    return PaymentResponseDTO.builder()
+                            .success(true)
+                            .message("Đơn hàng đã bị hủy, thanh toán VNPay được ghi nhận để hoàn tiền")
+                            .transactionId(vnpTxnRef)
+                            .orderId(orderId.toString())
+                            .amount(amount)
+                            .paymentMethod("VNPAY")
+                            .status("REFUND_PENDING")
+                            .responseCode(vnpResponseCode)
+                            .build();
+                }
+                if (!FeaturedItemService.isSold(previousStatus)) {
+                    featuredItemService.recordSale(orderId);
+                }
 
                 return PaymentResponseDTO.builder()
                         .success(true)
@@ -0,0 +1,56 @@
+package com.poly.restaurant.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Bộ đếm lượt sử dụng voucher theo code.
+ * Mỗi code giữ used (đã xác nhận, tương ứng voucher_usage_history) và các lượt giữ chỗ (đơn hàng chưa commit).
+ * Giữ chỗ chỉ thành công khi used + reserved còn dưới giới hạn, nên không thể dùng quá số lượt
+ * mà không cần khóa dòng discount. Mỗi lượt giữ chỗ có hạn, lượt bị bỏ rơi (instance chết trước khi
+ * xác nhận/trả lại) sẽ hết hạn thay vì chiếm chỗ mãi mãi.
+ */
+public interface VoucherCounterStore {
+
+    /**
+     * Khởi tạo bộ đếm với số lượt đã dùng nếu code chưa có bộ đếm
+     */
+    void initIfAbsent(String code, long used);
+
+    /**
+     * Giữ chỗ một lượt (reservationId) đến expiresAtMillis nếu used + reserved < limit
+     */
+    boolean tryReserve(String code, String reservationId, long limit, long expiresAtMillis);
+
+    /**
+     * Chuyển lượt giữ chỗ thành đã dùng (kể cả khi lượt giữ chỗ đã hết hạn)
+     */
+    void confirm(String code, String reservationId);
+
+    /**
+     * Trả lại lượt giữ chỗ (đơn hàng rollback)
+     */
+    void release(String code, String reservationId);
+
+    /**
+     * Bỏ các lượt giữ chỗ đã hết hạn, trả về số lượt bị bỏ
+     */
+    long expireReservations(String code, long nowMillis);
+
+    /**
+     * Trạng thái hiện tại, null nếu code chưa có bộ đếm
+     */
+    Counter get(String code);
+
+    /**
+     * Ghi đè used chỉ khi bộ đếm vẫn đúng bằng expected (không có giữ chỗ/xác nhận nào xen vào)
+     */
+    boolean compareAndSetUsed(String code, Counter expected, long used);
+
+    @Getter
+    @AllArgsConstructor
+    class Counter {
+        private final long used;
+        private final long reserved;
+    }
+}
@@ -0,0 +1,152 @@
+package com.poly.restaurant.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.poly.restaurant.dtos.DiscountResponseDTO;
+import com.poly.restaurant.repositories.VoucherUsageHistoryRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giữ chỗ và xác nhận lượt sử dụng voucher có giới hạn (usageLimit).
+ * Checkout giữ chỗ trên bộ đếm nguyên tử thay vì đếm voucher_usage_history hay khóa dòng discount;
+ * lượt giữ chỗ được xác nhận khi transaction đơn hàng commit và trả lại khi rollback.
+ * Lượt giữ chỗ không được xác nhận/trả lại (instance chết giữa chừng) hết hạn sau RESERVATION_TTL_MS.
+ * Bộ đếm được khởi tạo từ lịch sử ở lần dùng đầu tiên và đối soát định kỳ với lịch sử.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VoucherRedemptionService {
+
+    private static final long RECONCILE_INTERVAL_MS = 5 * 60 * 1000; // 5 phút
+
+    private static final int RECONCILE_CHUNK_SIZE = 500;
+
+    // Dài hơn nhiều so với transaction tạo đơn hàng để lượt giữ chỗ không hết hạn trước khi commit
+    private static final long RESERVATION_TTL_MS = 2 * 60 * 1000; // 2 phút
+
+    private final VoucherCounterStore counterStore;
+    private final DiscountIndex discountIndex;
+    private final VoucherUsageHistoryRepository voucherUsageHistoryRepository;
+
+    // Các code đã khởi tạo bộ đếm trong instance này
+    private final Set<String> trackedCodes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Voucher còn lượt sử dụng hay không (tính cả lượt đang giữ chỗ)
+     */
+    public boolean hasRemainingUsage(DiscountResponseDTO voucher) {
+        if (voucher.getUsageLimit() == null) {
+            return true;
+        }
+        track(voucher.getCode());
+        VoucherCounterStore.Counter counter = counterStore.get(voucher.getCode());
+        return counter == null || counter.getUsed() + counter.getReserved() < voucher.getUsageLimit();
+    }
+
+    /**
+     * Giữ chỗ một lượt cho voucher trong transaction hiện tại.
+     * Voucher không tồn tại/hết hạn hoặc không giới hạn lượt thì bỏ qua như trước.
+     */
+    public void redeem(String code) {
+        Optional<DiscountResponseDTO> voucher = discountIndex.findVoucher(code, LocalDateTime.now());
+        if (voucher.isEmpty() || voucher.get().getUsageLimit() == null) {
+            return;
+        }
+        track(code);
+        String reservationId = UUID.randomUUID().toString();
+        if (!counterStore.tryReserve(code, reservationId, voucher.get().getUsageLimit(),
+                System.currentTimeMillis() + RESERVATION_TTL_MS)) {
+            throw new IllegalArgumentException("Voucher " + code + " đã hết lượt sử dụng");
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counterStore.confirm(code, reservationId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    counterStore.confirm(code, reservationId);
+                } else {
+                    counterStore.release(code, reservationId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Thu hồi lượt giữ chỗ hết hạn rồi đối soát used với số dòng voucher_usage_history.
+     * Chỉ ghi đè khi bộ đếm không thay đổi trong lúc đếm, nên lượt xác nhận xen giữa không bị mất
+     * (sai lệch còn lại chỉ làm đếm dư, sẽ được sửa ở lần sau).
+     */
+    @Scheduled(fixedDelay = RECONCILE_INTERVAL_MS, initialDelay = RECONCILE_INTERVAL_MS)
+    public void reconcile() {
+        if (trackedCodes.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> codes = new ArrayList<>(trackedCodes);
+            int corrected = 0;
+            long expired = 0;
+            long now = System.currentTimeMillis();
+            for (int from = 0; from < codes.size(); from += RECONCILE_CHUNK_SIZE) {
+                List<String> chunk = codes.subList(from, Math.min(from + RECONCILE_CHUNK_SIZE, codes.size()));
+                Map<String, VoucherCounterStore.Counter> before = new HashMap<>();
+                for (String code : chunk) {
+                    expired += counterStore.expireReservations(code, now);
+                    VoucherCounterStore.Counter counter = counterStore.get(code);
+                    if (counter != null) {
+                        before.put(code, counter);
+                    }
+                }
+
+                Map<String, Long> history = new HashMap<>();
+                for (Object[] row : voucherUsageHistoryRepository.countByVoucherCodes(before.keySet())) {
+                    history.put((String) row[0], (Long) row[1]);
+                }
+
+                for (Map.Entry<String, VoucherCounterStore.Counter> entry : before.entrySet()) {
+                    long used = history.getOrDefault(entry.getKey(), 0L);
+                    if (entry.getValue().getUsed() != used
+                            && counterStore.compareAndSetUsed(entry.getKey(), entry.getValue(), used)) {
+                        log.warn("Voucher {} usage counter drifted: {} -> {}", entry.getKey(),
+                                entry.getValue().getUsed(), used);
+                        corrected++;
+                    }
+                }
+            }
+            if (expired > 0) {
+                log.warn("Expired {} abandoned voucher reservations", expired);
+            }
+            log.debug("Reconciled {} voucher counters, {} corrected", codes.size(), corrected);
+        } catch (Exception e) {
+            log.error("Error reconciling voucher usage counters: {}", e.getMessage(), e);
+        }
+    }
+
+    // Khởi tạo bộ đếm từ lịch sử ở lần đầu instance gặp code
+    private void track(String code) {
+        if (trackedCodes.contains(code)) {
+            return;
+        }
+        counterStore.initIfAbsent(code, voucherUsageHistoryRepository.countByVoucherCode(code));
+        trackedCodes.add(code);
+    }
+}
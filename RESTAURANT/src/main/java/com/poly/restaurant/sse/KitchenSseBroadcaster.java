@@ -0,0 +1,141 @@
+package com.poly.restaurant.sse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * SSE cho màn hình bếp theo chi nhánh. Mỗi màn hình có hàng đợi gửi riêng (giới hạn MAX_PENDING_EVENTS)
+ * và được gửi tuần tự theo đúng thứ tự gọi, nên snapshot luôn tới trước các delta sau nó và một client
+ * chậm không làm trễ màn hình khác hay nơi phát sự kiện. Client để hàng đợi đầy bị ngắt, khi kết nối lại
+ * sẽ nhận snapshot mới.
+ */
+@Component
+public class KitchenSseBroadcaster {
+
+    private static final int MAX_PENDING_EVENTS = 256;
+
+    private final Map<Long, List<Client>> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    // Luồng chỉ sống khi có màn hình đang cần gửi, mỗi màn hình tối đa một luồng tại một thời điểm
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "kitchen-sse-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Đăng ký màn hình bếp và xếp snapshot làm sự kiện đầu tiên của emitter này
+     */
+    public SseEmitter register(Long branchId, Object snapshot) {
+        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
+        List<Client> branchClients = clients.computeIfAbsent(branchId, id -> new CopyOnWriteArrayList<>());
+        Client client = new Client(emitter);
+        emitter.onCompletion(() -> branchClients.remove(client));
+        emitter.onTimeout(() -> branchClients.remove(client));
+        emitter.onError(e -> branchClients.remove(client));
+        client.offer(SseEmitter.event().name("SNAPSHOT").data(snapshot));
+        branchClients.add(client);
+        return emitter;
+    }
+
+    public void emit(Long branchId, Object delta) {
+        send(branchId, "DELTA", delta);
+    }
+
+    /**
+     * Gửi lại toàn bộ hàng đợi cho mọi màn hình của chi nhánh (sau khi hàng đợi được nạp lại từ DB)
+     */
+    public void resend(Long branchId, Object snapshot) {
+        send(branchId, "SNAPSHOT", snapshot);
+    }
+
+    private void send(Long branchId, String name, Object data) {
+        List<Client> branchClients = clients.get(branchId);
+        if (branchClients == null) {
+            return;
+        }
+        for (Client client : branchClients) {
+            if (!client.offer(SseEmitter.event().name(name).data(data))) {
+                branchClients.remove(client);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    /**
+     * Một màn hình bếp: sự kiện chờ gửi và cờ đánh dấu đang có luồng gửi
+     */
+    private final class Client implements Runnable {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> pending = new ArrayBlockingQueue<>(MAX_PENDING_EVENTS);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Client(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // Không chờ: hàng đợi đầy thì đóng client, việc complete emitter do luồng gửi làm
+        boolean offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return false;
+            }
+            if (!pending.offer(event)) {
+                closed = true;
+            }
+            schedule();
+            return !closed;
+        }
+
+        @Override
+        public void run() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = pending.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (Exception e) {
+                closed = true;
+            }
+            if (closed) {
+                // Giữ cờ scheduled để không luồng nào gửi tiếp
+                pending.clear();
+                emitter.complete();
+                return;
+            }
+            scheduled.set(false);
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Ứng dụng đang tắt
+                    closed = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.poly.restaurant.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tính giá bằng số nguyên VND (long). VND không có đơn vị lẻ nên mọi phép tính trên đường nóng
+ * chỉ là cộng/trừ/nhân số nguyên; BigDecimal chỉ dùng khi đọc/ghi entity, DTO.
+ */
+public final class PriceUtils {
+
+    private static final long BASIS_POINTS = 10_000;
+
+    private PriceUtils() {
+    }
+
+    /**
+     * BigDecimal -> VND, làm tròn nửa lên; null = 0
+     */
+    public static long toVnd(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        if (amount.scale() <= 0) {
+            return amount.longValueExact();
+        }
+        return amount.setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static long toVnd(Double amount) {
+        return amount != null ? Math.round(amount) : 0;
+    }
+
+    public static BigDecimal toDecimal(long vnd) {
+        return BigDecimal.valueOf(vnd);
+    }
+
+    /**
+     * Phần trăm -> phần vạn (12.5% -> 1250) để tính phần trăm bằng số nguyên
+     */
+    public static long toBasisPoints(BigDecimal percentage) {
+        if (percentage == null) {
+            return 0;
+        }
+        return percentage.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static long toBasisPoints(Double percentage) {
+        return percentage != null ? Math.round(percentage * 100) : 0;
+    }
+
+    /**
+     * amount * basisPoints / 10000, làm tròn nửa lên
+     */
+    public static long percentOf(long amount, long basisPoints) {
+        return (Math.multiplyExact(amount, basisPoints) + BASIS_POINTS / 2) / BASIS_POINTS;
+    }
+
+    public static long lineTotal(long unitPrice, int quantity) {
+        return Math.multiplyExact(unitPrice, quantity);
+    }
+
+    /**
+     * Giá sau discount trực tiếp: trừ phần trăm trước, rồi trừ số tiền; không âm
+     */
+    public static long finalPrice(long basePrice, boolean discountActive, long percentageBasisPoints,
+            long discountAmount) {
+        if (!discountActive) {
+            return basePrice;
+        }
+        long price = basePrice;
+        if (percentageBasisPoints > 0) {
+            price -= percentOf(basePrice, percentageBasisPoints);
+        }
+        if (discountAmount > 0) {
+            price -= discountAmount;
+        }
+        return Math.max(0, price);
+    }
+
+    /**
+     * Số tiền giảm cho một dòng khi discount đặt giá mới newPrice (0 nếu giá mới không thấp hơn)
+     */
+    public static long lineDiscount(long unitPrice, long newPrice, int quantity) {
+        return newPrice < unitPrice ? lineTotal(unitPrice - newPrice, quantity) : 0;
+    }
+}
@@ -0,0 +1,7 @@
+-- Migration: Add composite indexes for keyset pagination of dishes and combos
+-- Version: V24
+-- Description: Staff/manager search filters by branch and availability status,
+-- then seeks on (created_at, id) instead of OFFSET
+
+CREATE INDEX idx_dishes_branch_status_created ON dishes (branch_id, availability_status, created_at, id);
+CREATE INDEX idx_combos_branch_status_created ON combos (branch_id, availability_status, created_at, id);
@@ -0,0 +1,6 @@
+-- Migration: Add usage limit to customer vouchers
+-- Version: V25
+-- Description: Maximum number of orders a voucher code can be redeemed on (NULL = unlimited).
+-- Remaining usage is tracked by in-process/Redis counters and reconciled against voucher_usage_history
+
+ALTER TABLE discounts ADD COLUMN IF NOT EXISTS usage_limit INT NULL COMMENT 'Số lượt sử dụng tối đa của voucher (NULL = không giới hạn)';
@@ -0,0 +1,6 @@
+-- Migration: Add optimistic-locking version to orders
+-- Version: V26
+-- Description: total_amount is now maintained incrementally on every item change;
+-- the version column keeps concurrent item changes on the same order from overwriting each other
+
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,28 @@
+-- Migration: Pooled id allocation for orders, order items, cart items and table history
+-- Version: V27
+-- Description: IDENTITY ids force Hibernate to insert rows one by one. These tables now take ids
+-- in blocks of 50 from id_generator so inserts can be JDBC-batched.
+-- With the pooled optimizer a stored value N hands out ids (N - 49 .. N], so each row is seeded
+-- at MAX(id) + 50 to start right after every existing id. IdGeneratorInitializer applies the same
+-- rule on every startup, so databases created by ddl-auto=update are covered without this script.
+
+CREATE TABLE IF NOT EXISTS id_generator (
+    sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'orders', COALESCE(MAX(id), 0) + 50 FROM orders
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'order_items', COALESCE(MAX(id), 0) + 50 FROM order_items
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'cart_items', COALESCE(MAX(id), 0) + 50 FROM cart_items
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'table_history', COALESCE(MAX(id), 0) + 50 FROM table_history
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
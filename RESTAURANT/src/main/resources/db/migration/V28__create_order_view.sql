@@ -0,0 +1,18 @@
+-- Migration: Denormalized order read model
+-- Version: V28
+-- Description: One row per order holding the staff/admin OrderResponseDTO as JSON plus the columns
+-- used for filtering and search. Rows are rebuilt asynchronously after order writes commit;
+-- order_version lets the periodic reconcile find rows that fell behind.
+
+CREATE TABLE IF NOT EXISTS order_view (
+    order_id BIGINT NOT NULL PRIMARY KEY,
+    branch_id BIGINT NULL,
+    status VARCHAR(30) NULL,
+    created_at DATETIME(6) NULL,
+    search_text VARCHAR(500) NULL,
+    order_version BIGINT NULL,
+    payload LONGTEXT NOT NULL,
+    refreshed_at DATETIME(6) NULL,
+    INDEX idx_order_view_branch_created (branch_id, created_at),
+    INDEX idx_order_view_branch_status_created (branch_id, status, created_at)
+);
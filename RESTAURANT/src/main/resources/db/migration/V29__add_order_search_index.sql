@@ -0,0 +1,27 @@
+-- Migration: Indexed order search
+-- Version: V29
+-- Description: Replaces LIKE '%term%' scans over orders with index range scans on the read model:
+-- phone / phone_reversed answer phone prefix and suffix lookups, order_search_token holds the
+-- accent-folded words of recipient name, address, email and table name for word-prefix matching.
+
+ALTER TABLE order_view
+    DROP COLUMN search_text,
+    ADD COLUMN phone VARCHAR(20) NULL,
+    ADD COLUMN phone_reversed VARCHAR(20) NULL,
+    ADD INDEX idx_order_view_phone (phone),
+    ADD INDEX idx_order_view_phone_reversed (phone_reversed);
+
+CREATE TABLE IF NOT EXISTS order_search_token (
+    id BIGINT NOT NULL PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    token VARCHAR(50) NOT NULL,
+    INDEX idx_order_search_token_token (token, order_id),
+    INDEX idx_order_search_token_order (order_id)
+);
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'order_search_token', COALESCE(MAX(id), 0) + 50 FROM order_search_token
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+-- Force the reconcile job to rebuild every view row so phone columns and tokens get filled
+UPDATE order_view SET order_version = NULL;
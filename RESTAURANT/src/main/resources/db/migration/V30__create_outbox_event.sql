@@ -0,0 +1,23 @@
+-- Migration: Transactional outbox for order side effects
+-- Version: V30
+-- Description: WebSocket/SSE notifications, order confirmation emails and GHTK shipments are written
+-- here in the same transaction as the order change and sent by a background dispatcher with retries.
+-- Rows that exhaust their attempts stay with status DEAD for manual follow-up.
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id BIGINT NOT NULL PRIMARY KEY,
+    event_type VARCHAR(40) NOT NULL,
+    order_id BIGINT NULL,
+    payload TEXT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL,
+    last_error VARCHAR(1000) NULL,
+    created_at DATETIME(6) NOT NULL,
+    processed_at DATETIME(6) NULL,
+    INDEX idx_outbox_event_status_next (status, next_attempt_at)
+);
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'outbox_event', COALESCE(MAX(id), 0) + 50 FROM outbox_event
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
@@ -0,0 +1,6 @@
+-- Migration: Index orders by last update
+-- Version: V31
+-- Description: The order read model reconcile and the order total check only scan orders changed in
+-- the last few minutes; this index turns those scans into range reads.
+
+CREATE INDEX idx_orders_updated_at ON orders (updated_at);
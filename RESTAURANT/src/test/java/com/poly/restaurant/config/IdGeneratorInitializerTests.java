@@ -0,0 +1,50 @@
+package com.poly.restaurant.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.repositories.OrderRepository;
+
+import jakarta.persistence.EntityManager;
+
+@SpringBootTest
+@Transactional
+class IdGeneratorInitializerTests {
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void newOrderIdIsAboveExistingRows() {
+		Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM orders", Long.class);
+		assumeTrue(maxId != null, "orders table has no rows to collide with");
+
+		OrderEntity existing = orderRepository.findById(maxId).orElseThrow();
+		OrderEntity order = new OrderEntity();
+		order.setStatus(OrderStatus.PENDING);
+		order.setTotalAmount(BigDecimal.ZERO);
+		order.setAccount(existing.getAccount());
+		order.setBranch(existing.getBranch());
+
+		OrderEntity saved = orderRepository.saveAndFlush(order);
+		entityManager.clear();
+
+		assertTrue(saved.getId() > maxId, "generated id " + saved.getId() + " must be above " + maxId);
+	}
+}
@@ -0,0 +1,70 @@
+package com.poly.restaurant.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.poly.restaurant.utils.PriceUtils;
+
+/**
+ * So sánh đọc giá cuối tính sẵn (finalPriceVnd) với tính lại từ các cột BigDecimal mỗi lần đọc,
+ * như một lần render menu đọc giá của từng món nhiều lần
+ */
+@Tag("benchmark")
+class FinalPriceBenchmarkTests {
+
+	private static final int DISHES = 500;
+	private static final int ROUNDS = 2_000;
+
+	@Test
+	void precomputedFinalPriceMatchesAndIsCheaperThanRecomputing() {
+		DishEntity[] dishes = new DishEntity[DISHES];
+		for (int i = 0; i < DISHES; i++) {
+			DishEntity dish = new DishEntity();
+			dish.setBasePrice(BigDecimal.valueOf(25_000L + i * 1_000L));
+			dish.setDiscountActive(i % 2 == 0);
+			dish.setDiscountPercentage(new BigDecimal("12.5"));
+			dish.setDiscountAmount(BigDecimal.valueOf(2_000));
+			dishes[i] = dish;
+		}
+
+		for (DishEntity dish : dishes) {
+			assertEquals(recompute(dish), dish.getFinalPriceVnd());
+		}
+
+		// Làm nóng JIT cho cả hai cách trước khi đo
+		run(dishes, ROUNDS / 4, true);
+		run(dishes, ROUNDS / 4, false);
+
+		long start = System.nanoTime();
+		long precomputedSum = run(dishes, ROUNDS, true);
+		long precomputedNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long recomputedSum = run(dishes, ROUNDS, false);
+		long recomputedNanos = System.nanoTime() - start;
+
+		assertEquals(recomputedSum, precomputedSum);
+		System.out.printf("finalPrice %d reads: precomputed %d ms, recomputed %d ms%n",
+				(long) DISHES * ROUNDS, precomputedNanos / 1_000_000, recomputedNanos / 1_000_000);
+	}
+
+	private static long run(DishEntity[] dishes, int rounds, boolean precomputed) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (DishEntity dish : dishes) {
+				sum += precomputed ? dish.getFinalPriceVnd() : recompute(dish);
+			}
+		}
+		return sum;
+	}
+
+	private static long recompute(DishEntity dish) {
+		return PriceUtils.finalPrice(PriceUtils.toVnd(dish.getBasePrice()),
+				Boolean.TRUE.equals(dish.getDiscountActive()),
+				PriceUtils.toBasisPoints(dish.getDiscountPercentage()), PriceUtils.toVnd(dish.getDiscountAmount()));
+	}
+}
@@ -0,0 +1,145 @@
+package com.poly.restaurant.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class InMemoryVoucherCounterStoreTests {
+
+	private static final String CODE = "SALE10";
+
+	private final InMemoryVoucherCounterStore store = new InMemoryVoucherCounterStore();
+
+	@Test
+	void reserveConfirmAndReleaseStayWithinLimit() {
+		long expiresAt = System.currentTimeMillis() + 60_000;
+		store.initIfAbsent(CODE, 0);
+
+		assertTrue(store.tryReserve(CODE, "r1", 2, expiresAt));
+		assertTrue(store.tryReserve(CODE, "r2", 2, expiresAt));
+		assertFalse(store.tryReserve(CODE, "r3", 2, expiresAt));
+		assertCounter(0, 2);
+
+		store.confirm(CODE, "r1");
+		assertCounter(1, 1);
+
+		store.release(CODE, "r2");
+		store.release(CODE, "r2");
+		assertCounter(1, 0);
+
+		assertTrue(store.tryReserve(CODE, "r3", 2, expiresAt));
+		assertFalse(store.tryReserve(CODE, "r4", 2, expiresAt));
+	}
+
+	@Test
+	void initIfAbsentKeepsExistingCounter() {
+		store.initIfAbsent(CODE, 3);
+		store.initIfAbsent(CODE, 0);
+		assertCounter(3, 0);
+		assertNull(store.get("UNKNOWN"));
+	}
+
+	@Test
+	void expiredReservationFreesItsSlotOnce() {
+		long now = System.currentTimeMillis();
+		store.initIfAbsent(CODE, 0);
+		assertTrue(store.tryReserve(CODE, "abandoned", 1, now - 1));
+
+		// Hết chỗ: tryReserve dọn lượt đã hết hạn rồi giữ chỗ được
+		assertTrue(store.tryReserve(CODE, "fresh", 1, now + 60_000));
+		assertCounter(0, 1);
+
+		// Lượt đã hết hạn không được trừ thêm lần nữa
+		store.release(CODE, "abandoned");
+		assertCounter(0, 1);
+		assertEquals(0, store.expireReservations(CODE, now));
+	}
+
+	@Test
+	void expireReservationsOnlyDropsDueEntries() {
+		long now = System.currentTimeMillis();
+		store.initIfAbsent(CODE, 0);
+		store.tryReserve(CODE, "due", 10, now - 1);
+		store.tryReserve(CODE, "later", 10, now + 60_000);
+
+		assertEquals(1, store.expireReservations(CODE, now));
+		assertCounter(0, 1);
+	}
+
+	@Test
+	void confirmAfterExpiryCountsUseWithoutTouchingOtherReservations() {
+		long now = System.currentTimeMillis();
+		store.initIfAbsent(CODE, 0);
+		store.tryReserve(CODE, "late", 10, now - 1);
+		store.tryReserve(CODE, "other", 10, now + 60_000);
+		store.expireReservations(CODE, now);
+
+		store.confirm(CODE, "late");
+		assertCounter(1, 1);
+	}
+
+	@Test
+	void concurrentReservationsNeverExceedLimit() throws Exception {
+		int limit = 50;
+		int threads = 16;
+		int attemptsPerThread = 200;
+		long expiresAt = System.currentTimeMillis() + 60_000;
+		store.initIfAbsent(CODE, 0);
+
+		AtomicInteger confirmed = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < attemptsPerThread; i++) {
+						String reservationId = thread + "-" + i;
+						if (store.tryReserve(CODE, reservationId, limit, expiresAt)) {
+							// Một nửa đơn commit, một nửa rollback
+							if (i % 2 == 0) {
+								store.confirm(CODE, reservationId);
+								confirmed.incrementAndGet();
+							} else {
+								store.release(CODE, reservationId);
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		VoucherCounterStore.Counter counter = store.get(CODE);
+		assertEquals(0, counter.getReserved());
+		assertEquals(confirmed.get(), counter.getUsed());
+		assertTrue(counter.getUsed() <= limit, "used " + counter.getUsed() + " exceeds limit " + limit);
+		assertEquals(limit, counter.getUsed());
+	}
+
+	private void assertCounter(long used, long reserved) {
+		VoucherCounterStore.Counter counter = store.get(CODE);
+		assertEquals(used, counter.getUsed());
+		assertEquals(reserved, counter.getReserved());
+	}
+}
@@ -0,0 +1,115 @@
+package com.poly.restaurant.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.OrderItemEntity;
+import com.poly.restaurant.entities.enums.OrderItemStatus;
+import com.poly.restaurant.repositories.ComboRepository;
+import com.poly.restaurant.repositories.DiscountRepository;
+import com.poly.restaurant.repositories.DishRepository;
+import com.poly.restaurant.repositories.OrderItemRepository;
+import com.poly.restaurant.repositories.OrderRepository;
+
+class OrderItemStatusGuardTests {
+
+	private final OrderItemRepository orderItemRepository = mock(OrderItemRepository.class);
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final KitchenDisplayService kitchenDisplayService = mock(KitchenDisplayService.class);
+	private final OrderReadModel orderReadModel = mock(OrderReadModel.class);
+	private final OutboxService outboxService = mock(OutboxService.class);
+	private final OrderItemService orderItemService = new OrderItemService(orderItemRepository, orderRepository,
+			mock(DishRepository.class), mock(ComboRepository.class), mock(DiscountRepository.class),
+			mock(OrderCalculationService.class), mock(DiscountIndex.class), kitchenDisplayService, orderReadModel,
+			outboxService);
+
+	@Test
+	void finishedItemsCannotMoveBackOrBeCancelled() {
+		for (OrderItemStatus terminal : EnumSet.of(OrderItemStatus.SERVED, OrderItemStatus.CANCELLED,
+				OrderItemStatus.COMPLETED)) {
+			for (OrderItemStatus target : OrderItemStatus.values()) {
+				assertFalse(OrderItemService.allowedSources(target).contains(terminal), terminal + " -> " + target);
+			}
+		}
+		assertTrue(OrderItemService.allowedSources(OrderItemStatus.PENDING).isEmpty());
+		assertTrue(OrderItemService.allowedSources(OrderItemStatus.COMPLETED).isEmpty());
+		assertFalse(OrderItemService.allowedSources(OrderItemStatus.CANCELLED).contains(OrderItemStatus.IN_PROGRESS));
+		assertTrue(OrderItemService.allowedSources(OrderItemStatus.SERVED).contains(OrderItemStatus.READY));
+	}
+
+	@Test
+	void bulkUpdateChangesExactlyTheLockedCandidates() {
+		when(orderItemRepository.lockCandidatesByOrderIdIn(List.of(1L, 2L), List.of("PENDING"), 9L))
+				.thenReturn(List.of(new Object[] { 11L, 1L }, new Object[] { 12L, 1L }, new Object[] { 21L, 2L }));
+		when(orderItemRepository.updateStatusByIdIn(eq(List.of(11L, 12L, 21L)), eq(EnumSet.of(OrderItemStatus.PENDING)),
+				eq(OrderItemStatus.CONFIRMED), any(LocalDateTime.class), isNull())).thenReturn(3);
+
+		Map<String, Object> result = orderItemService.updateItemsStatus(9L, List.of(1L, 2L), null,
+				OrderItemStatus.CONFIRMED);
+
+		assertEquals(3, result.get("updatedCount"));
+		assertEquals(Map.of(1L, List.of(11L, 12L), 2L, List.of(21L)), result.get("items"));
+		verify(kitchenDisplayService).itemsChanged(List.of(11L, 12L, 21L), OrderItemStatus.CONFIRMED);
+		verify(orderReadModel).orderChanged(1L);
+		verify(orderReadModel).orderChanged(2L);
+		verify(outboxService).sseEvent(1L, "ORDER_ITEMS_STATUS_UPDATED:CONFIRMED:1=11,12;2=21");
+	}
+
+	@Test
+	void bulkUpdateWithoutCandidatesWritesNothing() {
+		when(orderItemRepository.lockCandidatesByIdIn(anyCollection(), anyCollection(), any())).thenReturn(List.of());
+
+		Map<String, Object> result = orderItemService.updateItemsStatus(null, null, List.of(5L), OrderItemStatus.READY);
+
+		assertEquals(0, result.get("updatedCount"));
+		verify(orderItemRepository, never()).updateStatusByIdIn(any(), any(), any(), any(), any());
+		verifyNoInteractions(kitchenDisplayService, outboxService);
+	}
+
+	@Test
+	void bulkUpdateRejectsUnreachableTargetsAndAmbiguousScope() {
+		assertThrows(IllegalArgumentException.class,
+				() -> orderItemService.updateItemsStatus(null, List.of(1L), null, OrderItemStatus.PENDING));
+		assertThrows(IllegalArgumentException.class,
+				() -> orderItemService.updateItemsStatus(null, List.of(1L), List.of(2L), OrderItemStatus.READY));
+		assertThrows(IllegalArgumentException.class,
+				() -> orderItemService.updateItemsStatus(null, null, null, OrderItemStatus.READY));
+		verifyNoInteractions(orderItemRepository);
+	}
+
+	@Test
+	void singleItemUpdateUsesTheSameTransitionTable() {
+		OrderEntity order = new OrderEntity();
+		order.setId(1L);
+		OrderItemEntity item = new OrderItemEntity();
+		item.setId(11L);
+		item.setOrder(order);
+		item.setStatus(OrderItemStatus.SERVED);
+		when(orderItemRepository.findById(11L)).thenReturn(Optional.of(item));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> orderItemService.updateOrderItemStatus(1L, 11L, OrderItemStatus.IN_PROGRESS));
+		verify(orderItemRepository, never()).save(any());
+		assertEquals(OrderItemStatus.SERVED, item.getStatus());
+	}
+}
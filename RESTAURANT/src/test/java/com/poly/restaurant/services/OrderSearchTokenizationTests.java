@@ -0,0 +1,91 @@
+package com.poly.restaurant.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.poly.restaurant.entities.AccountEntity;
+import com.poly.restaurant.entities.DeliveryAddressEntity;
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.TableEntity;
+
+class OrderSearchTokenizationTests {
+
+	@Test
+	void foldStripsAccentsAndPunctuation() {
+		assertEquals("nguyen van an", MenuSearchIndex.fold("Nguyễn Văn  Ân"));
+		assertEquals("duong 3 2", MenuSearchIndex.fold("Đường 3/2"));
+		assertEquals("", MenuSearchIndex.fold(null));
+	}
+
+	@Test
+	void tokensComeFromAllSearchableFieldsWithoutAccents() {
+		OrderEntity order = new OrderEntity();
+		order.setAddress("12 Lê Lợi, Quận 1");
+		order.setCustomerEmail("an.nguyen@mail.vn");
+		TableEntity table = new TableEntity();
+		table.setName("Bàn 5");
+		order.setTable(table);
+		AccountEntity account = new AccountEntity();
+		account.setUsername("staff01");
+		order.setAccount(account);
+		DeliveryAddressEntity delivery = new DeliveryAddressEntity();
+		delivery.setRecipientName("Trần Thị Bích");
+		order.setDeliveryAddress(delivery);
+
+		Set<String> tokens = OrderReadModel.searchTokens(order);
+
+		assertTrue(tokens.containsAll(List.of("12", "le", "loi", "quan", "1", "an", "nguyen", "mail", "vn", "ban", "5",
+				"staff01", "tran", "thi", "bich")), tokens.toString());
+	}
+
+	@Test
+	void singleLettersAreDroppedButSingleDigitsKept() {
+		OrderEntity order = new OrderEntity();
+		order.setAddress("Hẻm 7 A Phường B");
+
+		Set<String> tokens = OrderReadModel.searchTokens(order);
+
+		assertTrue(tokens.contains("7"));
+		assertFalse(tokens.contains("a"));
+		assertFalse(tokens.contains("b"));
+	}
+
+	@Test
+	void tokensAreCappedPerOrderAndInLength() {
+		StringBuilder address = new StringBuilder("x".repeat(80));
+		for (int i = 0; i < 100; i++) {
+			address.append(" w").append(i);
+		}
+		OrderEntity order = new OrderEntity();
+		order.setAddress(address.toString());
+
+		Set<String> tokens = OrderReadModel.searchTokens(order);
+
+		assertEquals(64, tokens.size());
+		assertTrue(tokens.stream().allMatch(token -> token.length() <= 50));
+	}
+
+	@Test
+	void queryWordsAreFoldedDedupedAndLimited() {
+		assertEquals(List.of("nguyen", "an"), List.copyOf(OrderReadModel.queryWords("Nguyễn  ân nguyen")));
+		assertEquals(4, OrderReadModel.queryWords("a b c d e f").size());
+		assertTrue(OrderReadModel.queryWords("  ").isEmpty());
+	}
+
+	@Test
+	void phoneDigitsNormalizesVietnameseCountryCode() {
+		assertEquals("0912345678", OrderReadModel.phoneDigits("+84 912 345 678"));
+		assertEquals("0912345678", OrderReadModel.phoneDigits("0912-345-678"));
+		assertEquals("123", OrderReadModel.phoneDigits("#123"));
+		assertNull(OrderReadModel.phoneDigits("()"));
+		assertNull(OrderReadModel.phoneDigits(null));
+		assertEquals(20, OrderReadModel.phoneDigits("1".repeat(30)).length());
+	}
+}
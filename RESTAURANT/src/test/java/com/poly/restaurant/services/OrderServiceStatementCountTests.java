@@ -0,0 +1,49 @@
+package com.poly.restaurant.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.poly.restaurant.dtos.OrderResponseDTO;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderServiceStatementCountTests {
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void mapOrdersUsesTwoStatementsRegardlessOfOrderCount() {
+		List<Long> ids = jdbcTemplate.queryForList(
+				"SELECT o.id FROM orders o WHERE EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = o.id) "
+						+ "ORDER BY o.id DESC LIMIT 20", Long.class);
+		assumeTrue(ids.size() > 1, "need several orders with items");
+
+		assertEquals(2, statementsFor(ids.subList(0, 1)));
+		assertEquals(2, statementsFor(ids));
+	}
+
+	private long statementsFor(List<Long> ids) {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		List<OrderResponseDTO> orders = orderService.mapOrders(ids, (order, dto) -> dto);
+		assertEquals(ids.size(), orders.size());
+		return statistics.getPrepareStatementCount();
+	}
+}
@@ -0,0 +1,146 @@
+package com.poly.restaurant.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.exceptions.ResourceNotFoundException;
+import com.poly.restaurant.repositories.OrderRepository;
+
+class OrderStateMachineTests {
+
+	private static final Long ORDER_ID = 7L;
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final OrderReadModel orderReadModel = mock(OrderReadModel.class);
+	private final OrderStateMachine stateMachine = new OrderStateMachine(orderRepository, orderReadModel,
+			mock(PlatformTransactionManager.class));
+
+	@Test
+	void terminalStatusesHaveNoOutgoingTransitions() {
+		for (OrderStatus to : OrderStatus.values()) {
+			if (to != OrderStatus.CANCELED) {
+				assertFalse(OrderStateMachine.canTransition(OrderStatus.CANCELED, to), "CANCELED -> " + to);
+			}
+			if (to != OrderStatus.REFUNDED) {
+				assertFalse(OrderStateMachine.canTransition(OrderStatus.REFUNDED, to), "REFUNDED -> " + to);
+			}
+		}
+	}
+
+	@Test
+	void sameStatusIsAlwaysAllowed() {
+		for (OrderStatus status : OrderStatus.values()) {
+			assertTrue(OrderStateMachine.canTransition(status, status), status.name());
+		}
+	}
+
+	@Test
+	void openOrdersCanBeCanceledButSettledOnesCannot() {
+		Set<OrderStatus> cancelable = EnumSet.of(OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.PREPARING,
+				OrderStatus.COD_PENDING);
+		for (OrderStatus from : OrderStatus.values()) {
+			if (from != OrderStatus.CANCELED) {
+				assertEquals(cancelable.contains(from), OrderStateMachine.canTransition(from, OrderStatus.CANCELED),
+						from + " -> CANCELED");
+			}
+		}
+	}
+
+	@Test
+	void paymentAndCompletionCanHappenInEitherOrder() {
+		assertTrue(OrderStateMachine.canTransition(OrderStatus.READY_FOR_PICKUP, OrderStatus.COMPLETED));
+		assertTrue(OrderStateMachine.canTransition(OrderStatus.COMPLETED, OrderStatus.PAID));
+		assertTrue(OrderStateMachine.canTransition(OrderStatus.PAID, OrderStatus.COMPLETED));
+		assertFalse(OrderStateMachine.canTransition(OrderStatus.PAID, OrderStatus.PENDING));
+		assertFalse(OrderStateMachine.canTransition(OrderStatus.DELIVERED, OrderStatus.PREPARING));
+	}
+
+	@Test
+	void transitionWritesWithConditionalUpdateAndReturnsPreviousStatus() {
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.of(OrderStatus.PENDING));
+		when(orderRepository.compareAndSetStatus(eq(ORDER_ID), eq(OrderStatus.PENDING), eq(OrderStatus.CONFIRMED),
+				any(LocalDateTime.class))).thenReturn(1);
+
+		assertEquals(OrderStatus.PENDING, stateMachine.transition(ORDER_ID, OrderStatus.CONFIRMED));
+		verify(orderReadModel).orderChanged(ORDER_ID);
+	}
+
+	@Test
+	void transitionToCurrentStatusDoesNotWrite() {
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.of(OrderStatus.PAID));
+
+		assertEquals(OrderStatus.PAID, stateMachine.transition(ORDER_ID, OrderStatus.PAID));
+		verify(orderRepository, never()).compareAndSetStatus(any(), any(), any(), any());
+	}
+
+	@Test
+	void invalidTransitionIsRejectedWithoutWriting() {
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.of(OrderStatus.CANCELED));
+
+		assertThrows(IllegalArgumentException.class, () -> stateMachine.transition(ORDER_ID, OrderStatus.PAID));
+		verify(orderRepository, never()).compareAndSetStatus(any(), any(), any(), any());
+	}
+
+	@Test
+	void missingOrderIsNotFound() {
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.empty());
+
+		assertThrows(ResourceNotFoundException.class, () -> stateMachine.transition(ORDER_ID, OrderStatus.PAID));
+	}
+
+	@Test
+	void lostRaceRereadsAndRechecksTheNewStatus() {
+		// Lần đầu đọc PENDING nhưng bên khác vừa hủy đơn: lần thử lại thấy CANCELED và từ chối
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.of(OrderStatus.PENDING),
+				Optional.of(OrderStatus.CANCELED));
+		when(orderRepository.compareAndSetStatus(eq(ORDER_ID), eq(OrderStatus.PENDING), eq(OrderStatus.PAID),
+				any(LocalDateTime.class))).thenReturn(0);
+
+		assertThrows(IllegalArgumentException.class, () -> stateMachine.transition(ORDER_ID, OrderStatus.PAID));
+		verify(orderReadModel, never()).orderChanged(any());
+	}
+
+	@Test
+	void guardIsCheckedOnEveryAttempt() {
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.of(OrderStatus.PENDING),
+				Optional.of(OrderStatus.CONFIRMED));
+		when(orderRepository.compareAndSetStatus(eq(ORDER_ID), eq(OrderStatus.PENDING), eq(OrderStatus.CANCELED),
+				any(LocalDateTime.class))).thenReturn(0);
+
+		assertThrows(IllegalArgumentException.class, () -> stateMachine.transition(ORDER_ID, OrderStatus.CANCELED,
+				current -> {
+					if (current != OrderStatus.PENDING) {
+						throw new IllegalArgumentException("Chỉ hủy được đơn đang chờ");
+					}
+				}));
+	}
+
+	@Test
+	void givesUpAfterRepeatedConflicts() {
+		when(orderRepository.findStatusById(ORDER_ID)).thenReturn(Optional.of(OrderStatus.PENDING));
+		when(orderRepository.compareAndSetStatus(any(), any(), any(), any())).thenReturn(0);
+
+		assertThrows(ObjectOptimisticLockingFailureException.class,
+				() -> stateMachine.transition(ORDER_ID, OrderStatus.CONFIRMED));
+		verify(orderRepository, times(3)).compareAndSetStatus(any(), any(), any(), any());
+	}
+}
@@ -0,0 +1,245 @@
+package com.poly.restaurant.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.poly.restaurant.dtos.MergeOrdersRequestDTO;
+import com.poly.restaurant.dtos.MoveItemsRequestDTO;
+import com.poly.restaurant.dtos.SplitOrderRequestDTO;
+import com.poly.restaurant.entities.BranchEntity;
+import com.poly.restaurant.entities.DiscountEntity;
+import com.poly.restaurant.entities.OrderEntity;
+import com.poly.restaurant.entities.OrderItemEntity;
+import com.poly.restaurant.entities.TableEntity;
+import com.poly.restaurant.entities.VoucherUsageHistoryEntity;
+import com.poly.restaurant.entities.enums.OrderItemStatus;
+import com.poly.restaurant.entities.enums.OrderStatus;
+import com.poly.restaurant.entities.enums.TableStatus;
+import com.poly.restaurant.repositories.OrderItemRepository;
+import com.poly.restaurant.repositories.OrderRepository;
+import com.poly.restaurant.repositories.TableRepository;
+import com.poly.restaurant.repositories.VoucherUsageHistoryRepository;
+
+class OrderTransferServiceTests {
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final OrderItemRepository orderItemRepository = mock(OrderItemRepository.class);
+	private final TableRepository tableRepository = mock(TableRepository.class);
+	private final VoucherUsageHistoryRepository voucherUsageHistoryRepository = mock(VoucherUsageHistoryRepository.class);
+	private final OrderStateMachine orderStateMachine = mock(OrderStateMachine.class);
+	private final KitchenDisplayService kitchenDisplayService = mock(KitchenDisplayService.class);
+	private final OrderTransferService transferService = new OrderTransferService(orderRepository,
+			orderItemRepository, tableRepository, voucherUsageHistoryRepository, mock(OrderService.class),
+			orderStateMachine, mock(OrderReadModel.class), kitchenDisplayService, mock(OutboxService.class));
+
+	private final BranchEntity branch = branch(1L);
+
+	@Test
+	void mergeCarriesPrepayAndVoucherCancelsSourcesAndReleasesTheirTables() {
+		OrderEntity target = order(10L, table(100L), "20000");
+		OrderEntity source = order(11L, table(101L), "50000");
+		DiscountEntity voucher = new DiscountEntity();
+		voucher.setId(5L);
+		voucher.setNewPrice(new BigDecimal("150000"));
+		source.setVoucherCode("SALE");
+		source.setDiscount(voucher);
+		VoucherUsageHistoryEntity usage = new VoucherUsageHistoryEntity();
+		usage.setOrder(source);
+		usage.setVoucher(voucher);
+		usage.setOriginalAmount(new BigDecimal("120000"));
+		when(orderRepository.lockByIdIn(anyCollection())).thenReturn(List.of(source, target));
+		when(voucherUsageHistoryRepository.findByOrderId(11L)).thenReturn(Optional.of(usage));
+		when(voucherUsageHistoryRepository.findByOrderId(10L)).thenReturn(Optional.of(usage));
+		OrderEntity merged = order(10L, target.getTable(), "70000");
+		merged.setTotalAmount(new BigDecimal("200000"));
+		merged.setDiscount(voucher);
+		when(orderRepository.findById(10L)).thenReturn(Optional.of(merged));
+
+		MergeOrdersRequestDTO request = new MergeOrdersRequestDTO();
+		request.setTargetOrderId(10L);
+		request.setSourceOrderIds(List.of(11L));
+		transferService.mergeOrders(request);
+
+		assertEquals(0, new BigDecimal("70000").compareTo(target.getPrepay()));
+		assertEquals(0, BigDecimal.ZERO.compareTo(source.getPrepay()));
+		assertEquals("SALE", target.getVoucherCode());
+		assertNull(source.getVoucherCode());
+		assertSame(target, usage.getOrder());
+		// Lịch sử voucher tính lại theo tổng tiền sau khi gộp
+		assertEquals(0, new BigDecimal("200000").compareTo(usage.getOriginalAmount()));
+		assertEquals(0, new BigDecimal("50000").compareTo(usage.getDiscountAmount()));
+		assertEquals(0, new BigDecimal("150000").compareTo(usage.getFinalAmount()));
+
+		verify(orderItemRepository).moveAllToOrder(eq(Set.of(11L)), eq(target), any(LocalDateTime.class));
+		verify(orderStateMachine).transition(11L, OrderStatus.CANCELED);
+		verify(orderRepository).recalculateTotals(eq(List.of(11L, 10L)), any(LocalDateTime.class));
+		verify(tableRepository).updateStatusByIdIn(List.of(100L), TableStatus.OCCUPIED);
+		verify(tableRepository).releaseWithoutOpenOrders(eq(Set.of(101L)), anyCollection(),
+				eq(TableStatus.AVAILABLE), eq(TableStatus.OCCUPIED));
+	}
+
+	@Test
+	void mergeRejectsTwoVouchers() {
+		OrderEntity target = order(10L, null, "0");
+		OrderEntity source = order(11L, null, "0");
+		target.setVoucherCode("A");
+		source.setVoucherCode("B");
+		when(orderRepository.lockByIdIn(anyCollection())).thenReturn(List.of(source, target));
+
+		MergeOrdersRequestDTO request = new MergeOrdersRequestDTO();
+		request.setTargetOrderId(10L);
+		request.setSourceOrderIds(List.of(11L));
+		assertThrows(IllegalArgumentException.class, () -> transferService.mergeOrders(request));
+		verify(orderStateMachine, never()).transition(any(), any());
+	}
+
+	@Test
+	void partialSplitDividesQuantityAndDiscountAndReloadsBothLines() {
+		OrderEntity source = order(10L, table(100L), "0");
+		OrderItemEntity item = item(50L, source, 3, "10000", "3000");
+		when(orderRepository.lockByIdIn(anyCollection())).thenReturn(List.of(source));
+		when(orderRepository.save(any(OrderEntity.class))).thenAnswer(invocation -> {
+			OrderEntity split = invocation.getArgument(0);
+			split.setId(20L);
+			return split;
+		});
+		when(orderItemRepository.lockByIdIn(anyCollection())).thenReturn(List.of(item));
+		when(orderItemRepository.save(any(OrderItemEntity.class))).thenAnswer(invocation -> {
+			OrderItemEntity part = invocation.getArgument(0);
+			part.setId(51L);
+			return part;
+		});
+
+		SplitOrderRequestDTO.SplitItem splitItem = new SplitOrderRequestDTO.SplitItem();
+		splitItem.setOrderDetailId(50L);
+		splitItem.setQuantity(1);
+		SplitOrderRequestDTO request = new SplitOrderRequestDTO();
+		request.setItems(List.of(splitItem));
+		transferService.splitOrder(10L, request);
+
+		ArgumentCaptor<OrderItemEntity> saved = ArgumentCaptor.forClass(OrderItemEntity.class);
+		verify(orderItemRepository).save(saved.capture());
+		OrderItemEntity part = saved.getValue();
+		assertEquals(20L, part.getOrder().getId());
+		assertLine(part, 1, "10000", "1000", "9000");
+		assertLine(item, 2, "20000", "2000", "18000");
+		verify(orderItemRepository, never()).moveToOrder(anyCollection(), any(), any(), any());
+		verify(orderRepository).recalculateTotals(eq(List.of(10L, 20L)), any(LocalDateTime.class));
+		verify(kitchenDisplayService).itemsMoved(List.of(51L, 50L));
+		verify(tableRepository).updateStatusByIdIn(List.of(100L), TableStatus.OCCUPIED);
+	}
+
+	@Test
+	void splitToAnotherTableRequiresItToBeFree() {
+		OrderEntity source = order(10L, table(100L), "0");
+		TableEntity busy = table(101L);
+		when(orderRepository.lockByIdIn(anyCollection())).thenReturn(List.of(source));
+		when(tableRepository.lockByIdWithBranch(101L)).thenReturn(Optional.of(busy));
+		when(orderRepository.existsByTableIdAndStatusIn(eq(101L), anyCollection())).thenReturn(true);
+
+		SplitOrderRequestDTO.SplitItem splitItem = new SplitOrderRequestDTO.SplitItem();
+		splitItem.setOrderDetailId(50L);
+		SplitOrderRequestDTO request = new SplitOrderRequestDTO();
+		request.setItems(List.of(splitItem));
+		request.setAssignTableId(101L);
+
+		assertThrows(IllegalArgumentException.class, () -> transferService.splitOrder(10L, request));
+		verify(orderRepository, never()).save(any());
+	}
+
+	@Test
+	void wholeLineMoveUsesOneUpdateAndOccupiesTargetTable() {
+		OrderEntity source = order(10L, table(100L), "0");
+		OrderEntity target = order(11L, table(101L), "0");
+		OrderItemEntity item = item(50L, source, 2, "10000", null);
+		when(orderRepository.lockByIdIn(anyCollection())).thenReturn(List.of(source, target));
+		when(orderItemRepository.lockByIdIn(anyCollection())).thenReturn(List.of(item));
+
+		MoveItemsRequestDTO.MoveItem moveItem = new MoveItemsRequestDTO.MoveItem();
+		moveItem.setOrderDetailId(50L);
+		MoveItemsRequestDTO request = new MoveItemsRequestDTO();
+		request.setTargetOrderId(11L);
+		request.setItems(List.of(moveItem));
+		transferService.moveItems(10L, request);
+
+		verify(orderItemRepository).moveToOrder(eq(List.of(50L)), eq(10L), eq(target), any(LocalDateTime.class));
+		verify(orderItemRepository, never()).save(any());
+		verify(orderRepository).recalculateTotals(eq(List.of(10L, 11L)), any(LocalDateTime.class));
+		verify(kitchenDisplayService).itemsMoved(List.of(50L));
+		verify(tableRepository).updateStatusByIdIn(List.of(101L), TableStatus.OCCUPIED);
+	}
+
+	@Test
+	void settledOrdersCannotBeTransferred() {
+		OrderEntity source = order(10L, null, "0");
+		source.setStatus(OrderStatus.PAID);
+		when(orderRepository.lockByIdIn(anyCollection())).thenReturn(List.of(source));
+
+		SplitOrderRequestDTO.SplitItem splitItem = new SplitOrderRequestDTO.SplitItem();
+		splitItem.setOrderDetailId(50L);
+		SplitOrderRequestDTO request = new SplitOrderRequestDTO();
+		request.setItems(List.of(splitItem));
+		assertThrows(IllegalArgumentException.class, () -> transferService.splitOrder(10L, request));
+	}
+
+	private OrderEntity order(Long id, TableEntity table, String prepay) {
+		OrderEntity order = new OrderEntity();
+		order.setId(id);
+		order.setBranch(branch);
+		order.setTable(table);
+		order.setStatus(OrderStatus.CONFIRMED);
+		order.setPrepay(new BigDecimal(prepay));
+		return order;
+	}
+
+	private TableEntity table(Long id) {
+		TableEntity table = new TableEntity();
+		table.setId(id);
+		table.setName("Bàn " + id);
+		table.setBranch(branch);
+		table.setStatus(TableStatus.AVAILABLE);
+		return table;
+	}
+
+	private static BranchEntity branch(Long id) {
+		BranchEntity branch = new BranchEntity();
+		branch.setId(id);
+		return branch;
+	}
+
+	private static OrderItemEntity item(Long id, OrderEntity order, int quantity, String unitPrice, String discount) {
+		OrderItemEntity item = new OrderItemEntity();
+		item.setId(id);
+		item.setOrder(order);
+		item.setQuantity(quantity);
+		item.setStatus(OrderItemStatus.CONFIRMED);
+		item.setUnitPrice(new BigDecimal(unitPrice));
+		item.setDiscountAmount(discount != null ? new BigDecimal(discount) : null);
+		return item;
+	}
+
+	private static void assertLine(OrderItemEntity item, int quantity, String total, String discount, String finalPrice) {
+		assertEquals(quantity, item.getQuantity());
+		assertEquals(0, new BigDecimal(total).compareTo(item.getTotalPrice()));
+		assertEquals(0, new BigDecimal(discount).compareTo(item.getDiscountAmount()));
+		assertEquals(0, new BigDecimal(finalPrice).compareTo(item.getFinalPrice()));
+	}
+}
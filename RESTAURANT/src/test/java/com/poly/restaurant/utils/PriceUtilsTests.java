@@ -0,0 +1,67 @@
+package com.poly.restaurant.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+class PriceUtilsTests {
+
+	@Test
+	void toVndRoundsHalfUpAndTreatsNullAsZero() {
+		assertEquals(0, PriceUtils.toVnd((BigDecimal) null));
+		assertEquals(25_000, PriceUtils.toVnd(new BigDecimal("25000")));
+		assertEquals(25_000, PriceUtils.toVnd(new BigDecimal("25000.00")));
+		assertEquals(25_001, PriceUtils.toVnd(new BigDecimal("25000.50")));
+		assertEquals(25_000, PriceUtils.toVnd(new BigDecimal("25000.49")));
+		assertEquals(1_000, PriceUtils.toVnd(new BigDecimal("1E+3")));
+		assertEquals(0, PriceUtils.toVnd((Double) null));
+		assertEquals(12_346, PriceUtils.toVnd(12_345.5));
+	}
+
+	@Test
+	void toBasisPointsKeepsTwoDecimalsOfPercentage() {
+		assertEquals(0, PriceUtils.toBasisPoints((BigDecimal) null));
+		assertEquals(1_250, PriceUtils.toBasisPoints(new BigDecimal("12.5")));
+		assertEquals(1_000, PriceUtils.toBasisPoints(new BigDecimal("10")));
+		assertEquals(3_334, PriceUtils.toBasisPoints(new BigDecimal("33.335")));
+		assertEquals(1_250, PriceUtils.toBasisPoints(12.5));
+		assertEquals(0, PriceUtils.toBasisPoints((Double) null));
+	}
+
+	@Test
+	void percentOfRoundsHalfUp() {
+		assertEquals(3_125, PriceUtils.percentOf(25_000, 1_250));
+		// 10% của 15 = 1.5 -> 2
+		assertEquals(2, PriceUtils.percentOf(15, 1_000));
+		// 10% của 14 = 1.4 -> 1
+		assertEquals(1, PriceUtils.percentOf(14, 1_000));
+		assertEquals(0, PriceUtils.percentOf(0, 1_000));
+	}
+
+	@Test
+	void finalPriceAppliesPercentageThenAmountAndNeverGoesNegative() {
+		assertEquals(25_000, PriceUtils.finalPrice(25_000, false, 1_000, 5_000));
+		assertEquals(22_500, PriceUtils.finalPrice(25_000, true, 1_000, 0));
+		assertEquals(17_500, PriceUtils.finalPrice(25_000, true, 1_000, 5_000));
+		assertEquals(20_000, PriceUtils.finalPrice(25_000, true, 0, 5_000));
+		assertEquals(0, PriceUtils.finalPrice(25_000, true, 5_000, 20_000));
+	}
+
+	@Test
+	void lineTotalsAndDiscounts() {
+		assertEquals(75_000, PriceUtils.lineTotal(25_000, 3));
+		assertEquals(15_000, PriceUtils.lineDiscount(25_000, 20_000, 3));
+		assertEquals(0, PriceUtils.lineDiscount(25_000, 25_000, 3));
+		assertEquals(0, PriceUtils.lineDiscount(25_000, 30_000, 3));
+		assertThrows(ArithmeticException.class, () -> PriceUtils.lineTotal(Long.MAX_VALUE / 2, 3));
+	}
+
+	@Test
+	void toDecimalRoundTrips() {
+		assertEquals(0, new BigDecimal("25000").compareTo(PriceUtils.toDecimal(25_000)));
+		assertEquals(25_000, PriceUtils.toVnd(PriceUtils.toDecimal(25_000)));
+	}
+}